@@ -0,0 +1,115 @@
+package com.boss0430.bosslib.location;
+
+import android.location.Location;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Geodesy vs Location.distanceBetween, on device. (needs real android.location.Location)
+ * <br>
+ * Nearest point of 200 queries over 2000 points, both ways. results go to logcat, tag "GeodesyBenchmark".
+ */
+@RunWith(AndroidJUnit4.class)
+public class GeodesyBenchmark {
+
+    private static final String TAG = "GeodesyBenchmark";
+    private static final int POINTS = 2000;
+    private static final int QUERIES = 200;
+    private static final int ROUNDS = 5;
+
+    private final double[] lats = new double[POINTS];
+    private final double[] lons = new double[POINTS];
+    private final double[] queryLats = new double[QUERIES];
+    private final double[] queryLons = new double[QUERIES];
+
+    private double sink;
+
+    public GeodesyBenchmark() {
+        Random random = new Random(1);
+        for (int n = 0; n < POINTS; n++) {
+            lats[n] = 37 + random.nextDouble();
+            lons[n] = 126.5 + random.nextDouble();
+        }
+        for (int n = 0; n < QUERIES; n++) {
+            queryLats[n] = 37 + random.nextDouble();
+            queryLons[n] = 126.5 + random.nextDouble();
+        }
+    }
+
+    private long runLocation() {
+        float[] result = new float[1];
+        long start = System.nanoTime();
+        for (int q = 0; q < QUERIES; q++) {
+            float best = Float.MAX_VALUE;
+            for (int n = 0; n < POINTS; n++) {
+                Location.distanceBetween(queryLats[q], queryLons[q], lats[n], lons[n], result);
+                best = Math.min(best, result[0]);
+            }
+            sink += best;
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long runGeodesy() {
+        long start = System.nanoTime();
+        // Points built inside timing, as a caller would once per data set.
+        Geodesy.Points points = Geodesy.of(lats, lons);
+        double[] distances = new double[POINTS];
+        for (int q = 0; q < QUERIES; q++) {
+            Geodesy.distances(queryLats[q], queryLons[q], points, distances);
+            double best = Double.MAX_VALUE;
+            for (int n = 0; n < POINTS; n++) {
+                best = Math.min(best, distances[n]);
+            }
+            sink += best;
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long runGeodesyNearest() {
+        long start = System.nanoTime();
+        Geodesy.Points points = Geodesy.of(lats, lons);
+        int[] index = new int[1];
+        double[] meters = new double[1];
+        for (int q = 0; q < QUERIES; q++) {
+            Geodesy.nearest(queryLats[q], queryLons[q], points, 1, index, meters);
+            sink += meters[0];
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void agreesWithLocation() {
+        float[] result = new float[1];
+        for (int n = 0; n < 100; n++) {
+            Location.distanceBetween(queryLats[0], queryLons[0], lats[n], lons[n], result);
+            double meters = Geodesy.distanceMeters(queryLats[0], queryLons[0], lats[n], lons[n]);
+            // sphere vs ellipsoid.
+            assertEquals(result[0], meters, Math.max(1, result[0] * 0.005));
+        }
+    }
+
+    @Test
+    public void nearest_fasterThanLocation() {
+        long location = Long.MAX_VALUE, geodesy = Long.MAX_VALUE, nearest = Long.MAX_VALUE;
+        // first rounds are warm up for JIT. keep best.
+        for (int round = 0; round < ROUNDS; round++) {
+            location = Math.min(location, runLocation());
+            geodesy = Math.min(geodesy, runGeodesy());
+            nearest = Math.min(nearest, runGeodesyNearest());
+        }
+        long pairs = (long) POINTS * QUERIES;
+        Log.i(TAG, "Location.distanceBetween : " + location / pairs + " ns/pair");
+        Log.i(TAG, "Geodesy.distances        : " + geodesy / pairs + " ns/pair");
+        Log.i(TAG, "Geodesy.nearest          : " + nearest / pairs + " ns/pair");
+        assertTrue(sink != 0);
+        assertTrue("Geodesy " + nearest + "ns, Location " + location + "ns", nearest < location);
+    }
+}
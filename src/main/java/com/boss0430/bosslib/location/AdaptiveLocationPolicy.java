@@ -0,0 +1,185 @@
+package com.boss0430.bosslib.location;
+
+import com.google.android.gms.location.LocationRequest;
+
+/**
+ * Decides interval and priority of continuous location updates from observed movement and subscriber demand.
+ * <br><br>
+ * - Moving : interval is (targetDistance / speed), clamped to [demanded interval, max moving interval]. high accuracy.<br>
+ * - Stationary for a while : interval goes to idle interval, balanced power priority.<br>
+ * - Poor accuracy while moving : high accuracy priority.<br>
+ * - Small changes (under 25%) are ignored, because re-requesting updates costs too.<br>
+ * Used by LocationStream. pure java logic, only LocationRequest constants are borrowed.
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public class AdaptiveLocationPolicy {
+
+    /**
+     * Read-only view of current decision. LocationStream hands this out, it updates the policy itself.
+     */
+    public interface View {
+
+        /** @return interval to request now. */
+        long getInterval();
+
+        /** @return fastest interval to request now. */
+        long getFastestInterval();
+
+        /** @return priority to request now. LocationRequest.PRIORITY_XXX */
+        int getPriority();
+
+        /** @return smoothed speed (m/s). */
+        float getSmoothedSpeed();
+    }
+
+    public static final int PRIORITY_HIGH_ACCURACY = LocationRequest.PRIORITY_HIGH_ACCURACY;
+    public static final int PRIORITY_BALANCED_POWER_ACCURACY = LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY;
+    public static final int PRIORITY_LOW_POWER = LocationRequest.PRIORITY_LOW_POWER;
+
+    // tuning values.
+    private float stationarySpeed = 0.5f;          // m/s. below this is "not moving"
+    private long stationaryDelayMillis = 30000;     // not moving this long = stationary
+    private float targetDistanceMeters = 15f;       // distance wanted between fixes while moving
+    private long maxMovingIntervalMillis = 10000;
+    private long idleIntervalMillis = 60000;
+    private float poorAccuracyMeters = 50f;
+    private float speedSmoothing = 0.5f;            // EMA weight of new speed
+
+    // demand from subscribers.
+    private long demandIntervalMillis = 1000;
+    private boolean demandHighAccuracy = true;
+
+    // state.
+    private float smoothedSpeed = 0;
+    private long lastMovingTime = Long.MIN_VALUE;
+    private boolean hasFix = false;
+    private long lastTime = 0;
+    private float lastAccuracy = -1;
+
+    private long interval;
+    private int priority;
+
+    public AdaptiveLocationPolicy() {
+        interval = demandIntervalMillis;
+        priority = PRIORITY_HIGH_ACCURACY;
+    }
+
+    /*
+	// ********************************************************************************************
+	// Settings
+	// ********************************************************************************************
+	*/
+
+    public void setStationarySpeed(float _metersPerSecond) { this.stationarySpeed = _metersPerSecond; }
+
+    public void setStationaryDelayMillis(long _millis) { this.stationaryDelayMillis = _millis; }
+
+    public void setTargetDistanceMeters(float _meters) { this.targetDistanceMeters = _meters; }
+
+    public void setMaxMovingIntervalMillis(long _millis) { this.maxMovingIntervalMillis = _millis; }
+
+    public void setIdleIntervalMillis(long _millis) { this.idleIntervalMillis = _millis; }
+
+    public void setPoorAccuracyMeters(float _meters) { this.poorAccuracyMeters = _meters; }
+
+    /**
+     * Set demand of subscribers.
+     * @param _intervalMillis shortest interval any subscriber wants.
+     * @param _highAccuracy true when any subscriber needs high accuracy.
+     * @return true when interval or priority has changed.
+     */
+    public boolean setDemand(long _intervalMillis, boolean _highAccuracy) {
+        this.demandIntervalMillis = Math.max(0, _intervalMillis);
+        this.demandHighAccuracy = _highAccuracy;
+        return decide(lastTime);
+    }
+
+    /**
+     * Forget observed movement. call when updates stop, so next start warms up with demand again.
+     * <br>
+     * Interval and priority are kept until next decision. (setDemand or onFix)
+     */
+    public void reset() {
+        smoothedSpeed = 0;
+        lastMovingTime = Long.MIN_VALUE;
+        hasFix = false;
+        lastTime = 0;
+        lastAccuracy = -1;
+    }
+
+    /*
+	// ********************************************************************************************
+	// Decision
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Feed a fix.
+     * @param _speedMetersPerSecond speed of fix. negative when unknown.
+     * @param _accuracyMeters accuracy radius of fix. negative when unknown.
+     * @param _timeMillis time of fix (any monotonic millis).
+     * @return true when interval or priority has changed. request updates again then.
+     */
+    public boolean onFix(float _speedMetersPerSecond, float _accuracyMeters, long _timeMillis) {
+
+        if (_speedMetersPerSecond >= 0) {
+            smoothedSpeed = hasFix
+                    ? speedSmoothing * _speedMetersPerSecond + (1 - speedSmoothing) * smoothedSpeed
+                    : _speedMetersPerSecond;
+        }
+        if (!hasFix || smoothedSpeed >= stationarySpeed) {
+            lastMovingTime = _timeMillis;
+        }
+        hasFix = true;
+        lastTime = _timeMillis;
+        lastAccuracy = _accuracyMeters;
+
+        return decide(_timeMillis);
+    }
+
+    private boolean decide(long _now) {
+
+        long newInterval;
+        int newPriority;
+
+        if (!hasFix) {
+            // warm up with what subscribers want.
+            newInterval = demandIntervalMillis;
+            newPriority = demandHighAccuracy ? PRIORITY_HIGH_ACCURACY : PRIORITY_BALANCED_POWER_ACCURACY;
+        } else if (isStationary(_now)) {
+            newInterval = Math.max(demandIntervalMillis, idleIntervalMillis);
+            newPriority = PRIORITY_BALANCED_POWER_ACCURACY;
+        } else {
+            long byDistance = smoothedSpeed > 0
+                    ? (long) (targetDistanceMeters / smoothedSpeed * 1000)
+                    : maxMovingIntervalMillis;
+            newInterval = Math.max(demandIntervalMillis, Math.min(byDistance, maxMovingIntervalMillis));
+            boolean poorAccuracy = lastAccuracy < 0 || lastAccuracy > poorAccuracyMeters;
+            newPriority = demandHighAccuracy || poorAccuracy ? PRIORITY_HIGH_ACCURACY : PRIORITY_BALANCED_POWER_ACCURACY;
+        }
+
+        boolean changed = newPriority != priority || Math.abs(newInterval - interval) * 4 > interval;
+        if (changed) {
+            interval = newInterval;
+            priority = newPriority;
+        }
+        return changed;
+    }
+
+    public boolean isStationary(long _now) {
+        return hasFix && smoothedSpeed < stationarySpeed && _now - lastMovingTime >= stationaryDelayMillis;
+    }
+
+    /** @return interval to request now. */
+    public long getInterval() { return interval; }
+
+    /** @return fastest interval to request now. (half of interval) */
+    public long getFastestInterval() { return interval / 2; }
+
+    /** @return priority to request now. LocationRequest.PRIORITY_XXX */
+    public int getPriority() { return priority; }
+
+    /** @return smoothed speed (m/s). */
+    public float getSmoothedSpeed() { return smoothedSpeed; }
+}
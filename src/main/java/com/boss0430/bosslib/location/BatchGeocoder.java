@@ -0,0 +1,271 @@
+package com.boss0430.bosslib.location;
+
+import com.boss0430.bosslib.utils.Dlog;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reverse-geocode many coordinates at once over a bounded number of workers.
+ * <br><br>
+ * - Identical or near-identical points (same dedupe cell) are looked up only once.<br>
+ * - At most 'concurrency' lookups run at the same time, whatever size the executor has.<br>
+ * - Results are in input order. get them all at once (geocode) or as they complete (geocodeAsync).<br>
+ * LocationConverter uses this for getAddressesFromCoordinates.
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public class BatchGeocoder {
+
+    /**
+     * Lookup of one coordinate. called from worker threads.
+     */
+    public interface Lookup {
+
+        /**
+         * @param latitude latitude.
+         * @param longitude longitude.
+         * @return address. empty string when not found.
+         */
+        String lookup(double latitude, double longitude);
+    }
+
+    /**
+     * Receive results of geocodeAsync. invoked on worker threads.
+     */
+    public interface Listener {
+
+        /**
+         * Invoked when address of input index is resolved. order is not guaranteed.
+         * @param index index in input arrays.
+         * @param address address. empty string when not found.
+         */
+        void onAddress(int index, String address);
+
+        /**
+         * Invoked once after every index has been resolved (or batch has been cancelled).
+         * @param addresses addresses in input order.
+         */
+        void onComplete(String[] addresses);
+    }
+
+    /**
+     * Handle of running batch.
+     */
+    public static final class Batch {
+
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private final AtomicBoolean mCancelled = new AtomicBoolean(false);
+        private final String[] mAddresses;
+
+        private Batch(int size) {
+            mAddresses = new String[size];
+            Arrays.fill(mAddresses, "");
+        }
+
+        /**
+         * Stop picking new lookups. lookups already running will finish.
+         */
+        public void cancel() {
+            mCancelled.set(true);
+        }
+
+        public boolean isCancelled() {
+            return mCancelled.get();
+        }
+
+        public boolean isDone() {
+            return mDone.getCount() == 0;
+        }
+
+        /**
+         * Wait till batch is done.
+         * @return addresses in input order.
+         * @throws InterruptedException when waiting thread has been interrupted.
+         */
+        public String[] await() throws InterruptedException {
+            mDone.await();
+            return mAddresses;
+        }
+    }
+
+    public static final double DEFAULT_DEDUPE_DEGREES = 0.000001;
+    public static final int DEFAULT_CONCURRENCY = 4;
+
+    private final static String TAG = "BatchGeocoder";
+
+    private final Lookup mLookup;
+    private final Executor mExecutor;
+    private final int concurrency;
+    private final double dedupeDegrees;
+
+    /**
+     * Constructor.
+     * @param _lookup lookup of one coordinate.
+     * @param _executor executor that runs lookups.
+     * @param _concurrency max lookups running at the same time.
+     * @param _dedupeDegrees points in the same cell of this size (degree) are looked up once. 1e-7 at least.
+     */
+    public BatchGeocoder(Lookup _lookup, Executor _executor, int _concurrency, double _dedupeDegrees) {
+        if (_concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be positive : " + _concurrency);
+        }
+        if (!(_dedupeDegrees >= 1e-7) || _dedupeDegrees > 180) {
+            throw new IllegalArgumentException("dedupeDegrees out of range : " + _dedupeDegrees);
+        }
+        this.mLookup = _lookup;
+        this.mExecutor = _executor;
+        this.concurrency = _concurrency;
+        this.dedupeDegrees = _dedupeDegrees;
+    }
+
+    public int getConcurrency() { return concurrency; }
+
+    public double getDedupeDegrees() { return dedupeDegrees; }
+
+    /**
+     * Geocode every coordinate and wait for the result.
+     * @param latitudes latitudes.
+     * @param longitudes longitudes. same length as latitudes.
+     * @return addresses in input order.
+     * @throws InterruptedException when waiting thread has been interrupted. batch is cancelled.
+     */
+    public String[] geocode(double[] latitudes, double[] longitudes) throws InterruptedException {
+        Batch batch = geocodeAsync(latitudes, longitudes, null);
+        try {
+            return batch.await();
+        } catch (InterruptedException e) {
+            batch.cancel();
+            throw e;
+        }
+    }
+
+    /**
+     * Geocode every coordinate without waiting.
+     * @param latitudes latitudes.
+     * @param longitudes longitudes. same length as latitudes.
+     * @param _listener receives addresses as they complete. nullable.
+     * @return handle of batch.
+     */
+    public Batch geocodeAsync(double[] latitudes, double[] longitudes, final Listener _listener) {
+
+        if (latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("latitudes.length(" + latitudes.length + ") != longitudes.length(" + longitudes.length + ")");
+        }
+
+        final int size = latitudes.length;
+        final Batch batch = new Batch(size);
+
+        // group duplicated points. first[u] is first input index of unique u, next[i] chains same group.
+        final int[] first = new int[size];
+        final int[] next = new int[size];
+        final int uniqueCount = dedupe(latitudes, longitudes, first, next);
+
+        Dlog.out(TAG, "LOCATION : batch of " + size + " points, " + uniqueCount + " unique", Dlog.d);
+
+        if (uniqueCount == 0) {
+            finish(batch, _listener);
+            return batch;
+        }
+
+        final double[] lats = latitudes.clone();
+        final double[] lons = longitudes.clone();
+        final AtomicInteger cursor = new AtomicInteger(0);
+        final int workers = Math.min(concurrency, uniqueCount);
+        final AtomicInteger liveWorkers = new AtomicInteger(workers);
+
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int u;
+                    while (!batch.isCancelled() && (u = cursor.getAndIncrement()) < uniqueCount) {
+                        int index = first[u];
+                        String address;
+                        try {
+                            address = mLookup.lookup(lats[index], lons[index]);
+                        } catch (RuntimeException e) {
+                            Dlog.out(TAG, "LOCATION : lookup failed : " + e, Dlog.e);
+                            address = null;
+                        }
+                        if (address == null) {
+                            address = "";
+                        }
+                        for (int i = index; i >= 0; i = next[i]) {
+                            batch.mAddresses[i] = address;
+                            if (_listener != null) {
+                                _listener.onAddress(i, address);
+                            }
+                        }
+                    }
+                } finally {
+                    // last worker out reports completion (also on cancel).
+                    if (liveWorkers.decrementAndGet() == 0) {
+                        finish(batch, _listener);
+                    }
+                }
+            }
+        };
+
+        for (int w = 0; w < workers; w++) {
+            try {
+                mExecutor.execute(worker);
+            } catch (RejectedExecutionException e) {
+                Dlog.out(TAG, "LOCATION : executor rejected worker : " + e, Dlog.e);
+                if (liveWorkers.decrementAndGet() == 0) {
+                    batch.cancel();
+                    finish(batch, _listener);
+                }
+            }
+        }
+
+        return batch;
+    }
+
+    private void finish(Batch batch, Listener _listener) {
+        batch.mDone.countDown();
+        if (_listener != null) {
+            _listener.onComplete(batch.mAddresses);
+        }
+    }
+
+    /**
+     * Fill first / next arrays.
+     * @return count of unique points.
+     */
+    private int dedupe(double[] latitudes, double[] longitudes, int[] first, int[] next) {
+
+        Map<Long, Integer> uniqueOfKey = new HashMap<>();
+        // tail[u] is last input index of unique u.
+        int[] tail = new int[latitudes.length];
+        int uniqueCount = 0;
+
+        for (int i = 0; i < latitudes.length; i++) {
+            next[i] = -1;
+            Long key = dedupeKey(latitudes[i], longitudes[i]);
+            Integer u = uniqueOfKey.get(key);
+            if (u == null) {
+                uniqueOfKey.put(key, uniqueCount);
+                first[uniqueCount] = i;
+                tail[uniqueCount] = i;
+                uniqueCount++;
+            } else {
+                next[tail[u]] = i;
+                tail[u] = i;
+            }
+        }
+        return uniqueCount;
+    }
+
+    private long dedupeKey(double latitude, double longitude) {
+        long latIdx = (long) Math.floor((latitude + 90.0) / dedupeDegrees);
+        long lonIdx = (long) Math.floor((longitude + 180.0) / dedupeDegrees);
+        return latIdx * ((long) Math.ceil(360.0 / dedupeDegrees) + 1) + lonIdx;
+    }
+}
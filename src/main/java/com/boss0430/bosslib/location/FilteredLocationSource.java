@@ -0,0 +1,141 @@
+package com.boss0430.bosslib.location;
+
+import android.content.Context;
+
+import com.boss0430.bosslib.utils.Dlog;
+import com.boss0430.bosslib.utils.DlogRateLimiter;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * LocationSource that smooths fixes of another source, and drops outliers. see KalmanLocationFilter.
+ * <br><br>
+ * - Each listener has own filter, so several consumers do not disturb each other.<br>
+ * - Last fix (getLastFix) is passed as it is. it is not part of a stream.<br>
+ * <br>
+ * Usage<br>
+ * 1. LocationHub hub = new LocationHub(new FilteredLocationSource(new FusedLocationSource(context)));<br>
+ * 2. use hub with LocationLookup, or new LocationStream(source)
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public class FilteredLocationSource implements LocationSource {
+
+    /**
+     * Makes filter of each listener. set tuning values here.
+     */
+    public interface FilterFactory {
+        KalmanLocationFilter create();
+    }
+
+    private final static String TAG = "FilteredLocationSource";
+
+    private static final DlogRateLimiter REJECT_LOG = DlogRateLimiter.perSecond("FilteredLocationSource.reject", 1, 3);
+
+    private static final FilterFactory DEFAULT_FACTORY = new FilterFactory() {
+        @Override
+        public KalmanLocationFilter create() {
+            return new KalmanLocationFilter();
+        }
+    };
+
+    private final LocationSource mSource;
+    private final FilterFactory mFactory;
+    private final ConcurrentHashMap<Listener, Listener> mFiltered = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor with default filter.
+     * @param _source source to filter.
+     */
+    public FilteredLocationSource(LocationSource _source) {
+        this(_source, DEFAULT_FACTORY);
+    }
+
+    /**
+     * Constructor.
+     * @param _source source to filter.
+     * @param _factory makes filter of each listener.
+     */
+    public FilteredLocationSource(LocationSource _source, FilterFactory _factory) {
+        mSource = _source;
+        mFactory = _factory;
+    }
+
+    @Override
+    public String getName() {
+        return mSource.getName() + "+kalman";
+    }
+
+    @Override
+    public void checkSettings(Context _caller, long _intervalMillis, int _priority, SettingsCallback _callback) {
+        mSource.checkSettings(_caller, _intervalMillis, _priority, _callback);
+    }
+
+    @Override
+    public void requestUpdates(long _intervalMillis, long _fastestIntervalMillis, int _priority, Listener _listener) {
+        Listener filtered = mFiltered.get(_listener);
+        if (filtered == null) {
+            // racing callers of same listener : one filter wins, every caller registers that one.
+            Listener created = new FilteredListener(mFactory.create(), _listener);
+            filtered = mFiltered.putIfAbsent(_listener, created);
+            if (filtered == null) {
+                filtered = created;
+            }
+        }
+        mSource.requestUpdates(_intervalMillis, _fastestIntervalMillis, _priority, filtered);
+    }
+
+    @Override
+    public void removeUpdates(Listener _listener) {
+        Listener filtered = mFiltered.remove(_listener);
+        if (filtered != null) {
+            mSource.removeUpdates(filtered);
+        }
+    }
+
+    @Override
+    public void getLastFix(LastFixCallback _callback) {
+        mSource.getLastFix(_callback);
+    }
+
+    // BatchListener always, so batches of source pass through to batch listeners.
+    private static final class FilteredListener implements BatchListener {
+
+        private final KalmanLocationFilter filter;
+        private final Listener mListener;
+
+        FilteredListener(KalmanLocationFilter _filter, Listener _listener) {
+            filter = _filter;
+            mListener = _listener;
+        }
+
+        @Override
+        public void onFix(LocationFix fix) {
+            LocationFix out;
+            // source may call from any thread. one filter is updated by one thread at a time.
+            synchronized (filter) {
+                int result = filter.update(fix);
+                if (result != KalmanLocationFilter.ACCEPTED && result != KalmanLocationFilter.RESTARTED) {
+                    if (REJECT_LOG.tryAcquire(TAG, Dlog.d)) {
+                        Dlog.out(TAG, "LOCATION : fix rejected, reason {}", result, Dlog.d);
+                    }
+                    return;
+                }
+                out = filter.toFix();
+            }
+            mListener.onFix(out);
+        }
+
+        @Override
+        public long getMaxWaitMillis() {
+            return mListener instanceof BatchListener ? ((BatchListener) mListener).getMaxWaitMillis() : 0;
+        }
+
+        @Override
+        public void onBatchEnd() {
+            if (mListener instanceof BatchListener) {
+                ((BatchListener) mListener).onBatchEnd();
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.boss0430.bosslib.location;
+
+import android.Manifest;
+import android.app.Activity;
+import android.content.Context;
+import android.content.IntentSender;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.v4.app.ActivityCompat;
+
+import com.boss0430.bosslib.utils.Dlog;
+import com.boss0430.bosslib.utils.DlogRateLimiter;
+import com.google.android.gms.common.api.ApiException;
+import com.google.android.gms.common.api.ResolvableApiException;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationAvailability;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.LocationSettingsRequest;
+import com.google.android.gms.location.LocationSettingsResponse;
+import com.google.android.gms.location.LocationSettingsStatusCodes;
+import com.google.android.gms.location.SettingsClient;
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.OnSuccessListener;
+import com.google.android.gms.tasks.Task;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * LocationSource of Google fused location provider.
+ * <br><br>
+ * Listeners are invoked on main thread.<br>
+ * BatchListener gets max-wait buffering : fixes are held by the provider, and delivered together at one wakeup.
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public class FusedLocationSource implements LocationSource {
+
+    private final static String TAG = "FusedLocationSource";
+
+    // one line per fix floods logcat on fast updates. keep it on, at bounded rate.
+    private static final DlogRateLimiter FIX_LOG = DlogRateLimiter.perSecond("FusedLocationSource.fix", 1, 5);
+
+    private final Context mAppContext;
+    private final FusedLocationProviderClient fusedLocationClient;
+
+    // one LocationCallback per listener, so same callback replaces its own request.
+    private final Map<Listener, LocationCallback> mCallbacks = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor.
+     * @param _context any context. application context is kept.
+     */
+    public FusedLocationSource(Context _context) {
+        mAppContext = _context.getApplicationContext() != null ? _context.getApplicationContext() : _context;
+        fusedLocationClient = LocationServices.getFusedLocationProviderClient(mAppContext);
+    }
+
+    @Override
+    public String getName() {
+        return "fused";
+    }
+
+    private boolean hasPermission() {
+        return ActivityCompat.checkSelfPermission(mAppContext, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED
+                || ActivityCompat.checkSelfPermission(mAppContext, Manifest.permission.ACCESS_COARSE_LOCATION) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    private static LocationRequest createLocationRequest(long _intervalMillis, long _fastestIntervalMillis, int _priority) {
+        return createLocationRequest(_intervalMillis, _fastestIntervalMillis, _priority, 0);
+    }
+
+    private static LocationRequest createLocationRequest(long _intervalMillis, long _fastestIntervalMillis, int _priority, long _maxWaitMillis) {
+        LocationRequest request = LocationRequest.create();
+        request.setInterval(_intervalMillis);
+        request.setFastestInterval(_fastestIntervalMillis);
+        request.setPriority(_priority);
+        // max wait below 2 intervals is same as no batching.
+        if (_maxWaitMillis >= _intervalMillis * 2) {
+            request.setMaxWaitTime(_maxWaitMillis);
+        }
+        return request;
+    }
+
+    /**
+     * Source comes from Google developers site <br>
+     * @see <a href="https://developer.android.com/training/location/change-location-settings.html#java">Google Link</a>
+     */
+    @Override
+    public void checkSettings(Context _caller, long _intervalMillis, int _priority, final SettingsCallback _callback) {
+
+        // keep caller weakly. only used to show resolution dialog.
+        final WeakReference<Context> callerRef = new WeakReference<>(_caller);
+
+        LocationSettingsRequest.Builder builder = new LocationSettingsRequest.Builder()
+                .addLocationRequest(createLocationRequest(_intervalMillis, _intervalMillis / 2, _priority));
+
+        SettingsClient client = LocationServices.getSettingsClient(mAppContext);
+        Task<LocationSettingsResponse> task = client.checkLocationSettings(builder.build());
+
+        task.addOnCompleteListener(new OnCompleteListener<LocationSettingsResponse>() {
+            @Override
+            public void onComplete(@NonNull Task<LocationSettingsResponse> task) {
+                try {
+                    task.getResult(ApiException.class);
+                    Dlog.out(TAG, "LOCATION : All location settings are satisfied. The client can initialize", Dlog.d);
+                    _callback.onSettingsChecked(true);
+                    return;
+                } catch (ApiException e) {
+                    switch (e.getStatusCode()) {
+                        case LocationSettingsStatusCodes.RESOLUTION_REQUIRED:
+                            // Location settings are not satisfied. But could be fixed by showing to user a dialog.
+                            Context caller = callerRef.get();
+                            if (!(caller instanceof Activity)) {
+                                Dlog.out(TAG, "LOCATION : caller is not an Activity (or has gone), can not show settings dialog", Dlog.e);
+                                break;
+                            }
+                            try {
+                                ResolvableApiException resolvable = (ResolvableApiException) e;
+                                // i don't handle onActivityResult > set requestCode to 0.
+                                resolvable.startResolutionForResult((Activity) caller, 0);
+                            } catch (IntentSender.SendIntentException e1) {
+                                Dlog.out(TAG, "LOCATION : SendIntentException : " + e1.toString(), Dlog.e);
+                            } catch (ClassCastException e2) {
+                                Dlog.out(TAG, "LOCATION : ClassCastException : " + e2.toString(), Dlog.e);
+                            }
+                            break;
+                        case LocationSettingsStatusCodes.SETTINGS_CHANGE_UNAVAILABLE:
+                            Dlog.out(TAG, "LOCATION : YOU CAN NOT ACCESS LOCATION INFORMATION with your configuration", Dlog.e);
+                            break;
+                    }
+                } catch (RuntimeException e) {
+                    Dlog.out(TAG, "LOCATION : location settings failed : {}", e, Dlog.e);
+                }
+                _callback.onSettingsChecked(false);
+            }
+        });
+    }
+
+    /**
+     * Source comes from Google developers site <br>
+     * @see <a href="https://developer.android.com/training/location/receive-location-updates">Google Link</a>
+     */
+    @Override
+    public void requestUpdates(long _intervalMillis, long _fastestIntervalMillis, int _priority, final Listener _listener) {
+
+        if (!hasPermission()) {
+            Dlog.out(TAG, "Start Location Updates has failed because permission not granted", Dlog.e);
+            return;
+        }
+
+        final BatchListener batchListener = _listener instanceof BatchListener ? (BatchListener) _listener : null;
+        long maxWaitMillis = batchListener != null ? batchListener.getMaxWaitMillis() : 0;
+
+        LocationCallback callback = mCallbacks.get(_listener);
+        if (callback == null) {
+            callback = new LocationCallback() {
+                @Override
+                public void onLocationResult(LocationResult locationResult) {
+                    if (locationResult == null) {
+                        Dlog.out(TAG, "LOCATION : location result of LocationCallback is null", Dlog.w);
+                        return;
+                    }
+                    List<Location> locations = locationResult.getLocations();
+                    if (batchListener != null) {
+                        // one line per delivery, not per fix.
+                        if (FIX_LOG.tryAcquire(TAG, Dlog.i)) {
+                            Dlog.out(TAG, "LOCATION : LocationCallback : batch of {} fixes", locations.size(), Dlog.i);
+                        }
+                        for (int i = 0; i < locations.size(); i++) {
+                            batchListener.onFix(LocationFix.from(locations.get(i)));
+                        }
+                        batchListener.onBatchEnd();
+                        return;
+                    }
+                    for (Location location : locations) {
+                        if (FIX_LOG.tryAcquire(TAG, Dlog.i)) {
+                            Dlog.out(TAG, "LOCATION : LocationCallback : {}, {}", location.getLatitude(), location.getLongitude(), Dlog.i);
+                        }
+                        _listener.onFix(LocationFix.from(location));
+                    }
+                }
+
+                @Override
+                public void onLocationAvailability(LocationAvailability locationAvailability) {
+                    Dlog.out(TAG, "LOCATION : locationAvailability.isLocationAvailable:{}", locationAvailability.isLocationAvailable(), Dlog.w);
+                }
+            };
+            mCallbacks.put(_listener, callback);
+        }
+
+        Dlog.out(TAG, "LOCATION : right b4 requestLocationUpdates", Dlog.i);
+        fusedLocationClient.requestLocationUpdates(createLocationRequest(_intervalMillis, _fastestIntervalMillis, _priority, maxWaitMillis),
+                callback, Looper.getMainLooper());
+    }
+
+    @Override
+    public void removeUpdates(Listener _listener) {
+        LocationCallback callback = mCallbacks.remove(_listener);
+        if (callback != null) {
+            fusedLocationClient.removeLocationUpdates(callback);
+        }
+    }
+
+    /**
+     * Source comes from Google developers site <br>
+     * @see <a href="https://developer.android.com/training/location/retrieve-current">Google Link</a>
+     */
+    @Override
+    public void getLastFix(final LastFixCallback _callback) {
+
+        if (!hasPermission()) {
+            Dlog.out(TAG, "Getting Location has failed because permission not granted", Dlog.e);
+            _callback.onLastFix(null);
+            return;
+        }
+
+        fusedLocationClient.getLastLocation().addOnSuccessListener(new OnSuccessListener<Location>() {
+            @Override
+            public void onSuccess(Location location) {
+                Dlog.out(TAG, "LOCATION : result location (may can be null) : {}", location, Dlog.i);
+                // Got Last Known location. In some rare situations this can be null.
+                _callback.onLastFix(location != null ? LocationFix.from(location) : null);
+            }
+        });
+    }
+}
@@ -0,0 +1,474 @@
+package com.boss0430.bosslib.location;
+
+import java.util.Arrays;
+
+/**
+ * Geohash cells as primitive long keys. for cache keys, bucketing, dedupe and neighbour lookups.
+ * <br><br>
+ * - Key is geohash bits (longitude first, interleaved with latitude) under one leading 1 bit,
+ *   so precision is part of the key. cells of different precision never share a key.<br>
+ * - Precision is in bits, 1 to 62. 5 bits are one geohash character. (60 bits = 12 characters, about 4cm)<br>
+ * - Parent is key &gt;&gt;&gt; 1. children of a cell at finer precision are one contiguous key range,
+ *   so sorted keys cluster by area. (Z-order)<br>
+ * - encode, decode, parent / child and neighbour work on primitives only and allocate nothing.
+ *   toBase32 / fromBase32 convert to and from geohash strings.<br>
+ * <br>
+ * Usage<br>
+ * 1. long cell = GeoHash.encode(lat, lon, 35); (about 150m)<br>
+ * 2. GeoHash.neighbors(cell, out); GeoHash.parent(cell, 25); GeoHash.latitudeOf(cell);<br>
+ * 3. int n = GeoHash.cover(minLat, minLon, maxLat, maxLon, 35, cells); then GeoHash.toRanges(cells, n, ranges);
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public final class GeoHash {
+
+    public static final int MAX_BITS = 62;
+
+    /** no cell. (beyond a pole) */
+    public static final long NONE = 0;
+
+    // neighbours : N, NE, E, SE, S, SW, W, NW
+    private static final int[] NORTH = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] EAST = {0, 1, 1, 1, 0, -1, -1, -1};
+
+    private static final char[] BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+    private static final int[] BASE32_INDEX = new int[128];
+
+    static {
+        Arrays.fill(BASE32_INDEX, -1);
+        for (int i = 0; i < BASE32.length; i++) {
+            BASE32_INDEX[BASE32[i]] = i;
+        }
+    }
+
+    private GeoHash() {
+    }
+
+    /*
+	// ********************************************************************************************
+	// Encode / decode
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Cell of coordinates.
+     * @param _latitude -90 to 90. clamped.
+     * @param _longitude -180 to 180. 180 is same as -180.
+     * @param _bits precision, 1 to 62.
+     * @return cell key.
+     */
+    public static long encode(double _latitude, double _longitude, int _bits) {
+        checkBits(_bits);
+        int latBits = _bits >>> 1;
+        int lonBits = _bits - latBits;
+        long latIndex = index((_latitude + 90.0) / 180.0, latBits);
+        double lon = (_longitude + 180.0) / 360.0;
+        long lonIndex = index(lon - Math.floor(lon), lonBits);
+        return cellOf(latIndex, lonIndex, _bits);
+    }
+
+    // _fraction 0 to 1 into 0 to 2^_bits - 1.
+    private static long index(double _fraction, int _bits) {
+        long cells = 1L << _bits;
+        long index = (long) (_fraction * cells);
+        return index < 0 ? 0 : (index >= cells ? cells - 1 : index);
+    }
+
+    private static long cellOf(long _latIndex, long _lonIndex, int _bits) {
+        // odd precision : longitude has the extra bit, at the bottom.
+        long hash = (_bits & 1) == 0
+                ? spread(_lonIndex) << 1 | spread(_latIndex)
+                : spread(_latIndex) << 1 | spread(_lonIndex);
+        return 1L << _bits | hash;
+    }
+
+    /**
+     * @param _cell cell key.
+     * @return precision of cell in bits.
+     */
+    public static int bitsOf(long _cell) {
+        return 63 - Long.numberOfLeadingZeros(_cell);
+    }
+
+    /**
+     * @return true when _cell is a cell key of 1 to 62 bits.
+     */
+    public static boolean isValid(long _cell) {
+        return _cell > 1 && bitsOf(_cell) <= MAX_BITS;
+    }
+
+    /**
+     * @return row of cell, 0 at south pole.
+     */
+    public static long latitudeIndex(long _cell) {
+        int bits = bitsOf(_cell);
+        long hash = _cell ^ (1L << bits);
+        return compact((bits & 1) == 0 ? hash : hash >>> 1);
+    }
+
+    /**
+     * @return column of cell, 0 at 180th meridian going east.
+     */
+    public static long longitudeIndex(long _cell) {
+        int bits = bitsOf(_cell);
+        long hash = _cell ^ (1L << bits);
+        return compact((bits & 1) == 0 ? hash >>> 1 : hash);
+    }
+
+    /** @return height of cells of _bits precision in degree. */
+    public static double latitudeSpan(int _bits) {
+        return 180.0 / (1L << (_bits >>> 1));
+    }
+
+    /** @return width of cells of _bits precision in degree. */
+    public static double longitudeSpan(int _bits) {
+        return 360.0 / (1L << (_bits - (_bits >>> 1)));
+    }
+
+    /** @return south edge of cell. */
+    public static double minLatitude(long _cell) {
+        return latitudeIndex(_cell) * latitudeSpan(bitsOf(_cell)) - 90.0;
+    }
+
+    /** @return west edge of cell. */
+    public static double minLongitude(long _cell) {
+        return longitudeIndex(_cell) * longitudeSpan(bitsOf(_cell)) - 180.0;
+    }
+
+    /** @return north edge of cell. */
+    public static double maxLatitude(long _cell) {
+        return minLatitude(_cell) + latitudeSpan(bitsOf(_cell));
+    }
+
+    /** @return east edge of cell. */
+    public static double maxLongitude(long _cell) {
+        return minLongitude(_cell) + longitudeSpan(bitsOf(_cell));
+    }
+
+    /** @return latitude of cell center. */
+    public static double latitudeOf(long _cell) {
+        return (latitudeIndex(_cell) + 0.5) * latitudeSpan(bitsOf(_cell)) - 90.0;
+    }
+
+    /** @return longitude of cell center. */
+    public static double longitudeOf(long _cell) {
+        return (longitudeIndex(_cell) + 0.5) * longitudeSpan(bitsOf(_cell)) - 180.0;
+    }
+
+    /**
+     * Coarsest precision whose cells are not bigger than _meters either way. (width at equator, narrower elsewhere)
+     * @param _meters wanted cell size.
+     * @return bits. 62 when even that is bigger.
+     */
+    public static int bitsForMeters(double _meters) {
+        for (int bits = 1; bits < MAX_BITS; bits++) {
+            double height = latitudeSpan(bits) * Geofence.METERS_PER_DEGREE;
+            double width = longitudeSpan(bits) * Geofence.METERS_PER_DEGREE;
+            if (height <= _meters && width <= _meters) {
+                return bits;
+            }
+        }
+        return MAX_BITS;
+    }
+
+    /*
+	// ********************************************************************************************
+	// Hierarchy / neighbours
+	// ********************************************************************************************
+	*/
+
+    /** @return cell one bit coarser, that contains _cell. NONE for 1 bit cell. */
+    public static long parent(long _cell) {
+        long parent = _cell >>> 1;
+        return parent > 1 ? parent : NONE;
+    }
+
+    /**
+     * @param _cell cell key.
+     * @param _bits coarser precision, 1 to bits of _cell.
+     * @return cell of _bits precision that contains _cell.
+     */
+    public static long parent(long _cell, int _bits) {
+        int bits = bitsOf(_cell);
+        if (_bits < 1 || _bits > bits) {
+            throw new IllegalArgumentException("parent bits " + _bits + " of " + bits + " bits cell");
+        }
+        return _cell >>> (bits - _bits);
+    }
+
+    /**
+     * @param _cell cell key.
+     * @param _index 0 or 1. (south / west half is 0)
+     * @return cell one bit finer.
+     */
+    public static long child(long _cell, int _index) {
+        if (bitsOf(_cell) >= MAX_BITS) {
+            throw new IllegalArgumentException("no finer cell than " + MAX_BITS + " bits");
+        }
+        return _cell << 1 | (_index & 1);
+    }
+
+    /**
+     * Children of _cell at _bits precision are keys firstChild to lastChild, both inclusive.
+     * @param _cell cell key.
+     * @param _bits finer precision, bits of _cell to 62.
+     * @return first key.
+     */
+    public static long firstChild(long _cell, int _bits) {
+        return _cell << childShift(_cell, _bits);
+    }
+
+    /**
+     * @see #firstChild(long, int)
+     * @return last key.
+     */
+    public static long lastChild(long _cell, int _bits) {
+        int shift = childShift(_cell, _bits);
+        return _cell << shift | ((1L << shift) - 1);
+    }
+
+    private static int childShift(long _cell, int _bits) {
+        int bits = bitsOf(_cell);
+        if (_bits < bits || _bits > MAX_BITS) {
+            throw new IllegalArgumentException("child bits " + _bits + " of " + bits + " bits cell");
+        }
+        return _bits - bits;
+    }
+
+    /**
+     * @return true when _ancestor is _cell, or contains it.
+     */
+    public static boolean contains(long _ancestor, long _cell) {
+        int shift = bitsOf(_cell) - bitsOf(_ancestor);
+        return shift >= 0 && _cell >>> shift == _ancestor;
+    }
+
+    /**
+     * Cell moved by rows / columns. wraps around at 180th meridian.
+     * @param _cell cell key.
+     * @param _north rows to north. negative to south.
+     * @param _east columns to east. negative to west.
+     * @return cell key. NONE when beyond a pole.
+     */
+    public static long neighbor(long _cell, int _north, int _east) {
+        int bits = bitsOf(_cell);
+        int latBits = bits >>> 1;
+        long latIndex = latitudeIndex(_cell) + _north;
+        if (latIndex < 0 || latIndex >= 1L << latBits) {
+            return NONE;
+        }
+        long lonMask = (1L << (bits - latBits)) - 1;
+        long lonIndex = (longitudeIndex(_cell) + _east) & lonMask;
+        return cellOf(latIndex, lonIndex, bits);
+    }
+
+    /**
+     * Eight cells around _cell : N, NE, E, SE, S, SW, W, NW. cells beyond a pole are skipped.<br>
+     * near poles or at coarse precision, same cell may appear twice.
+     * @param _cell cell key.
+     * @param _out at least 8 long.
+     * @return count written to _out.
+     */
+    public static int neighbors(long _cell, long[] _out) {
+        int count = 0;
+        for (int d = 0; d < 8; d++) {
+            long cell = neighbor(_cell, NORTH[d], EAST[d]);
+            if (cell != NONE) {
+                _out[count++] = cell;
+            }
+        }
+        return count;
+    }
+
+    /*
+	// ********************************************************************************************
+	// Cover
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Cells of _bits precision that cover bounding box, sorted. box crossing 180th meridian has _minLongitude bigger than _maxLongitude.
+     * @param _minLatitude south edge.
+     * @param _minLongitude west edge.
+     * @param _maxLatitude north edge.
+     * @param _maxLongitude east edge.
+     * @param _bits precision.
+     * @param _out cells. (see coverCount for size)
+     * @return count written. -1 when _out is too short. (nothing is written then)
+     */
+    public static int cover(double _minLatitude, double _minLongitude, double _maxLatitude, double _maxLongitude, int _bits, long[] _out) {
+        checkBits(_bits);
+        long count = coverCount(_minLatitude, _minLongitude, _maxLatitude, _maxLongitude, _bits);
+        if (count > _out.length) {
+            return -1;
+        }
+        int latBits = _bits >>> 1;
+        int lonBits = _bits - latBits;
+        long lonMask = (1L << lonBits) - 1;
+        long south = latitudeIndex(encode(_minLatitude, 0, _bits));
+        long north = latitudeIndex(encode(_maxLatitude, 0, _bits));
+        long west = westColumn(_minLongitude, _bits);
+        long columns = columns(_minLongitude, _maxLongitude, _bits);
+        int n = 0;
+        for (long row = south; row <= north; row++) {
+            for (long c = 0; c < columns; c++) {
+                _out[n++] = cellOf(row, (west + c) & lonMask, _bits);
+            }
+        }
+        Arrays.sort(_out, 0, n);
+        return n;
+    }
+
+    /**
+     * @return count of cells cover would write. for sizing its array, or choosing precision.
+     */
+    public static long coverCount(double _minLatitude, double _minLongitude, double _maxLatitude, double _maxLongitude, int _bits) {
+        checkBits(_bits);
+        if (_minLatitude > _maxLatitude) {
+            return 0;
+        }
+        long south = latitudeIndex(encode(_minLatitude, 0, _bits));
+        long north = latitudeIndex(encode(_maxLatitude, 0, _bits));
+        return (north - south + 1) * columns(_minLongitude, _maxLongitude, _bits);
+    }
+
+    private static long columns(double _minLongitude, double _maxLongitude, int _bits) {
+        long lonCells = 1L << (_bits - (_bits >>> 1));
+        if (_maxLongitude - _minLongitude >= 360) {
+            return lonCells;
+        }
+        // 180 as west edge is -180, -180 as east edge of crossing box is 180. (encode maps 180 to -180)
+        double min = _minLongitude >= 180 ? -180 : _minLongitude;
+        double max = _maxLongitude <= -180 && min > _maxLongitude ? 180 : _maxLongitude;
+        long columns = eastColumn(max, _bits) - westColumn(min, _bits) + 1;
+        if (min > max) {
+            // crosses 180th meridian.
+            columns += lonCells;
+        }
+        return Math.min(columns, lonCells);
+    }
+
+    private static long westColumn(double _minLongitude, int _bits) {
+        return longitudeIndex(encode(0, _minLongitude >= 180 ? -180 : _minLongitude, _bits));
+    }
+
+    // inclusive. east edge on 180th meridian is the last column, not the first.
+    private static long eastColumn(double _maxLongitude, int _bits) {
+        if (_maxLongitude >= 180) {
+            return (1L << (_bits - (_bits >>> 1))) - 1;
+        }
+        return longitudeIndex(encode(0, _maxLongitude, _bits));
+    }
+
+    /**
+     * Finest precision whose cover of bounding box is at most _maxCells cells.
+     * @return bits. 1 when even that is more.
+     */
+    public static int coverBits(double _minLatitude, double _minLongitude, double _maxLatitude, double _maxLongitude, int _maxCells) {
+        for (int bits = MAX_BITS; bits > 1; bits--) {
+            if (coverCount(_minLatitude, _minLongitude, _maxLatitude, _maxLongitude, bits) <= _maxCells) {
+                return bits;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Merge sorted cells into contiguous key ranges. (for range scan of sorted keys)
+     * @param _cells sorted cells of one precision. (cover output)
+     * @param _count count of cells.
+     * @param _outRanges start and end (inclusive) of each range, in pairs. 2 * _count long at most.
+     * @return count of ranges.
+     */
+    public static int toRanges(long[] _cells, int _count, long[] _outRanges) {
+        int ranges = 0;
+        for (int i = 0; i < _count; i++) {
+            if (ranges > 0 && _outRanges[ranges * 2 - 1] + 1 == _cells[i]) {
+                _outRanges[ranges * 2 - 1] = _cells[i];
+            } else {
+                _outRanges[ranges * 2] = _cells[i];
+                _outRanges[ranges * 2 + 1] = _cells[i];
+                ranges++;
+            }
+        }
+        return ranges;
+    }
+
+    /*
+	// ********************************************************************************************
+	// Geohash string
+	// ********************************************************************************************
+	*/
+
+    /**
+     * @param _cell cell key of multiple of 5 bits.
+     * @return geohash string. ex) "wydm9q"
+     */
+    public static String toBase32(long _cell) {
+        int bits = bitsOf(_cell);
+        if (bits % 5 != 0 || bits == 0) {
+            throw new IllegalArgumentException("geohash string needs multiple of 5 bits : " + bits);
+        }
+        char[] chars = new char[bits / 5];
+        for (int i = chars.length - 1; i >= 0; i--) {
+            chars[i] = BASE32[(int) (_cell & 31)];
+            _cell >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @param _geohash geohash string of 1 to 12 characters. case insensitive.
+     * @return cell key of 5 bits per character.
+     */
+    public static long fromBase32(CharSequence _geohash) {
+        int length = _geohash.length();
+        if (length < 1 || length > MAX_BITS / 5) {
+            throw new IllegalArgumentException("geohash length out of range : " + _geohash);
+        }
+        long cell = 1;
+        for (int i = 0; i < length; i++) {
+            char c = Character.toLowerCase(_geohash.charAt(i));
+            int value = c < 128 ? BASE32_INDEX[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("not a geohash character '" + c + "' in " + _geohash);
+            }
+            cell = cell << 5 | value;
+        }
+        return cell;
+    }
+
+    /*
+	// ********************************************************************************************
+	// Bits
+	// ********************************************************************************************
+	*/
+
+    private static void checkBits(int _bits) {
+        if (_bits < 1 || _bits > MAX_BITS) {
+            throw new IllegalArgumentException("bits out of range : " + _bits);
+        }
+    }
+
+    // low 32 bits to even bits.
+    private static long spread(long _value) {
+        long x = _value & 0xFFFFFFFFL;
+        x = (x | x << 16) & 0x0000FFFF0000FFFFL;
+        x = (x | x << 8) & 0x00FF00FF00FF00FFL;
+        x = (x | x << 4) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | x << 2) & 0x3333333333333333L;
+        x = (x | x << 1) & 0x5555555555555555L;
+        return x;
+    }
+
+    // even bits to low 32 bits.
+    private static long compact(long _value) {
+        long x = _value & 0x5555555555555555L;
+        x = (x | x >>> 1) & 0x3333333333333333L;
+        x = (x | x >>> 2) & 0x0F0F0F0F0F0F0F0FL;
+        x = (x | x >>> 4) & 0x00FF00FF00FF00FFL;
+        x = (x | x >>> 8) & 0x0000FFFF0000FFFFL;
+        x = (x | x >>> 16) & 0x00000000FFFFFFFFL;
+        return x;
+    }
+}
@@ -0,0 +1,209 @@
+package com.boss0430.bosslib.location;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of reverse-geocoded addresses, keyed by a fixed-precision grid cell.
+ * <br><br>
+ * Coordinates falling into the same cell share one address, so small moves do not call Geocoder again.<br>
+ * Default cell is 0.0005 degree (about 50m of latitude), TTL 10 minutes, 256 entries.<br>
+ * Hit / miss / eviction counters are exposed to tune cell size.
+ * <br>
+ * Usage<br>
+ * 1. new GeocodeCache(cellDegrees, ttlMillis, maxSize);<br>
+ * 2. locationConverter.setAddressCache(cache);<br>
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public class GeocodeCache {
+
+    public static final double DEFAULT_CELL_DEGREES = 0.0005;
+    public static final long DEFAULT_TTL_MILLIS = 10 * 60 * 1000L;
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    // below this, cell index does not fit in long key.
+    private static final double MIN_CELL_DEGREES = 1e-7;
+
+    private final double cellDegrees;
+    private final long ttlNanos;
+    private final int maxSize;
+    private final long lonCells;
+
+    private final LinkedHashMap<Long, Entry> mEntries;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long expiredCount;
+
+    private static final class Entry {
+        final String address;
+        final Locale locale;
+        final long expiresAt;
+
+        Entry(String address, Locale locale, long expiresAt) {
+            this.address = address;
+            this.locale = locale;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Constructor with default values.
+     */
+    public GeocodeCache() {
+        this(DEFAULT_CELL_DEGREES, DEFAULT_TTL_MILLIS, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * @param _cellDegrees size of grid cell in degree. coordinates in the same cell share one address.
+     * @param _ttlMillis time to live of each entry. 0 or less means never expire.
+     * @param _maxSize max count of entries. least recently used one is evicted over this.
+     */
+    public GeocodeCache(double _cellDegrees, long _ttlMillis, int _maxSize) {
+        if (!(_cellDegrees >= MIN_CELL_DEGREES) || _cellDegrees > 180) {
+            throw new IllegalArgumentException("cellDegrees out of range : " + _cellDegrees);
+        }
+        if (_maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive : " + _maxSize);
+        }
+        this.cellDegrees = _cellDegrees;
+        this.ttlNanos = _ttlMillis > 0 ? _ttlMillis * 1000000L : 0;
+        this.maxSize = _maxSize;
+        this.lonCells = (long) Math.ceil(360.0 / _cellDegrees) + 1;
+
+        // access order = LRU.
+        this.mEntries = new LinkedHashMap<Long, Entry>(Math.min(_maxSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > maxSize) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Grid cell key of coordinates.
+     * @param latitude latitude.
+     * @param longitude longitude.
+     * @return cell key.
+     */
+    public long cellKey(double latitude, double longitude) {
+        long latIdx = (long) Math.floor((latitude + 90.0) / cellDegrees);
+        long lonIdx = (long) Math.floor((longitude + 180.0) / cellDegrees);
+        return latIdx * lonCells + lonIdx;
+    }
+
+    /**
+     * Find cached address of the cell that contains coordinates.
+     * @param latitude latitude.
+     * @param longitude longitude.
+     * @param _locale locale the address was made in.
+     * @return cached address, or null when there is no valid entry.
+     */
+    public synchronized String get(double latitude, double longitude, Locale _locale) {
+        Long key = cellKey(latitude, longitude);
+        Entry entry = mEntries.get(key);
+
+        if (entry == null || !sameLocale(entry.locale, _locale)) {
+            missCount++;
+            return null;
+        }
+        if (ttlNanos > 0 && System.nanoTime() - entry.expiresAt > 0) {
+            mEntries.remove(key);
+            expiredCount++;
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.address;
+    }
+
+    /**
+     * Store address of the cell that contains coordinates.
+     * @param latitude latitude.
+     * @param longitude longitude.
+     * @param _locale locale the address was made in.
+     * @param _address address. null will be ignored.
+     */
+    public synchronized void put(double latitude, double longitude, Locale _locale, String _address) {
+        if (_address == null) {
+            return;
+        }
+        long expiresAt = System.nanoTime() + ttlNanos;
+        mEntries.put(cellKey(latitude, longitude), new Entry(_address, _locale, expiresAt));
+    }
+
+    /**
+     * Remove expired entries now. (they are also removed lazily on 'get')
+     */
+    public synchronized void purgeExpired() {
+        if (ttlNanos <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        Iterator<Entry> it = mEntries.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().expiresAt > 0) {
+                it.remove();
+                expiredCount++;
+            }
+        }
+    }
+
+    /**
+     * Remove every entry. counters are kept.
+     */
+    public synchronized void clear() {
+        mEntries.clear();
+    }
+
+    /**
+     * Reset hit / miss / eviction / expired counters.
+     */
+    public synchronized void resetStats() {
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+        expiredCount = 0;
+    }
+
+    public synchronized int size() { return mEntries.size(); }
+
+    public synchronized long getHitCount() { return hitCount; }
+
+    public synchronized long getMissCount() { return missCount; }
+
+    public synchronized long getEvictionCount() { return evictionCount; }
+
+    public synchronized long getExpiredCount() { return expiredCount; }
+
+    /**
+     * @return hits / (hits + misses). 0 when nothing has been asked.
+     */
+    public synchronized double getHitRate() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public double getCellDegrees() { return cellDegrees; }
+
+    public int getMaxSize() { return maxSize; }
+
+    @Override
+    public synchronized String toString() {
+        return "GeocodeCache{size=" + mEntries.size() + ", hit=" + hitCount + ", miss=" + missCount
+                + ", eviction=" + evictionCount + ", expired=" + expiredCount + "}";
+    }
+
+    private static boolean sameLocale(Locale a, Locale b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
@@ -0,0 +1,362 @@
+package com.boss0430.bosslib.location;
+
+/**
+ * Geodesic math over primitive latitude / longitude arrays. no Location object per point.
+ * <br><br>
+ * - Spherical earth (mean radius). differs from Location.distanceBetween (WGS84 ellipsoid) by up to 0.5%.<br>
+ * - Trig of each point is computed once in Points, and reused by every pair.<br>
+ * - Distances come from chord length of unit vectors : only multiply / add in inner loops, asin once per result.
+ *   stable for short distances, unlike spherical law of cosines.<br>
+ * - Inner loops are plain indexed loops over arrays, without calls or branches, so JIT can unroll / vectorize them.<br>
+ * - Output arrays are given by caller, to reuse them. nothing is allocated except Points.
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public final class Geodesy {
+
+    /** mean earth radius. (IUGG) */
+    public static final double EARTH_RADIUS_METERS = 6371008.8;
+
+    private Geodesy() {
+    }
+
+    /**
+     * Points with precomputed trig. immutable.
+     */
+    public static final class Points {
+
+        final int size;
+        final double[] latitudes;
+        final double[] longitudes;
+        final double[] sinLat;
+        final double[] cosLat;
+        final double[] sinLon;
+        final double[] cosLon;
+        // unit vectors
+        final double[] x;
+        final double[] y;
+        final double[] z;
+
+        private Points(double[] _latitudes, double[] _longitudes, int _size) {
+            size = _size;
+            latitudes = new double[_size];
+            longitudes = new double[_size];
+            sinLat = new double[_size];
+            cosLat = new double[_size];
+            sinLon = new double[_size];
+            cosLon = new double[_size];
+            x = new double[_size];
+            y = new double[_size];
+            z = new double[_size];
+            System.arraycopy(_latitudes, 0, latitudes, 0, _size);
+            System.arraycopy(_longitudes, 0, longitudes, 0, _size);
+            for (int i = 0; i < _size; i++) {
+                double lat = Math.toRadians(_latitudes[i]);
+                double lon = Math.toRadians(_longitudes[i]);
+                sinLat[i] = Math.sin(lat);
+                cosLat[i] = Math.cos(lat);
+                sinLon[i] = Math.sin(lon);
+                cosLon[i] = Math.cos(lon);
+                x[i] = cosLat[i] * cosLon[i];
+                y[i] = cosLat[i] * sinLon[i];
+                z[i] = sinLat[i];
+            }
+        }
+
+        public int size() { return size; }
+
+        public double getLatitude(int _index) { return latitudes[_index]; }
+
+        public double getLongitude(int _index) { return longitudes[_index]; }
+    }
+
+    /**
+     * @param _latitudes latitudes in degree.
+     * @param _longitudes longitudes in degree. same length as latitudes.
+     * @return Points. arrays are copied.
+     */
+    public static Points of(double[] _latitudes, double[] _longitudes) {
+        if (_latitudes.length != _longitudes.length) {
+            throw new IllegalArgumentException("latitudes and longitudes differ in length : "
+                    + _latitudes.length + ", " + _longitudes.length);
+        }
+        return new Points(_latitudes, _longitudes, _latitudes.length);
+    }
+
+    /*
+	// ********************************************************************************************
+	// Single pair
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Great circle distance. (haversine)
+     * @return meters.
+     */
+    public static double distanceMeters(double _lat1, double _lon1, double _lat2, double _lon2) {
+        double phi1 = Math.toRadians(_lat1);
+        double phi2 = Math.toRadians(_lat2);
+        double sinHalfLat = Math.sin((phi2 - phi1) / 2);
+        double sinHalfLon = Math.sin(Math.toRadians(_lon2 - _lon1) / 2);
+        double a = sinHalfLat * sinHalfLat + Math.cos(phi1) * Math.cos(phi2) * sinHalfLon * sinHalfLon;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Initial bearing from point 1 to point 2.
+     * @return degrees, 0 to 360 clockwise from north. (same range as Location.getBearing)
+     */
+    public static double bearingDegrees(double _lat1, double _lon1, double _lat2, double _lon2) {
+        double phi1 = Math.toRadians(_lat1);
+        double phi2 = Math.toRadians(_lat2);
+        double dLon = Math.toRadians(_lon2 - _lon1);
+        double yy = Math.sin(dLon) * Math.cos(phi2);
+        double xx = Math.cos(phi1) * Math.sin(phi2) - Math.sin(phi1) * Math.cos(phi2) * Math.cos(dLon);
+        return normalizeDegrees(Math.toDegrees(Math.atan2(yy, xx)));
+    }
+
+    private static double normalizeDegrees(double _degrees) {
+        return _degrees < 0 ? _degrees + 360 : _degrees;
+    }
+
+    // chord length between unit vectors -> meters.
+    private static double chordToMeters(double _chordSquared) {
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(_chordSquared) / 2));
+    }
+
+    /*
+	// ********************************************************************************************
+	// Batch
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Distances from one point to every point.
+     * @param _latitude latitude of origin.
+     * @param _longitude longitude of origin.
+     * @param _points targets.
+     * @param _out meters. length of points.size() or more.
+     */
+    public static void distances(double _latitude, double _longitude, Points _points, double[] _out) {
+        double lat = Math.toRadians(_latitude);
+        double lon = Math.toRadians(_longitude);
+        double cosLat = Math.cos(lat);
+        double ox = cosLat * Math.cos(lon);
+        double oy = cosLat * Math.sin(lon);
+        double oz = Math.sin(lat);
+        chordRow(ox, oy, oz, _points, _out, 0);
+        toMeters(_out, 0, _points.size);
+    }
+
+    /**
+     * Distance of every pair.
+     * @param _from rows.
+     * @param _to columns.
+     * @param _out meters, row major. (out[i * to.size() + j] is from i to j) length of from.size() * to.size() or more.
+     */
+    public static void distanceMatrix(Points _from, Points _to, double[] _out) {
+        int columns = _to.size;
+        for (int i = 0; i < _from.size; i++) {
+            chordRow(_from.x[i], _from.y[i], _from.z[i], _to, _out, i * columns);
+        }
+        toMeters(_out, 0, _from.size * columns);
+    }
+
+    // squared chord lengths into out[offset ...]. multiply / add only.
+    private static void chordRow(double _ox, double _oy, double _oz, Points _points, double[] _out, int _offset) {
+        double[] x = _points.x;
+        double[] y = _points.y;
+        double[] z = _points.z;
+        int size = _points.size;
+        for (int j = 0; j < size; j++) {
+            double dx = x[j] - _ox;
+            double dy = y[j] - _oy;
+            double dz = z[j] - _oz;
+            _out[_offset + j] = dx * dx + dy * dy + dz * dz;
+        }
+    }
+
+    private static void toMeters(double[] _chordSquared, int _from, int _to) {
+        for (int j = _from; j < _to; j++) {
+            _chordSquared[j] = chordToMeters(_chordSquared[j]);
+        }
+    }
+
+    /**
+     * Initial bearings from one point to every point.
+     * @param _out degrees 0 to 360. length of points.size() or more.
+     */
+    public static void bearings(double _latitude, double _longitude, Points _points, double[] _out) {
+        double lat = Math.toRadians(_latitude);
+        double lon = Math.toRadians(_longitude);
+        bearingRow(Math.sin(lat), Math.cos(lat), Math.sin(lon), Math.cos(lon), _points, _out, 0);
+    }
+
+    /**
+     * Initial bearing of every pair.
+     * @param _from rows.
+     * @param _to columns.
+     * @param _out degrees 0 to 360, row major. (out[i * to.size() + j] is from i to j)
+     */
+    public static void bearingMatrix(Points _from, Points _to, double[] _out) {
+        for (int i = 0; i < _from.size; i++) {
+            bearingRow(_from.sinLat[i], _from.cosLat[i], _from.sinLon[i], _from.cosLon[i], _to, _out, i * _to.size);
+        }
+    }
+
+    // sin / cos of longitude difference by angle subtraction, so only atan2 per pair.
+    private static void bearingRow(double _sinLat, double _cosLat, double _sinLon, double _cosLon,
+                                   Points _points, double[] _out, int _offset) {
+        double[] sinLat = _points.sinLat;
+        double[] cosLat = _points.cosLat;
+        double[] sinLon = _points.sinLon;
+        double[] cosLon = _points.cosLon;
+        int size = _points.size;
+        for (int j = 0; j < size; j++) {
+            double sinDLon = sinLon[j] * _cosLon - cosLon[j] * _sinLon;
+            double cosDLon = cosLon[j] * _cosLon + sinLon[j] * _sinLon;
+            double yy = sinDLon * cosLat[j];
+            double xx = _cosLat * sinLat[j] - _sinLat * cosLat[j] * cosDLon;
+            _out[_offset + j] = normalizeDegrees(Math.toDegrees(Math.atan2(yy, xx)));
+        }
+    }
+
+    /**
+     * Nearest k points. compares chord lengths, so asin is taken only for the k results.
+     * @param _latitude latitude of origin.
+     * @param _longitude longitude of origin.
+     * @param _points candidates.
+     * @param _k count to find.
+     * @param _outIndexes indexes of points, nearest first. length of k or more.
+     * @param _outMeters distances, same order. nullable.
+     * @return count found. min(k, points.size())
+     */
+    public static int nearest(double _latitude, double _longitude, Points _points, int _k,
+                              int[] _outIndexes, double[] _outMeters) {
+        int k = Math.min(_k, _points.size);
+        if (k <= 0) {
+            return 0;
+        }
+        double lat = Math.toRadians(_latitude);
+        double lon = Math.toRadians(_longitude);
+        double cosLat = Math.cos(lat);
+        double ox = cosLat * Math.cos(lon);
+        double oy = cosLat * Math.sin(lon);
+        double oz = Math.sin(lat);
+
+        // max heap of k nearest, keyed by squared chord. root is the farthest kept.
+        double[] keys = _outMeters != null && _outMeters.length >= k ? _outMeters : new double[k];
+        int[] indexes = _outIndexes;
+        int count = 0;
+        double[] x = _points.x;
+        double[] y = _points.y;
+        double[] z = _points.z;
+        for (int j = 0; j < _points.size; j++) {
+            double dx = x[j] - ox;
+            double dy = y[j] - oy;
+            double dz = z[j] - oz;
+            double key = dx * dx + dy * dy + dz * dz;
+            if (count < k) {
+                siftUp(keys, indexes, count++, key, j);
+            } else if (key < keys[0]) {
+                siftDown(keys, indexes, count, key, j);
+            }
+        }
+
+        // heap sort in place : farthest goes to the end.
+        for (int end = count - 1; end > 0; end--) {
+            double key = keys[end];
+            int index = indexes[end];
+            keys[end] = keys[0];
+            indexes[end] = indexes[0];
+            siftDown(keys, indexes, end, key, index);
+        }
+
+        if (_outMeters != null) {
+            for (int n = 0; n < count; n++) {
+                _outMeters[n] = chordToMeters(keys[n]);
+            }
+        }
+        return count;
+    }
+
+    private static void siftUp(double[] _keys, int[] _indexes, int _position, double _key, int _index) {
+        int position = _position;
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (_keys[parent] >= _key) {
+                break;
+            }
+            _keys[position] = _keys[parent];
+            _indexes[position] = _indexes[parent];
+            position = parent;
+        }
+        _keys[position] = _key;
+        _indexes[position] = _index;
+    }
+
+    // put (key, index) at root of heap of size, and restore order.
+    private static void siftDown(double[] _keys, int[] _indexes, int _size, double _key, int _index) {
+        int position = 0;
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= _size) {
+                break;
+            }
+            if (child + 1 < _size && _keys[child + 1] > _keys[child]) {
+                child++;
+            }
+            if (_keys[child] <= _key) {
+                break;
+            }
+            _keys[position] = _keys[child];
+            _indexes[position] = _indexes[child];
+            position = child;
+        }
+        _keys[position] = _key;
+        _indexes[position] = _index;
+    }
+
+    /**
+     * Points inside bounding box. box crossing 180 degree longitude is given as minLongitude > maxLongitude.
+     * @param _latitudes latitudes.
+     * @param _longitudes longitudes.
+     * @param _outIndexes indexes of points inside, in order. length of latitudes or more.
+     * @return count inside.
+     */
+    public static int filterBoundingBox(double[] _latitudes, double[] _longitudes,
+                                        double _minLatitude, double _maxLatitude,
+                                        double _minLongitude, double _maxLongitude,
+                                        int[] _outIndexes) {
+        if (_outIndexes.length == 0) {
+            return 0;
+        }
+        int count = 0;
+        int size = Math.min(_latitudes.length, _longitudes.length);
+        boolean wraps = _minLongitude > _maxLongitude;
+        for (int i = 0; i < size; i++) {
+            double lat = _latitudes[i];
+            double lon = _longitudes[i];
+            boolean latIn = lat >= _minLatitude & lat <= _maxLatitude;
+            boolean lonIn = wraps
+                    ? (lon >= _minLongitude | lon <= _maxLongitude)
+                    : (lon >= _minLongitude & lon <= _maxLongitude);
+            // write always, advance only when inside. no unpredictable branch.
+            _outIndexes[count] = i;
+            count += (latIn & lonIn) ? 1 : 0;
+            if (count == _outIndexes.length) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Same as filterBoundingBox(double[], ...) on Points.
+     */
+    public static int filterBoundingBox(Points _points, double _minLatitude, double _maxLatitude,
+                                        double _minLongitude, double _maxLongitude, int[] _outIndexes) {
+        return filterBoundingBox(_points.latitudes, _points.longitudes,
+                _minLatitude, _maxLatitude, _minLongitude, _maxLongitude, _outIndexes);
+    }
+}
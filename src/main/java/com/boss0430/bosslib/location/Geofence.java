@@ -0,0 +1,171 @@
+package com.boss0430.bosslib.location;
+
+/**
+ * Circle or polygon area watched by GeofenceEngine. immutable.
+ * <br><br>
+ * Distances use local equirectangular projection, good for fences up to some tens of km.<br>
+ * Fences crossing 180 degree longitude are not supported.
+ * @see GeofenceEngine
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public final class Geofence {
+
+    // meters per degree of latitude.
+    static final double METERS_PER_DEGREE = 111195.0;
+
+    private final String id;
+    private final boolean circle;
+
+    // circle
+    private final double centerLatitude;
+    private final double centerLongitude;
+    private final double radiusMeters;
+
+    // polygon
+    private final double[] latitudes;
+    private final double[] longitudes;
+
+    // bounding box
+    private final double minLatitude;
+    private final double maxLatitude;
+    private final double minLongitude;
+    private final double maxLongitude;
+
+    private Geofence(String _id, double _latitude, double _longitude, double _radiusMeters) {
+        this.id = _id;
+        this.circle = true;
+        this.centerLatitude = _latitude;
+        this.centerLongitude = _longitude;
+        this.radiusMeters = _radiusMeters;
+        this.latitudes = null;
+        this.longitudes = null;
+
+        double dLat = _radiusMeters / METERS_PER_DEGREE;
+        double dLon = dLat / cosOf(_latitude);
+        this.minLatitude = _latitude - dLat;
+        this.maxLatitude = _latitude + dLat;
+        this.minLongitude = _longitude - dLon;
+        this.maxLongitude = _longitude + dLon;
+    }
+
+    private Geofence(String _id, double[] _latitudes, double[] _longitudes) {
+        this.id = _id;
+        this.circle = false;
+        this.latitudes = _latitudes.clone();
+        this.longitudes = _longitudes.clone();
+        this.radiusMeters = 0;
+
+        double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE, maxLon = -Double.MAX_VALUE;
+        for (int n = 0; n < _latitudes.length; n++) {
+            minLat = Math.min(minLat, _latitudes[n]);
+            maxLat = Math.max(maxLat, _latitudes[n]);
+            minLon = Math.min(minLon, _longitudes[n]);
+            maxLon = Math.max(maxLon, _longitudes[n]);
+        }
+        this.minLatitude = minLat;
+        this.maxLatitude = maxLat;
+        this.minLongitude = minLon;
+        this.maxLongitude = maxLon;
+        this.centerLatitude = (minLat + maxLat) / 2;
+        this.centerLongitude = (minLon + maxLon) / 2;
+    }
+
+    /**
+     * Circle fence.
+     * @param _id id. unique in an engine.
+     * @param _latitude latitude of center.
+     * @param _longitude longitude of center.
+     * @param _radiusMeters radius.
+     * @return Geofence.
+     */
+    public static Geofence circle(String _id, double _latitude, double _longitude, double _radiusMeters) {
+        if (!(_radiusMeters > 0)) {
+            throw new IllegalArgumentException("radius must be positive : " + _radiusMeters);
+        }
+        return new Geofence(_id, _latitude, _longitude, _radiusMeters);
+    }
+
+    /**
+     * Polygon fence. vertices in order (either direction), not closed. (first one is not repeated)
+     * @param _id id. unique in an engine.
+     * @param _latitudes latitudes of vertices.
+     * @param _longitudes longitudes of vertices. same length as latitudes.
+     * @return Geofence.
+     */
+    public static Geofence polygon(String _id, double[] _latitudes, double[] _longitudes) {
+        if (_latitudes.length != _longitudes.length || _latitudes.length < 3) {
+            throw new IllegalArgumentException("polygon needs 3 or more vertices of same length arrays");
+        }
+        return new Geofence(_id, _latitudes, _longitudes);
+    }
+
+    public String getId() { return id; }
+
+    public boolean isCircle() { return circle; }
+
+    public double getMinLatitude() { return minLatitude; }
+
+    public double getMaxLatitude() { return maxLatitude; }
+
+    public double getMinLongitude() { return minLongitude; }
+
+    public double getMaxLongitude() { return maxLongitude; }
+
+    /**
+     * Signed distance from boundary.
+     * @param _latitude latitude.
+     * @param _longitude longitude.
+     * @return negative inside, positive outside. (meters)
+     */
+    public double signedDistanceMeters(double _latitude, double _longitude) {
+        double cosLat = cosOf(_latitude);
+        if (circle) {
+            double dy = (_latitude - centerLatitude) * METERS_PER_DEGREE;
+            double dx = (_longitude - centerLongitude) * METERS_PER_DEGREE * cosLat;
+            return Math.sqrt(dx * dx + dy * dy) - radiusMeters;
+        }
+
+        // polygon : distance to nearest edge, in meters around query point. sign by ray casting.
+        boolean inside = false;
+        double best = Double.MAX_VALUE;
+        int count = latitudes.length;
+        for (int i = 0, j = count - 1; i < count; j = i++) {
+            double yi = latitudes[i], xi = longitudes[i];
+            double yj = latitudes[j], xj = longitudes[j];
+            if ((yi > _latitude) != (yj > _latitude)
+                    && _longitude < (xj - xi) * (_latitude - yi) / (yj - yi) + xi) {
+                inside = !inside;
+            }
+            best = Math.min(best, segmentDistanceSquared(
+                    (xi - _longitude) * cosLat, yi - _latitude,
+                    (xj - _longitude) * cosLat, yj - _latitude));
+        }
+        double distance = Math.sqrt(best) * METERS_PER_DEGREE;
+        return inside ? -distance : distance;
+    }
+
+    // squared distance from origin to segment (ax, ay) - (bx, by).
+    private static double segmentDistanceSquared(double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : -(ax * dx + ay * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double px = ax + t * dx;
+        double py = ay + t * dy;
+        return px * px + py * py;
+    }
+
+    static double cosOf(double _latitude) {
+        return Math.max(0.01, Math.cos(Math.toRadians(_latitude)));
+    }
+
+    @Override
+    public String toString() {
+        return circle
+                ? "Geofence[" + id + " circle " + centerLatitude + "," + centerLongitude + " r=" + radiusMeters + "]"
+                : "Geofence[" + id + " polygon of " + latitudes.length + "]";
+    }
+}
@@ -0,0 +1,401 @@
+package com.boss0430.bosslib.location;
+
+import com.boss0430.bosslib.utils.Dlog;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-process geofence engine. no limit of fence count. (Play Services geofencing allows 100)
+ * <br><br>
+ * - Fences are indexed in a fixed grid by bounding box. a fix is tested only against fences of its cell.<br>
+ * - ENTER when fix is inside. EXIT when fix is farther than hysteresis outside, so jitter on the boundary does not flap.<br>
+ * - DWELL once, when fence has been inside for dwell time.<br>
+ * - Listener is invoked on the thread calling onFix, after engine state is updated.<br>
+ * <br>
+ * Usage<br>
+ * 1. GeofenceEngine engine = new GeofenceEngine(listener);<br>
+ * 2. engine.addAll(fences);<br>
+ * 3. engine.onFix(fix); for every fix. (from LocationFixInformer, LocationStream...)
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public class GeofenceEngine {
+
+    // same values as Play Services Geofence.GEOFENCE_TRANSITION_XXX
+    public static final int TRANSITION_ENTER = 1;
+    public static final int TRANSITION_EXIT = 2;
+    public static final int TRANSITION_DWELL = 4;
+
+    public static final double DEFAULT_CELL_DEGREES = 0.01;
+    public static final double DEFAULT_HYSTERESIS_METERS = 20;
+    public static final long DEFAULT_DWELL_MILLIS = 5 * 60 * 1000L;
+
+    // below this, cell index does not fit in long key.
+    private static final double MIN_CELL_DEGREES = 1e-7;
+
+    /**
+     * Receives transitions.
+     */
+    public interface Listener {
+
+        /**
+         * @param fence fence.
+         * @param transition TRANSITION_XXX
+         * @param fix fix that made the transition.
+         */
+        void onTransition(Geofence fence, int transition, LocationFix fix);
+    }
+
+    private static final class Entry {
+        final Geofence fence;
+        boolean removed = false;
+        boolean inside = false;
+        boolean dwellFired = false;
+        long enteredAt;
+        long evaluatedSeq = -1;
+
+        Entry(Geofence fence) {
+            this.fence = fence;
+        }
+    }
+
+    // growable int array. indexes of mEntries.
+    private static final class IntList {
+        int[] items = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == items.length) {
+                int[] grown = new int[size * 2];
+                System.arraycopy(items, 0, grown, 0, size);
+                items = grown;
+            }
+            items[size++] = value;
+        }
+    }
+
+    private static final class Transition {
+        final Geofence fence;
+        final int type;
+
+        Transition(Geofence fence, int type) {
+            this.fence = fence;
+            this.type = type;
+        }
+    }
+
+    private final static String TAG = "GeofenceEngine";
+
+    private final double cellDegrees;
+    private final long lonCells;
+    private final Listener mListener;
+
+    private double hysteresisMeters = DEFAULT_HYSTERESIS_METERS;
+    private long dwellMillis = DEFAULT_DWELL_MILLIS;
+
+    // guarded by this.
+    private final List<Entry> mEntries = new ArrayList<>();
+    private final Map<String, Entry> mById = new HashMap<>();
+    private final Map<Long, IntList> mCells = new HashMap<>();
+    private final Set<Entry> mInside = new LinkedHashSet<>();
+    private int removedCount = 0;
+    private long evaluationSeq = 0;
+    private int lastCandidateCount = 0;
+
+    /**
+     * Constructor with default cell size. (0.01 degree, about 1km)
+     * @param _listener receives transitions.
+     */
+    public GeofenceEngine(Listener _listener) {
+        this(DEFAULT_CELL_DEGREES, _listener);
+    }
+
+    /**
+     * Constructor.
+     * @param _cellDegrees size of grid cell in degree. around typical fence size works well.
+     * @param _listener receives transitions.
+     */
+    public GeofenceEngine(double _cellDegrees, Listener _listener) {
+        if (!(_cellDegrees >= MIN_CELL_DEGREES) || _cellDegrees > 180) {
+            throw new IllegalArgumentException("cellDegrees out of range : " + _cellDegrees);
+        }
+        this.cellDegrees = _cellDegrees;
+        this.lonCells = (long) Math.ceil(360.0 / _cellDegrees) + 1;
+        this.mListener = _listener;
+    }
+
+    /**
+     * @param _meters fence is left only when fix is farther than this outside. default is 20.
+     *                set before adding fences. (index covers this margin)
+     */
+    public synchronized void setHysteresisMeters(double _meters) {
+        this.hysteresisMeters = Math.max(0, _meters);
+        if (!mEntries.isEmpty()) {
+            rebuildIndex();
+        }
+    }
+
+    /**
+     * @param _millis DWELL after this long inside. 0 or less disables DWELL. default is 5 minutes.
+     */
+    public synchronized void setDwellMillis(long _millis) {
+        this.dwellMillis = _millis;
+    }
+
+    /*
+	// ********************************************************************************************
+	// Registration
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Add fence. fence of same id is replaced, keeping its inside / dwell state. (no second ENTER)
+     * @param _fence fence.
+     */
+    public synchronized void add(Geofence _fence) {
+        replaceLocked(_fence);
+        compactIfNeeded();
+    }
+
+    /**
+     * Add many fences at once.
+     * @param _fences fences. fences of same id are replaced, keeping their inside / dwell state.
+     */
+    public synchronized void addAll(Collection<Geofence> _fences) {
+        for (Geofence fence : _fences) {
+            replaceLocked(fence);
+        }
+        compactIfNeeded();
+        Dlog.out(TAG, "LOCATION : fences : {}", mById.size(), Dlog.d);
+    }
+
+    /**
+     * Remove fence. no EXIT is emitted.
+     * @param _id id of fence.
+     * @return false when there was no such fence.
+     */
+    public synchronized boolean remove(String _id) {
+        boolean removed = removeLocked(_id);
+        compactIfNeeded();
+        return removed;
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+        mById.clear();
+        mCells.clear();
+        mInside.clear();
+        removedCount = 0;
+    }
+
+    public synchronized int size() {
+        return mById.size();
+    }
+
+    /**
+     * @param _id id of fence.
+     * @return true when last fix was inside the fence.
+     */
+    public synchronized boolean isInside(String _id) {
+        Entry entry = mById.get(_id);
+        return entry != null && entry.inside;
+    }
+
+    /**
+     * @return count of fences tested by the last fix. (for tuning cell size)
+     */
+    public synchronized int getLastCandidateCount() {
+        return lastCandidateCount;
+    }
+
+    // for test. entries in index, including removed ones not dropped yet.
+    synchronized int getIndexedCount() {
+        return mEntries.size();
+    }
+
+    // call with this held. replaced entry hands over its state, so next fix decides EXIT by new shape.
+    private void replaceLocked(Geofence _fence) {
+        Entry old = mById.get(_fence.getId());
+        removeLocked(_fence.getId());
+        Entry entry = addLocked(_fence);
+        if (old != null && old.inside) {
+            entry.inside = true;
+            entry.enteredAt = old.enteredAt;
+            entry.dwellFired = old.dwellFired;
+            mInside.add(entry);
+        }
+    }
+
+    // call with this held.
+    private Entry addLocked(Geofence _fence) {
+        Entry entry = new Entry(_fence);
+        int index = mEntries.size();
+        mEntries.add(entry);
+        mById.put(_fence.getId(), entry);
+        indexEntry(entry, index);
+        return entry;
+    }
+
+    // call with this held.
+    private boolean removeLocked(String _id) {
+        Entry entry = mById.remove(_id);
+        if (entry == null) {
+            return false;
+        }
+        entry.removed = true;
+        mInside.remove(entry);
+        removedCount++;
+        return true;
+    }
+
+    // call with this held. drop stale indexes when half is garbage.
+    private void compactIfNeeded() {
+        if (removedCount > 64 && removedCount * 2 > mEntries.size()) {
+            rebuildIndex();
+        }
+    }
+
+    private void indexEntry(Entry _entry, int _index) {
+        Geofence fence = _entry.fence;
+        double marginLat = hysteresisMeters / Geofence.METERS_PER_DEGREE;
+        double marginLon = marginLat / Math.min(Geofence.cosOf(fence.getMinLatitude()), Geofence.cosOf(fence.getMaxLatitude()));
+
+        long latFrom = latIndex(fence.getMinLatitude() - marginLat);
+        long latTo = latIndex(fence.getMaxLatitude() + marginLat);
+        long lonFrom = lonIndex(fence.getMinLongitude() - marginLon);
+        long lonTo = lonIndex(fence.getMaxLongitude() + marginLon);
+
+        for (long lat = latFrom; lat <= latTo; lat++) {
+            for (long lon = lonFrom; lon <= lonTo; lon++) {
+                Long key = lat * lonCells + lon;
+                IntList list = mCells.get(key);
+                if (list == null) {
+                    list = new IntList();
+                    mCells.put(key, list);
+                }
+                list.add(_index);
+            }
+        }
+    }
+
+    // call with this held.
+    private void rebuildIndex() {
+        List<Entry> alive = new ArrayList<>(mById.size());
+        for (Entry entry : mEntries) {
+            if (!entry.removed) {
+                alive.add(entry);
+            }
+        }
+        mEntries.clear();
+        mCells.clear();
+        removedCount = 0;
+        for (Entry entry : alive) {
+            int index = mEntries.size();
+            mEntries.add(entry);
+            indexEntry(entry, index);
+        }
+    }
+
+    private long latIndex(double _latitude) {
+        return (long) Math.floor((Math.max(-90, Math.min(90, _latitude)) + 90.0) / cellDegrees);
+    }
+
+    private long lonIndex(double _longitude) {
+        return (long) Math.floor((Math.max(-180, Math.min(180, _longitude)) + 180.0) / cellDegrees);
+    }
+
+    /*
+	// ********************************************************************************************
+	// Evaluation
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Test fix against fences, and emit transitions.
+     * @param _fix fix.
+     */
+    public void onFix(LocationFix _fix) {
+
+        List<Transition> transitions = null;
+
+        synchronized (this) {
+            long seq = ++evaluationSeq;
+            double latitude = _fix.getLatitude();
+            double longitude = _fix.getLongitude();
+            long time = _fix.getTime();
+            int candidates = 0;
+
+            IntList list = mCells.get(latIndex(latitude) * lonCells + lonIndex(longitude));
+            if (list != null) {
+                for (int n = 0; n < list.size; n++) {
+                    Entry entry = mEntries.get(list.items[n]);
+                    if (entry.removed) {
+                        continue;
+                    }
+                    candidates++;
+                    transitions = evaluate(entry, latitude, longitude, time, seq, transitions);
+                }
+            }
+
+            // fences left far behind (not in this cell) are still inside. check them too.
+            if (!mInside.isEmpty()) {
+                // copy, evaluate() removes exited ones.
+                List<Entry> inside = new ArrayList<>(mInside);
+                for (Entry entry : inside) {
+                    if (entry.evaluatedSeq != seq) {
+                        candidates++;
+                        transitions = evaluate(entry, latitude, longitude, time, seq, transitions);
+                    }
+                }
+            }
+            lastCandidateCount = candidates;
+        }
+
+        if (transitions != null && mListener != null) {
+            for (Transition transition : transitions) {
+                try {
+                    mListener.onTransition(transition.fence, transition.type, _fix);
+                } catch (RuntimeException e) {
+                    Dlog.out(TAG, "LOCATION : listener threw exception : {}", e, Dlog.e);
+                }
+            }
+        }
+    }
+
+    // call with this held.
+    private List<Transition> evaluate(Entry _entry, double _latitude, double _longitude, long _time, long _seq, List<Transition> _out) {
+        _entry.evaluatedSeq = _seq;
+        double distance = _entry.fence.signedDistanceMeters(_latitude, _longitude);
+        List<Transition> out = _out;
+
+        if (!_entry.inside && distance <= 0) {
+            _entry.inside = true;
+            _entry.enteredAt = _time;
+            _entry.dwellFired = false;
+            mInside.add(_entry);
+            out = append(out, _entry.fence, TRANSITION_ENTER);
+        } else if (_entry.inside && distance > hysteresisMeters) {
+            _entry.inside = false;
+            mInside.remove(_entry);
+            out = append(out, _entry.fence, TRANSITION_EXIT);
+        }
+
+        if (_entry.inside && !_entry.dwellFired && dwellMillis > 0 && _time - _entry.enteredAt >= dwellMillis) {
+            _entry.dwellFired = true;
+            out = append(out, _entry.fence, TRANSITION_DWELL);
+        }
+        return out;
+    }
+
+    private static List<Transition> append(List<Transition> _out, Geofence _fence, int _type) {
+        List<Transition> out = _out != null ? _out : new ArrayList<Transition>();
+        out.add(new Transition(_fence, _type));
+        return out;
+    }
+}
@@ -0,0 +1,597 @@
+package com.boss0430.bosslib.location;
+
+import com.boss0430.bosslib.utils.Dlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * One segment file of LocationHistoryStore. blocks of columnar, delta / varint encoded fixes.
+ * <br><br>
+ * File layout (big endian)<br>
+ * - header : int magic, int version, long firstSeq, long lastSeq, int committedBytes, int blockCount, int sealed, int reserved, long reserved<br>
+ * - blocks : block header, then time, latitude, longitude, accuracy columns<br>
+ * - block header : int count, long minTime, long maxTime, int minLatE7, int maxLatE7, int minLonE7, int maxLonE7,
+ *   int timeBytes, int latBytes, int lonBytes, int accBytes, int crc32 (of block except this field)<br>
+ * - column : zigzag varint delta from previous value. first one is from min of block.<br>
+ * <br>
+ * Block is visible after header is updated (committedBytes). a page of the mapping may reach the device before
+ * another, so after power loss committedBytes can cover a block that is unwritten or partly written.
+ * open walks blocks of unsealed segment with their crc, and cuts committed bytes at the first one that does not
+ * validate. blocks written before force() survive power loss, later ones may be lost, never half read.<br>
+ * Sealed flag is set after blocks are forced, so sealed segment is trusted and opened without crc check.<br>
+ * Latitude / longitude are kept in 1e-7 degree. (about 1cm) accuracy in 0.1m, 0 for unknown.
+ * @see LocationHistoryStore
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+final class HistorySegment {
+
+    static final int MAGIC = 0x4C485331; // "LHS1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 48;
+    static final int BLOCK_HEADER_SIZE = 56;
+    // varint of zigzag long time delta, and three int deltas.
+    static final int MAX_BYTES_PER_FIX = 10 + 5 + 5 + 5;
+
+    private static final int OFFSET_COMMITTED = 24;
+    private static final int OFFSET_BLOCK_COUNT = 28;
+    private static final int OFFSET_SEALED = 32;
+    private static final int OFFSET_BLOCK_CRC = 52;
+
+    private final static String TAG = "HistorySegment";
+
+    final File file;
+    final long firstSeq;
+    final long lastSeq;
+    final int generation;
+
+    private RandomAccessFile mFile;
+    private volatile MappedByteBuffer mBuffer;
+    private int capacity;
+    private int committed;
+    private boolean sealed;
+    private final CRC32 mCrc = new CRC32();
+
+    // sparse index : one entry per block. arrays are replaced on growth, then blockCount is published.
+    private volatile int blockCount = 0;
+    private int[] offsets = new int[16];
+    private int[] counts = new int[16];
+    private long[] minTimes = new long[16];
+    private long[] maxTimes = new long[16];
+    private int[] minLats = new int[16];
+    private int[] maxLats = new int[16];
+    private int[] minLons = new int[16];
+    private int[] maxLons = new int[16];
+
+    private volatile long fixCount = 0;
+    private volatile long minTime = Long.MAX_VALUE;
+    private volatile long maxTime = Long.MIN_VALUE;
+
+    private HistorySegment(File _file, long _firstSeq, long _lastSeq, int _generation) {
+        file = _file;
+        firstSeq = _firstSeq;
+        lastSeq = _lastSeq;
+        generation = _generation;
+    }
+
+    static String nameOf(long _firstSeq, long _lastSeq, int _generation) {
+        return "seg-" + _firstSeq + "-" + _lastSeq + "-" + _generation + ".lhs";
+    }
+
+    /**
+     * @return {firstSeq, lastSeq, generation}. null when _name is not a segment name.
+     */
+    static long[] parseName(String _name) {
+        if (!_name.startsWith("seg-") || !_name.endsWith(".lhs")) {
+            return null;
+        }
+        String[] parts = _name.substring(4, _name.length() - 4).split("-");
+        if (parts.length != 3) {
+            return null;
+        }
+        try {
+            return new long[]{Long.parseLong(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2])};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Create empty segment, open for append.
+     */
+    static HistorySegment create(File _file, long _firstSeq, long _lastSeq, int _generation, int _capacity) throws IOException {
+        HistorySegment segment = new HistorySegment(_file, _firstSeq, _lastSeq, _generation);
+        RandomAccessFile raf = new RandomAccessFile(_file, "rw");
+        try {
+            raf.setLength(_capacity);
+            segment.mFile = raf;
+            segment.capacity = _capacity;
+            segment.mBuffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, _capacity);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        MappedByteBuffer buffer = segment.mBuffer;
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putLong(8, _firstSeq);
+        buffer.putLong(16, _lastSeq);
+        buffer.putInt(OFFSET_COMMITTED, HEADER_SIZE);
+        buffer.putInt(OFFSET_BLOCK_COUNT, 0);
+        buffer.putInt(OFFSET_SEALED, 0);
+        segment.committed = HEADER_SIZE;
+        return segment;
+    }
+
+    /**
+     * Open existing segment. sealed one is mapped read only, others are open for append.
+     */
+    static HistorySegment open(File _file, long _firstSeq, long _lastSeq, int _generation) throws IOException {
+        HistorySegment segment = new HistorySegment(_file, _firstSeq, _lastSeq, _generation);
+        RandomAccessFile raf = new RandomAccessFile(_file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            if (length < HEADER_SIZE || length > Integer.MAX_VALUE) {
+                throw new IOException("broken history segment : " + _file.getName() + ", length " + length);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException("not a history segment : " + _file.getName());
+            }
+            segment.sealed = buffer.getInt(OFFSET_SEALED) != 0;
+            // out of file is not a block either. loadIndex cuts the rest.
+            segment.committed = (int) Math.max(HEADER_SIZE, Math.min(buffer.getInt(OFFSET_COMMITTED), length));
+            if (segment.sealed) {
+                segment.capacity = segment.committed;
+                segment.mBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.committed);
+                raf.close();
+            } else {
+                segment.capacity = (int) length;
+                segment.mBuffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+                segment.mFile = raf;
+            }
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+        segment.loadIndex();
+        return segment;
+    }
+
+    // walk block headers. blocks past committed bytes are not there, and the first broken one ends the segment.
+    private void loadIndex() {
+        MappedByteBuffer buffer = mBuffer;
+        byte[] scratch = new byte[0];
+        int position = HEADER_SIZE;
+        while (position < committed) {
+            int length = blockLength(buffer, position, committed);
+            if (length > 0 && !sealed) {
+                if (scratch.length < length) {
+                    scratch = new byte[length];
+                }
+                ByteBuffer source = buffer.duplicate();
+                source.position(position);
+                source.get(scratch, 0, length);
+                if (buffer.getInt(position + OFFSET_BLOCK_CRC) != crcOf(scratch, length)) {
+                    length = -1;
+                }
+            }
+            if (length < 0) {
+                Dlog.out(TAG, "LOCATION : torn block at {} of " + file.getName() + ". dropped", position, Dlog.w);
+                committed = position;
+                if (!sealed) {
+                    // appends go on from here.
+                    buffer.putInt(OFFSET_COMMITTED, committed);
+                    buffer.putInt(OFFSET_BLOCK_COUNT, blockCount);
+                } else {
+                    capacity = committed;
+                }
+                return;
+            }
+            addIndex(position, buffer.getInt(position), buffer.getLong(position + 4), buffer.getLong(position + 12),
+                    buffer.getInt(position + 20), buffer.getInt(position + 24), buffer.getInt(position + 28), buffer.getInt(position + 32));
+            position += length;
+        }
+    }
+
+    /**
+     * @return length of block at _position, or -1 when its header does not make sense. (unwritten page, garbage)
+     */
+    private static int blockLength(MappedByteBuffer _buffer, int _position, int _end) {
+        if (_position + BLOCK_HEADER_SIZE > _end) {
+            return -1;
+        }
+        int count = _buffer.getInt(_position);
+        if (count <= 0
+                || _buffer.getLong(_position + 4) > _buffer.getLong(_position + 12)
+                || _buffer.getInt(_position + 20) > _buffer.getInt(_position + 24)
+                || _buffer.getInt(_position + 28) > _buffer.getInt(_position + 32)) {
+            return -1;
+        }
+        long length = BLOCK_HEADER_SIZE;
+        for (int column = 36; column <= 48; column += 4) {
+            int bytes = _buffer.getInt(_position + column);
+            // a varint is one byte at least.
+            if (bytes < count) {
+                return -1;
+            }
+            length += bytes;
+        }
+        return _position + length > _end ? -1 : (int) length;
+    }
+
+    // crc of block header except crc field, and columns.
+    private int crcOf(byte[] _block, int _length) {
+        CRC32 crc = mCrc;
+        crc.reset();
+        crc.update(_block, 0, OFFSET_BLOCK_CRC);
+        crc.update(_block, BLOCK_HEADER_SIZE, _length - BLOCK_HEADER_SIZE);
+        return (int) crc.getValue();
+    }
+
+    private void addIndex(int _offset, int _count, long _minTime, long _maxTime, int _minLat, int _maxLat, int _minLon, int _maxLon) {
+        int n = blockCount;
+        if (n == offsets.length) {
+            int grown = n * 2;
+            offsets = Arrays.copyOf(offsets, grown);
+            counts = Arrays.copyOf(counts, grown);
+            minTimes = Arrays.copyOf(minTimes, grown);
+            maxTimes = Arrays.copyOf(maxTimes, grown);
+            minLats = Arrays.copyOf(minLats, grown);
+            maxLats = Arrays.copyOf(maxLats, grown);
+            minLons = Arrays.copyOf(minLons, grown);
+            maxLons = Arrays.copyOf(maxLons, grown);
+        }
+        offsets[n] = _offset;
+        counts[n] = _count;
+        minTimes[n] = _minTime;
+        maxTimes[n] = _maxTime;
+        minLats[n] = _minLat;
+        maxLats[n] = _maxLat;
+        minLons[n] = _minLon;
+        maxLons[n] = _maxLon;
+        fixCount += _count;
+        minTime = Math.min(minTime, _minTime);
+        maxTime = Math.max(maxTime, _maxTime);
+        // publish last. readers see entries below it.
+        blockCount = n + 1;
+    }
+
+    boolean isSealed() { return sealed; }
+
+    int getBlockCount() { return blockCount; }
+
+    long getFixCount() { return fixCount; }
+
+    long getMinTime() { return minTime; }
+
+    long getMaxTime() { return maxTime; }
+
+    int getCommittedBytes() { return committed; }
+
+    /**
+     * @return true when block of _count fixes surely fits.
+     */
+    boolean fits(int _count) {
+        return !sealed && (long) committed + BLOCK_HEADER_SIZE + (long) _count * MAX_BYTES_PER_FIX <= capacity;
+    }
+
+    /*
+	// ********************************************************************************************
+	// Write
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Encode fixes _from to _from + _count - 1 as a block, and commit it. caller checked fits.
+     * @param _scratch encode buffer. grown when short.
+     * @return scratch used. (may be new one)
+     */
+    byte[] writeBlock(long[] _times, int[] _lats, int[] _lons, int[] _accs, int _from, int _count, byte[] _scratch) {
+
+        int end = _from + _count;
+        long minT = Long.MAX_VALUE, maxT = Long.MIN_VALUE;
+        int minLat = Integer.MAX_VALUE, maxLat = Integer.MIN_VALUE, minLon = Integer.MAX_VALUE, maxLon = Integer.MIN_VALUE;
+        for (int i = _from; i < end; i++) {
+            minT = Math.min(minT, _times[i]);
+            maxT = Math.max(maxT, _times[i]);
+            minLat = Math.min(minLat, _lats[i]);
+            maxLat = Math.max(maxLat, _lats[i]);
+            minLon = Math.min(minLon, _lons[i]);
+            maxLon = Math.max(maxLon, _lons[i]);
+        }
+
+        byte[] bytes = _scratch;
+        if (bytes.length < BLOCK_HEADER_SIZE + _count * MAX_BYTES_PER_FIX) {
+            bytes = new byte[BLOCK_HEADER_SIZE + _count * MAX_BYTES_PER_FIX];
+        }
+
+        int position = BLOCK_HEADER_SIZE;
+        long previous = minT;
+        for (int i = _from; i < end; i++) {
+            position = putVarLong(bytes, position, zigzag(_times[i] - previous));
+            previous = _times[i];
+        }
+        int timeBytes = position - BLOCK_HEADER_SIZE;
+        int mark = position;
+        previous = minLat;
+        for (int i = _from; i < end; i++) {
+            position = putVarLong(bytes, position, zigzag(_lats[i] - previous));
+            previous = _lats[i];
+        }
+        int latBytes = position - mark;
+        mark = position;
+        previous = minLon;
+        for (int i = _from; i < end; i++) {
+            position = putVarLong(bytes, position, zigzag(_lons[i] - previous));
+            previous = _lons[i];
+        }
+        int lonBytes = position - mark;
+        mark = position;
+        previous = 0;
+        for (int i = _from; i < end; i++) {
+            position = putVarLong(bytes, position, zigzag(_accs[i] - previous));
+            previous = _accs[i];
+        }
+        int accBytes = position - mark;
+
+        ByteBuffer header = ByteBuffer.wrap(bytes, 0, BLOCK_HEADER_SIZE);
+        header.putInt(_count).putLong(minT).putLong(maxT)
+                .putInt(minLat).putInt(maxLat).putInt(minLon).putInt(maxLon)
+                .putInt(timeBytes).putInt(latBytes).putInt(lonBytes).putInt(accBytes);
+        header.putInt(crcOf(bytes, position));
+
+        MappedByteBuffer buffer = mBuffer;
+        ByteBuffer target = buffer.duplicate();
+        target.position(committed);
+        target.put(bytes, 0, position);
+
+        // commit : block first, then header.
+        int offset = committed;
+        committed += position;
+        buffer.putInt(OFFSET_COMMITTED, committed);
+        buffer.putInt(OFFSET_BLOCK_COUNT, blockCount + 1);
+        addIndex(offset, _count, minT, maxT, minLat, maxLat, minLon, maxLon);
+        return bytes;
+    }
+
+    /**
+     * Write to storage device.
+     */
+    void force() {
+        if (!sealed) {
+            mBuffer.force();
+        }
+    }
+
+    /**
+     * No more blocks. file is cut to committed size, and mapped read only.
+     */
+    void seal() throws IOException {
+        if (sealed) {
+            return;
+        }
+        MappedByteBuffer buffer = mBuffer;
+        // blocks reach the device before the flag does. sealed segment is opened without crc check.
+        buffer.force();
+        buffer.putInt(OFFSET_SEALED, 1);
+        buffer.force();
+        FileChannel channel = mFile.getChannel();
+        channel.truncate(committed);
+        mBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, committed);
+        capacity = committed;
+        sealed = true;
+        mFile.close();
+        mFile = null;
+    }
+
+    void close() throws IOException {
+        if (mFile != null) {
+            mBuffer.force();
+            mFile.close();
+            mFile = null;
+        }
+    }
+
+    /*
+	// ********************************************************************************************
+	// Read
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Decode matching fixes of first _blockLimit blocks into _out, one block at a time.
+     * @param _blockLimit blocks to read. (snapshot of writer)
+     * @param _query range. block out of it is skipped without decoding.
+     * @param _out decode buffers and visitor.
+     * @return false when visitor stopped the scan.
+     */
+    boolean scan(int _blockLimit, Query _query, Reader _out) {
+
+        if (_blockLimit == 0 || _query.maxTime < minTime || _query.minTime > maxTime) {
+            return true;
+        }
+
+        MappedByteBuffer buffer = mBuffer;
+        int[] blockOffsets = offsets;
+        int[] blockCounts = counts;
+        long[] blockMinTimes = minTimes;
+        long[] blockMaxTimes = maxTimes;
+        int[] blockMinLats = minLats;
+        int[] blockMaxLats = maxLats;
+        int[] blockMinLons = minLons;
+        int[] blockMaxLons = maxLons;
+
+        for (int b = 0; b < _blockLimit; b++) {
+            if (blockMaxTimes[b] < _query.minTime || blockMinTimes[b] > _query.maxTime) {
+                continue;
+            }
+            if (_query.hasBox && !_query.overlaps(blockMinLats[b], blockMaxLats[b], blockMinLons[b], blockMaxLons[b])) {
+                continue;
+            }
+            if (!decodeBlock(buffer, blockOffsets[b], blockCounts[b], _query, _out)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean decodeBlock(MappedByteBuffer _buffer, int _offset, int _count, Query _query, Reader _out) {
+
+        int length = _buffer.getInt(_offset + 36) + _buffer.getInt(_offset + 40) + _buffer.getInt(_offset + 44) + _buffer.getInt(_offset + 48);
+        _out.ensure(_count, length);
+        ByteBuffer source = _buffer.duplicate();
+        source.position(_offset + BLOCK_HEADER_SIZE);
+        source.get(_out.bytes, 0, length);
+
+        byte[] bytes = _out.bytes;
+        long[] times = _out.times;
+        int position = 0;
+        long value = _buffer.getLong(_offset + 4);
+        int matched = 0;
+        for (int i = 0; i < _count; i++) {
+            long raw = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[position++];
+                raw |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            value += unzigzag(raw);
+            times[i] = value;
+            if (value >= _query.minTime && value <= _query.maxTime) {
+                matched++;
+            }
+        }
+        if (matched == 0) {
+            // time column alone decided. other columns are not decoded.
+            return true;
+        }
+        position = decodeInts(bytes, position, _count, _buffer.getInt(_offset + 20), _out.lats);
+        position = decodeInts(bytes, position, _count, _buffer.getInt(_offset + 28), _out.lons);
+        decodeInts(bytes, position, _count, 0, _out.accs);
+
+        int[] lats = _out.lats;
+        int[] lons = _out.lons;
+        int[] accs = _out.accs;
+        for (int i = 0; i < _count; i++) {
+            if (times[i] < _query.minTime || times[i] > _query.maxTime) {
+                continue;
+            }
+            if (_query.hasBox && !_query.contains(lats[i], lons[i])) {
+                continue;
+            }
+            if (!_out.visit(times[i], lats[i], lons[i], accs[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int decodeInts(byte[] _bytes, int _position, int _count, int _first, int[] _out) {
+        int position = _position;
+        long value = _first;
+        for (int i = 0; i < _count; i++) {
+            long raw = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = _bytes[position++];
+                raw |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            value += unzigzag(raw);
+            _out[i] = (int) value;
+        }
+        return position;
+    }
+
+    private static int putVarLong(byte[] _bytes, int _position, long _value) {
+        int position = _position;
+        long value = _value;
+        while ((value & ~0x7FL) != 0) {
+            _bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        _bytes[position++] = (byte) value;
+        return position;
+    }
+
+    private static long zigzag(long _value) {
+        return (_value << 1) ^ (_value >> 63);
+    }
+
+    private static long unzigzag(long _value) {
+        return (_value >>> 1) ^ -(_value & 1);
+    }
+
+    /*
+	// ********************************************************************************************
+	// Query / decode state
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Range of scan in stored units. longitude range wraps when minLon is bigger than maxLon.
+     */
+    static final class Query {
+        long minTime;
+        long maxTime;
+        boolean hasBox;
+        int minLat;
+        int maxLat;
+        int minLon;
+        int maxLon;
+
+        boolean overlaps(int _minLat, int _maxLat, int _minLon, int _maxLon) {
+            if (_maxLat < minLat || _minLat > maxLat) {
+                return false;
+            }
+            if (minLon <= maxLon) {
+                return _maxLon >= minLon && _minLon <= maxLon;
+            }
+            return _maxLon >= minLon || _minLon <= maxLon;
+        }
+
+        boolean contains(int _lat, int _lon) {
+            if (_lat < minLat || _lat > maxLat) {
+                return false;
+            }
+            return minLon <= maxLon ? _lon >= minLon && _lon <= maxLon : _lon >= minLon || _lon <= maxLon;
+        }
+    }
+
+    /**
+     * Decode buffers of one thread, and where fixes go.
+     */
+    abstract static class Reader {
+        byte[] bytes = new byte[0];
+        long[] times = new long[0];
+        int[] lats = new int[0];
+        int[] lons = new int[0];
+        int[] accs = new int[0];
+
+        void ensure(int _count, int _bytes) {
+            if (bytes.length < _bytes) {
+                bytes = new byte[_bytes];
+            }
+            if (times.length < _count) {
+                times = new long[_count];
+                lats = new int[_count];
+                lons = new int[_count];
+                accs = new int[_count];
+            }
+        }
+
+        abstract boolean visit(long _time, int _latE7, int _lonE7, int _accDm);
+    }
+}
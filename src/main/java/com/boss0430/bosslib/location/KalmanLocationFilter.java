@@ -0,0 +1,255 @@
+package com.boss0430.bosslib.location;
+
+/**
+ * Constant-velocity Kalman filter of fixes, with outlier rejection.
+ * <br><br>
+ * - State is position / velocity in local meters (east, north). both axes are independent 2x2 filters.<br>
+ * - Measurement noise comes from accuracy of each fix. process noise is acceleration. (setAccelerationNoise)<br>
+ * - Rejected : accuracy worse than max accuracy, speed from last accepted fix above max speed,
+ *   or innovation out of gate. after some rejections in a row, filter restarts at the new fix. (real jump)<br>
+ * - update works on primitives only and allocates nothing. toFix makes LocationFix of current state.<br>
+ * - Not thread safe. one filter per fix stream.
+ * @see FilteredLocationSource
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public final class KalmanLocationFilter {
+
+    public static final int ACCEPTED = 0;
+    public static final int REJECTED_ACCURACY = 1;
+    public static final int REJECTED_SPEED = 2;
+    public static final int REJECTED_INNOVATION = 3;
+    public static final int RESTARTED = 4;
+
+    // 2 dof chi-square, 99.9%
+    private static final double DEFAULT_GATE = 13.8;
+    // accuracy of fix without accuracy.
+    private static final double UNKNOWN_ACCURACY_METERS = 50;
+
+    private double accelerationNoise = 2.0;
+    private double maxSpeedMetersPerSecond = 70;
+    private double maxAccuracyMeters = 200;
+    private double gate = DEFAULT_GATE;
+    private int maxRejections = 3;
+    private long restartAfterMillis = 60000;
+
+    // local frame
+    private boolean initialized = false;
+    private double originLatitude;
+    private double originLongitude;
+    private double originCos;
+
+    // east axis : position, velocity, covariance
+    private double x, vx, pxx, pxv, pvv;
+    // north axis
+    private double y, vy, qyy, qyv, qvv;
+
+    private long lastTime;
+    private double lastAccuracy;
+    private int rejections;
+
+    private long acceptedCount = 0;
+    private long rejectedCount = 0;
+
+    public KalmanLocationFilter() {
+    }
+
+    /**
+     * @param _metersPerSecondSquared expected acceleration. small : smooth but laggy. default is 2.
+     */
+    public void setAccelerationNoise(double _metersPerSecondSquared) { this.accelerationNoise = _metersPerSecondSquared; }
+
+    /**
+     * @param _metersPerSecond fix implying faster move from last accepted one is rejected. default is 70. (250km/h)
+     */
+    public void setMaxSpeed(double _metersPerSecond) { this.maxSpeedMetersPerSecond = _metersPerSecond; }
+
+    /**
+     * @param _meters fix of worse accuracy is rejected. default is 200.
+     */
+    public void setMaxAccuracy(double _meters) { this.maxAccuracyMeters = _meters; }
+
+    /**
+     * @param _count after this many rejections in a row, filter restarts at next fix. default is 3.
+     */
+    public void setMaxRejections(int _count) { this.maxRejections = _count; }
+
+    /**
+     * @param _millis filter restarts when no fix has come this long. default is 60000.
+     */
+    public void setRestartAfterMillis(long _millis) { this.restartAfterMillis = _millis; }
+
+    /**
+     * Forget state. next fix starts the filter again.
+     */
+    public void reset() {
+        initialized = false;
+        rejections = 0;
+    }
+
+    /*
+	// ********************************************************************************************
+	// Filtering
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Feed a fix.
+     * @param _fix fix.
+     * @return ACCEPTED, RESTARTED, or REJECTED_XXX.
+     */
+    public int update(LocationFix _fix) {
+        return update(_fix.getLatitude(), _fix.getLongitude(), _fix.getAccuracy(), _fix.getTime());
+    }
+
+    /**
+     * Feed a fix.
+     * @param _latitude latitude.
+     * @param _longitude longitude.
+     * @param _accuracy accuracy radius in meters. negative when unknown.
+     * @param _timeMillis time of fix.
+     * @return ACCEPTED, RESTARTED, or REJECTED_XXX. state is unchanged when rejected.
+     */
+    public int update(double _latitude, double _longitude, float _accuracy, long _timeMillis) {
+
+        double accuracy = _accuracy >= 0 ? Math.max(_accuracy, 1) : UNKNOWN_ACCURACY_METERS;
+        if (accuracy > maxAccuracyMeters) {
+            return reject(REJECTED_ACCURACY);
+        }
+
+        if (!initialized || _timeMillis - lastTime > restartAfterMillis || rejections >= maxRejections) {
+            restart(_latitude, _longitude, accuracy, _timeMillis);
+            return RESTARTED;
+        }
+
+        double zx = (_longitude - originLongitude) * Geofence.METERS_PER_DEGREE * originCos;
+        double zy = (_latitude - originLatitude) * Geofence.METERS_PER_DEGREE;
+        double dt = Math.max(0, (_timeMillis - lastTime) / 1000.0);
+
+        // speed check against filtered position. accuracy of both is allowed.
+        double jumpX = zx - x;
+        double jumpY = zy - y;
+        double jump = Math.sqrt(jumpX * jumpX + jumpY * jumpY) - accuracy - lastAccuracy;
+        if (jump > maxSpeedMetersPerSecond * Math.max(dt, 1)) {
+            return reject(REJECTED_SPEED);
+        }
+
+        // predict
+        double q = accelerationNoise * accelerationNoise;
+        double dt2 = dt * dt;
+        double px = x + vx * dt;
+        double ppxx = pxx + dt * (2 * pxv + dt * pvv) + q * dt2 * dt2 / 4;
+        double ppxv = pxv + dt * pvv + q * dt2 * dt / 2;
+        double ppvv = pvv + q * dt2;
+        double py = y + vy * dt;
+        double pqyy = qyy + dt * (2 * qyv + dt * qvv) + q * dt2 * dt2 / 4;
+        double pqyv = qyv + dt * qvv + q * dt2 * dt / 2;
+        double pqvv = qvv + q * dt2;
+
+        // gate
+        double r = accuracy * accuracy;
+        double sx = ppxx + r;
+        double sy = pqyy + r;
+        double ix = zx - px;
+        double iy = zy - py;
+        if (ix * ix / sx + iy * iy / sy > gate) {
+            return reject(REJECTED_INNOVATION);
+        }
+
+        // update
+        double kx0 = ppxx / sx;
+        double kx1 = ppxv / sx;
+        x = px + kx0 * ix;
+        vx = vx + kx1 * ix;
+        pxx = (1 - kx0) * ppxx;
+        pxv = (1 - kx0) * ppxv;
+        pvv = ppvv - kx1 * ppxv;
+
+        double ky0 = pqyy / sy;
+        double ky1 = pqyv / sy;
+        y = py + ky0 * iy;
+        vy = vy + ky1 * iy;
+        qyy = (1 - ky0) * pqyy;
+        qyv = (1 - ky0) * pqyv;
+        qvv = pqvv - ky1 * pqyv;
+
+        lastTime = _timeMillis;
+        lastAccuracy = Math.sqrt((pxx + qyy) / 2);
+        rejections = 0;
+        acceptedCount++;
+        return ACCEPTED;
+    }
+
+    private int reject(int _reason) {
+        rejections++;
+        rejectedCount++;
+        return _reason;
+    }
+
+    private void restart(double _latitude, double _longitude, double _accuracy, long _timeMillis) {
+        initialized = true;
+        originLatitude = _latitude;
+        originLongitude = _longitude;
+        originCos = Geofence.cosOf(_latitude);
+        double r = _accuracy * _accuracy;
+        x = 0;
+        y = 0;
+        vx = 0;
+        vy = 0;
+        pxx = r;
+        qyy = r;
+        pxv = 0;
+        qyv = 0;
+        // velocity unknown : up to about max speed.
+        pvv = maxSpeedMetersPerSecond * maxSpeedMetersPerSecond / 4;
+        qvv = pvv;
+        lastTime = _timeMillis;
+        lastAccuracy = _accuracy;
+        rejections = 0;
+        acceptedCount++;
+    }
+
+    /*
+	// ********************************************************************************************
+	// State
+	// ********************************************************************************************
+	*/
+
+    public boolean isInitialized() { return initialized; }
+
+    public double getLatitude() {
+        return originLatitude + y / Geofence.METERS_PER_DEGREE;
+    }
+
+    public double getLongitude() {
+        return originLongitude + x / (Geofence.METERS_PER_DEGREE * originCos);
+    }
+
+    /** @return 1-sigma position error in meters. */
+    public float getAccuracy() { return (float) lastAccuracy; }
+
+    /** @return meters per second. */
+    public float getSpeed() { return (float) Math.sqrt(vx * vx + vy * vy); }
+
+    /** @return degrees, 0 to 360 clockwise from north. */
+    public float getBearing() {
+        double degrees = Math.toDegrees(Math.atan2(vx, vy));
+        return (float) (degrees < 0 ? degrees + 360 : degrees);
+    }
+
+    public long getTime() { return lastTime; }
+
+    public long getAcceptedCount() { return acceptedCount; }
+
+    public long getRejectedCount() { return rejectedCount; }
+
+    /**
+     * @return LocationFix of current state. null before first fix.
+     */
+    public LocationFix toFix() {
+        if (!initialized) {
+            return null;
+        }
+        return new LocationFix(getLatitude(), getLongitude(), getAccuracy(), lastTime, getSpeed(), getBearing());
+    }
+}
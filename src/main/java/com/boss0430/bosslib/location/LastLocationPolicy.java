@@ -0,0 +1,59 @@
+package com.boss0430.bosslib.location;
+
+/**
+ * Decides whether a cached (last known) location is good enough to answer right away.
+ * <br><br>
+ * - Cached fix younger than maxAge and more accurate than maxAccuracy is delivered immediately.<br>
+ * - With refresh on, a background fix is taken after that, so next caller gets a fresher cache. (stale-while-revalidate)<br>
+ * - Otherwise caller waits for a live fix.<br>
+ * <br>
+ * Usage<br>
+ * locationAsyncTask.setLastLocationPolicy(new LastLocationPolicy(60000, 100, true));
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public class LastLocationPolicy {
+
+    /**
+     * Any cached location, however old or inaccurate. no refresh. same as old 'useLastLocation = true'.
+     */
+    public static final LastLocationPolicy ANY = new LastLocationPolicy(Long.MAX_VALUE, Float.MAX_VALUE, false);
+
+    private final long maxAgeMillis;
+    private final float maxAccuracyMeters;
+    private final boolean refresh;
+
+    /**
+     * Constructor.
+     * @param _maxAgeMillis cached fix older than this is not used.
+     * @param _maxAccuracyMeters cached fix with accuracy radius bigger than this is not used.
+     * @param _refresh take a fresh fix in background after answering from cache.
+     */
+    public LastLocationPolicy(long _maxAgeMillis, float _maxAccuracyMeters, boolean _refresh) {
+        this.maxAgeMillis = _maxAgeMillis;
+        this.maxAccuracyMeters = _maxAccuracyMeters;
+        this.refresh = _refresh;
+    }
+
+    /**
+     * @param _ageMillis age of cached fix.
+     * @param _accuracyMeters accuracy radius of cached fix. negative when unknown.
+     * @return true when cached fix can be delivered.
+     */
+    public boolean accepts(long _ageMillis, float _accuracyMeters) {
+        if (_ageMillis < 0 || _ageMillis > maxAgeMillis) {
+            return false;
+        }
+        if (_accuracyMeters < 0) {
+            // unknown accuracy passes only when accuracy does not matter.
+            return maxAccuracyMeters == Float.MAX_VALUE;
+        }
+        return _accuracyMeters <= maxAccuracyMeters;
+    }
+
+    public long getMaxAgeMillis() { return maxAgeMillis; }
+
+    public float getMaxAccuracyMeters() { return maxAccuracyMeters; }
+
+    public boolean isRefresh() { return refresh; }
+}
@@ -0,0 +1,444 @@
+package com.boss0430.bosslib.location;
+
+import com.boss0430.bosslib.utils.Dlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.CRC32;
+
+/**
+ * Small on-disk store of latest fixes (and latest address), survives process restart.
+ * <br><br>
+ * - Fixed layout memory-mapped file. reading is a few absolute gets, no deserialization.<br>
+ * - Fixes go round a ring of slots, each slot has sequence and CRC32.<br>
+ * &nbsp;&nbsp;Write torn by crash fails CRC, and reader falls back to the previous slot.<br>
+ * - Writes reach page cache only, so they survive process crash. setForceWrites(true) survives power loss too (slower).<br>
+ * <br>
+ * Usage<br>
+ * 1. LastLocationStore store = LastLocationStore.open(new File(context.getFilesDir(), "last_location"));<br>
+ * 2. LocationHub.getInstance(context).setLastLocationStore(store); fixes are recorded, and served at cold start.<br>
+ * 3. locationConverter.setLastLocationStore(store); then locationConverter.getProvisionalAddress();
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public class LastLocationStore {
+
+    /**
+     * One stored fix.
+     */
+    public static final class Record {
+
+        private final long sequence;
+        private final double latitude;
+        private final double longitude;
+        private final float accuracy;
+        private final float speed;
+        private final float bearing;
+        private final long time;
+        private final String provider;
+
+        Record(long _sequence, double _latitude, double _longitude, float _accuracy, float _speed, float _bearing, long _time, String _provider) {
+            this.sequence = _sequence;
+            this.latitude = _latitude;
+            this.longitude = _longitude;
+            this.accuracy = _accuracy;
+            this.speed = _speed;
+            this.bearing = _bearing;
+            this.time = _time;
+            this.provider = _provider;
+        }
+
+        public long getSequence() { return sequence; }
+
+        public double getLatitude() { return latitude; }
+
+        public double getLongitude() { return longitude; }
+
+        /** @return accuracy radius (m). negative when unknown. */
+        public float getAccuracy() { return accuracy; }
+
+        /** @return speed (m/s). negative when unknown. */
+        public float getSpeed() { return speed; }
+
+        /** @return bearing (degree). negative when unknown. */
+        public float getBearing() { return bearing; }
+
+        /** @return wall clock time of fix. (millis) */
+        public long getTime() { return time; }
+
+        public String getProvider() { return provider; }
+
+        /** @return same fix as LocationFix. */
+        public LocationFix toFix() {
+            return new LocationFix(latitude, longitude, accuracy, time, speed, bearing);
+        }
+    }
+
+    /**
+     * Stored address.
+     */
+    public static final class StoredAddress {
+
+        private final double latitude;
+        private final double longitude;
+        private final String locale;
+        private final String address;
+
+        StoredAddress(double _latitude, double _longitude, String _locale, String _address) {
+            this.latitude = _latitude;
+            this.longitude = _longitude;
+            this.locale = _locale;
+            this.address = _address;
+        }
+
+        public double getLatitude() { return latitude; }
+
+        public double getLongitude() { return longitude; }
+
+        /** @return Locale.toString() of address. */
+        public String getLocale() { return locale; }
+
+        public String getAddress() { return address; }
+    }
+
+    // file layout.
+    static final int MAGIC = 0x424C4C31; // "BLL1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    // fix slot : long seq, double lat, double lon, float accuracy, float speed, float bearing, long time,
+    //            byte providerLength, provider(15), int crc
+    static final int FIX_SLOTS = 8;
+    static final int FIX_SLOT_SIZE = 64;
+    private static final int FIX_PROVIDER = 44;
+    private static final int MAX_PROVIDER_BYTES = 15;
+
+    // address slot : long seq, double lat, double lon, byte localeLength, locale(16), short addressLength,
+    //                address(209), int crc
+    static final int ADDRESS_SLOTS = 2;
+    static final int ADDRESS_SLOT_SIZE = 256;
+    private static final int ADDRESS_LOCALE = 24;
+    private static final int MAX_LOCALE_BYTES = 16;
+    private static final int ADDRESS_TEXT = 43;
+    static final int MAX_ADDRESS_BYTES = ADDRESS_SLOT_SIZE - 4 - ADDRESS_TEXT;
+
+    static final int FIXES_BASE = HEADER_SIZE;
+    static final int ADDRESSES_BASE = FIXES_BASE + FIX_SLOTS * FIX_SLOT_SIZE;
+    static final int FILE_SIZE = ADDRESSES_BASE + ADDRESS_SLOTS * ADDRESS_SLOT_SIZE;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final static String TAG = "LastLocationStore";
+
+    private final RandomAccessFile mFile;
+    private final MappedByteBuffer mBuffer;
+
+    // guarded by this.
+    private final ByteBuffer mScratch = ByteBuffer.allocate(ADDRESS_SLOT_SIZE);
+    private final CRC32 mCrc = new CRC32();
+    private long fixSequence;
+    private long addressSequence;
+
+    private volatile boolean forceWrites = false;
+
+    private LastLocationStore(RandomAccessFile _file, MappedByteBuffer _buffer) {
+        mFile = _file;
+        mBuffer = _buffer;
+
+        if (_buffer.getInt(0) != MAGIC || _buffer.getInt(4) != VERSION) {
+            // new file, or unknown one. start empty.
+            for (int n = 0; n < FILE_SIZE; n++) {
+                _buffer.put(n, (byte) 0);
+            }
+            _buffer.putInt(0, MAGIC);
+            _buffer.putInt(4, VERSION);
+            _buffer.putInt(8, FIX_SLOTS);
+            Dlog.out(TAG, "LOCATION : store formatted", Dlog.i);
+        }
+
+        fixSequence = latestSequence(FIXES_BASE, FIX_SLOTS, FIX_SLOT_SIZE);
+        addressSequence = latestSequence(ADDRESSES_BASE, ADDRESS_SLOTS, ADDRESS_SLOT_SIZE);
+    }
+
+    /**
+     * Map store file. created when missing.
+     * @param _file store file.
+     * @return LastLocationStore.
+     * @throws IOException when file can not be opened.
+     */
+    public static LastLocationStore open(File _file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(_file, "rw");
+        try {
+            if (raf.length() < FILE_SIZE) {
+                raf.setLength(FILE_SIZE);
+            }
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            return new LastLocationStore(raf, buffer);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Close file. mapping is released when this object is garbage collected.
+     */
+    public void close() {
+        try {
+            mFile.close();
+        } catch (IOException e) {
+            Dlog.out(TAG, "LOCATION : close failed : {}", e, Dlog.e);
+        }
+    }
+
+    /**
+     * Flush every write to storage device, so it survives power loss too.
+     * @param _force default is false. (survives process crash only)
+     */
+    public void setForceWrites(boolean _force) {
+        this.forceWrites = _force;
+    }
+
+    /*
+	// ********************************************************************************************
+	// Fix
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Record fix.
+     * @param _latitude latitude.
+     * @param _longitude longitude.
+     * @param _accuracy accuracy radius (m). negative when unknown.
+     * @param _speed speed (m/s). negative when unknown.
+     * @param _bearing bearing (degree). negative when unknown.
+     * @param _time wall clock time of fix. (millis)
+     * @param _provider provider name. cut to 15 bytes.
+     */
+    public synchronized void write(double _latitude, double _longitude, float _accuracy, float _speed, float _bearing, long _time, String _provider) {
+
+        long sequence = fixSequence + 1;
+
+        ByteBuffer slot = mScratch;
+        slot.clear();
+        slot.putLong(sequence);
+        slot.putDouble(_latitude);
+        slot.putDouble(_longitude);
+        slot.putFloat(_accuracy);
+        slot.putFloat(_speed);
+        slot.putFloat(_bearing);
+        slot.putLong(_time);
+        putText(slot, FIX_PROVIDER, 1, _provider, MAX_PROVIDER_BYTES);
+
+        commit(slot, FIXES_BASE + (int) (sequence % FIX_SLOTS) * FIX_SLOT_SIZE, FIX_SLOT_SIZE);
+        fixSequence = sequence;
+    }
+
+    /**
+     * Record fix.
+     * @param _fix fix.
+     * @param _provider provider name. cut to 15 bytes.
+     */
+    public void write(LocationFix _fix, String _provider) {
+        write(_fix.getLatitude(), _fix.getLongitude(), _fix.getAccuracy(), _fix.getSpeed(), _fix.getBearing(), _fix.getTime(), _provider);
+    }
+
+    /**
+     * @return latest fix. null when nothing is stored.
+     */
+    public Record readLatest() {
+        List<Record> records = readRecent(1);
+        return records.isEmpty() ? null : records.get(0);
+    }
+
+    /**
+     * @param _max max count of fixes. up to 8 are kept.
+     * @return latest fixes, newest first.
+     */
+    public List<Record> readRecent(int _max) {
+
+        // valid slots sorted by sequence, newest first. (at most 8, insertion sort)
+        long[] sequences = new long[FIX_SLOTS];
+        int[] offsets = new int[FIX_SLOTS];
+        int count = 0;
+        byte[] bytes = new byte[FIX_SLOT_SIZE];
+
+        for (int n = 0; n < FIX_SLOTS; n++) {
+            int offset = FIXES_BASE + n * FIX_SLOT_SIZE;
+            long sequence = validSequence(offset, FIX_SLOT_SIZE, bytes);
+            if (sequence <= 0) {
+                continue;
+            }
+            int i = count++;
+            while (i > 0 && sequences[i - 1] < sequence) {
+                sequences[i] = sequences[i - 1];
+                offsets[i] = offsets[i - 1];
+                i--;
+            }
+            sequences[i] = sequence;
+            offsets[i] = offset;
+        }
+
+        List<Record> records = new ArrayList<>(Math.min(count, Math.max(0, _max)));
+        for (int n = 0; n < count && n < _max; n++) {
+            Record record = readFix(offsets[n], bytes);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    private Record readFix(int _offset, byte[] _bytes) {
+        // slot may be rewritten after validation. validate copy, and read from it.
+        if (validSequence(_offset, FIX_SLOT_SIZE, _bytes) <= 0) {
+            return null;
+        }
+        ByteBuffer slot = ByteBuffer.wrap(_bytes);
+        return new Record(slot.getLong(0), slot.getDouble(8), slot.getDouble(16),
+                slot.getFloat(24), slot.getFloat(28), slot.getFloat(32), slot.getLong(36),
+                getText(_bytes, FIX_PROVIDER, 1));
+    }
+
+    /*
+	// ********************************************************************************************
+	// Address
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Record address of coordinates.
+     * @param _latitude latitude.
+     * @param _longitude longitude.
+     * @param _locale locale of address.
+     * @param _address address. cut to 209 bytes (UTF-8).
+     */
+    public synchronized void writeAddress(double _latitude, double _longitude, Locale _locale, String _address) {
+
+        long sequence = addressSequence + 1;
+
+        ByteBuffer slot = mScratch;
+        slot.clear();
+        slot.putLong(sequence);
+        slot.putDouble(_latitude);
+        slot.putDouble(_longitude);
+        putText(slot, ADDRESS_LOCALE, 1, String.valueOf(_locale), MAX_LOCALE_BYTES);
+        putText(slot, ADDRESS_TEXT - 2, 2, _address, MAX_ADDRESS_BYTES);
+
+        commit(slot, ADDRESSES_BASE + (int) (sequence % ADDRESS_SLOTS) * ADDRESS_SLOT_SIZE, ADDRESS_SLOT_SIZE);
+        addressSequence = sequence;
+    }
+
+    /**
+     * @param _locale locale wanted.
+     * @return latest address stored in _locale. null when there is none.
+     */
+    public StoredAddress readAddress(Locale _locale) {
+
+        String locale = String.valueOf(_locale);
+        byte[] bytes = new byte[ADDRESS_SLOT_SIZE];
+        StoredAddress best = null;
+        long bestSequence = 0;
+
+        for (int n = 0; n < ADDRESS_SLOTS; n++) {
+            long sequence = validSequence(ADDRESSES_BASE + n * ADDRESS_SLOT_SIZE, ADDRESS_SLOT_SIZE, bytes);
+            if (sequence <= bestSequence) {
+                continue;
+            }
+            if (!locale.equals(getText(bytes, ADDRESS_LOCALE, 1))) {
+                continue;
+            }
+            ByteBuffer slot = ByteBuffer.wrap(bytes);
+            best = new StoredAddress(slot.getDouble(8), slot.getDouble(16), locale, getText(bytes, ADDRESS_TEXT - 2, 2));
+            bestSequence = sequence;
+        }
+        return best;
+    }
+
+    /*
+	// ********************************************************************************************
+	// Slot
+	// ********************************************************************************************
+	*/
+
+    // call with this held. crc is written last, so a torn slot never validates.
+    private void commit(ByteBuffer _slot, int _offset, int _size) {
+        byte[] bytes = _slot.array();
+        mCrc.reset();
+        mCrc.update(bytes, 0, _size - 4);
+        _slot.putInt(_size - 4, (int) mCrc.getValue());
+
+        // invalidate first, in case the crash comes in the middle.
+        mBuffer.putInt(_offset + _size - 4, ~(int) mCrc.getValue());
+        for (int n = 0; n < _size - 4; n++) {
+            mBuffer.put(_offset + n, bytes[n]);
+        }
+        mBuffer.putInt(_offset + _size - 4, _slot.getInt(_size - 4));
+
+        if (forceWrites) {
+            mBuffer.force();
+        }
+    }
+
+    /**
+     * Copy slot into _bytes and check it.
+     * @return sequence of slot. 0 when slot is empty or broken.
+     */
+    private long validSequence(int _offset, int _size, byte[] _bytes) {
+        for (int n = 0; n < _size; n++) {
+            _bytes[n] = mBuffer.get(_offset + n);
+        }
+        ByteBuffer slot = ByteBuffer.wrap(_bytes);
+        long sequence = slot.getLong(0);
+        if (sequence <= 0) {
+            return 0;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(_bytes, 0, _size - 4);
+        return (int) crc.getValue() == slot.getInt(_size - 4) ? sequence : 0;
+    }
+
+    private long latestSequence(int _base, int _slots, int _size) {
+        byte[] bytes = new byte[_size];
+        long latest = 0;
+        for (int n = 0; n < _slots; n++) {
+            latest = Math.max(latest, validSequence(_base + n * _size, _size, bytes));
+        }
+        return latest;
+    }
+
+    // length (1 or 2 bytes) then UTF-8 bytes, cut at character boundary.
+    private static void putText(ByteBuffer _slot, int _offset, int _lengthBytes, String _text, int _maxBytes) {
+        byte[] encoded = _text == null ? new byte[0] : _text.getBytes(UTF8);
+        int length = Math.min(encoded.length, _maxBytes);
+        while (length > 0 && length < encoded.length && (encoded[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        if (_lengthBytes == 1) {
+            _slot.put(_offset, (byte) length);
+        } else {
+            _slot.putShort(_offset, (short) length);
+        }
+        for (int n = 0; n < length; n++) {
+            _slot.put(_offset + _lengthBytes + n, encoded[n]);
+        }
+        for (int n = length; n < _maxBytes; n++) {
+            _slot.put(_offset + _lengthBytes + n, (byte) 0);
+        }
+    }
+
+    private static String getText(byte[] _bytes, int _offset, int _lengthBytes) {
+        int length = _lengthBytes == 1
+                ? _bytes[_offset] & 0xFF
+                : ((_bytes[_offset] & 0xFF) << 8) | (_bytes[_offset + 1] & 0xFF);
+        return new String(_bytes, _offset + _lengthBytes, length, UTF8);
+    }
+}
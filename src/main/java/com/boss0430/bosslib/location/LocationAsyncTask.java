@@ -1,74 +1,78 @@
 package com.boss0430.bosslib.location;
 
-import android.Manifest;
-import android.app.Activity;
 import android.content.Context;
-import android.content.IntentSender;
-import android.content.pm.PackageManager;
-import android.location.Location;
 import android.os.AsyncTask;
 import android.os.Build;
-import android.os.CountDownTimer;
-import android.support.annotation.NonNull;
-import android.support.v4.app.ActivityCompat;
-import android.text.TextUtils;
+import android.os.SystemClock;
 
 import com.boss0430.bosslib.utils.Dlog;
-import com.google.android.gms.common.api.ApiException;
-import com.google.android.gms.common.api.ResolvableApiException;
-import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationAvailability;
-import com.google.android.gms.location.LocationCallback;
-import com.google.android.gms.location.LocationRequest;
-import com.google.android.gms.location.LocationResult;
-import com.google.android.gms.location.LocationServices;
-import com.google.android.gms.location.LocationSettingsRequest;
-import com.google.android.gms.location.LocationSettingsResponse;
-import com.google.android.gms.location.LocationSettingsStatusCodes;
-import com.google.android.gms.location.SettingsClient;
-import com.google.android.gms.tasks.OnCompleteListener;
-import com.google.android.gms.tasks.OnFailureListener;
-import com.google.android.gms.tasks.OnSuccessListener;
-import com.google.android.gms.tasks.Task;
+import com.boss0430.bosslib.utils.Histogram;
+import com.boss0430.bosslib.utils.Metrics;
+import com.boss0430.bosslib.utils.TimeoutWheel;
 
 import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Class that Retrieve Location Data using Google Fused Location API
  * <br><br>
  * Usage<br>
- * 1. implements LocationTaskInformer from your caller class.<br>
- * 2. declare onTaskDone in your caller class.<br>
- * 3. define me like new LocationAsyncTask(mContext, this);<br>
+ * 1. implements LocationFixInformer from your caller class.<br>
+ * 2. declare onFixDone in your caller class.<br>
+ * 3. define me like LocationAsyncTask.withFixInformer(mContext, this, false);<br>
  * 4. call executeAsyncTask<br>
- * - RESULT String in callback is <b>latitude|longitude</b>. you can change default separator(PIPE) by its set function.
+ * - RESULT in callback is LocationFix. (latitude, longitude, accuracy, time, speed, bearing)
+ * - LocationTaskInformer still works with new LocationAsyncTask(mContext, this);. its RESULT String is <b>latitude|longitude</b>.
+ * you can change default separator(PIPE) by its set function.
+ * - Task result is still the String, so get() and onPostExecute(String) overrides work as before. getFix() has the LocationFix.
+ * - Tasks running at the same time share one fused location session. see LocationHub.
+ * - setLastLocationPolicy lets a fresh enough cached fix answer at once. see LastLocationPolicy.
+ * - cancel(true) stops waiting at once. cancel(false) leaves the location session only when doInBackground returns.
  * <br>
  * @see <a href="https://stackoverflow.com/a/45500818">weak reference comes from this link</a>
  * @see <a href="https://stackoverflow.com/a/35833552">and this man was my real savior</a>
  * @since 2019 Mar 27
  * @author boss0430
+ * @deprecated AsyncTask holds a pool thread while waiting, and can not be chained or awaited.
+ * use LocationLookup, which returns cancellable LocationFuture.
  */
+@Deprecated
 public class LocationAsyncTask extends AsyncTask<String, Void, String> {
 
     private Context mContext;
 
-    // Hold weak reference
+    // Hold weak reference. one of them is set.
+    private WeakReference<LocationFixInformer> mFixCallback;
     private WeakReference<LocationTaskInformer> mCallback;
 
-    private FusedLocationProviderClient fusedLocationClient;
-    private LocationRequest mLocationRequest;
-    private LocationCallback mLocationCallback;
+    // attached to shared session of LocationHub while running.
+    private LocationHub.Waiter mHubWaiter;
+    // null : process-wide hub (fused location).
+    private LocationHub mHub;
 
-    private boolean useLastLocation = false;
+    // which cached fix can answer right away. null : always wait for live fix.
+    private LastLocationPolicy lastLocationPolicy = null;
     private String separator = "|";
 
-    private String mResult;
+    // location callbacks hand result over to doInBackground through this.
+    private final LocationResultLatch<LocationFix> mResultLatch = new LocationResultLatch<>();
+    // typed form of task result. task result itself stays String for old callers.
+    private volatile LocationFix mFix;
 
     private int timeoutValue = 15000;
-    private int timeoutCheckInterval = 1000;
+
+    // cancels me at timeoutValue. shared wheel, no ticks on main thread while waiting.
+    private TimeoutWheel.Timeout mTimeout;
 
     private final static String TAG = "LocationAsyncTask";
 
+    private static final Histogram TASK_TIME = Metrics.histogram(Metrics.LOCATION_TASK_MS);
+    private static final Metrics.Counter TIMEOUTS = Metrics.counter(Metrics.LOCATION_TASK_TIMEOUT);
+    private static final Metrics.Counter CANCELS = Metrics.counter(Metrics.LOCATION_TASK_CANCEL);
+
+    // cancelled by timeout, not by caller.
+    private volatile boolean timedOut = false;
+
 
     /*
 	// ********************************************************************************************
@@ -76,10 +80,29 @@ public class LocationAsyncTask extends AsyncTask<String, Void, String> {
 	// ********************************************************************************************
 	*/
 
+    /**
+     * Task which delivers LocationFix.<br>
+     * factory, not constructor : caller implementing both informers would make new LocationAsyncTask(context, this) ambiguous.
+     * @param _context context.
+     * @param callback you (caller). receives LocationFix.
+     * @param _useLastLocation will use 'getLastLocation' value?
+     * @return task. call executeAsyncTask.
+     */
+    public static LocationAsyncTask withFixInformer(Context _context, LocationFixInformer callback, boolean _useLastLocation) {
+        return new LocationAsyncTask(_context, callback, _useLastLocation);
+    }
+
+    // private, so it takes no part in overload resolution of callers.
+    private LocationAsyncTask(Context _context, LocationFixInformer callback, boolean _useLastLocation) {
+        mContext = _context;
+        this.mFixCallback = new WeakReference<>(callback);
+        setUseLastLocation(_useLastLocation);
+    }
+
     /**
      * Constructor.
      * @param _context context.
-     * @param callback you (caller).
+     * @param callback you (caller). receives "latitude|longitude".
      */
     public LocationAsyncTask(Context _context, LocationTaskInformer callback) {
         mContext = _context;
@@ -87,61 +110,105 @@ public class LocationAsyncTask extends AsyncTask<String, Void, String> {
     }
 
     /**
-     *
+     * Constructor.
      * @param _context context.
-     * @param callback you (caller).
+     * @param callback you (caller). receives "latitude|longitude".
      * @param _useLastLocation will use 'getLastLocation' value?
      */
     public LocationAsyncTask(Context _context, LocationTaskInformer callback, boolean _useLastLocation) {
         mContext = _context;
         this.mCallback = new WeakReference<>(callback);
-        this.useLastLocation = _useLastLocation;
+        setUseLastLocation(_useLastLocation);
     }
 
     /**
      * set 'useLastLocation' value.
-     * @param _useLastLocation will use 'getLastLocation' value?
+     * @param _useLastLocation will use 'getLastLocation' value? true accepts any cached fix, however old. (LastLocationPolicy.ANY)
      */
     public void setUseLastLocation(boolean _useLastLocation) {
-        this.useLastLocation = _useLastLocation;
+        this.lastLocationPolicy = _useLastLocation ? LastLocationPolicy.ANY : null;
+    }
+
+    /**
+     * Answer from cached fix when it is fresh and accurate enough, otherwise wait for live fix.
+     * @param _policy max age / max accuracy of cached fix. null to always wait for live fix.
+     */
+    public void setLastLocationPolicy(LastLocationPolicy _policy) {
+        this.lastLocationPolicy = _policy;
+    }
+
+    /**
+     * Use _hub instead of process-wide one. (ex. hub of ReplayLocationSource)
+     * @param _hub LocationHub. null for process-wide one.
+     */
+    public void setLocationHub(LocationHub _hub) {
+        this.mHub = _hub;
     }
 
     /**
      * When you don't want to use default separator (PIPE), use this function to change it.
+     * only for LocationTaskInformer.
      * @param _separator
      */
     public void changeSeparator(String _separator) {
         this.separator = _separator;
     }
 
+    /**
+     * @return LocationFix of result. null until result is secured, or when there is none.
+     */
+    public LocationFix getFix() {
+        return mFix;
+    }
+
     @Override
     protected String doInBackground(String... strings) {
 
-        // final String result = "This is Just Test result";
+        final long startMillis = SystemClock.elapsedRealtime();
 
         // initialize location settings.
         initLocationUpdate();
 
-        // wait till mResult secured.
-        while(TextUtils.isEmpty(mResult)) {
-            // Dlog.out(TAG, "I'm waiting result of location...", Dlog.d);
+        // park till result secured. (no busy-wait)
+        LocationFix result = null;
+        try {
+            result = mResultLatch.await(timeoutValue, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            // timeout (TimeoutWheel) cancelled me.
+            Thread.currentThread().interrupt();
+        } finally {
+            // leave shared session. it stops when i was the last one.
+            stopLocationUpdates();
+            cancelTimeout();
+        }
+
+        if (result == null) {
+            if (!isCancelled()) {
+                timedOut = true;
+            }
+            Dlog.out(TAG, "LOCATION : no result till timeout", Dlog.w);
+            // onCancelled will be called instead of onPostExecute.
+            cancel(false);
+        } else {
+            Metrics.record(TASK_TIME, SystemClock.elapsedRealtime() - startMillis);
+            mFix = result;
         }
 
         // to post execute
-        return mResult;
+        return result != null ? result.toResultString(separator) : null;
     }
 
     @Override
     protected void onPostExecute(String s) {
         super.onPostExecute(s);
 
-        // stop location updates
-        stopLocationUpdates();
-
         // make sure your caller is alive.
-        final LocationTaskInformer callback = mCallback.get();
+        final LocationFixInformer fixCallback = mFixCallback != null ? mFixCallback.get() : null;
+        final LocationTaskInformer callback = mCallback != null ? mCallback.get() : null;
 
-        if (callback != null) {
+        if (fixCallback != null) {
+            fixCallback.onFixDone(mFix);
+        } else if (callback != null) {
             callback.onTaskDone(s);
         } else {
             Dlog.out(TAG, "My Caller has gone, callback unavailable", Dlog.w);
@@ -153,12 +220,29 @@ public class LocationAsyncTask extends AsyncTask<String, Void, String> {
         super.onCancelled();
 
         Dlog.out(TAG, "LOCATION async task has been cancelled.", Dlog.w);
+        cancelTimeout();
+        // doInBackground detaches too. leave here again in case it has never run.
+        stopLocationUpdates();
+        if (timedOut) {
+            TIMEOUTS.inc();
+        } else {
+            CANCELS.inc();
+        }
     }
 
     public void executeAsyncTask(String... strings) {
 
-        // Add CountDownTimer to asyncTask
-        new AsyncTaskCancelTimer(this, timeoutValue, timeoutCheckInterval, true).start();
+        // cancel me at deadline, when still running (or waiting for executor).
+        mTimeout = TimeoutWheel.getDefault().schedule(new Runnable() {
+            @Override
+            public void run() {
+                if (getStatus() != Status.FINISHED && !isCancelled()) {
+                    Dlog.out(TAG, "LOCATION : timeout, cancelling task", Dlog.w);
+                    timedOut = true;
+                    cancel(true);
+                }
+            }
+        }, timeoutValue, TimeUnit.MILLISECONDS);
 
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
             this.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR, strings);
@@ -174,255 +258,48 @@ public class LocationAsyncTask extends AsyncTask<String, Void, String> {
 	// ********************************************************************************************
 	*/
 
+    /**
+     * Attach to process-wide LocationHub instead of running my own fused location session.
+     * @see LocationHub
+     */
     private void initLocationUpdate() {
 
         Dlog.out(TAG, "LOCATION. FN_initLocationUpdate", Dlog.i);
 
-        // Check Base Guys.
-
-        if (fusedLocationClient == null) {
-            initFusedLocationClient();
+        if (mHubWaiter == null) {
+            createHubWaiter();
         }
 
-        if (mLocationCallback == null) {
-            createLocationCallback();
-        }
-
-        if (mLocationRequest == null) {
-            createLocationRequest();
-        }
-
-    }
-
-    /**
-     * Source comes from Google developers site <br>
-     * @see <a href="https://developer.android.com/training/location/retrieve-current">Google Link</a>
-     * @since 2019 Mar 26
-     * @author boss0430
-     */
-    private void initFusedLocationClient() {
-
-        Dlog.out(TAG, "LOCATION. FN_initFusedLocationClient", Dlog.i);
-
-        fusedLocationClient = LocationServices.getFusedLocationProviderClient(mContext);
-
-        if (ActivityCompat.checkSelfPermission(mContext, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED
-                && ActivityCompat.checkSelfPermission(mContext, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
-            //    ActivityCompat#requestPermissions
-            // here to request the missing permissions, and then overriding
-            //   public void onRequestPermissionsResult(int requestCode, String[] permissions,
-            //                                          int[] grantResults)
-            // to handle the case where the user grants the permission. See the documentation
-            // for ActivityCompat#requestPermissions for more details.
-            Dlog.out(TAG, "Getting Location has failed because permission not granted", Dlog.e);
-            return;
-        }
-
-        fusedLocationClient.getLastLocation().addOnSuccessListener(new OnSuccessListener<Location>() {
-            @Override
-            public void onSuccess(Location location) {
-                Dlog.out(TAG, "LOCATION : fusedLocationClient has got last location successfully.", Dlog.d);
-                Dlog.out(TAG, "LOCATION : result location (may can be null) : " + location, Dlog.i);
-
-                // Got Last Known location. In some rare situations this can be null.
-                if (location != null) {
-                    // Logic to handle location object
-                    Dlog.out(TAG, "LOCATION : lastLocationLatitude : " + location.getLatitude(), Dlog.i);
-                    Dlog.out(TAG, "LOCATION : lastLocationLongitude : " + location.getLongitude(), Dlog.i);
-
-
-                    if (useLastLocation) {
-                        mResult = location.getLatitude() + separator + location.getLongitude();
-                        Dlog.out(TAG, "LOCATION : mResult has been set to : " + mResult + " in getLastLocation", Dlog.i);
-                    }
-                }
-            }
-        });
-
+        getHub().attach(mContext, mHubWaiter, lastLocationPolicy);
     }
 
-    /**
-     * Source comes from Google developers site <br>
-     * @see <a href="https://developer.android.com/training/location/receive-location-updates">Google Link</a>
-     * @since 2019 Mar 26
-     * @author boss0430
-     */
-    private void createLocationCallback() {
-
-        Dlog.out(TAG, "LOCATION. FN_createLocationCallback", Dlog.i);
+    private void createHubWaiter() {
 
-        mLocationCallback = new LocationCallback() {
+        mHubWaiter = new LocationHub.Waiter() {
             @Override
-            public void onLocationResult(LocationResult locationResult) {
-                // super.onLocationResult(locationResult);
-                if (locationResult == null) {
-                    Dlog.out(TAG, "LOCATION : location result of LocationCallback is null", Dlog.w);
-                    return;
-                }
-                for (Location location : locationResult.getLocations()) {
-                    // Handle location data
-                    Dlog.out(TAG, "LOCATION : Latitude of LocationCallback : " + location.getLatitude(), Dlog.i);
-                    Dlog.out(TAG, "LOCATION : Longitude of LocationCallback : " + location.getLongitude(), Dlog.i);
-                    mResult = location.getLatitude() + separator + location.getLongitude();
-                    Dlog.out(TAG, "mResult has been set to : " + mResult + " in locationCallback", Dlog.i);
+            public void onLocation(LocationFix fix) {
+                // wake up doInBackground.
+                if (mResultLatch.offer(fix)) {
+                    Dlog.out(TAG, "result has been set to : {}, {} from LocationHub", fix.getLatitude(), fix.getLongitude(), Dlog.i);
                 }
             }
-
-            @Override
-            public void onLocationAvailability(LocationAvailability locationAvailability) {
-                // super.onLocationAvailability(locationAvailability);
-                Dlog.out(TAG, "LOCATION : locationAvailability.isLocationAvailable:" + locationAvailability.isLocationAvailable(), Dlog.w);
-            }
         };
     }
 
-    /**
-     * Source comes from Google developers site <br>
-     * @see <a href="https://developer.android.com/training/location/change-location-settings.html#java">Google Link</a>
-     * @since 2019 Mar 26
-     * @author boss0430
-     */
-    private void createLocationRequest() {
-
-        Dlog.out(TAG, "LOCATION. FN_createLocationRequest", Dlog.i);
-
-        mLocationRequest = LocationRequest.create();
-        mLocationRequest.setInterval(1000);
-        mLocationRequest.setFastestInterval(500);
-        mLocationRequest.setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY);
-
-        LocationSettingsRequest.Builder builder = new LocationSettingsRequest.Builder().addLocationRequest(mLocationRequest);
-
-        SettingsClient client = LocationServices.getSettingsClient(mContext);
-        Task<LocationSettingsResponse> task = client.checkLocationSettings(builder.build());
-
-        task.addOnSuccessListener(new OnSuccessListener<LocationSettingsResponse>() {
-            @Override
-            public void onSuccess(LocationSettingsResponse locationSettingsResponse) {
-                Dlog.out(TAG, "LOCATION : All location settings are satisfied. The client can initialize", Dlog.d);
-
-                // location requests here.
-                startLocationUpdates();
-            }
-        });
-
-        task.addOnFailureListener(new OnFailureListener() {
-            @Override
-            public void onFailure(@NonNull Exception e) {
-                Dlog.out(TAG, "LOCATION : location settings failed", Dlog.d);
-            }
-        });
-
-        task.addOnCompleteListener(new OnCompleteListener<LocationSettingsResponse>() {
-            @Override
-            public void onComplete(@NonNull Task<LocationSettingsResponse> task) {
-                try {
-                    LocationSettingsResponse response = task.getResult(ApiException.class);
-                    Dlog.out(TAG, "LOCATION : (onComplete) All location settings are satisfied.response : " + response.toString(), Dlog.d);
-
-                } catch (ApiException e) {
-                    switch (e.getStatusCode()) {
-                        case LocationSettingsStatusCodes.RESOLUTION_REQUIRED:
-                            // Location settings are not satisfied. But could be fixed by showing to user a dialog.
-
-                            try {
-                                // cast to resolvable exception
-                                ResolvableApiException resolvable = (ResolvableApiException) e;
-                                // Show The Dialog by calling startResolutionForResult(),
-                                // and may check the result in onActivityResult..
-                                // but i'm asyncTask and don't want to handle onActivityResult > set requestCode to 0.
-                                resolvable.startResolutionForResult((Activity) mContext, 0);
-                            } catch (IntentSender.SendIntentException e1) {
-                                Dlog.out(TAG, "LOCATION : SendIntentException : " + e1.toString(), Dlog.e);
-                            } catch (ClassCastException e2) {
-                                Dlog.out(TAG, "LOCATION : ClassCastException : " + e2.toString(), Dlog.e);
-                            }
-                            break;
-                        case LocationSettingsStatusCodes.SETTINGS_CHANGE_UNAVAILABLE:
-                            // Location settings are not satisfied. However, we have no way to fix the
-                            // settings so we won't show the dialog.
-                            Dlog.out(TAG, "LOCATION : YOU CAN NOT ACCESS LOCATION INFORMATION with your configuration", Dlog.e);
-                            break;
-                    }
-                }
-            }
-        });
-    }
-
-    private void startLocationUpdates() {
-        if (ActivityCompat.checkSelfPermission(mContext, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED
-                && ActivityCompat.checkSelfPermission(mContext, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
-            //    ActivityCompat#requestPermissions
-            // here to request the missing permissions, and then overriding
-            //   public void onRequestPermissionsResult(int requestCode, String[] permissions,
-            //                                          int[] grantResults)
-            // to handle the case where the user grants the permission. See the documentation
-            // for ActivityCompat#requestPermissions for more details.
-            Dlog.out(TAG, "Start Location Updates has failed because permission not granted", Dlog.e);
-            return;
-        }
-
-        Dlog.out(TAG, "LOCATION : right b4 requestLocationUpdates", Dlog.i);
-        fusedLocationClient.requestLocationUpdates(mLocationRequest, mLocationCallback, null /*Looper*/);
-    }
     private void stopLocationUpdates() {
-        fusedLocationClient.removeLocationUpdates(mLocationCallback);
-    }
-
-
-    /*
-	// ********************************************************************************************
-	// Cancel async task by timer (when task running permanently)
-	// ********************************************************************************************
-	*/
-
-    /**
-     * Watch async task and cancel it when count down has finished.
-     * @see <a href="http://sjava.net/2015/03/asynctask%EC%97%90-%ED%83%80%EC%9E%84%EC%95%84%EC%9B%83timeout-%EC%B6%94%EA%B0%80%ED%95%98%EA%B8%B0/">source link</a><br>
-     * @author boss0430
-     * @since 2017 Mar 08
-     */
-    private static class AsyncTaskCancelTimer extends CountDownTimer {
-
-        private AsyncTask asyncTask;
-        private boolean interrupt;
-
-        private AsyncTaskCancelTimer(AsyncTask asyncTask, long startTime, long interval, boolean interrupt) {
-            super(startTime, interval);
-            this.asyncTask = asyncTask;
-            this.interrupt = interrupt;
-        }
-
-        @Override
-        public void onTick(long millisUntilFinished) {
-            if (asyncTask == null) {
-                this.cancel();
-                return;
-            }
-
-            if (asyncTask.isCancelled())
-                this.cancel();
-
-            if (asyncTask.getStatus() == Status.FINISHED)
-                this.cancel();
+        if (mHubWaiter != null) {
+            getHub().detach(mHubWaiter);
         }
+    }
 
-        @Override
-        public void onFinish() {
-            if (asyncTask == null || asyncTask.isCancelled())
-                return;
-
-            try {
-                if (asyncTask.getStatus() == Status.FINISHED)
-                    return;
-
-                if (asyncTask.getStatus() == Status.PENDING || asyncTask.getStatus() == Status.RUNNING) {
+    private LocationHub getHub() {
+        return mHub != null ? mHub : LocationHub.getInstance(mContext);
+    }
 
-                    asyncTask.cancel(interrupt);
-                }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    private void cancelTimeout() {
+        final TimeoutWheel.Timeout timeout = mTimeout;
+        if (timeout != null) {
+            timeout.cancel();
         }
     }
 
@@ -0,0 +1,111 @@
+package com.boss0430.bosslib.location;
+
+/**
+ * Fixes of one delivery, as contiguous primitive columns.
+ * <br><br>
+ * - Arrays are longer than size. only index 0 to size - 1 is valid.<br>
+ * - Owned by LocationBatcher and reused. valid only inside Consumer.onBatch. copy what you keep. (copyOf)
+ * @see LocationBatcher
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public final class LocationBatch {
+
+    final long[] times;
+    final double[] latitudes;
+    final double[] longitudes;
+    final float[] accuracies;
+    int size;
+
+    /**
+     * @param _capacity max fixes in batch.
+     */
+    public LocationBatch(int _capacity) {
+        if (_capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive : " + _capacity);
+        }
+        times = new long[_capacity];
+        latitudes = new double[_capacity];
+        longitudes = new double[_capacity];
+        accuracies = new float[_capacity];
+    }
+
+    /**
+     * Append a fix.
+     * @return false when batch is full. (nothing is added)
+     */
+    boolean add(long _time, double _latitude, double _longitude, float _accuracy) {
+        if (size == times.length) {
+            return false;
+        }
+        times[size] = _time;
+        latitudes[size] = _latitude;
+        longitudes[size] = _longitude;
+        accuracies[size] = _accuracy;
+        size++;
+        return true;
+    }
+
+    void clear() {
+        size = 0;
+    }
+
+    public int size() { return size; }
+
+    public int capacity() { return times.length; }
+
+    public boolean isFull() { return size == times.length; }
+
+    /** @return epoch millis of fixes. */
+    public long[] getTimes() { return times; }
+
+    public double[] getLatitudes() { return latitudes; }
+
+    public double[] getLongitudes() { return longitudes; }
+
+    /** @return accuracy radius in meters. negative when unknown. */
+    public float[] getAccuracies() { return accuracies; }
+
+    /**
+     * @return time of first fix. 0 when empty.
+     */
+    public long getFirstTime() {
+        return size == 0 ? 0 : times[0];
+    }
+
+    /**
+     * @return time of last fix. 0 when empty.
+     */
+    public long getLastTime() {
+        return size == 0 ? 0 : times[size - 1];
+    }
+
+    /**
+     * @param _index 0 to size - 1.
+     * @return LocationFix of the fix. speed and bearing are unknown.
+     */
+    public LocationFix getFix(int _index) {
+        if (_index < 0 || _index >= size) {
+            throw new IndexOutOfBoundsException("index " + _index + ", size " + size);
+        }
+        return new LocationFix(latitudes[_index], longitudes[_index], accuracies[_index], times[_index], -1, -1);
+    }
+
+    /**
+     * @return copy of this batch, sized to fit. safe to keep.
+     */
+    public LocationBatch copyOf() {
+        LocationBatch copy = new LocationBatch(Math.max(size, 1));
+        System.arraycopy(times, 0, copy.times, 0, size);
+        System.arraycopy(latitudes, 0, copy.latitudes, 0, size);
+        System.arraycopy(longitudes, 0, copy.longitudes, 0, size);
+        System.arraycopy(accuracies, 0, copy.accuracies, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return "LocationBatch[" + size + " fixes, " + getFirstTime() + " ~ " + getLastTime() + "]";
+    }
+}
@@ -0,0 +1,280 @@
+package com.boss0430.bosslib.location;
+
+import com.boss0430.bosslib.utils.Dlog;
+import com.boss0430.bosslib.utils.TimeoutWheel;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects fixes into LocationBatch, and hands consumer one batch at a time instead of one callback per fix.
+ * <br><br>
+ * - Batch is delivered when it is full (batch size), when the oldest fix in it has waited max latency,
+ *   or at end of one delivery of source. (onBatchEnd)<br>
+ * - As BatchListener, asks source for max-wait buffering of max latency. fused provider then wakes the app
+ *   about once per max latency, with all fixes since the last wakeup.<br>
+ * - Two batches are swapped and reused. nothing is allocated per fix after start. (except LocationFix of source)<br>
+ * - Consumer is invoked on thread of source, or on flush executor for latency. one batch at a time.<br>
+ *   (never on TimeoutWheel thread : slow consumer like LocationHistoryStore would delay every other timeout)<br>
+ * <br>
+ * Usage<br>
+ * 1. LocationBatcher batcher = new LocationBatcher(64, 60000, consumer);<br>
+ * 2. batcher.start(new FusedLocationSource(context), 1000, LocationSource.PRIORITY_BALANCED_POWER_ACCURACY);<br>
+ * 3. batcher.stop(); delivers what is left.
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public final class LocationBatcher implements LocationSource.BatchListener, LocationStream.Subscriber {
+
+    /**
+     * Receives batches.
+     */
+    public interface Consumer {
+
+        /**
+         * @param batch fixes in time order. reused after return. (LocationBatch.copyOf to keep)
+         */
+        void onBatch(LocationBatch batch);
+    }
+
+    private final static String TAG = "LocationBatcher";
+
+    // latency flushes of every batcher without own executor. one at a time is enough.
+    private static final ExecutorService FLUSHER = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable _runnable) {
+            Thread thread = new Thread(_runnable, "LocationBatcher-flush");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final long maxLatencyMillis;
+    private final Consumer mConsumer;
+    private final TimeoutWheel mWheel;
+    private final Executor mFlushExecutor;
+
+    // guarded by this.
+    private LocationBatch mFilling;
+    private LocationBatch mSpare;
+    private TimeoutWheel.Timeout mDeadline;
+    private LocationSource mSource;
+    private long fixCount = 0;
+    private long batchCount = 0;
+
+    // one delivery at a time. taken before this, never inside it.
+    private final Object mDeliverLock = new Object();
+    private boolean delivering = false;
+
+    private final Runnable mFlushTask = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    // on wheel thread. only hands flush over.
+    private final Runnable mDeadlineTask = new Runnable() {
+        @Override
+        public void run() {
+            mFlushExecutor.execute(mFlushTask);
+        }
+    };
+
+    /**
+     * Constructor.
+     * @param _batchSize max fixes in one batch.
+     * @param _maxLatencyMillis max time a fix waits before delivered. 0 for no limit. (size and onBatchEnd only)
+     * @param _consumer receives batches.
+     */
+    public LocationBatcher(int _batchSize, long _maxLatencyMillis, Consumer _consumer) {
+        this(_batchSize, _maxLatencyMillis, _consumer, FLUSHER);
+    }
+
+    /**
+     * Constructor with own executor for latency flushes.
+     * @param _batchSize max fixes in one batch.
+     * @param _maxLatencyMillis max time a fix waits before delivered. 0 for no limit. (size and onBatchEnd only)
+     * @param _consumer receives batches.
+     * @param _flushExecutor runs latency flushes, so consumer is invoked there.
+     */
+    public LocationBatcher(int _batchSize, long _maxLatencyMillis, Consumer _consumer, Executor _flushExecutor) {
+        this(_batchSize, _maxLatencyMillis, _consumer, TimeoutWheel.getDefault(), _flushExecutor);
+    }
+
+    LocationBatcher(int _batchSize, long _maxLatencyMillis, Consumer _consumer, TimeoutWheel _wheel, Executor _flushExecutor) {
+        if (_batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be positive : " + _batchSize);
+        }
+        if (_maxLatencyMillis < 0) {
+            throw new IllegalArgumentException("max latency must not be negative : " + _maxLatencyMillis);
+        }
+        this.maxLatencyMillis = _maxLatencyMillis;
+        this.mConsumer = _consumer;
+        this.mWheel = _wheel;
+        this.mFlushExecutor = _flushExecutor;
+        this.mFilling = new LocationBatch(_batchSize);
+        this.mSpare = new LocationBatch(_batchSize);
+    }
+
+    /*
+	// ********************************************************************************************
+	// Source
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Start updates of _source into this batcher. running updates of other source are stopped.
+     * @param _source source. fused source buffers fixes up to max latency when it is 2 intervals or more.
+     * @param _intervalMillis wanted interval of fixes.
+     * @param _priority LocationSource.PRIORITY_XXX.
+     */
+    public void start(LocationSource _source, long _intervalMillis, int _priority) {
+        LocationSource previous;
+        synchronized (this) {
+            previous = mSource;
+            mSource = _source;
+        }
+        if (previous != null && previous != _source) {
+            previous.removeUpdates(this);
+        }
+        Dlog.out(TAG, "LOCATION : batched updates, interval {}, max wait {}", _intervalMillis, maxLatencyMillis, Dlog.i);
+        _source.requestUpdates(_intervalMillis, _intervalMillis, _priority, this);
+    }
+
+    /**
+     * Stop updates, and deliver fixes left.
+     */
+    public void stop() {
+        LocationSource source;
+        synchronized (this) {
+            source = mSource;
+            mSource = null;
+        }
+        if (source != null) {
+            source.removeUpdates(this);
+        }
+        flush();
+    }
+
+    @Override
+    public long getMaxWaitMillis() {
+        return maxLatencyMillis;
+    }
+
+    @Override
+    public void onLocation(LocationFix fix) {
+        onFix(fix);
+    }
+
+    @Override
+    public void onFix(LocationFix fix) {
+        add(fix.getTime(), fix.getLatitude(), fix.getLongitude(), fix.getAccuracy());
+    }
+
+    @Override
+    public void onBatchEnd() {
+        flush();
+    }
+
+    /*
+	// ********************************************************************************************
+	// Batching
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Add a fix. batch is delivered on this thread when it becomes full.
+     * @param _time epoch millis.
+     * @param _latitude latitude.
+     * @param _longitude longitude.
+     * @param _accuracy accuracy radius in meters. negative when unknown.
+     */
+    public void add(long _time, double _latitude, double _longitude, float _accuracy) {
+        while (true) {
+            boolean full;
+            synchronized (this) {
+                if (mFilling.add(_time, _latitude, _longitude, _accuracy)) {
+                    fixCount++;
+                    if (mFilling.size == 1 && maxLatencyMillis > 0) {
+                        mDeadline = mWheel.schedule(mDeadlineTask, maxLatencyMillis, TimeUnit.MILLISECONDS);
+                    }
+                    full = mFilling.isFull();
+                    if (!full) {
+                        return;
+                    }
+                } else if (Thread.holdsLock(mDeliverLock)) {
+                    // added from consumer into full batch. flush can not run here.
+                    Dlog.out(TAG, "LOCATION : batch full while delivering, fix dropped", Dlog.w);
+                    return;
+                } else {
+                    // filled by other thread, not delivered yet.
+                    full = false;
+                }
+            }
+            flush();
+            if (full) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Deliver fixes collected so far. nothing happens when there is none.
+     */
+    public void flush() {
+        synchronized (mDeliverLock) {
+            if (delivering) {
+                // consumer called back. the batch in its hands is not ours to swap.
+                return;
+            }
+            LocationBatch full;
+            synchronized (this) {
+                if (mFilling.size == 0) {
+                    return;
+                }
+                if (mDeadline != null) {
+                    mDeadline.cancel();
+                    mDeadline = null;
+                }
+                full = mFilling;
+                mFilling = mSpare;
+                mSpare = full;
+                batchCount++;
+            }
+            delivering = true;
+            try {
+                mConsumer.onBatch(full);
+            } catch (RuntimeException e) {
+                Dlog.out(TAG, "LOCATION : consumer threw exception : {}", e, Dlog.e);
+            } finally {
+                delivering = false;
+                // cleared before next swap can hand it out again.
+                full.clear();
+            }
+        }
+    }
+
+    /**
+     * @return fixes waiting for delivery.
+     */
+    public synchronized int getPendingCount() {
+        return mFilling.size;
+    }
+
+    public synchronized long getFixCount() {
+        return fixCount;
+    }
+
+    public synchronized long getBatchCount() {
+        return batchCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "LocationBatcher[" + fixCount + " fixes in " + batchCount + " batches, pending " + mFilling.size + "]";
+    }
+}
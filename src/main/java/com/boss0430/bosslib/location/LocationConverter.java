@@ -3,16 +3,28 @@ package com.boss0430.bosslib.location;
 import android.content.Context;
 import android.location.Address;
 import android.location.Geocoder;
+import android.os.AsyncTask;
 
 import com.boss0430.bosslib.utils.Dlog;
+import com.boss0430.bosslib.utils.Histogram;
+import com.boss0430.bosslib.utils.Metrics;
+import com.boss0430.bosslib.utils.SingleFlight;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 
 /**
  * Location Coverter.
- * Use with this phase. LocationAsyncTask > LocationTaskInformer > onTaskDone.result
+ * Use with this phase. LocationAsyncTask > LocationFixInformer > onFixDone.fix > getAddressFromFix
+ * <br><br>
+ * - Concurrent lookups of same place (same cell of coalesce degrees, same locale) run Geocoder once, over every converter.<br>
+ * - One Geocoder per locale is reused by every converter.
  * @since 2019 Mar 27
  * @author boss0430
  */
@@ -23,8 +35,72 @@ public class LocationConverter {
 
     private String separator = "|";
 
+    // null means no cache.
+    private GeocodeCache mAddressCache;
+
+    // latest address is recorded here, for provisional address at cold start.
+    private LastLocationStore mStore;
+
+    // when set, used instead of android Geocoder.
+    private OfflineGeocoder mOfflineGeocoder;
+
+    // batch geocoding.
+    private Executor mBatchExecutor = AsyncTask.THREAD_POOL_EXECUTOR;
+    private int batchConcurrency = BatchGeocoder.DEFAULT_CONCURRENCY;
+    private double batchDedupeDegrees = BatchGeocoder.DEFAULT_DEDUPE_DEGREES;
+
+    // lookups closer than this share one running lookup.
+    private double coalesceDegrees = BatchGeocoder.DEFAULT_DEDUPE_DEGREES;
+
     private final String TAG = "LocationConverter";
 
+    private static final Histogram GEOCODE_LATENCY = Metrics.histogram(Metrics.GEOCODE_LATENCY_US);
+    private static final Metrics.Counter GEOCODE_FAILURES = Metrics.counter(Metrics.GEOCODE_FAILURE);
+    private static final Metrics.Counter CACHE_HITS = Metrics.counter(Metrics.GEOCODE_CACHE_HIT);
+    private static final Metrics.Counter CACHE_MISSES = Metrics.counter(Metrics.GEOCODE_CACHE_MISS);
+
+    // process-wide, so lookups of different converters are coalesced too.
+    private static final SingleFlight<FlightKey, String> FLIGHTS =
+            new SingleFlight<>(Metrics.counter(Metrics.GEOCODE_COALESCED));
+
+    // Geocoder keeps no state between calls. one per locale, on application context.
+    private static final ConcurrentHashMap<Locale, Geocoder> GEOCODERS = new ConcurrentHashMap<>();
+
+    /**
+     * Key of running lookup. backend is OfflineGeocoder, or null for android Geocoder.
+     */
+    private static final class FlightKey {
+        final long latCell;
+        final long lonCell;
+        final Locale locale;
+        final Object backend;
+
+        FlightKey(long latCell, long lonCell, Locale locale, Object backend) {
+            this.latCell = latCell;
+            this.lonCell = lonCell;
+            this.locale = locale;
+            this.backend = backend;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FlightKey)) {
+                return false;
+            }
+            FlightKey other = (FlightKey) o;
+            return latCell == other.latCell && lonCell == other.lonCell
+                    && locale.equals(other.locale) && backend == other.backend;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = (int) (latCell ^ (latCell >>> 32));
+            result = 31 * result + (int) (lonCell ^ (lonCell >>> 32));
+            result = 31 * result + locale.hashCode();
+            return 31 * result + System.identityHashCode(backend);
+        }
+    }
+
     /**
      * Default Constructor. locale will be set to default (KOREA)
      * @param _context
@@ -59,14 +135,118 @@ public class LocationConverter {
         this.separator = _separator;
     }
 
+    /**
+     * Set cache of addresses. nearby coordinates will return cached address without Geocoder.
+     * Same cache can be shared by several converters.
+     * @param _cache GeocodeCache. null to disable cache.
+     */
+    public void setAddressCache(GeocodeCache _cache) {
+        this.mAddressCache = _cache;
+    }
+
+    /**
+     * @return cache of addresses, or null when not set.
+     */
+    public GeocodeCache getAddressCache() {
+        return mAddressCache;
+    }
+
+    /**
+     * Record latest resolved address to _store, so it can be shown at once after restart.
+     * @param _store LastLocationStore. null to stop recording.
+     */
+    public void setLastLocationStore(LastLocationStore _store) {
+        this.mStore = _store;
+    }
+
+    /**
+     * Latest address recorded in store, in current locale. good for showing something at cold start
+     * till real lookup has done.
+     * @return address. empty string when there is none (or no store).
+     */
+    public String getProvisionalAddress() {
+        final LastLocationStore store = mStore;
+        if (store == null) {
+            return "";
+        }
+        if (mLocale == null) mLocale = Locale.KOREA;
+        LastLocationStore.StoredAddress stored = store.readAddress(mLocale);
+        return stored != null ? stored.getAddress() : "";
+    }
+
+    /**
+     * Use local gazetteer instead of android Geocoder. works without network.
+     * @param _geocoder OfflineGeocoder. null to use android Geocoder again.
+     */
+    public void setOfflineGeocoder(OfflineGeocoder _geocoder) {
+        this.mOfflineGeocoder = _geocoder;
+    }
+
+    /**
+     * Set executor of batch geocoding. default is AsyncTask.THREAD_POOL_EXECUTOR.
+     * @param _executor executor.
+     */
+    public void setBatchExecutor(Executor _executor) {
+        this.mBatchExecutor = _executor;
+    }
+
+    /**
+     * Set max count of Geocoder lookups running at the same time in batch geocoding.
+     * @param _concurrency default is 4.
+     */
+    public void setBatchConcurrency(int _concurrency) {
+        this.batchConcurrency = _concurrency;
+    }
+
+    /**
+     * Points closer than this (same cell) are geocoded once in batch geocoding.
+     * @param _dedupeDegrees cell size in degree. default is 0.000001 (about 10cm).
+     */
+    public void setBatchDedupeDegrees(double _dedupeDegrees) {
+        this.batchDedupeDegrees = _dedupeDegrees;
+    }
+
+    /**
+     * Concurrent lookups closer than this (same cell) share one Geocoder call.
+     * @param _coalesceDegrees cell size in degree. default is 0.000001 (about 10cm). 0 or less coalesces exact same coordinates only.
+     */
+    public void setCoalesceDegrees(double _coalesceDegrees) {
+        this.coalesceDegrees = _coalesceDegrees;
+    }
+
+    /**
+     * Get Address from result of LocationAsyncTask.
+     * @param _fix LocationFix from LocationFixInformer.
+     * @return address. empty string when not found.
+     */
+    public String getAddressFromFix(LocationFix _fix) {
+        return getAddressFromCoordinates(_fix.getLatitude(), _fix.getLongitude());
+    }
+
+    /**
+     * Get addresses of many fixes. blocks till every address is resolved, so do not call on main thread.
+     * @param _fixes fixes.
+     * @return addresses in input order. empty string for not found (or interrupted) ones.
+     */
+    public String[] getAddressesFromFixes(LocationFix[] _fixes) {
+        double[] latitudes = new double[_fixes.length];
+        double[] longitudes = new double[_fixes.length];
+        for (int n = 0; n < _fixes.length; n++) {
+            latitudes[n] = _fixes[n].getLatitude();
+            longitudes[n] = _fixes[n].getLongitude();
+        }
+        return getAddressesFromCoordinates(latitudes, longitudes);
+    }
+
     /**
      * Get Address from result string of LocationAsyncTask. Just pass result as it was.
+     * kept for LocationTaskInformer callers. use getAddressFromFix with LocationFixInformer.
      * @param _locationAsyncTaskResult
      * @return
      */
     public String getAddressFromResult(String _locationAsyncTaskResult) {
 
-        Dlog.out(TAG, "LOCATION. FN_getAddressFromResult.input : " + _locationAsyncTaskResult, Dlog.d);
+        Dlog.out(TAG, "LOCATION. FN_getAddressFromResult.input : {}", _locationAsyncTaskResult, Dlog.d);
 
         String rtnStr = "";
         String[] separated  = _locationAsyncTaskResult.split("\\" + separator);
@@ -79,8 +259,8 @@ public class LocationConverter {
                 double latitude = Double.parseDouble(separated[0]);
                 double longitude = Double.parseDouble(separated[1]);
 
-                Dlog.out(TAG, "LOCATION : latitude(double):" + latitude, Dlog.i);
-                Dlog.out(TAG, "LOCATION : longitude(double):" + longitude, Dlog.i);
+                Dlog.out(TAG, "LOCATION : latitude(double):{}", latitude, Dlog.i);
+                Dlog.out(TAG, "LOCATION : longitude(double):{}", longitude, Dlog.i);
 
                 rtnStr = getAddressFromCoordinates(latitude, longitude);
             } catch (Exception e) {
@@ -105,10 +285,83 @@ public class LocationConverter {
         String rtnAddress = "";
 
         if (mLocale == null) mLocale = Locale.KOREA;
-        Geocoder gc = new Geocoder(mContext, mLocale);
+
+        final GeocodeCache cache = mAddressCache;
+        if (cache != null) {
+            String cached = cache.get(latitude, longitude, mLocale);
+            if (cached != null) {
+                Dlog.out(TAG, "LOCATION : address from cache", Dlog.d);
+                CACHE_HITS.inc();
+                return cached;
+            }
+            CACHE_MISSES.inc();
+        }
+
+        final Locale locale = mLocale;
+        final OfflineGeocoder offlineGeocoder = mOfflineGeocoder;
+        final double lat = latitude;
+        final double lon = longitude;
+
+        try {
+            return FLIGHTS.execute(flightKey(latitude, longitude, locale, offlineGeocoder), new Callable<String>() {
+                @Override
+                public String call() {
+                    return lookup(lat, lon, locale, offlineGeocoder, cache);
+                }
+            });
+        } catch (ExecutionException e) {
+            Dlog.out(TAG, "LOCATION : lookup failed : {}", e.getCause(), Dlog.e);
+        } catch (InterruptedException e) {
+            Dlog.out(TAG, "LOCATION : interrupted while waiting for same lookup", Dlog.w);
+            Thread.currentThread().interrupt();
+        }
+
+        return rtnAddress;
+    }
+
+    private FlightKey flightKey(double latitude, double longitude, Locale locale, Object backend) {
+        double degrees = coalesceDegrees;
+        if (degrees > 0) {
+            return new FlightKey((long) Math.floor(latitude / degrees), (long) Math.floor(longitude / degrees), locale, backend);
+        }
+        return new FlightKey(Double.doubleToLongBits(latitude), Double.doubleToLongBits(longitude), locale, backend);
+    }
+
+    private Geocoder geocoderOf(Locale locale) {
+        Geocoder gc = GEOCODERS.get(locale);
+        if (gc == null) {
+            Context appContext = mContext.getApplicationContext() != null ? mContext.getApplicationContext() : mContext;
+            Geocoder created = new Geocoder(appContext, locale);
+            gc = GEOCODERS.putIfAbsent(locale, created);
+            if (gc == null) {
+                gc = created;
+            }
+        }
+        return gc;
+    }
+
+    // one real lookup. runs once for all concurrent callers of same place.
+    private String lookup(double latitude, double longitude, Locale locale, OfflineGeocoder offlineGeocoder, GeocodeCache cache) {
+
+        String rtnAddress = "";
+
+        final long startNanos = System.nanoTime();
+
+        if (offlineGeocoder != null) {
+            rtnAddress = offlineGeocoder.getAddress(latitude, longitude);
+            Metrics.record(GEOCODE_LATENCY, (System.nanoTime() - startNanos) / 1000);
+            if (cache != null) {
+                cache.put(latitude, longitude, locale, rtnAddress);
+            }
+            storeAddress(latitude, longitude, locale, rtnAddress);
+            return rtnAddress;
+        }
+
+        Geocoder gc = geocoderOf(locale);
 
         try {
             List<Address> addressList = gc.getFromLocation(latitude, longitude, 1);
+            Metrics.record(GEOCODE_LATENCY, (System.nanoTime() - startNanos) / 1000);
 
             if (addressList.size() > 0) {
                 String countryCode = addressList.get(0).getCountryCode();
@@ -116,7 +369,7 @@ public class LocationConverter {
 
                 // erase nation info from address when locale is Korea.
                 String address = addressList.get(0).getAddressLine(0);
-                if (mLocale == Locale.KOREA) {
+                if (locale == Locale.KOREA) {
                     address = address.replace("대한민국", "")
                             .replace("대한 민국", "")
                             .replace("남한", "");
@@ -128,11 +381,71 @@ public class LocationConverter {
 
             }
 
+            // lookup has succeeded (even empty one). failed lookups are not cached.
+            if (cache != null) {
+                cache.put(latitude, longitude, locale, rtnAddress);
+            }
+            storeAddress(latitude, longitude, locale, rtnAddress);
+
         } catch (IOException e) {
+            GEOCODE_FAILURES.inc();
             Dlog.out(TAG, "LOCATION : get location failed : " + e, Dlog.e);
         }
 
         return rtnAddress;
     }
 
+    private void storeAddress(double latitude, double longitude, Locale locale, String address) {
+        final LastLocationStore store = mStore;
+        if (store != null && address.length() > 0) {
+            store.writeAddress(latitude, longitude, locale, address);
+        }
+    }
+
+    /**
+     * Get addresses of many coordinates. blocks till every address is resolved, so do not call on main thread.
+     * @param latitudes latitudes.
+     * @param longitudes longitudes. same length as latitudes.
+     * @return addresses in input order. empty string for not found (or interrupted) ones.
+     */
+    public String[] getAddressesFromCoordinates(double[] latitudes, double[] longitudes) {
+
+        Dlog.out(TAG, "LOCATION. FN_getAddressesFromCoordinates.count : {}", latitudes.length, Dlog.d);
+
+        BatchGeocoder.Batch batch = createBatchGeocoder().geocodeAsync(latitudes, longitudes, null);
+        try {
+            return batch.await();
+        } catch (InterruptedException e) {
+            Dlog.out(TAG, "LOCATION : batch geocoding interrupted", Dlog.w);
+            batch.cancel();
+            Thread.currentThread().interrupt();
+            String[] rtnArr = new String[latitudes.length];
+            Arrays.fill(rtnArr, "");
+            return rtnArr;
+        }
+    }
+
+    /**
+     * Get addresses of many coordinates without blocking. addresses are streamed to listener as they complete.
+     * @param latitudes latitudes.
+     * @param longitudes longitudes. same length as latitudes.
+     * @param _listener invoked on worker threads.
+     * @return handle of batch. you can cancel or await it.
+     */
+    public BatchGeocoder.Batch getAddressesFromCoordinates(double[] latitudes, double[] longitudes, BatchGeocoder.Listener _listener) {
+
+        Dlog.out(TAG, "LOCATION. FN_getAddressesFromCoordinates(async).count : {}", latitudes.length, Dlog.d);
+
+        return createBatchGeocoder().geocodeAsync(latitudes, longitudes, _listener);
+    }
+
+    private BatchGeocoder createBatchGeocoder() {
+        return new BatchGeocoder(new BatchGeocoder.Lookup() {
+            @Override
+            public String lookup(double latitude, double longitude) {
+                return getAddressFromCoordinates(latitude, longitude);
+            }
+        }, mBatchExecutor, batchConcurrency, batchDedupeDegrees);
+    }
+
 }
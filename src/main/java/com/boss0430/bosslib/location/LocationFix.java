@@ -0,0 +1,107 @@
+package com.boss0430.bosslib.location;
+
+import android.location.Location;
+
+/**
+ * Immutable location result of primitive fields. used instead of "latitude|longitude" string.
+ * <br><br>
+ * Accuracy, speed and bearing are negative when unknown. (check with hasXXX)<br>
+ * toResultString makes old string form, for callers not moved yet.
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public final class LocationFix {
+
+    private final double latitude;
+    private final double longitude;
+    private final float accuracy;
+    private final long time;
+    private final float speed;
+    private final float bearing;
+
+    /**
+     * Constructor.
+     * @param _latitude latitude.
+     * @param _longitude longitude.
+     * @param _accuracy accuracy radius (m). negative when unknown.
+     * @param _time wall clock time of fix. (millis)
+     * @param _speed speed (m/s). negative when unknown.
+     * @param _bearing bearing (degree). negative when unknown.
+     */
+    public LocationFix(double _latitude, double _longitude, float _accuracy, long _time, float _speed, float _bearing) {
+        this.latitude = _latitude;
+        this.longitude = _longitude;
+        this.accuracy = _accuracy;
+        this.time = _time;
+        this.speed = _speed;
+        this.bearing = _bearing;
+    }
+
+    /**
+     * @param _location android location.
+     * @return LocationFix of same values.
+     */
+    public static LocationFix from(Location _location) {
+        return new LocationFix(_location.getLatitude(), _location.getLongitude(),
+                _location.hasAccuracy() ? _location.getAccuracy() : -1,
+                _location.getTime(),
+                _location.hasSpeed() ? _location.getSpeed() : -1,
+                _location.hasBearing() ? _location.getBearing() : -1);
+    }
+
+    public double getLatitude() { return latitude; }
+
+    public double getLongitude() { return longitude; }
+
+    public float getAccuracy() { return accuracy; }
+
+    public long getTime() { return time; }
+
+    public float getSpeed() { return speed; }
+
+    public float getBearing() { return bearing; }
+
+    public boolean hasAccuracy() { return accuracy >= 0; }
+
+    public boolean hasSpeed() { return speed >= 0; }
+
+    public boolean hasBearing() { return bearing >= 0; }
+
+    /**
+     * Old result form of LocationAsyncTask.
+     * @param _separator separator between latitude and longitude.
+     * @return "latitude{separator}longitude"
+     */
+    public String toResultString(String _separator) {
+        return latitude + _separator + longitude;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof LocationFix)) return false;
+        LocationFix other = (LocationFix) o;
+        return Double.compare(latitude, other.latitude) == 0
+                && Double.compare(longitude, other.longitude) == 0
+                && Float.compare(accuracy, other.accuracy) == 0
+                && time == other.time
+                && Float.compare(speed, other.speed) == 0
+                && Float.compare(bearing, other.bearing) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        long bits = Double.doubleToLongBits(latitude) * 31 + Double.doubleToLongBits(longitude);
+        bits = bits * 31 + Float.floatToIntBits(accuracy);
+        bits = bits * 31 + time;
+        bits = bits * 31 + Float.floatToIntBits(speed);
+        bits = bits * 31 + Float.floatToIntBits(bearing);
+        return (int) (bits ^ (bits >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return "LocationFix[" + latitude + "," + longitude + " acc=" + accuracy + " t=" + time
+                + " speed=" + speed + " bearing=" + bearing + "]";
+    }
+}
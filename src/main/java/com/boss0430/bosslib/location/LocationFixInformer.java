@@ -0,0 +1,11 @@
+package com.boss0430.bosslib.location;
+
+public interface LocationFixInformer {
+
+    /**
+     * Invoked in 'onPostExecute' in LocationAsyncTask.
+     * implements in your caller. replaces LocationTaskInformer, which gets "latitude|longitude" string.
+     * @param fix location result. never null.
+     */
+    void onFixDone(LocationFix fix);
+}
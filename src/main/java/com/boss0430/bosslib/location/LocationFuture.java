@@ -0,0 +1,306 @@
+package com.boss0430.bosslib.location;
+
+import com.boss0430.bosslib.utils.Dlog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Result of a location lookup, completed once. (CompletableFuture needs API 24, this runs on API 16)
+ * <br><br>
+ * - get / get with timeout to wait, or addCallback to be told.<br>
+ * - then chains next step (ex. reverse geocoding) on given executor. cancel of chained future cancels this one too.<br>
+ * - cancel runs cancel action right away. for lookups it leaves the location session.<br>
+ * @param <V> result type.
+ * @see LocationLookup
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public class LocationFuture<V> implements Future<V> {
+
+    /**
+     * Receives result.
+     * @param <V> result type.
+     */
+    public interface Callback<V> {
+
+        void onSuccess(V value);
+
+        /**
+         * @param error TimeoutException when lookup timed out, CancellationException when cancelled,
+         *              or what a chained step has thrown.
+         */
+        void onFailure(Throwable error);
+    }
+
+    /**
+     * Next step of then.
+     * @param <I> input type.
+     * @param <O> output type.
+     */
+    public interface Transform<I, O> {
+
+        O apply(I input) throws Exception;
+    }
+
+    private static final int PENDING = 0;
+    private static final int SUCCEEDED = 1;
+    private static final int FAILED = 2;
+    private static final int CANCELLED = 3;
+
+    private final static String TAG = "LocationFuture";
+
+    // guarded by this.
+    private int state = PENDING;
+    private V value;
+    private Throwable error;
+    private List<Runnable> mListeners = new ArrayList<>();
+    private Runnable mCancelAction;
+
+    public LocationFuture() {
+    }
+
+    /**
+     * @param _value result.
+     * @param <V> result type.
+     * @return future completed already.
+     */
+    public static <V> LocationFuture<V> completed(V _value) {
+        LocationFuture<V> future = new LocationFuture<>();
+        future.complete(_value);
+        return future;
+    }
+
+    /**
+     * Run _action once, when this future is cancelled. run right away when it is cancelled already.
+     * @param _action what releases resources of this lookup.
+     */
+    public void setCancelAction(Runnable _action) {
+        boolean runNow;
+        synchronized (this) {
+            runNow = state == CANCELLED;
+            if (!runNow) {
+                mCancelAction = _action;
+            }
+        }
+        if (runNow) {
+            _action.run();
+        }
+    }
+
+    /*
+	// ********************************************************************************************
+	// Completion
+	// ********************************************************************************************
+	*/
+
+    /**
+     * @param _value result.
+     * @return false when done already. (first one wins)
+     */
+    public boolean complete(V _value) {
+        return finish(SUCCEEDED, _value, null);
+    }
+
+    /**
+     * @param _error cause.
+     * @return false when done already.
+     */
+    public boolean fail(Throwable _error) {
+        return finish(FAILED, null, _error);
+    }
+
+    @Override
+    public boolean cancel(boolean _mayInterruptIfRunning) {
+        return finish(CANCELLED, null, new CancellationException("cancelled"));
+    }
+
+    private boolean finish(int _state, V _value, Throwable _error) {
+        List<Runnable> listeners;
+        Runnable cancelAction;
+        synchronized (this) {
+            if (state != PENDING) {
+                return false;
+            }
+            state = _state;
+            value = _value;
+            error = _error;
+            listeners = mListeners;
+            mListeners = null;
+            cancelAction = mCancelAction;
+            mCancelAction = null;
+            notifyAll();
+        }
+        if (_state == CANCELLED && cancelAction != null) {
+            cancelAction.run();
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state != PENDING;
+    }
+
+    /*
+	// ********************************************************************************************
+	// Waiting
+	// ********************************************************************************************
+	*/
+
+    @Override
+    public synchronized V get() throws InterruptedException, ExecutionException {
+        while (state == PENDING) {
+            wait();
+        }
+        return result();
+    }
+
+    @Override
+    public synchronized V get(long _timeout, TimeUnit _unit) throws InterruptedException, ExecutionException, TimeoutException {
+        long deadline = System.nanoTime() + _unit.toNanos(_timeout);
+        while (state == PENDING) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new TimeoutException("no result in " + _timeout + " " + _unit);
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return result();
+    }
+
+    // call with this held, after done.
+    private V result() throws ExecutionException {
+        if (state == SUCCEEDED) {
+            return value;
+        }
+        if (state == CANCELLED) {
+            throw new CancellationException("cancelled");
+        }
+        throw new ExecutionException(error);
+    }
+
+    /*
+	// ********************************************************************************************
+	// Composition
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Be told of result. called right away when done already.
+     * @param _callback receives result.
+     * @param _executor where callback runs. null runs it on the thread completing this future.
+     */
+    public void addCallback(final Callback<? super V> _callback, final Executor _executor) {
+        addListener(new Runnable() {
+            @Override
+            public void run() {
+                dispatch(_executor, new Runnable() {
+                    @Override
+                    public void run() {
+                        V result;
+                        Throwable failure;
+                        synchronized (LocationFuture.this) {
+                            result = value;
+                            failure = error;
+                        }
+                        if (failure == null) {
+                            _callback.onSuccess(result);
+                        } else {
+                            _callback.onFailure(failure);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Chain next step. _transform runs once on _executor with the result of this future.
+     * failure and cancel go to returned future as they are.
+     * @param _transform next step.
+     * @param _executor where next step runs. null runs it on the thread completing this future.
+     * @param <O> output type.
+     * @return future of next step. cancelling it cancels this future too.
+     */
+    public <O> LocationFuture<O> then(final Transform<? super V, ? extends O> _transform, final Executor _executor) {
+
+        final LocationFuture<O> next = new LocationFuture<>();
+        next.setCancelAction(new Runnable() {
+            @Override
+            public void run() {
+                cancel(true);
+            }
+        });
+
+        addCallback(new Callback<V>() {
+            @Override
+            public void onSuccess(V input) {
+                if (next.isDone()) {
+                    return;
+                }
+                try {
+                    next.complete(_transform.apply(input));
+                } catch (Exception e) {
+                    next.fail(e);
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable failure) {
+                if (failure instanceof CancellationException) {
+                    next.cancel(false);
+                } else {
+                    next.fail(failure);
+                }
+            }
+        }, _executor);
+
+        return next;
+    }
+
+    private void addListener(Runnable _listener) {
+        synchronized (this) {
+            if (state == PENDING) {
+                mListeners.add(_listener);
+                return;
+            }
+        }
+        _listener.run();
+    }
+
+    private static void dispatch(Executor _executor, final Runnable _task) {
+        if (_executor == null) {
+            runSafely(_task);
+            return;
+        }
+        _executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                runSafely(_task);
+            }
+        });
+    }
+
+    private static void runSafely(Runnable _task) {
+        try {
+            _task.run();
+        } catch (RuntimeException e) {
+            Dlog.out(TAG, "LOCATION : callback threw exception : {}", e, Dlog.e);
+        }
+    }
+}
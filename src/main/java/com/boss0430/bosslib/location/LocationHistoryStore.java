@@ -0,0 +1,735 @@
+package com.boss0430.bosslib.location;
+
+import com.boss0430.bosslib.utils.Dlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Local history of fixes. append-only columnar segment files, with time-range and bounding box scans.
+ * <br><br>
+ * - Fixes are collected in memory by block size, then encoded as one block (delta / varint per column)
+ *   into the active segment file through memory-mapped I/O. full segment is sealed, and a new one starts.<br>
+ * - Each block keeps time and bounding box range in a sparse in-memory index, so scan skips whole blocks,
+ *   and decodes other columns only when time column matches.<br>
+ * - Compaction rewrites sealed segments of small blocks (many flush calls) into full blocks, and drops fixes
+ *   older than retention. runs in background after a segment is sealed. (setAutoCompact)<br>
+ * - Position is kept in 1e-7 degree (about 1cm), accuracy in 0.1m. speed and bearing are not kept.<br>
+ * - Scans see every fix appended before them, including the ones not written to file yet.<br>
+ * - Fixes are visited in order of append. one writer lock. scans do not take it while decoding.<br>
+ * <br>
+ * Usage<br>
+ * 1. LocationHistoryStore store = LocationHistoryStore.open(new File(context.getFilesDir(), "history"));<br>
+ * 2. store.append(fix); or new LocationBatcher(256, 60000, store) to store batches.<br>
+ * 3. store.scan(from, to, visitor); store.scan(from, to, minLat, minLon, maxLat, maxLon, visitor);<br>
+ * 4. store.close(); when done.
+ * @see HistorySegment
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public final class LocationHistoryStore implements LocationBatcher.Consumer {
+
+    /**
+     * Receives fixes of scan.
+     */
+    public interface Visitor {
+
+        /**
+         * @param time epoch millis.
+         * @param latitude latitude.
+         * @param longitude longitude.
+         * @param accuracy accuracy radius in meters. negative when unknown.
+         * @return false to stop the scan.
+         */
+        boolean onFix(long time, double latitude, double longitude, float accuracy);
+    }
+
+    private final static String TAG = "LocationHistoryStore";
+
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+    public static final int DEFAULT_SEGMENT_BYTES = 4 * 1024 * 1024;
+
+    private static final double E7 = 1e7;
+
+    // compaction of every store. one at a time is enough, it is I/O bound.
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable _runnable) {
+            Thread thread = new Thread(_runnable, "LocationHistoryStore-compact");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private final File mDirectory;
+    private final int blockSize;
+    private final int segmentBytes;
+
+    // guarded by this.
+    private final long[] mTimes;
+    private final int[] mLats;
+    private final int[] mLons;
+    private final int[] mAccs;
+    private int pendingCount = 0;
+    private byte[] mEncodeBuffer = new byte[0];
+    private HistorySegment mActive;
+    // sealed segments in order. replaced, never changed.
+    private volatile HistorySegment[] mSealed;
+    private long nextSeq;
+    private boolean closed = false;
+    private long writeErrorCount = 0;
+    private long droppedCount = 0;
+
+    private volatile long retentionMillis = 0;
+    private volatile boolean autoCompact = true;
+    private volatile Executor mCompactionExecutor = COMPACTOR;
+    private final AtomicBoolean compactionQueued = new AtomicBoolean(false);
+    // one compaction at a time, and close waits for it.
+    private final Object mCompactLock = new Object();
+
+    // decode buffers per thread. scan allocates nothing after the first one.
+    private final ThreadLocal<ScanReader> mReaders = new ThreadLocal<ScanReader>() {
+        @Override
+        protected ScanReader initialValue() {
+            return new ScanReader();
+        }
+    };
+
+    private static final class ScanReader extends HistorySegment.Reader {
+        final HistorySegment.Query query = new HistorySegment.Query();
+        // fixes not written yet, copied at scan start.
+        long[] pendingTimes = new long[0];
+        int[] pendingLats = new int[0];
+        int[] pendingLons = new int[0];
+        int[] pendingAccs = new int[0];
+        Visitor visitor;
+        int visited;
+        boolean inUse;
+
+        void copyPending(long[] _times, int[] _lats, int[] _lons, int[] _accs, int _count) {
+            if (pendingTimes.length < _count) {
+                pendingTimes = new long[_times.length];
+                pendingLats = new int[_times.length];
+                pendingLons = new int[_times.length];
+                pendingAccs = new int[_times.length];
+            }
+            System.arraycopy(_times, 0, pendingTimes, 0, _count);
+            System.arraycopy(_lats, 0, pendingLats, 0, _count);
+            System.arraycopy(_lons, 0, pendingLons, 0, _count);
+            System.arraycopy(_accs, 0, pendingAccs, 0, _count);
+        }
+
+        @Override
+        boolean visit(long _time, int _latE7, int _lonE7, int _accDm) {
+            visited++;
+            return visitor.onFix(_time, _latE7 / E7, _lonE7 / E7, _accDm == 0 ? -1f : (_accDm - 1) / 10f);
+        }
+    }
+
+    private LocationHistoryStore(File _directory, int _blockSize, int _segmentBytes) {
+        mDirectory = _directory;
+        blockSize = _blockSize;
+        segmentBytes = _segmentBytes;
+        mTimes = new long[_blockSize];
+        mLats = new int[_blockSize];
+        mLons = new int[_blockSize];
+        mAccs = new int[_blockSize];
+    }
+
+    /**
+     * Open store with default block size and segment size.
+     * @param _directory directory of segment files. created when not exists.
+     * @return store.
+     * @throws IOException when directory or segment files can not be used.
+     */
+    public static LocationHistoryStore open(File _directory) throws IOException {
+        return open(_directory, DEFAULT_BLOCK_SIZE, DEFAULT_SEGMENT_BYTES);
+    }
+
+    /**
+     * Open store.
+     * @param _directory directory of segment files. created when not exists.
+     * @param _blockSize fixes per block. bigger block compresses better, smaller one skips finer.
+     * @param _segmentBytes size of one segment file. must hold a full block.
+     * @return store.
+     * @throws IOException when directory or segment files can not be used.
+     */
+    public static LocationHistoryStore open(File _directory, int _blockSize, int _segmentBytes) throws IOException {
+        if (_blockSize < 1) {
+            throw new IllegalArgumentException("block size must be positive : " + _blockSize);
+        }
+        long minSegment = (long) HistorySegment.HEADER_SIZE + HistorySegment.BLOCK_HEADER_SIZE + (long) _blockSize * HistorySegment.MAX_BYTES_PER_FIX;
+        if (_segmentBytes < minSegment) {
+            throw new IllegalArgumentException("segment of " + _segmentBytes + " bytes can not hold a block. needs " + minSegment);
+        }
+        if (!_directory.isDirectory() && !_directory.mkdirs()) {
+            throw new IOException("can not create directory : " + _directory);
+        }
+        LocationHistoryStore store = new LocationHistoryStore(_directory, _blockSize, _segmentBytes);
+        store.load();
+        Dlog.out(TAG, "LOCATION : history opened. segments : {}", store.getSegmentCount(), Dlog.i);
+        return store;
+    }
+
+    // find segments. segment covered by a newer compaction output is left over of a crash.
+    private void load() throws IOException {
+
+        File[] files = mDirectory.listFiles();
+        List<long[]> names = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(".tmp")) {
+                    // unfinished compaction.
+                    deleteFile(file);
+                    continue;
+                }
+                long[] name = HistorySegment.parseName(file.getName());
+                if (name != null) {
+                    names.add(name);
+                }
+            }
+        }
+
+        // first seq ascending, then widest and newest first.
+        Collections.sort(names, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                if (a[0] != b[0]) return a[0] < b[0] ? -1 : 1;
+                if (a[1] != b[1]) return a[1] > b[1] ? -1 : 1;
+                return a[2] > b[2] ? -1 : (a[2] == b[2] ? 0 : 1);
+            }
+        });
+
+        List<HistorySegment> segments = new ArrayList<>();
+        long covered = Long.MIN_VALUE;
+        try {
+            for (long[] name : names) {
+                File file = new File(mDirectory, HistorySegment.nameOf(name[0], name[1], (int) name[2]));
+                if (name[0] <= covered) {
+                    deleteFile(file);
+                    continue;
+                }
+                covered = name[1];
+                segments.add(HistorySegment.open(file, name[0], name[1], (int) name[2]));
+            }
+
+            // only the last one may go on. others were left open by a crash.
+            for (int i = 0; i < segments.size() - 1; i++) {
+                segments.get(i).seal();
+            }
+        } catch (IOException e) {
+            // store is not returned. files opened so far are closed here.
+            for (HistorySegment segment : segments) {
+                try {
+                    segment.close();
+                } catch (IOException ignored) {
+                }
+            }
+            throw e;
+        }
+        nextSeq = covered == Long.MIN_VALUE ? 0 : covered + 1;
+        if (!segments.isEmpty() && !segments.get(segments.size() - 1).isSealed()) {
+            mActive = segments.remove(segments.size() - 1);
+        }
+        mSealed = segments.toArray(new HistorySegment[segments.size()]);
+    }
+
+    private static void deleteFile(File _file) {
+        if (!_file.delete()) {
+            Dlog.out(TAG, "LOCATION : can not delete {}", _file.getName(), Dlog.w);
+        }
+    }
+
+    /**
+     * Fixes older than this are dropped by compaction. (whole segments, or while rewriting)
+     * @param _millis 0 to keep everything. (default)
+     */
+    public void setRetentionMillis(long _millis) { this.retentionMillis = _millis; }
+
+    /**
+     * @param _autoCompact compact in background after a segment is sealed. default is true.
+     */
+    public void setAutoCompact(boolean _autoCompact) { this.autoCompact = _autoCompact; }
+
+    /**
+     * @param _executor where background compaction runs. default is one daemon thread shared by stores.
+     */
+    public void setCompactionExecutor(Executor _executor) { this.mCompactionExecutor = _executor; }
+
+    /*
+	// ********************************************************************************************
+	// Append
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Append a fix. it is written to file when a block is full, or by flush.<br>
+     * write failure is logged and counted (getWriteErrorCount). block that can not be written is dropped.
+     * @param _time epoch millis.
+     * @param _latitude latitude.
+     * @param _longitude longitude.
+     * @param _accuracy accuracy radius in meters. negative when unknown.
+     */
+    public void append(long _time, double _latitude, double _longitude, float _accuracy) {
+        boolean sealed;
+        synchronized (this) {
+            if (closed) {
+                droppedCount++;
+                return;
+            }
+            int i = pendingCount;
+            mTimes[i] = _time;
+            mLats[i] = (int) Math.round(_latitude * E7);
+            mLons[i] = (int) Math.round(_longitude * E7);
+            mAccs[i] = _accuracy < 0 ? 0 : (int) Math.min(Integer.MAX_VALUE - 1, Math.round(_accuracy * 10.0)) + 1;
+            pendingCount = i + 1;
+            if (pendingCount < blockSize) {
+                return;
+            }
+            sealed = writePending();
+        }
+        if (sealed) {
+            compactLater();
+        }
+    }
+
+    /**
+     * Append a fix. speed and bearing are not kept.
+     * @param _fix fix.
+     */
+    public void append(LocationFix _fix) {
+        append(_fix.getTime(), _fix.getLatitude(), _fix.getLongitude(), _fix.getAccuracy());
+    }
+
+    /**
+     * Append every fix of _batch.
+     * @param _batch batch.
+     */
+    public void append(LocationBatch _batch) {
+        long[] times = _batch.getTimes();
+        double[] latitudes = _batch.getLatitudes();
+        double[] longitudes = _batch.getLongitudes();
+        float[] accuracies = _batch.getAccuracies();
+        for (int i = 0; i < _batch.size(); i++) {
+            append(times[i], latitudes[i], longitudes[i], accuracies[i]);
+        }
+    }
+
+    @Override
+    public void onBatch(LocationBatch batch) {
+        append(batch);
+    }
+
+    // encode pending fixes. true when a segment has been sealed. holding this.
+    private boolean writePending() {
+        if (pendingCount == 0) {
+            return false;
+        }
+        boolean sealed = false;
+        try {
+            if (mActive != null && !mActive.fits(pendingCount)) {
+                mActive.seal();
+                HistorySegment[] grown = Arrays.copyOf(mSealed, mSealed.length + 1);
+                grown[grown.length - 1] = mActive;
+                mSealed = grown;
+                mActive = null;
+                sealed = true;
+            }
+            if (mActive == null) {
+                long seq = nextSeq++;
+                mActive = HistorySegment.create(new File(mDirectory, HistorySegment.nameOf(seq, seq, 0)), seq, seq, 0, segmentBytes);
+            }
+            mEncodeBuffer = mActive.writeBlock(mTimes, mLats, mLons, mAccs, 0, pendingCount, mEncodeBuffer);
+        } catch (IOException e) {
+            writeErrorCount++;
+            droppedCount += pendingCount;
+            Dlog.out(TAG, "LOCATION : history write failed : {}", e, Dlog.e);
+        }
+        pendingCount = 0;
+        return sealed;
+    }
+
+    /**
+     * Write fixes in memory to file now, and sync it to storage. makes a small block. (compaction merges them)
+     * @throws IOException when store is closed.
+     */
+    public void flush() throws IOException {
+        boolean sealed;
+        synchronized (this) {
+            if (closed) {
+                throw new IOException("store closed");
+            }
+            sealed = writePending();
+            if (mActive != null) {
+                mActive.force();
+            }
+        }
+        if (sealed) {
+            compactLater();
+        }
+    }
+
+    /**
+     * Flush and close files. waits for running compaction. appends after this are dropped.
+     */
+    public void close() {
+        synchronized (mCompactLock) {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                writePending();
+                closed = true;
+                if (mActive != null) {
+                    try {
+                        mActive.close();
+                    } catch (IOException e) {
+                        writeErrorCount++;
+                        Dlog.out(TAG, "LOCATION : history close failed : {}", e, Dlog.e);
+                    }
+                }
+            }
+        }
+    }
+
+    /*
+	// ********************************************************************************************
+	// Scan
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Visit fixes of time range.
+     * @param _fromTime inclusive. epoch millis.
+     * @param _toTime inclusive. epoch millis.
+     * @param _visitor receives fixes, on this thread.
+     * @return count of visited fixes.
+     */
+    public int scan(long _fromTime, long _toTime, Visitor _visitor) {
+        ScanReader reader = reader();
+        reader.query.hasBox = false;
+        return scan(reader, _fromTime, _toTime, _visitor);
+    }
+
+    /**
+     * Visit fixes of time range within bounding box. box crossing 180th meridian has _minLongitude bigger than _maxLongitude.
+     * @param _fromTime inclusive. epoch millis.
+     * @param _toTime inclusive. epoch millis.
+     * @param _minLatitude south edge.
+     * @param _minLongitude west edge.
+     * @param _maxLatitude north edge.
+     * @param _maxLongitude east edge.
+     * @param _visitor receives fixes, on this thread.
+     * @return count of visited fixes.
+     */
+    public int scan(long _fromTime, long _toTime, double _minLatitude, double _minLongitude,
+                    double _maxLatitude, double _maxLongitude, Visitor _visitor) {
+        ScanReader reader = reader();
+        HistorySegment.Query query = reader.query;
+        query.hasBox = true;
+        query.minLat = (int) Math.ceil(_minLatitude * E7);
+        query.maxLat = (int) Math.floor(_maxLatitude * E7);
+        query.minLon = (int) Math.ceil(_minLongitude * E7);
+        query.maxLon = (int) Math.floor(_maxLongitude * E7);
+        return scan(reader, _fromTime, _toTime, _visitor);
+    }
+
+    /**
+     * @return count of fixes in time range.
+     */
+    public int count(long _fromTime, long _toTime) {
+        return scan(_fromTime, _toTime, new Visitor() {
+            @Override
+            public boolean onFix(long time, double latitude, double longitude, float accuracy) {
+                return true;
+            }
+        });
+    }
+
+    private ScanReader reader() {
+        ScanReader reader = mReaders.get();
+        // visitor scanning again on same thread gets own buffers.
+        return reader.inUse ? new ScanReader() : reader;
+    }
+
+    private int scan(ScanReader _reader, long _fromTime, long _toTime, Visitor _visitor) {
+
+        HistorySegment[] sealed;
+        HistorySegment active;
+        int activeBlocks;
+        int pending;
+        HistorySegment.Query query = _reader.query;
+        query.minTime = _fromTime;
+        query.maxTime = _toTime;
+
+        // snapshot. blocks written after it come from pending copied here.
+        synchronized (this) {
+            sealed = mSealed;
+            active = mActive;
+            activeBlocks = active != null ? active.getBlockCount() : 0;
+            pending = pendingCount;
+            _reader.copyPending(mTimes, mLats, mLons, mAccs, pending);
+        }
+
+        _reader.inUse = true;
+        _reader.visitor = _visitor;
+        _reader.visited = 0;
+        try {
+            for (HistorySegment segment : sealed) {
+                if (!segment.scan(segment.getBlockCount(), query, _reader)) {
+                    return _reader.visited;
+                }
+            }
+            if (active != null && !active.scan(activeBlocks, query, _reader)) {
+                return _reader.visited;
+            }
+            // pending fixes are newest. visited last.
+            long[] times = _reader.pendingTimes;
+            for (int i = 0; i < pending; i++) {
+                if (times[i] < query.minTime || times[i] > query.maxTime) {
+                    continue;
+                }
+                if (query.hasBox && !query.contains(_reader.pendingLats[i], _reader.pendingLons[i])) {
+                    continue;
+                }
+                if (!_reader.visit(times[i], _reader.pendingLats[i], _reader.pendingLons[i], _reader.pendingAccs[i])) {
+                    break;
+                }
+            }
+            return _reader.visited;
+        } finally {
+            _reader.visitor = null;
+            _reader.inUse = false;
+        }
+    }
+
+    /*
+	// ********************************************************************************************
+	// Compaction
+	// ********************************************************************************************
+	*/
+
+    private void compactLater() {
+        if (!autoCompact || !compactionQueued.compareAndSet(false, true)) {
+            return;
+        }
+        mCompactionExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                compactionQueued.set(false);
+                try {
+                    compact();
+                } catch (IOException e) {
+                    Dlog.out(TAG, "LOCATION : history compaction failed : {}", e, Dlog.e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Compact sealed segments now, on this thread.<br>
+     * - segment of only expired fixes is deleted.<br>
+     * - run of segments with small blocks, or with expired fixes, is rewritten as one segment of full blocks.
+     * @return count of segments removed or rewritten.
+     * @throws IOException when rewriting fails. store is unchanged then.
+     */
+    public int compact() throws IOException {
+        synchronized (mCompactLock) {
+            HistorySegment[] sealed;
+            synchronized (this) {
+                if (closed) {
+                    return 0;
+                }
+                sealed = mSealed;
+            }
+            long cutoff = retentionMillis > 0 ? System.currentTimeMillis() - retentionMillis : Long.MIN_VALUE;
+
+            int done = 0;
+            int i = 0;
+            while (i < sealed.length) {
+                if (!needsCompaction(sealed[i], cutoff)) {
+                    i++;
+                    continue;
+                }
+                // greedy run of candidates, up to about one segment of output.
+                int end = i;
+                long bytes = 0;
+                while (end < sealed.length && needsCompaction(sealed[end], cutoff)
+                        && (end == i || bytes + rewrittenBytes(sealed[end]) <= segmentBytes)) {
+                    bytes += rewrittenBytes(sealed[end]);
+                    end++;
+                }
+                rewrite(Arrays.copyOfRange(sealed, i, end), cutoff);
+                done += end - i;
+                i = end;
+            }
+            if (done > 0) {
+                Dlog.out(TAG, "LOCATION : history compacted {} segments", done, Dlog.i);
+            }
+            return done;
+        }
+    }
+
+    private boolean needsCompaction(HistorySegment _segment, long _cutoff) {
+        if (_segment.getFixCount() == 0 || _segment.getMinTime() < _cutoff) {
+            return true;
+        }
+        // blocks less than half full on average.
+        return _segment.getBlockCount() > 1 && _segment.getFixCount() * 2 < (long) _segment.getBlockCount() * blockSize;
+    }
+
+    // size of _segment in full blocks : headers of extra blocks go away.
+    private long rewrittenBytes(HistorySegment _segment) {
+        long fullBlocks = (_segment.getFixCount() + blockSize - 1) / blockSize;
+        return _segment.getCommittedBytes() - HistorySegment.HEADER_SIZE
+                - (_segment.getBlockCount() - fullBlocks) * HistorySegment.BLOCK_HEADER_SIZE;
+    }
+
+    // replace _inputs with one segment of their fixes newer than _cutoff. holding mCompactLock.
+    private void rewrite(HistorySegment[] _inputs, final long _cutoff) throws IOException {
+
+        long firstSeq = _inputs[0].firstSeq;
+        long lastSeq = _inputs[_inputs.length - 1].lastSeq;
+        int generation = 0;
+        long fixes = 0;
+        for (HistorySegment input : _inputs) {
+            generation = Math.max(generation, input.generation + 1);
+            fixes += input.getFixCount();
+        }
+
+        HistorySegment output = null;
+        File file = new File(mDirectory, HistorySegment.nameOf(firstSeq, lastSeq, generation));
+        File temp = new File(mDirectory, file.getName() + ".tmp");
+        if (_inputs.length > 1 || _inputs[0].getMaxTime() >= _cutoff) {
+            long blocks = fixes / blockSize + 1;
+            long capacity = HistorySegment.HEADER_SIZE + blocks * HistorySegment.BLOCK_HEADER_SIZE + fixes * HistorySegment.MAX_BYTES_PER_FIX;
+            if (capacity > Integer.MAX_VALUE) {
+                throw new IOException("compaction output too big : " + capacity);
+            }
+            final HistorySegment target = HistorySegment.create(temp, firstSeq, lastSeq, generation, (int) capacity);
+            final long[] outTimes = new long[blockSize];
+            final int[] outLats = new int[blockSize];
+            final int[] outLons = new int[blockSize];
+            final int[] outAccs = new int[blockSize];
+            final byte[][] encode = {new byte[0]};
+            final int[] count = {0};
+            // Reader has own times / lats ... fields. out arrays keep names apart.
+            HistorySegment.Reader copier = new HistorySegment.Reader() {
+                @Override
+                boolean visit(long _time, int _latE7, int _lonE7, int _accDm) {
+                    if (_time < _cutoff) {
+                        return true;
+                    }
+                    int n = count[0];
+                    outTimes[n] = _time;
+                    outLats[n] = _latE7;
+                    outLons[n] = _lonE7;
+                    outAccs[n] = _accDm;
+                    count[0] = ++n;
+                    if (n == blockSize) {
+                        encode[0] = target.writeBlock(outTimes, outLats, outLons, outAccs, 0, n, encode[0]);
+                        count[0] = 0;
+                    }
+                    return true;
+                }
+            };
+            HistorySegment.Query all = new HistorySegment.Query();
+            all.minTime = Long.MIN_VALUE;
+            all.maxTime = Long.MAX_VALUE;
+            try {
+                for (HistorySegment input : _inputs) {
+                    input.scan(input.getBlockCount(), all, copier);
+                }
+                if (count[0] > 0) {
+                    target.writeBlock(outTimes, outLats, outLons, outAccs, 0, count[0], encode[0]);
+                }
+                target.seal();
+            } catch (IOException e) {
+                target.close();
+                deleteFile(temp);
+                throw e;
+            }
+            if (target.getFixCount() > 0) {
+                if (!temp.renameTo(file)) {
+                    deleteFile(temp);
+                    throw new IOException("can not rename " + temp.getName());
+                }
+                output = HistorySegment.open(file, firstSeq, lastSeq, generation);
+            } else {
+                deleteFile(temp);
+            }
+        }
+
+        synchronized (this) {
+            List<HistorySegment> segments = new ArrayList<>(Arrays.asList(mSealed));
+            int at = segments.indexOf(_inputs[0]);
+            segments.removeAll(Arrays.asList(_inputs));
+            if (output != null) {
+                segments.add(at, output);
+            }
+            mSealed = segments.toArray(new HistorySegment[segments.size()]);
+        }
+        // running scans keep their mapping of deleted files.
+        for (HistorySegment input : _inputs) {
+            deleteFile(input.file);
+        }
+    }
+
+    /*
+	// ********************************************************************************************
+	// State
+	// ********************************************************************************************
+	*/
+
+    /**
+     * @return count of fixes in store, including ones not written yet.
+     */
+    public synchronized long getFixCount() {
+        long count = pendingCount;
+        for (HistorySegment segment : mSealed) {
+            count += segment.getFixCount();
+        }
+        if (mActive != null) {
+            count += mActive.getFixCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return count of segment files, including the active one.
+     */
+    public synchronized int getSegmentCount() {
+        return mSealed.length + (mActive != null ? 1 : 0);
+    }
+
+    /**
+     * @return bytes of data in segment files. (not preallocated space of active one)
+     */
+    public synchronized long getSizeBytes() {
+        long bytes = 0;
+        for (HistorySegment segment : mSealed) {
+            bytes += segment.getCommittedBytes();
+        }
+        if (mActive != null) {
+            bytes += mActive.getCommittedBytes();
+        }
+        return bytes;
+    }
+
+    public synchronized long getWriteErrorCount() { return writeErrorCount; }
+
+    /** @return count of fixes lost by write failure, or appended after close. */
+    public synchronized long getDroppedCount() { return droppedCount; }
+
+    public File getDirectory() { return mDirectory; }
+}
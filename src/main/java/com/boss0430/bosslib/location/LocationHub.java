@@ -0,0 +1,498 @@
+package com.boss0430.bosslib.location;
+
+import android.content.Context;
+
+import com.boss0430.bosslib.utils.Dlog;
+import com.boss0430.bosslib.utils.DlogRateLimiter;
+import com.boss0430.bosslib.utils.Histogram;
+import com.boss0430.bosslib.utils.Metrics;
+import com.boss0430.bosslib.utils.TimeoutWheel;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide owner of the location session.
+ * <br><br>
+ * Requests that overlap in time attach to one running session and are completed by the same first fix.<br>
+ * Session starts when the first waiter attaches, and stops when the last waiter leaves.<br>
+ * LocationAsyncTask and LocationLookup use this internally, so several lookups do not run several GPS sessions.<br>
+ * Cached fix that passes caller's LastLocationPolicy is delivered at once, and refreshed in background when policy wants.<br>
+ * Fixes come from LocationSource. (fused location by default, see setLocationSource)
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public final class LocationHub {
+
+    /**
+     * Receives one location from LocationHub. Waiter is detached automatically after delivery.
+     */
+    public interface Waiter {
+
+        /**
+         * Invoked on thread of LocationSource (main thread for fused location), or on caller thread of attach
+         * when answered from cache.
+         * @param fix delivered location. never null.
+         */
+        void onLocation(LocationFix fix);
+    }
+
+    /**
+     * Waiter which is told when location settings are not satisfied. it is detached then.<br>
+     * Plain Waiter stays attached, and the next attach checks settings again.
+     */
+    public interface FailureWaiter extends Waiter {
+
+        /**
+         * Invoked on thread of settings callback (main thread for fused location).
+         */
+        void onSettingsFailed();
+    }
+
+    private final static String TAG = "LocationHub";
+
+    // background refresh gives up after this, so it does not keep GPS on when no fix comes.
+    private final static long REFRESH_TIMEOUT_MILLIS = 30000;
+
+    private final static long SESSION_INTERVAL_MILLIS = 1000;
+    private final static long SESSION_FASTEST_INTERVAL_MILLIS = 500;
+
+    private static final Histogram TTFF = Metrics.histogram(Metrics.LOCATION_TTFF_MS);
+    private static final Histogram SETTINGS_CHECK = Metrics.histogram(Metrics.LOCATION_SETTINGS_MS);
+    private static final Histogram ACCURACY = Metrics.histogram(Metrics.LOCATION_ACCURACY_M);
+    private static final DlogRateLimiter DELIVERY_LOG = DlogRateLimiter.perSecond("LocationHub.delivery", 1, 5);
+
+    private static volatile LocationHub sInstance;
+
+    private final Object mLock = new Object();
+
+    // guarded by mLock. replaced only while session is not active.
+    private LocationSource mSource;
+
+    // waiters for next fix, and waiters that accept cached value under their policy.
+    private final Set<Waiter> mWaiters = new LinkedHashSet<>();
+    private final Map<Waiter, LastLocationPolicy> mLastLocationWaiters = new LinkedHashMap<>();
+
+    // latest fix seen by hub. (live or last known of source)
+    private volatile LocationFix mLastFix;
+
+    // attached while background refresh is running. cache is updated in deliver.
+    private final Waiter mRefreshWaiter = new Waiter() {
+        @Override
+        public void onLocation(LocationFix fix) {
+            Dlog.out(TAG, "LOCATION : background refresh done", Dlog.d);
+        }
+    };
+    private final Runnable mRefreshTimeout = new Runnable() {
+        @Override
+        public void run() {
+            detach(mRefreshWaiter);
+        }
+    };
+    private TimeoutWheel.Timeout mRefreshTimer;
+
+    // fixes are recorded here, and read back at cold start. null means no store.
+    private volatile LastLocationStore mStore;
+
+    private final LocationSource.Listener mSourceListener = new LocationSource.Listener() {
+        @Override
+        public void onFix(LocationFix fix) {
+            deliver(fix, false);
+        }
+    };
+
+    private final LocationSource.LastFixCallback mLastFixCallback = new LocationSource.LastFixCallback() {
+        @Override
+        public void onLastFix(LocationFix fix) {
+            Dlog.out(TAG, "LOCATION : last known fix (may can be null) : {}", fix, Dlog.i);
+            if (fix != null) {
+                deliver(fix, true);
+            }
+        }
+    };
+
+    // increased every time session starts or stops, so stale settings callbacks can be ignored.
+    private int mSessionId = 0;
+    private boolean mSessionActive = false;
+    private boolean mUpdatesRequested = false;
+    // for time to first fix. 0 when first fix of session has come.
+    private long mSessionStartMillis = 0;
+
+    /*
+	// ********************************************************************************************
+	// Default Functions
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Hub of own source. use getInstance for process-wide one.
+     * @param _source LocationSource. ReplayLocationSource runs the hub on plain JVM.
+     */
+    public LocationHub(LocationSource _source) {
+        mSource = _source;
+    }
+
+    /**
+     * Get process-wide hub. it reads fused location.
+     * @param _context any context. application context is kept.
+     * @return LocationHub instance.
+     */
+    public static LocationHub getInstance(Context _context) {
+        LocationHub hub = sInstance;
+        if (hub == null) {
+            synchronized (LocationHub.class) {
+                hub = sInstance;
+                if (hub == null) {
+                    hub = new LocationHub(new FusedLocationSource(_context));
+                    sInstance = hub;
+                }
+            }
+        }
+        return hub;
+    }
+
+    /**
+     * Change where fixes come from. (ex. replay of recorded track for demo or load test)
+     * @param _source LocationSource.
+     * @throws IllegalStateException while session is active.
+     */
+    public void setLocationSource(LocationSource _source) {
+        synchronized (mLock) {
+            if (mSessionActive) {
+                throw new IllegalStateException("can not change source while session is active");
+            }
+            mSource = _source;
+        }
+    }
+
+    public LocationSource getLocationSource() {
+        synchronized (mLock) {
+            return mSource;
+        }
+    }
+
+    /**
+     * Attach waiter to the shared session. starts session when nobody was waiting.
+     * @param _context context of caller. used to show location settings dialog when it is an Activity.
+     * @param _waiter you (caller).
+     * @param _useLastLocation will use 'getLastLocation' value? true is same as LastLocationPolicy.ANY.
+     */
+    public void attach(Context _context, Waiter _waiter, boolean _useLastLocation) {
+        attach(_context, _waiter, _useLastLocation ? LastLocationPolicy.ANY : null);
+    }
+
+    /**
+     * Attach waiter to the shared session. starts session when nobody was waiting.<br>
+     * When cached fix passes _policy, waiter is completed right away (on this thread) and no session is needed for it.
+     * @param _context context of caller. used to show location settings dialog when it is an Activity. may be null.
+     * @param _waiter you (caller).
+     * @param _policy which cached fix is acceptable. null to wait for live fix always.
+     */
+    public void attach(Context _context, Waiter _waiter, LastLocationPolicy _policy) {
+
+        if (_policy != null) {
+            LocationFix cached = mLastFix;
+            if (cached != null && accepts(_policy, cached)) {
+                Dlog.out(TAG, "LOCATION : answered from cache, age {}ms", ageMillisOf(cached), Dlog.d);
+                complete(_waiter, cached);
+                if (_policy.isRefresh()) {
+                    startRefresh();
+                }
+                return;
+            }
+        }
+
+        boolean startSession;
+        int sessionId;
+        LocationSource source;
+
+        synchronized (mLock) {
+            mWaiters.add(_waiter);
+            if (_policy != null) {
+                mLastLocationWaiters.put(_waiter, _policy);
+            }
+            startSession = !mSessionActive;
+            if (startSession) {
+                mSessionActive = true;
+                mSessionId++;
+                mSessionStartMillis = nowMillis();
+            }
+            sessionId = mSessionId;
+            source = mSource;
+            Dlog.out(TAG, "LOCATION : waiter attached. waiters : {}", mWaiters.size(), Dlog.d);
+        }
+
+        if (_policy != null) {
+            source.getLastFix(mLastFixCallback);
+        }
+
+        if (startSession) {
+            Dlog.out(TAG, "LOCATION : starting shared session #{}", sessionId, Dlog.i);
+            checkSettingsAndStart(source, _context, sessionId);
+        }
+    }
+
+    /**
+     * Detach waiter. session stops when the last waiter leaves.
+     * @param _waiter you (caller).
+     */
+    public void detach(Waiter _waiter) {
+        synchronized (mLock) {
+            mWaiters.remove(_waiter);
+            mLastLocationWaiters.remove(_waiter);
+            if (mWaiters.isEmpty()) {
+                stopSessionLocked();
+            }
+        }
+    }
+
+    /**
+     * Record fixes to _store, and use its latest fix as cache when hub has none. (cold start)
+     * @param _store LastLocationStore. null to stop recording.
+     */
+    public void setLastLocationStore(LastLocationStore _store) {
+        this.mStore = _store;
+        if (_store != null && mLastFix == null) {
+            LastLocationStore.Record record = _store.readLatest();
+            if (record != null) {
+                mLastFix = record.toFix();
+                Dlog.out(TAG, "LOCATION : cache restored from store, age {}ms", ageMillisOf(mLastFix), Dlog.d);
+            }
+        }
+    }
+
+    /**
+     * @return latest fix seen by hub (or restored from store). null when there is none.
+     */
+    public LocationFix getLastFix() {
+        return mLastFix;
+    }
+
+    /**
+     * @return count of waiters attached now.
+     */
+    public int getWaiterCount() {
+        synchronized (mLock) {
+            return mWaiters.size();
+        }
+    }
+
+    /**
+     * @return true while shared session is running (or checking settings).
+     */
+    public boolean isSessionActive() {
+        synchronized (mLock) {
+            return mSessionActive;
+        }
+    }
+
+    /*
+	// ********************************************************************************************
+	// Delivery
+	// ********************************************************************************************
+	*/
+
+    private void deliver(LocationFix fix, boolean fromLastLocation) {
+
+        updateCache(fix);
+
+        List<Waiter> targets = new ArrayList<>();
+        boolean refresh = false;
+
+        synchronized (mLock) {
+            if (fromLastLocation) {
+                // only waiters whose policy accepts this cached fix.
+                Iterator<Map.Entry<Waiter, LastLocationPolicy>> it = mLastLocationWaiters.entrySet().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<Waiter, LastLocationPolicy> entry = it.next();
+                    if (accepts(entry.getValue(), fix)) {
+                        targets.add(entry.getKey());
+                        refresh |= entry.getValue().isRefresh();
+                        it.remove();
+                    }
+                }
+            } else {
+                if (mSessionStartMillis != 0) {
+                    Metrics.record(TTFF, nowMillis() - mSessionStartMillis);
+                    mSessionStartMillis = 0;
+                }
+                if (fix.hasAccuracy()) {
+                    Metrics.record(ACCURACY, Math.round(fix.getAccuracy()));
+                }
+                targets.addAll(mWaiters);
+                mLastLocationWaiters.clear();
+            }
+            if (targets.isEmpty()) {
+                return;
+            }
+            mWaiters.removeAll(targets);
+            if (mWaiters.isEmpty()) {
+                stopSessionLocked();
+            }
+        }
+
+        if (DELIVERY_LOG.tryAcquire(TAG, Dlog.d)) {
+            Dlog.out(TAG, "LOCATION : delivering fix to {} waiter(s)", targets.size(), Dlog.d);
+        }
+
+        for (Waiter waiter : targets) {
+            complete(waiter, fix);
+        }
+
+        if (refresh) {
+            startRefresh();
+        }
+    }
+
+    private void complete(Waiter _waiter, LocationFix _fix) {
+        try {
+            _waiter.onLocation(_fix);
+        } catch (RuntimeException e) {
+            Dlog.out(TAG, "LOCATION : waiter threw exception : {}", e, Dlog.e);
+        }
+    }
+
+    // keep newer one.
+    private void updateCache(LocationFix _fix) {
+        LocationFix cached = mLastFix;
+        if (cached != null && _fix.getTime() < cached.getTime()) {
+            return;
+        }
+        mLastFix = _fix;
+
+        final LastLocationStore store = mStore;
+        if (store != null && (cached == null || _fix.getTime() > cached.getTime())) {
+            store.write(_fix, getLocationSource().getName());
+        }
+    }
+
+    /**
+     * Take one live fix in background to refresh cache. (stale-while-revalidate)<br>
+     * joins running session if there is one.
+     */
+    private void startRefresh() {
+        synchronized (mLock) {
+            if (mWaiters.contains(mRefreshWaiter)) {
+                return;
+            }
+            if (mRefreshTimer != null) {
+                mRefreshTimer.cancel();
+            }
+            mRefreshTimer = TimeoutWheel.getDefault().schedule(mRefreshTimeout, REFRESH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        Dlog.out(TAG, "LOCATION : background refresh", Dlog.d);
+        // no caller context, so no settings dialog for refresh.
+        attach(null, mRefreshWaiter, (LastLocationPolicy) null);
+    }
+
+    private static boolean accepts(LastLocationPolicy _policy, LocationFix _fix) {
+        return _policy.accepts(ageMillisOf(_fix), _fix.getAccuracy());
+    }
+
+    /**
+     * Age of fix, by wall clock.
+     * @param _fix fix.
+     * @return age in millis. Long.MAX_VALUE when fix is newer than now : wall clock has stepped back, real age is unknown.
+     */
+    static long ageMillisOf(LocationFix _fix) {
+        long age = System.currentTimeMillis() - _fix.getTime();
+        // never "fresh" by a clock step. only a policy accepting any age (ANY) takes it.
+        return age < 0 ? Long.MAX_VALUE : age;
+    }
+
+    // monotonic, for durations.
+    private static long nowMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    // call with mLock held.
+    private void stopSessionLocked() {
+        if (!mSessionActive) {
+            return;
+        }
+        mSessionActive = false;
+        mSessionId++;
+        mSessionStartMillis = 0;
+        if (mUpdatesRequested) {
+            mUpdatesRequested = false;
+            mSource.removeUpdates(mSourceListener);
+        }
+        Dlog.out(TAG, "LOCATION : shared session stopped", Dlog.i);
+    }
+
+    /*
+	// ********************************************************************************************
+	// LOCATION guys
+	// ********************************************************************************************
+	*/
+
+    private void checkSettingsAndStart(LocationSource _source, Context _caller, final int _sessionId) {
+
+        final long checkStartMillis = nowMillis();
+
+        _source.checkSettings(_caller, SESSION_INTERVAL_MILLIS, LocationSource.PRIORITY_HIGH_ACCURACY, new LocationSource.SettingsCallback() {
+            @Override
+            public void onSettingsChecked(boolean satisfied) {
+                Metrics.record(SETTINGS_CHECK, nowMillis() - checkStartMillis);
+                if (satisfied) {
+                    startLocationUpdates(_sessionId);
+                } else {
+                    Dlog.out(TAG, "LOCATION : location settings failed", Dlog.w);
+                    failSession(_sessionId);
+                }
+            }
+        });
+    }
+
+    // settings not satisfied : stop the session so the next attach checks again, and tell who can hear it.
+    private void failSession(int _sessionId) {
+
+        List<FailureWaiter> targets = new ArrayList<>();
+
+        synchronized (mLock) {
+            if (!mSessionActive || _sessionId != mSessionId) {
+                return;
+            }
+            Iterator<Waiter> it = mWaiters.iterator();
+            while (it.hasNext()) {
+                Waiter waiter = it.next();
+                if (waiter instanceof FailureWaiter) {
+                    targets.add((FailureWaiter) waiter);
+                    mLastLocationWaiters.remove(waiter);
+                    it.remove();
+                }
+            }
+            stopSessionLocked();
+        }
+
+        for (FailureWaiter waiter : targets) {
+            try {
+                waiter.onSettingsFailed();
+            } catch (RuntimeException e) {
+                Dlog.out(TAG, "LOCATION : waiter threw exception : {}", e, Dlog.e);
+            }
+        }
+    }
+
+    private void startLocationUpdates(int _sessionId) {
+
+        synchronized (mLock) {
+            // every waiter has left while checking settings.
+            if (!mSessionActive || _sessionId != mSessionId || mUpdatesRequested) {
+                Dlog.out(TAG, "LOCATION : session #{} is no longer wanted", _sessionId, Dlog.d);
+                return;
+            }
+            mUpdatesRequested = true;
+
+            // inside lock, so stopSessionLocked can not remove updates before they are requested.
+            mSource.requestUpdates(SESSION_INTERVAL_MILLIS, SESSION_FASTEST_INTERVAL_MILLIS,
+                    LocationSource.PRIORITY_HIGH_ACCURACY, mSourceListener);
+        }
+    }
+}
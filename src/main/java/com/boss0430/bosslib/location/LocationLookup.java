@@ -0,0 +1,286 @@
+package com.boss0430.bosslib.location;
+
+import android.content.Context;
+
+import com.boss0430.bosslib.utils.Dlog;
+import com.boss0430.bosslib.utils.Histogram;
+import com.boss0430.bosslib.utils.Metrics;
+import com.boss0430.bosslib.utils.TimeoutWheel;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Location lookups as LocationFuture. replaces LocationAsyncTask.
+ * <br><br>
+ * - No thread is held while waiting for a fix. waiter of LocationHub completes the future.<br>
+ * - cancel (or timeout) detaches from LocationHub at once, so the session stops when nobody else waits.<br>
+ * - getAddress chains reverse geocoding on the executor : one task on it per lookup, nothing before.<br>
+ * - updates is stream variant over LocationStream, delivered in order on the executor.<br>
+ * <br>
+ * Usage<br>
+ * 1. LocationLookup lookup = new LocationLookup(context, executor);<br>
+ * 2. LocationFuture&lt;LocationFix&gt; future = lookup.getLocation(activity);<br>
+ * 3. future.addCallback(callback, executor); or future.get(10, TimeUnit.SECONDS);<br>
+ * 4. future.cancel(true); when you don't need it anymore. (ex. onDestroy)
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public class LocationLookup {
+
+    /**
+     * Handle of updates.
+     */
+    public static final class Updates {
+
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        private final LocationStream mStream;
+        private final LocationStream.Subscriber mForwarder;
+
+        private Updates(LocationStream _stream, LocationStream.Subscriber _forwarder) {
+            mStream = _stream;
+            mForwarder = _forwarder;
+        }
+
+        /**
+         * Unsubscribe. fixes queued on executor already are dropped.
+         */
+        public void cancel() {
+            if (cancelled.compareAndSet(false, true)) {
+                mStream.unsubscribe(mForwarder);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+    }
+
+    private final static String TAG = "LocationLookup";
+
+    public static final long DEFAULT_TIMEOUT_MILLIS = 15000;
+
+    private static final Histogram TASK_TIME = Metrics.histogram(Metrics.LOCATION_TASK_MS);
+    private static final Metrics.Counter TIMEOUTS = Metrics.counter(Metrics.LOCATION_TASK_TIMEOUT);
+    private static final Metrics.Counter CANCELS = Metrics.counter(Metrics.LOCATION_TASK_CANCEL);
+
+    private final LocationHub mHub;
+    private final Executor mExecutor;
+
+    private volatile long timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private volatile LastLocationPolicy lastLocationPolicy = null;
+
+    /*
+	// ********************************************************************************************
+	// Default Functions
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Lookups on process-wide LocationHub (fused location).
+     * @param _context any context.
+     * @param _executor where chained work (geocoding) and updates run. null runs them on location callback thread.
+     */
+    public LocationLookup(Context _context, Executor _executor) {
+        this(LocationHub.getInstance(_context), _executor);
+    }
+
+    /**
+     * Lookups on own hub. (ex. hub of ReplayLocationSource)
+     * @param _hub LocationHub.
+     * @param _executor where chained work (geocoding) and updates run. null runs them on location callback thread.
+     */
+    public LocationLookup(LocationHub _hub, Executor _executor) {
+        mHub = _hub;
+        mExecutor = _executor;
+    }
+
+    /**
+     * @param _millis lookup fails with TimeoutException after this. 0 or less waits forever. default is 15000.
+     */
+    public void setTimeoutMillis(long _millis) {
+        this.timeoutMillis = _millis;
+    }
+
+    /**
+     * @param _policy which cached fix answers at once. null to wait for live fix always. (default)
+     */
+    public void setLastLocationPolicy(LastLocationPolicy _policy) {
+        this.lastLocationPolicy = _policy;
+    }
+
+    /*
+	// ********************************************************************************************
+	// Lookups
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Get one fix.
+     * @param _caller context of caller. settings dialog is shown when it is an Activity. may be null.
+     * @return future of fix. fails with TimeoutException at timeout,
+     *         with IllegalStateException when location settings are not satisfied.
+     */
+    public LocationFuture<LocationFix> getLocation(Context _caller) {
+
+        final LocationFuture<LocationFix> future = new LocationFuture<>();
+        final long startNanos = System.nanoTime();
+        final TimeoutWheel.Timeout[] timeout = new TimeoutWheel.Timeout[1];
+
+        final LocationHub.Waiter waiter = new LocationHub.FailureWaiter() {
+            @Override
+            public void onLocation(LocationFix fix) {
+                // hub has detached me already.
+                cancelTimeout(timeout);
+                if (future.complete(fix)) {
+                    Metrics.record(TASK_TIME, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                }
+            }
+
+            @Override
+            public void onSettingsFailed() {
+                // hub has detached me already.
+                cancelTimeout(timeout);
+                future.fail(new IllegalStateException("location settings not satisfied"));
+            }
+        };
+
+        future.setCancelAction(new Runnable() {
+            @Override
+            public void run() {
+                Dlog.out(TAG, "LOCATION : lookup cancelled", Dlog.d);
+                cancelTimeout(timeout);
+                mHub.detach(waiter);
+                CANCELS.inc();
+            }
+        });
+
+        final long timeoutValue = timeoutMillis;
+        if (timeoutValue > 0) {
+            timeout[0] = TimeoutWheel.getDefault().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    mHub.detach(waiter);
+                    if (future.fail(new TimeoutException("no location in " + timeoutValue + "ms"))) {
+                        Dlog.out(TAG, "LOCATION : lookup timed out", Dlog.w);
+                        TIMEOUTS.inc();
+                    }
+                }
+            }, timeoutValue, TimeUnit.MILLISECONDS);
+        }
+
+        mHub.attach(_caller, waiter, lastLocationPolicy);
+
+        // cancelled (or answered from cache) while attaching.
+        if (future.isDone()) {
+            cancelTimeout(timeout);
+            mHub.detach(waiter);
+        }
+        return future;
+    }
+
+    /**
+     * Get one fix and its address.
+     * @param _caller context of caller. may be null.
+     * @param _converter geocoder to use.
+     * @return future of address. cancel stops location lookup (or skips geocoding when fix has come).
+     */
+    public LocationFuture<String> getAddress(Context _caller, final LocationConverter _converter) {
+        return getLocation(_caller).then(new LocationFuture.Transform<LocationFix, String>() {
+            @Override
+            public String apply(LocationFix fix) {
+                return _converter.getAddressFromFix(fix);
+            }
+        }, mExecutor);
+    }
+
+    /**
+     * Continuous fixes of _stream, delivered one at a time in order on executor.
+     * @param _stream LocationStream.
+     * @param _subscriber you (caller). LocationStream.FailureSubscriber is told when location settings fail,
+     *                    and the handle is cancelled then.
+     * @param _intervalMillis shortest interval you need while moving.
+     * @param _highAccuracy true when you need GPS accuracy while moving.
+     * @return handle to cancel.
+     */
+    public Updates updates(LocationStream _stream, final LocationStream.Subscriber _subscriber,
+                           long _intervalMillis, boolean _highAccuracy) {
+
+        final Executor executor = mExecutor;
+        final ConcurrentLinkedQueue<LocationFix> queue = new ConcurrentLinkedQueue<>();
+        final AtomicBoolean draining = new AtomicBoolean(false);
+        final Updates[] handle = new Updates[1];
+
+        // serial drain : at most one task on executor at a time, so order is kept.
+        final Runnable drain = new Runnable() {
+            @Override
+            public void run() {
+                do {
+                    LocationFix fix;
+                    while ((fix = queue.poll()) != null) {
+                        if (handle[0].isCancelled()) {
+                            queue.clear();
+                            break;
+                        }
+                        try {
+                            _subscriber.onLocation(fix);
+                        } catch (RuntimeException e) {
+                            Dlog.out(TAG, "LOCATION : subscriber threw exception : {}", e, Dlog.e);
+                        }
+                    }
+                    draining.set(false);
+                } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+            }
+        };
+
+        LocationStream.Subscriber forwarder = new LocationStream.FailureSubscriber() {
+            @Override
+            public void onLocation(LocationFix fix) {
+                if (handle[0].isCancelled()) {
+                    return;
+                }
+                if (executor == null) {
+                    _subscriber.onLocation(fix);
+                    return;
+                }
+                queue.offer(fix);
+                if (draining.compareAndSet(false, true)) {
+                    executor.execute(drain);
+                }
+            }
+
+            @Override
+            public void onSettingsFailed() {
+                // stream has unsubscribed me already. cancel marks the handle, fixes queued are dropped.
+                handle[0].cancel();
+                if (_subscriber instanceof LocationStream.FailureSubscriber) {
+                    final LocationStream.FailureSubscriber target = (LocationStream.FailureSubscriber) _subscriber;
+                    if (executor == null) {
+                        target.onSettingsFailed();
+                        return;
+                    }
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            target.onSettingsFailed();
+                        }
+                    });
+                }
+            }
+        };
+
+        handle[0] = new Updates(_stream, forwarder);
+        _stream.subscribe(forwarder, _intervalMillis, _highAccuracy);
+        return handle[0];
+    }
+
+    private static void cancelTimeout(TimeoutWheel.Timeout[] _timeout) {
+        TimeoutWheel.Timeout timeout = _timeout[0];
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+}
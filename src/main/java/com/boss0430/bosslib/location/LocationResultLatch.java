@@ -0,0 +1,64 @@
+package com.boss0430.bosslib.location;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * One-shot hand-off between location callbacks and the worker thread waiting for them.
+ * <br><br>
+ * Worker thread parks in 'await' (no cpu usage) till 'offer' is called or timeout has passed.<br>
+ * First offered value wins. later values are ignored.
+ * @param <T> result type.
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public final class LocationResultLatch<T> {
+
+    private final CountDownLatch mLatch = new CountDownLatch(1);
+    private final AtomicReference<T> mResult = new AtomicReference<>();
+
+    /**
+     * Deliver result and wake up waiting thread.
+     * @param _value result. null will be ignored.
+     * @return true if this value has been accepted (first one).
+     */
+    public boolean offer(T _value) {
+        if (_value == null) {
+            return false;
+        }
+        if (mResult.compareAndSet(null, _value)) {
+            mLatch.countDown();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Park current thread till result has been delivered.
+     * @param _timeout max time to wait.
+     * @param _unit unit of _timeout.
+     * @return result, or null when timeout has passed.
+     * @throws InterruptedException when waiting thread has been interrupted (ex. task cancelled)
+     */
+    public T await(long _timeout, TimeUnit _unit) throws InterruptedException {
+        if (mLatch.await(_timeout, _unit)) {
+            return mResult.get();
+        }
+        return null;
+    }
+
+    /**
+     * @return true if result has been delivered.
+     */
+    public boolean isDone() {
+        return mLatch.getCount() == 0;
+    }
+
+    /**
+     * @return delivered result without waiting, or null.
+     */
+    public T peek() {
+        return mResult.get();
+    }
+}
@@ -0,0 +1,107 @@
+package com.boss0430.bosslib.location;
+
+import android.content.Context;
+
+import com.google.android.gms.location.LocationRequest;
+
+/**
+ * Where fixes come from. LocationHub and LocationStream consume this.
+ * <br><br>
+ * - FusedLocationSource : Google fused location provider. (default)<br>
+ * - ReplayLocationSource : recorded GPX / CSV track, at real or accelerated speed. runs on plain JVM.<br>
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public interface LocationSource {
+
+    int PRIORITY_HIGH_ACCURACY = LocationRequest.PRIORITY_HIGH_ACCURACY;
+    int PRIORITY_BALANCED_POWER_ACCURACY = LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY;
+    int PRIORITY_LOW_POWER = LocationRequest.PRIORITY_LOW_POWER;
+
+    /**
+     * Receives fixes of requestUpdates.
+     */
+    interface Listener {
+
+        /**
+         * Invoked on the thread of source. (main thread for FusedLocationSource)
+         * @param fix new fix. never null.
+         */
+        void onFix(LocationFix fix);
+    }
+
+    /**
+     * Listener that takes fixes in batches. see LocationBatcher.<br>
+     * source may hold fixes up to max wait, and deliver them at one wakeup. (fused max-wait buffering)
+     */
+    interface BatchListener extends Listener {
+
+        /**
+         * @return how long source may hold fixes before delivering. 0 for no buffering.
+         */
+        long getMaxWaitMillis();
+
+        /**
+         * Invoked after the last onFix of one delivery. sources without buffering may never call this.
+         */
+        void onBatchEnd();
+    }
+
+    /**
+     * Receives result of getLastFix.
+     */
+    interface LastFixCallback {
+
+        /**
+         * @param fix last known fix. null when there is none.
+         */
+        void onLastFix(LocationFix fix);
+    }
+
+    /**
+     * Receives result of checkSettings.
+     */
+    interface SettingsCallback {
+
+        /**
+         * @param satisfied true when updates can be requested.
+         */
+        void onSettingsChecked(boolean satisfied);
+    }
+
+    /**
+     * @return short name of source. recorded as provider of fixes.
+     */
+    String getName();
+
+    /**
+     * Check device settings for such request. may show resolution dialog when _caller is an Activity.
+     * @param _caller context of caller. may be null.
+     * @param _intervalMillis interval going to be requested.
+     * @param _priority PRIORITY_XXX going to be requested.
+     * @param _callback result. may be invoked on any thread.
+     */
+    void checkSettings(Context _caller, long _intervalMillis, int _priority, SettingsCallback _callback);
+
+    /**
+     * Start updates to _listener. calling again with same listener replaces its request.<br>
+     * when _listener is BatchListener, source may buffer fixes up to its max wait.
+     * @param _intervalMillis wanted interval.
+     * @param _fastestIntervalMillis fixes closer than this are not delivered.
+     * @param _priority PRIORITY_XXX.
+     * @param _listener listener.
+     */
+    void requestUpdates(long _intervalMillis, long _fastestIntervalMillis, int _priority, Listener _listener);
+
+    /**
+     * Stop updates to _listener.
+     * @param _listener listener.
+     */
+    void removeUpdates(Listener _listener);
+
+    /**
+     * Ask last known fix.
+     * @param _callback result. may be invoked on any thread.
+     */
+    void getLastFix(LastFixCallback _callback);
+}
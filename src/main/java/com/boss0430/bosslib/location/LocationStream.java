@@ -0,0 +1,341 @@
+package com.boss0430.bosslib.location;
+
+import android.content.Context;
+
+import com.boss0430.bosslib.utils.Dlog;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Long-lived continuous location updates for several subscribers.
+ * <br><br>
+ * - One fused location session is kept while there is any subscriber. no re-creation per fix.<br>
+ * - Interval and priority follow observed speed / accuracy and subscriber demand. see AdaptiveLocationPolicy.<br>
+ * - Subscribers are invoked on thread of LocationSource. (main thread for fused location)<br>
+ * <br>
+ * Usage<br>
+ * 1. LocationStream.getInstance(context).subscribe(subscriber, 1000, true);<br>
+ * 2. LocationStream.getInstance(context).unsubscribe(subscriber); when done.<br>
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public final class LocationStream {
+
+    /**
+     * Receives every fix of the stream.
+     */
+    public interface Subscriber {
+
+        /**
+         * Invoked for every fix.
+         * @param fix delivered location. never null.
+         */
+        void onLocation(LocationFix fix);
+    }
+
+    /**
+     * Subscriber which is told when location settings are not satisfied. it is unsubscribed then.<br>
+     * Plain Subscriber stays subscribed, and the next subscribe checks settings again.
+     */
+    public interface FailureSubscriber extends Subscriber {
+
+        /**
+         * Invoked on thread of settings callback (main thread for fused location).
+         */
+        void onSettingsFailed();
+    }
+
+    private static final class Demand {
+        final long intervalMillis;
+        final boolean highAccuracy;
+
+        Demand(long intervalMillis, boolean highAccuracy) {
+            this.intervalMillis = intervalMillis;
+            this.highAccuracy = highAccuracy;
+        }
+    }
+
+    private final static String TAG = "LocationStream";
+
+    private static volatile LocationStream sInstance;
+
+    private final LocationSource mSource;
+    private final Object mLock = new Object();
+
+    private final Map<Subscriber, Demand> mSubscribers = new LinkedHashMap<>();
+    // guarded by mLock.
+    private final AdaptiveLocationPolicy mPolicy;
+
+    private final AdaptiveLocationPolicy.View mPolicyView = new AdaptiveLocationPolicy.View() {
+        @Override
+        public long getInterval() {
+            synchronized (mLock) {
+                return mPolicy.getInterval();
+            }
+        }
+
+        @Override
+        public long getFastestInterval() {
+            synchronized (mLock) {
+                return mPolicy.getFastestInterval();
+            }
+        }
+
+        @Override
+        public int getPriority() {
+            synchronized (mLock) {
+                return mPolicy.getPriority();
+            }
+        }
+
+        @Override
+        public float getSmoothedSpeed() {
+            synchronized (mLock) {
+                return mPolicy.getSmoothedSpeed();
+            }
+        }
+    };
+
+    private final LocationSource.Listener mSourceListener = new LocationSource.Listener() {
+        @Override
+        public void onFix(LocationFix fix) {
+            deliver(fix);
+        }
+    };
+
+    private boolean running = false;
+    private boolean updatesRequested = false;
+    // increased every time stream starts or stops, so stale settings callbacks can be ignored.
+    private int mSessionId = 0;
+
+    /*
+	// ********************************************************************************************
+	// Default Functions
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Stream of own source. use getInstance for process-wide one.
+     * @param _source LocationSource. ReplayLocationSource runs the stream on plain JVM.
+     */
+    public LocationStream(LocationSource _source) {
+        this(_source, new AdaptiveLocationPolicy());
+    }
+
+    /**
+     * Stream of own source with tuned policy.
+     * @param _source LocationSource.
+     * @param _policy tuning values of interval / priority decision. stream owns it from now on, don't touch it after.
+     */
+    public LocationStream(LocationSource _source, AdaptiveLocationPolicy _policy) {
+        mSource = _source;
+        mPolicy = _policy;
+    }
+
+    /**
+     * Get process-wide stream. it reads fused location.
+     * @param _context any context. application context is kept.
+     * @return LocationStream instance.
+     */
+    public static LocationStream getInstance(Context _context) {
+        LocationStream stream = sInstance;
+        if (stream == null) {
+            synchronized (LocationStream.class) {
+                stream = sInstance;
+                if (stream == null) {
+                    stream = new LocationStream(new FusedLocationSource(_context));
+                    sInstance = stream;
+                }
+            }
+        }
+        return stream;
+    }
+
+    /**
+     * Current decision of interval / priority. tune with LocationStream(source, policy).
+     * @return read-only view of policy.
+     */
+    public AdaptiveLocationPolicy.View getPolicy() {
+        return mPolicyView;
+    }
+
+    /**
+     * Subscribe. stream starts with the first subscriber.
+     * @param _subscriber you (caller).
+     * @param _intervalMillis shortest interval you need while moving.
+     * @param _highAccuracy true when you need GPS accuracy while moving.
+     */
+    public void subscribe(Subscriber _subscriber, long _intervalMillis, boolean _highAccuracy) {
+
+        boolean start;
+        int sessionId;
+
+        synchronized (mLock) {
+            mSubscribers.put(_subscriber, new Demand(_intervalMillis, _highAccuracy));
+            start = !running;
+            if (start) {
+                running = true;
+                mSessionId++;
+            }
+            sessionId = mSessionId;
+            applyDemandLocked(start);
+        }
+
+        if (start) {
+            Dlog.out(TAG, "LOCATION : starting stream #{}", sessionId, Dlog.i);
+            checkSettingsAndStart(sessionId);
+        }
+    }
+
+    /**
+     * Unsubscribe. stream stops when the last subscriber leaves.
+     * @param _subscriber you (caller).
+     */
+    public void unsubscribe(Subscriber _subscriber) {
+        synchronized (mLock) {
+            if (mSubscribers.remove(_subscriber) == null) {
+                return;
+            }
+            if (mSubscribers.isEmpty()) {
+                stopLocked();
+            } else {
+                applyDemandLocked(false);
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        synchronized (mLock) {
+            return mSubscribers.size();
+        }
+    }
+
+    public boolean isRunning() {
+        synchronized (mLock) {
+            return running;
+        }
+    }
+
+    /*
+	// ********************************************************************************************
+	// Internal
+	// ********************************************************************************************
+	*/
+
+    // call with mLock held.
+    private void applyDemandLocked(boolean _force) {
+        long interval = Long.MAX_VALUE;
+        boolean highAccuracy = false;
+        for (Demand demand : mSubscribers.values()) {
+            interval = Math.min(interval, demand.intervalMillis);
+            highAccuracy |= demand.highAccuracy;
+        }
+        if (mPolicy.setDemand(interval, highAccuracy) || _force) {
+            requestUpdatesLocked();
+        }
+    }
+
+    // call with mLock held. (re)request updates with current policy. same listener replaces old request.
+    private void requestUpdatesLocked() {
+        if (!updatesRequested) {
+            return;
+        }
+        Dlog.out(TAG, "LOCATION : request interval {}ms", mPolicy.getInterval(), Dlog.d);
+        mSource.requestUpdates(mPolicy.getInterval(), mPolicy.getFastestInterval(), mPolicy.getPriority(), mSourceListener);
+    }
+
+    // call with mLock held.
+    private void stopLocked() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        mSessionId++;
+        if (updatesRequested) {
+            updatesRequested = false;
+            mSource.removeUpdates(mSourceListener);
+        }
+        // movement seen before stop is stale on restart.
+        mPolicy.reset();
+        Dlog.out(TAG, "LOCATION : stream stopped", Dlog.i);
+    }
+
+    private void deliver(LocationFix fix) {
+
+        List<Subscriber> targets;
+
+        synchronized (mLock) {
+            if (!running) {
+                return;
+            }
+            targets = new ArrayList<>(mSubscribers.keySet());
+            boolean changed = mPolicy.onFix(fix.getSpeed(), fix.getAccuracy(), fix.getTime());
+            if (changed) {
+                requestUpdatesLocked();
+            }
+        }
+
+        for (Subscriber subscriber : targets) {
+            try {
+                subscriber.onLocation(fix);
+            } catch (RuntimeException e) {
+                Dlog.out(TAG, "LOCATION : subscriber threw exception : {}", e, Dlog.e);
+            }
+        }
+    }
+
+    private void checkSettingsAndStart(final int _sessionId) {
+
+        // resolution dialog is shown by LocationAsyncTask. stream does not own an Activity.
+        mSource.checkSettings(null, mPolicyView.getInterval(), mPolicyView.getPriority(), new LocationSource.SettingsCallback() {
+            @Override
+            public void onSettingsChecked(boolean satisfied) {
+                if (!satisfied) {
+                    Dlog.out(TAG, "LOCATION : location settings failed", Dlog.e);
+                    failSession(_sessionId);
+                    return;
+                }
+                synchronized (mLock) {
+                    if (!running || _sessionId != mSessionId || updatesRequested) {
+                        return;
+                    }
+                    updatesRequested = true;
+                    requestUpdatesLocked();
+                }
+            }
+        });
+    }
+
+    // settings not satisfied : stop the stream so the next subscribe checks again, and tell who can hear it.
+    private void failSession(int _sessionId) {
+
+        List<FailureSubscriber> targets = new ArrayList<>();
+
+        synchronized (mLock) {
+            if (!running || _sessionId != mSessionId) {
+                return;
+            }
+            Iterator<Subscriber> it = mSubscribers.keySet().iterator();
+            while (it.hasNext()) {
+                Subscriber subscriber = it.next();
+                if (subscriber instanceof FailureSubscriber) {
+                    targets.add((FailureSubscriber) subscriber);
+                    it.remove();
+                }
+            }
+            stopLocked();
+        }
+
+        for (FailureSubscriber subscriber : targets) {
+            try {
+                subscriber.onSettingsFailed();
+            } catch (RuntimeException e) {
+                Dlog.out(TAG, "LOCATION : subscriber threw exception : {}", e, Dlog.e);
+            }
+        }
+    }
+}
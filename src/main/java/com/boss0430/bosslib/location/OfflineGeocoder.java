@@ -0,0 +1,242 @@
+package com.boss0430.bosslib.location;
+
+import com.boss0430.bosslib.utils.Dlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reverse geocoder answering nearest-address queries from a local gazetteer file, without network.
+ * <br><br>
+ * Gazetteer file is made from CSV by OfflineGazetteerBuilder, desktop tool in test sources of this project,
+ * and read through memory-mapped file.<br>
+ * Points are stored as packed k-d tree (median of each range at its middle), so lookup walks
+ * the file directly. no deserialization, and almost nothing allocated but the result string.
+ * <br>
+ * Usage<br>
+ * 1. OfflineGeocoder geocoder = OfflineGeocoder.open(file);<br>
+ * 2. locationConverter.setOfflineGeocoder(geocoder); or geocoder.getAddress(lat, lon);<br>
+ * <br>
+ * File layout (big endian)<br>
+ * - header : int magic, int version, int pointCount, int reserved<br>
+ * - records : pointCount * (float lat, float lon, int adminOffset, int streetOffset), in packed k-d tree order<br>
+ * - strings : (unsigned short length, UTF-8 bytes) *<br>
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public class OfflineGeocoder implements BatchGeocoder.Lookup {
+
+    // file layout. see class doc.
+    static final int MAGIC = 0x42475A31; // "BGZ1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_SIZE = 16; // float lat, float lon, int adminOffset, int streetOffset
+    static final int NO_STRING = -1;
+
+    // meters per degree of latitude.
+    private static final double METERS_PER_DEGREE = 111195.0;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final static String TAG = "OfflineGeocoder";
+
+    private final RandomAccessFile mFile;
+    private final MappedByteBuffer mBuffer;
+    private final int pointCount;
+    private final int stringsBase;
+
+    private double maxDistanceMeters = 1000;
+
+    // per-thread search state, so query allocates nothing.
+    private final ThreadLocal<Search> mSearch = new ThreadLocal<Search>() {
+        @Override
+        protected Search initialValue() {
+            return new Search();
+        }
+    };
+
+    private static final class Search {
+        double lat;
+        double lon;
+        double cosLat;
+        double bestDist;
+        int bestIndex;
+    }
+
+    private OfflineGeocoder(RandomAccessFile _file, MappedByteBuffer _buffer) throws IOException {
+        mFile = _file;
+        mBuffer = _buffer;
+
+        if (_buffer.capacity() < HEADER_SIZE || _buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a gazetteer file");
+        }
+        if (_buffer.getInt(4) != VERSION) {
+            throw new IOException("unsupported gazetteer version : " + _buffer.getInt(4));
+        }
+        pointCount = _buffer.getInt(8);
+        // long : big count in a broken header must not wrap around into a "valid" offset.
+        long recordsEnd = HEADER_SIZE + (long) pointCount * RECORD_SIZE;
+        if (pointCount < 0 || recordsEnd > _buffer.capacity()) {
+            throw new IOException("broken gazetteer file. points : " + pointCount + ", length " + _buffer.capacity());
+        }
+        stringsBase = (int) recordsEnd;
+    }
+
+    /**
+     * Map gazetteer file.
+     * @param _file file made by OfflineGazetteerBuilder.
+     * @return OfflineGeocoder.
+     * @throws IOException when file can not be read or is not a gazetteer file.
+     */
+    public static OfflineGeocoder open(File _file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(_file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long size = channel.size();
+            // one MappedByteBuffer holds int offsets only.
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("not a gazetteer file. length " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            OfflineGeocoder geocoder = new OfflineGeocoder(raf, buffer);
+            Dlog.out(TAG, "LOCATION : gazetteer opened. points : " + geocoder.pointCount, Dlog.i);
+            return geocoder;
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Close file. mapping is released when this object is garbage collected.
+     */
+    public void close() {
+        try {
+            mFile.close();
+        } catch (IOException e) {
+            Dlog.out(TAG, "LOCATION : close failed : " + e, Dlog.e);
+        }
+    }
+
+    /**
+     * Points farther than this are not treated as the address of the coordinates.
+     * @param _meters default is 1000.
+     */
+    public void setMaxDistanceMeters(double _meters) {
+        this.maxDistanceMeters = _meters;
+    }
+
+    public int getPointCount() {
+        return pointCount;
+    }
+
+    /**
+     * Get address of nearest point.
+     * @param latitude latitude.
+     * @param longitude longitude.
+     * @return "admin street" of nearest point. empty string when no point within max distance.
+     */
+    public String getAddress(double latitude, double longitude) {
+        int index = findNearest(latitude, longitude);
+        if (index < 0) {
+            return "";
+        }
+        int record = HEADER_SIZE + index * RECORD_SIZE;
+        String admin = readString(mBuffer.getInt(record + 8));
+        String street = readString(mBuffer.getInt(record + 12));
+        if (admin.length() == 0) return street;
+        if (street.length() == 0) return admin;
+        return admin + " " + street;
+    }
+
+    @Override
+    public String lookup(double latitude, double longitude) {
+        return getAddress(latitude, longitude);
+    }
+
+    /**
+     * Find nearest point.
+     * @param latitude latitude.
+     * @param longitude longitude.
+     * @return point index in file, or -1 when no point within max distance.
+     */
+    public int findNearest(double latitude, double longitude) {
+        if (pointCount == 0) {
+            return -1;
+        }
+        Search s = mSearch.get();
+        s.lat = latitude;
+        s.lon = longitude;
+        s.cosLat = Math.cos(Math.toRadians(latitude));
+        s.bestIndex = -1;
+        double maxDeg = maxDistanceMeters / METERS_PER_DEGREE;
+        // only points nearer than max distance are accepted.
+        s.bestDist = maxDeg * maxDeg;
+
+        search(s, 0, pointCount, 0);
+        return s.bestIndex;
+    }
+
+    /**
+     * @return latitude of point at index.
+     */
+    public double getLatitude(int index) {
+        return mBuffer.getFloat(HEADER_SIZE + index * RECORD_SIZE);
+    }
+
+    /**
+     * @return longitude of point at index.
+     */
+    public double getLongitude(int index) {
+        return mBuffer.getFloat(HEADER_SIZE + index * RECORD_SIZE + 4);
+    }
+
+    // distance is in (equirectangular) degree squared.
+    private void search(Search s, int lo, int hi, int depth) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        int record = HEADER_SIZE + mid * RECORD_SIZE;
+        double pLat = mBuffer.getFloat(record);
+        double pLon = mBuffer.getFloat(record + 4);
+
+        double dy = s.lat - pLat;
+        double dx = (s.lon - pLon) * s.cosLat;
+        double dist = dx * dx + dy * dy;
+        if (dist < s.bestDist) {
+            s.bestDist = dist;
+            s.bestIndex = mid;
+        }
+
+        double diff = (depth & 1) == 0 ? dy : dx;
+        if (diff < 0) {
+            search(s, lo, mid, depth + 1);
+            if (diff * diff < s.bestDist) {
+                search(s, mid + 1, hi, depth + 1);
+            }
+        } else {
+            search(s, mid + 1, hi, depth + 1);
+            if (diff * diff < s.bestDist) {
+                search(s, lo, mid, depth + 1);
+            }
+        }
+    }
+
+    private String readString(int offset) {
+        if (offset == NO_STRING) {
+            return "";
+        }
+        int position = stringsBase + offset;
+        int length = mBuffer.getShort(position) & 0xFFFF;
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = mBuffer.get(position + 2 + i);
+        }
+        return new String(bytes, UTF8);
+    }
+}
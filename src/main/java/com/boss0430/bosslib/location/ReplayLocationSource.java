@@ -0,0 +1,435 @@
+package com.boss0430.bosslib.location;
+
+import android.content.Context;
+
+import com.boss0430.bosslib.utils.Dlog;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+/**
+ * LocationSource replaying a recorded track. no Play Services, runs on plain JVM too.
+ * <br><br>
+ * - Fixes are emitted with recorded gaps divided by speed factor. (1 : real time, 10 : 10x, 0 : no wait)<br>
+ * - Track pauses while nobody listens, so replay is deterministic regardless of session gaps.<br>
+ * - First fix of a session comes after firstFixDelay. (simulates time to first fix)<br>
+ * - Emitted fixes are stamped with current wall clock by default, so freshness checks behave like live fixes.<br>
+ * - Listeners are invoked on replay thread.<br>
+ * <br>
+ * Usage<br>
+ * ReplayLocationSource source = new ReplayLocationSource(ReplayLocationSource.readGpx(reader));<br>
+ * source.setSpeedFactor(10);<br>
+ * LocationHub hub = new LocationHub(source); or LocationHub.getInstance(context).setLocationSource(source);
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public class ReplayLocationSource implements LocationSource {
+
+    private static final class Request {
+        final long fastestIntervalMillis;
+        long lastRecordedTime = Long.MIN_VALUE;
+
+        Request(long _fastestIntervalMillis) {
+            this.fastestIntervalMillis = _fastestIntervalMillis;
+        }
+    }
+
+    private final static String TAG = "ReplayLocationSource";
+
+    private final List<LocationFix> mTrack;
+    private final Object mLock = new Object();
+
+    // guarded by mLock.
+    private final Map<Listener, Request> mRequests = new LinkedHashMap<>();
+    private Thread mThread;
+    private boolean closed = false;
+    private boolean finished = false;
+    private LocationFix mLastFix;
+    private long emittedCount = 0;
+
+    private volatile double speedFactor = 1;
+    private volatile boolean loop = false;
+    private volatile boolean restamp = true;
+    private volatile boolean settingsSatisfied = true;
+    private volatile long firstFixDelayMillis = 0;
+
+    /**
+     * Constructor.
+     * @param _track fixes in time order.
+     */
+    public ReplayLocationSource(List<LocationFix> _track) {
+        mTrack = Collections.unmodifiableList(new ArrayList<>(_track));
+    }
+
+    /**
+     * @param _factor recorded gaps are divided by this. 0 means no wait at all. default is 1. (real time)
+     */
+    public void setSpeedFactor(double _factor) { this.speedFactor = _factor; }
+
+    /**
+     * @param _loop start over at end of track. default is false.
+     */
+    public void setLoop(boolean _loop) { this.loop = _loop; }
+
+    /**
+     * @param _restamp stamp emitted fixes with current wall clock. default is true. false keeps recorded time.
+     */
+    public void setRestamp(boolean _restamp) { this.restamp = _restamp; }
+
+    /**
+     * @param _satisfied result of checkSettings. default is true.
+     */
+    public void setSettingsSatisfied(boolean _satisfied) { this.settingsSatisfied = _satisfied; }
+
+    /**
+     * @param _millis delay before first fix of every session. default is 0.
+     */
+    public void setFirstFixDelayMillis(long _millis) { this.firstFixDelayMillis = _millis; }
+
+    public int getTrackSize() { return mTrack.size(); }
+
+    public long getEmittedCount() {
+        synchronized (mLock) {
+            return emittedCount;
+        }
+    }
+
+    /**
+     * @return true when whole track has been emitted. (never with loop)
+     */
+    public boolean isFinished() {
+        synchronized (mLock) {
+            return finished;
+        }
+    }
+
+    /**
+     * Stop replay thread.
+     */
+    public void close() {
+        synchronized (mLock) {
+            closed = true;
+            mLock.notifyAll();
+        }
+    }
+
+    /*
+	// ********************************************************************************************
+	// LocationSource
+	// ********************************************************************************************
+	*/
+
+    @Override
+    public String getName() {
+        return "replay";
+    }
+
+    @Override
+    public void checkSettings(Context _caller, long _intervalMillis, int _priority, SettingsCallback _callback) {
+        _callback.onSettingsChecked(settingsSatisfied);
+    }
+
+    @Override
+    public void requestUpdates(long _intervalMillis, long _fastestIntervalMillis, int _priority, Listener _listener) {
+        synchronized (mLock) {
+            if (closed) {
+                return;
+            }
+            mRequests.put(_listener, new Request(_fastestIntervalMillis));
+            if (mThread == null) {
+                mThread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        runReplay();
+                    }
+                }, TAG);
+                mThread.setDaemon(true);
+                mThread.start();
+            }
+            mLock.notifyAll();
+        }
+    }
+
+    @Override
+    public void removeUpdates(Listener _listener) {
+        synchronized (mLock) {
+            mRequests.remove(_listener);
+            mLock.notifyAll();
+        }
+    }
+
+    @Override
+    public void getLastFix(LastFixCallback _callback) {
+        LocationFix fix;
+        synchronized (mLock) {
+            fix = mLastFix;
+        }
+        _callback.onLastFix(fix);
+    }
+
+    /*
+	// ********************************************************************************************
+	// Replay thread
+	// ********************************************************************************************
+	*/
+
+    private void runReplay() {
+
+        int index = 0;
+        long dueNanos = 0;
+        boolean sessionStart = true;
+        List<Listener> targets = new ArrayList<>();
+
+        while (true) {
+            LocationFix fix;
+            targets.clear();
+
+            synchronized (mLock) {
+                try {
+                    if (closed) {
+                        return;
+                    }
+                    if (mRequests.isEmpty()) {
+                        // pause track.
+                        sessionStart = true;
+                        mLock.wait();
+                        continue;
+                    }
+                    if (index >= mTrack.size()) {
+                        if (loop && !mTrack.isEmpty()) {
+                            index = 0;
+                        } else {
+                            finished = true;
+                            mLock.wait();
+                            continue;
+                        }
+                    }
+                    if (sessionStart) {
+                        sessionStart = false;
+                        dueNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(firstFixDelayMillis);
+                    }
+                    long waitNanos = dueNanos - System.nanoTime();
+                    if (waitNanos > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(mLock, waitNanos);
+                        continue;
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+
+                LocationFix recorded = mTrack.get(index);
+                fix = restamp
+                        ? new LocationFix(recorded.getLatitude(), recorded.getLongitude(), recorded.getAccuracy(),
+                                System.currentTimeMillis(), recorded.getSpeed(), recorded.getBearing())
+                        : recorded;
+                for (Map.Entry<Listener, Request> entry : mRequests.entrySet()) {
+                    Request request = entry.getValue();
+                    if (request.lastRecordedTime == Long.MIN_VALUE
+                            || recorded.getTime() - request.lastRecordedTime >= request.fastestIntervalMillis) {
+                        request.lastRecordedTime = recorded.getTime();
+                        targets.add(entry.getKey());
+                    }
+                }
+                mLastFix = fix;
+                emittedCount++;
+
+                index++;
+                if (index < mTrack.size()) {
+                    long gapMillis = Math.max(0, mTrack.get(index).getTime() - recorded.getTime());
+                    double factor = speedFactor;
+                    dueNanos += factor <= 0 ? 0 : (long) (TimeUnit.MILLISECONDS.toNanos(gapMillis) / factor);
+                }
+            }
+
+            // outside lock, listeners may call back into this source.
+            for (Listener listener : targets) {
+                try {
+                    listener.onFix(fix);
+                } catch (RuntimeException e) {
+                    Dlog.out(TAG, "LOCATION : listener threw exception : {}", e, Dlog.e);
+                }
+            }
+        }
+    }
+
+    /*
+	// ********************************************************************************************
+	// Track files
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Read CSV track. columns : time(epoch millis),latitude,longitude[,accuracy[,speed[,bearing]]]<br>
+     * header line and empty lines are skipped. missing optional values are unknown. (-1)
+     * @param _reader CSV. not closed here.
+     * @return fixes.
+     * @throws IOException when reading fails, or a line is broken.
+     */
+    public static List<LocationFix> readCsv(Reader _reader) throws IOException {
+        BufferedReader reader = _reader instanceof BufferedReader ? (BufferedReader) _reader : new BufferedReader(_reader);
+        List<LocationFix> fixes = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            line = line.trim();
+            if (line.length() == 0 || line.startsWith("#")) {
+                continue;
+            }
+            String[] columns = line.split(",");
+            if (lineNumber == 1 && !columns[0].trim().matches("-?\\d+")) {
+                // header
+                continue;
+            }
+            if (columns.length < 3) {
+                throw new IOException("broken csv line " + lineNumber + " : " + line);
+            }
+            try {
+                fixes.add(new LocationFix(
+                        Double.parseDouble(columns[1].trim()),
+                        Double.parseDouble(columns[2].trim()),
+                        columns.length > 3 ? Float.parseFloat(columns[3].trim()) : -1,
+                        Long.parseLong(columns[0].trim()),
+                        columns.length > 4 ? Float.parseFloat(columns[4].trim()) : -1,
+                        columns.length > 5 ? Float.parseFloat(columns[5].trim()) : -1));
+            } catch (NumberFormatException e) {
+                throw new IOException("broken csv line " + lineNumber + " : " + line);
+            }
+        }
+        return fixes;
+    }
+
+    /**
+     * Read track points (trkpt) of GPX. time, speed and course (GPX 1.0) are read when present.
+     * @param _reader GPX. not closed here.
+     * @return fixes.
+     * @throws IOException when reading or parsing fails.
+     */
+    public static List<LocationFix> readGpx(Reader _reader) throws IOException {
+        final List<LocationFix> fixes = new ArrayList<>();
+
+        DefaultHandler handler = new DefaultHandler() {
+            private boolean inPoint = false;
+            private double lat;
+            private double lon;
+            private long time;
+            private float speed;
+            private float course;
+            private final StringBuilder text = new StringBuilder();
+
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+                String name = nameOf(localName, qName);
+                text.setLength(0);
+                if ("trkpt".equals(name)) {
+                    try {
+                        lat = Double.parseDouble(attributes.getValue("lat"));
+                        lon = Double.parseDouble(attributes.getValue("lon"));
+                    } catch (RuntimeException e) {
+                        throw new SAXException("broken trkpt : " + e);
+                    }
+                    time = fixes.isEmpty() ? 0 : fixes.get(fixes.size() - 1).getTime() + 1000;
+                    speed = -1;
+                    course = -1;
+                    inPoint = true;
+                }
+            }
+
+            @Override
+            public void characters(char[] ch, int start, int length) {
+                text.append(ch, start, length);
+            }
+
+            @Override
+            public void endElement(String uri, String localName, String qName) throws SAXException {
+                String name = nameOf(localName, qName);
+                if (!inPoint) {
+                    return;
+                }
+                try {
+                    if ("time".equals(name)) {
+                        time = parseIsoTime(text.toString().trim());
+                    } else if ("speed".equals(name)) {
+                        speed = Float.parseFloat(text.toString().trim());
+                    } else if ("course".equals(name)) {
+                        course = Float.parseFloat(text.toString().trim());
+                    } else if ("trkpt".equals(name)) {
+                        fixes.add(new LocationFix(lat, lon, -1, time, speed, course));
+                        inPoint = false;
+                    }
+                } catch (RuntimeException e) {
+                    throw new SAXException("broken " + name + " : " + e);
+                }
+            }
+        };
+
+        try {
+            SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            factory.newSAXParser().parse(new InputSource(_reader), handler);
+        } catch (ParserConfigurationException | SAXException e) {
+            throw new IOException("broken gpx : " + e);
+        }
+        return fixes;
+    }
+
+    private static String nameOf(String _localName, String _qName) {
+        if (_localName != null && _localName.length() > 0) {
+            return _localName;
+        }
+        int colon = _qName.indexOf(':');
+        return colon < 0 ? _qName : _qName.substring(colon + 1);
+    }
+
+    /**
+     * Parse "yyyy-MM-ddTHH:mm:ss[.SSS][Z|+hh:mm]" of GPX. no zone means UTC.
+     * @param _text time text.
+     * @return epoch millis.
+     */
+    static long parseIsoTime(String _text) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(Integer.parseInt(_text.substring(0, 4)),
+                Integer.parseInt(_text.substring(5, 7)) - 1,
+                Integer.parseInt(_text.substring(8, 10)),
+                Integer.parseInt(_text.substring(11, 13)),
+                Integer.parseInt(_text.substring(14, 16)),
+                Integer.parseInt(_text.substring(17, 19)));
+        long millis = calendar.getTimeInMillis();
+
+        int pos = 19;
+        if (pos < _text.length() && _text.charAt(pos) == '.') {
+            int end = pos + 1;
+            while (end < _text.length() && Character.isDigit(_text.charAt(end))) {
+                end++;
+            }
+            String fraction = (_text.substring(pos + 1, end) + "000").substring(0, 3);
+            millis += Integer.parseInt(fraction);
+            pos = end;
+        }
+        if (pos < _text.length() && (_text.charAt(pos) == '+' || _text.charAt(pos) == '-')) {
+            int sign = _text.charAt(pos) == '+' ? 1 : -1;
+            int hours = Integer.parseInt(_text.substring(pos + 1, pos + 3));
+            int minutes = _text.length() >= pos + 6 ? Integer.parseInt(_text.substring(pos + 4, pos + 6)) : 0;
+            millis -= sign * (hours * 3600000L + minutes * 60000L);
+        }
+        return millis;
+    }
+}
@@ -0,0 +1,191 @@
+package com.boss0430.bosslib.location;
+
+/**
+ * Streaming track simplification. emits only fixes needed to keep the track within tolerance.
+ * <br><br>
+ * - Cone intersection (sleeve) method : from last emitted fix, every fix narrows the cone of directions whose line
+ *   passes within tolerance of it. fix out of the cone closes the segment at previous fix.<br>
+ * - O(1) time and memory per fix. only anchor, previous fix and cone are kept.<br>
+ * - Any step back toward anchor closes the segment too, once track has left tolerance of anchor.
+ *   segment then ends at the farthest fix, so every dropped fix projects inside it and stays within tolerance.<br>
+ * - call flush at end of track. last fix is held till the next one decides about it.<br>
+ * <br>
+ * Usage<br>
+ * 1. TrajectoryCompressor compressor = new TrajectoryCompressor(10, sink);<br>
+ * 2. LocationStream.getInstance(context).subscribe(compressor, 1000, true);<br>
+ * 3. compressor.flush(); when recording ends.
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public final class TrajectoryCompressor implements LocationStream.Subscriber {
+
+    /**
+     * Receives significant fixes in order.
+     */
+    public interface Sink {
+        void onPoint(LocationFix fix);
+    }
+
+    private final double toleranceMeters;
+    private final Sink mSink;
+    private long maxIntervalMillis = 0;
+
+    // guarded by this.
+    private LocationFix anchor;
+    private double anchorCos;
+    private LocationFix previous;
+    private boolean hasCone;
+    // cone as offsets from reference direction, so it never wraps around +-PI.
+    private double coneReference;
+    private double coneLow;
+    private double coneHigh;
+    private double farthest;
+
+    private long inputCount = 0;
+    private long outputCount = 0;
+
+    /**
+     * Constructor.
+     * @param _toleranceMeters max distance of dropped fix from simplified track.
+     * @param _sink receives significant fixes.
+     */
+    public TrajectoryCompressor(double _toleranceMeters, Sink _sink) {
+        if (!(_toleranceMeters > 0)) {
+            throw new IllegalArgumentException("tolerance must be positive : " + _toleranceMeters);
+        }
+        this.toleranceMeters = _toleranceMeters;
+        this.mSink = _sink;
+    }
+
+    /**
+     * Emit a fix at least this often, even on straight line. (keeps time resolution of track)
+     * @param _millis max time between emitted fixes. 0 or less for no limit. (default)
+     */
+    public synchronized void setMaxIntervalMillis(long _millis) {
+        this.maxIntervalMillis = _millis;
+    }
+
+    @Override
+    public void onLocation(LocationFix fix) {
+        onFix(fix);
+    }
+
+    /**
+     * Feed a fix. fixes must come in time order.
+     * @param _fix fix.
+     */
+    public synchronized void onFix(LocationFix _fix) {
+
+        inputCount++;
+
+        if (anchor == null) {
+            emit(_fix);
+            return;
+        }
+
+        if (!accept(_fix)) {
+            // _fix breaks the segment. previous fix is the end of it, and the start of next one.
+            emit(previous);
+            accept(_fix);
+        }
+        previous = _fix;
+
+        if (maxIntervalMillis > 0 && _fix.getTime() - anchor.getTime() >= maxIntervalMillis) {
+            emit(_fix);
+        }
+    }
+
+    /**
+     * Emit held fix. call at end of track.
+     */
+    public synchronized void flush() {
+        if (previous != null) {
+            emit(previous);
+        }
+    }
+
+    /**
+     * Forget the track. next fix starts new one.
+     */
+    public synchronized void reset() {
+        anchor = null;
+        previous = null;
+        hasCone = false;
+    }
+
+    // narrow cone by _fix. false when _fix is out of it.
+    private boolean accept(LocationFix _fix) {
+
+        double dy = (_fix.getLatitude() - anchor.getLatitude()) * Geofence.METERS_PER_DEGREE;
+        double dx = (_fix.getLongitude() - anchor.getLongitude()) * Geofence.METERS_PER_DEGREE * anchorCos;
+        double distance = Math.sqrt(dx * dx + dy * dy);
+
+        if (distance < farthest && farthest > toleranceMeters) {
+            // coming back. a shorter segment would leave fixes beyond its end farther than tolerance.
+            return false;
+        }
+        farthest = Math.max(farthest, distance);
+
+        if (distance <= toleranceMeters) {
+            // any direction passes near it.
+            return true;
+        }
+
+        double direction = Math.atan2(dy, dx);
+        double half = Math.asin(toleranceMeters / distance);
+
+        if (!hasCone) {
+            hasCone = true;
+            coneReference = direction;
+            coneLow = -half;
+            coneHigh = half;
+            return true;
+        }
+
+        double offset = direction - coneReference;
+        if (offset > Math.PI) {
+            offset -= 2 * Math.PI;
+        } else if (offset < -Math.PI) {
+            offset += 2 * Math.PI;
+        }
+        if (offset < coneLow || offset > coneHigh) {
+            return false;
+        }
+        coneLow = Math.max(coneLow, offset - half);
+        coneHigh = Math.min(coneHigh, offset + half);
+        return true;
+    }
+
+    private void emit(LocationFix _fix) {
+        if (_fix == anchor) {
+            return;
+        }
+        anchor = _fix;
+        anchorCos = Geofence.cosOf(_fix.getLatitude());
+        previous = null;
+        hasCone = false;
+        farthest = 0;
+        outputCount++;
+        mSink.onPoint(_fix);
+    }
+
+    public synchronized long getInputCount() {
+        return inputCount;
+    }
+
+    public synchronized long getOutputCount() {
+        return outputCount;
+    }
+
+    /**
+     * @return input fixes per emitted fix. (10 means 90% dropped) 1 when nothing has been emitted.
+     */
+    public synchronized double getCompressionRatio() {
+        return outputCount == 0 ? 1 : (double) inputCount / outputCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "TrajectoryCompressor[" + inputCount + " -> " + outputCount + ", ratio " + getCompressionRatio() + "]";
+    }
+}
@@ -4,9 +4,18 @@ import android.content.Context;
 import android.support.v4.app.Fragment;
 import android.util.Log;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
 /**
  * Class that Display logs.<br>
  * Several variables set to public static. see'out' method to check reason.
+ * <br><br>
+ * - setTagLevel / setDefaultLevel : minimum level per tag. checked before message is made. (one map lookup)<br>
+ * - DlogRateLimiter keeps hot statements on at bounded rate. setSuppressionReport prints what they suppressed.
  * @since 2019 Mar 27
  * @author boss0430
  * source comes from "Dbg.java" file in several projects.
@@ -15,7 +24,22 @@ public class Dlog {
 
     // This text is written just for test
 
-    private static boolean showLog = false;
+    private static volatile boolean showLog = false;
+
+    // persistent sink. null means logcat only.
+    private static volatile DlogFileSink fileSink;
+
+    // minimum level per tag. replaced as a whole (copy on write), read without lock.
+    private static volatile Map<String, Integer> sTagLevels = Collections.emptyMap();
+    private static volatile int defaultLevel = Log.VERBOSE;
+    // false : every level of every tag passes. skips map lookup.
+    private static volatile boolean levelFiltering = false;
+
+    private static final Object sConfigLock = new Object();
+    private static TimeoutWheel.Timeout sReportTimeout;
+    private static long sReportPeriodMillis;
+
+    private final static String TAG = "Dlog";
 
     @SuppressWarnings("WeakerAccess")
     public static final int v = Log.VERBOSE;
@@ -47,11 +71,165 @@ public class Dlog {
     @SuppressWarnings("WeakerAccess")
     public static final String error = "e";
 
+    /**
+     * Deferred message. 'get' is called only when log is really printed.<br>
+     * Keep instance in a field (not capturing anonymous class on each call) to make it allocation-free.
+     */
+    public interface MessageSupplier {
+        String get();
+    }
+
     public Dlog() {
     }
 
     public static boolean isShowLog() { return showLog; }
 
+    /**
+     * Turn log on / off.
+     * @param _showLog print logs?
+     */
+    public static void setShowLog(boolean _showLog) { showLog = _showLog; }
+
+    /**
+     * Write logs to files too. logs go to the sink even when showLog is off.
+     * dropped records of the sink are reported as Metrics.LOG_DROPPED.
+     * @param _sink started DlogFileSink. null to stop writing files.
+     * @see DlogFileSink
+     */
+    public static void setFileSink(final DlogFileSink _sink) {
+        fileSink = _sink;
+        Metrics.gauge(Metrics.LOG_DROPPED, _sink == null ? null : new Metrics.Gauge() {
+            @Override
+            public long get() {
+                return _sink.getDroppedCount();
+            }
+        });
+    }
+
+    public static DlogFileSink getFileSink() { return fileSink; }
+
+    /**
+     * @return true when logs go anywhere. (logcat or file sink)
+     */
+    public static boolean isEnabled() { return showLog || fileSink != null; }
+
+    /*
+	// ********************************************************************************************
+	// Level filtering
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Minimum level of tags without own level. default is Dlog.v (everything).
+     * @param _level Dlog.v,d,i,w,e
+     */
+    public static void setDefaultLevel(int _level) {
+        synchronized (sConfigLock) {
+            defaultLevel = _level;
+            levelFiltering = _level > Log.VERBOSE || !sTagLevels.isEmpty();
+        }
+    }
+
+    /**
+     * Minimum level of a tag. can be changed at runtime.
+     * @param _tag TAG string. (simple class name for Context / Fragment callers)
+     * @param _level Dlog.v,d,i,w,e. lower logs of the tag are skipped before message is made.
+     */
+    public static void setTagLevel(String _tag, int _level) {
+        synchronized (sConfigLock) {
+            Map<String, Integer> levels = new HashMap<>(sTagLevels);
+            levels.put(_tag, _level);
+            sTagLevels = levels;
+            levelFiltering = true;
+        }
+    }
+
+    /**
+     * Remove levels of every tag. default level applies to all.
+     */
+    public static void clearTagLevels() {
+        synchronized (sConfigLock) {
+            sTagLevels = Collections.emptyMap();
+            levelFiltering = defaultLevel > Log.VERBOSE;
+        }
+    }
+
+    /**
+     * @param _tag TAG string.
+     * @param _level Dlog.v,d,i,w,e
+     * @return true when log of _tag at _level would be printed.
+     */
+    public static boolean isLoggable(String _tag, int _level) {
+        return isEnabled() && passesLevel(_tag, _level);
+    }
+
+    private static boolean passesLevel(String _tag, int _level) {
+        if (!levelFiltering) {
+            return true;
+        }
+        Integer min = sTagLevels.get(_tag);
+        return _level >= (min != null ? min : defaultLevel);
+    }
+
+    /*
+	// ********************************************************************************************
+	// Suppression report
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Print count of suppressed logs of every DlogRateLimiter periodically. (on TimeoutWheel thread)
+     * limiters without suppression are not printed.
+     * @param _periodMillis period. 0 or less stops report.
+     */
+    public static void setSuppressionReport(long _periodMillis) {
+        synchronized (sConfigLock) {
+            if (sReportTimeout != null) {
+                sReportTimeout.cancel();
+                sReportTimeout = null;
+            }
+            sReportPeriodMillis = _periodMillis;
+            if (_periodMillis > 0) {
+                scheduleReportLocked();
+            }
+        }
+    }
+
+    // call with sConfigLock held.
+    private static void scheduleReportLocked() {
+        final long period = sReportPeriodMillis;
+        sReportTimeout = TimeoutWheel.getDefault().schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (sConfigLock) {
+                    if (sReportPeriodMillis != period || sReportTimeout == null) {
+                        return;
+                    }
+                    scheduleReportLocked();
+                }
+                reportSuppressed();
+            }
+        }, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Print suppressed counts since last report now.
+     * @return total count reported.
+     */
+    public static long reportSuppressed() {
+        long total = 0;
+        for (DlogRateLimiter limiter : DlogRateLimiter.all()) {
+            long count = limiter.takeUnreported();
+            if (count > 0) {
+                total += count;
+                if (isEnabled()) {
+                    print(TAG, format("suppressed {} log(s) of {}", String.valueOf(count), limiter.getName()), i);
+                }
+            }
+        }
+        return total;
+    }
+
     /**
      * Print Log to LogCat (DEBUG)
      * @param _classOrTag Context of caller / or / TAG string
@@ -62,20 +240,17 @@ public class Dlog {
      */
     public static void out(Object _classOrTag, String _msg) {
 
-        if (!showLog) {
+        if (!showLog && fileSink == null) {
             return;
         }
 
-        String tag;
-
-        if (_classOrTag instanceof Context || _classOrTag instanceof Fragment) {
-            tag = _classOrTag.getClass().getSimpleName();
-        } else {
-            tag = _classOrTag.toString();
+        String tag = tagOf(_classOrTag);
+        if (!passesLevel(tag, d)) {
+            return;
         }
 
         // _msg = "[" + _msg + "]";
-        Log.d(tag, _msg);
+        print(tag, _msg, d);
 
     } // ENDOF out FUNCTION.
 
@@ -90,39 +265,163 @@ public class Dlog {
      */
     public static void out(Object _classOrTag, String _msg, Object _type) {
 
-        if (!showLog) {
+        if (!showLog && fileSink == null) {
             return;
         }
 
-        String tag;
-        String logType;
-
-        if (_classOrTag instanceof Context || _classOrTag instanceof Fragment) {
-            tag = _classOrTag.getClass().getSimpleName();
-        } else {
-            tag = _classOrTag.toString();
-        }
+        String tag = tagOf(_classOrTag);
+        int level;
 
         if (_type instanceof String) {
-            logType = _type.toString();
+            level = convertLogType(_type.toString());
         } else {
-            logType = convertLogType((Integer) _type);
+            level = (Integer) _type;
+        }
+        if (!passesLevel(tag, level)) {
+            return;
         }
 
         // _msg = "[" + _msg + "]";
+        print(tag, _msg, level);
+    } // ENDOF out FUNCTION.
 
-        if (verbose.equalsIgnoreCase(logType)) {
-            Log.v(tag, _msg);
-        } else if (debug.equalsIgnoreCase(logType)) {
-            Log.d(tag, _msg);
-        } else if (info.equalsIgnoreCase(logType)) {
-            Log.i(tag, _msg);
-        } else if (warn.equalsIgnoreCase(logType)) {
-            Log.w(tag, _msg);
-        } else if (error.equalsIgnoreCase(logType)) {
-            Log.e(tag, _msg);
+    /**
+     * Print Log to LogCat. Same as out(Object, String, Object) but level is primitive int, so nothing is boxed.
+     * @param _classOrTag Context of caller / or / TAG string
+     * @param _msg Message that wants to display
+     * @param _type Dlog.v,d,i,w,e
+     * @since 2026 Oct 17
+     */
+    public static void out(Object _classOrTag, String _msg, int _type) {
+
+        if (!showLog && fileSink == null) {
+            return;
+        }
+
+        String tag = tagOf(_classOrTag);
+        if (!passesLevel(tag, _type)) {
+            return;
+        }
+
+        print(tag, _msg, _type);
+    }
+
+    /**
+     * Print Log to LogCat. message is made only when log is on.
+     * @param _classOrTag Context of caller / or / TAG string
+     * @param _supplier makes message.
+     * @param _type Dlog.v,d,i,w,e
+     * @since 2026 Oct 17
+     */
+    public static void out(Object _classOrTag, MessageSupplier _supplier, int _type) {
+
+        if (!showLog && fileSink == null) {
+            return;
+        }
+
+        String tag = tagOf(_classOrTag);
+        if (!passesLevel(tag, _type)) {
+            return;
+        }
+
+        print(tag, _supplier.get(), _type);
+    }
+
+    /**
+     * Print Log to LogCat. first "{}" in _format is replaced with _arg only when log is on.<br>
+     * ex) Dlog.out(TAG, "LOCATION : Latitude : {}", location.getLatitude(), Dlog.i);
+     * @param _classOrTag Context of caller / or / TAG string
+     * @param _format message with "{}"
+     * @param _arg value of "{}"
+     * @param _type Dlog.v,d,i,w,e
+     * @since 2026 Oct 17
+     */
+    public static void out(Object _classOrTag, String _format, double _arg, int _type) {
+
+        if (!showLog && fileSink == null) {
+            return;
+        }
+
+        String tag = tagOf(_classOrTag);
+        if (!passesLevel(tag, _type)) {
+            return;
         }
-    } // ENDOF out FUNCTION.
+
+        print(tag, format(_format, String.valueOf(_arg), null), _type);
+    }
+
+    /**
+     * Print Log to LogCat. "{}"s in _format are replaced with _arg0, _arg1 only when log is on.
+     * @see #out(Object, String, double, int)
+     */
+    public static void out(Object _classOrTag, String _format, double _arg0, double _arg1, int _type) {
+
+        if (!showLog && fileSink == null) {
+            return;
+        }
+
+        String tag = tagOf(_classOrTag);
+        if (!passesLevel(tag, _type)) {
+            return;
+        }
+
+        print(tag, format(_format, String.valueOf(_arg0), String.valueOf(_arg1)), _type);
+    }
+
+    /**
+     * Print Log to LogCat. first "{}" in _format is replaced with _arg only when log is on.
+     * @see #out(Object, String, double, int)
+     */
+    public static void out(Object _classOrTag, String _format, long _arg, int _type) {
+
+        if (!showLog && fileSink == null) {
+            return;
+        }
+
+        String tag = tagOf(_classOrTag);
+        if (!passesLevel(tag, _type)) {
+            return;
+        }
+
+        print(tag, format(_format, String.valueOf(_arg), null), _type);
+    }
+
+    /**
+     * Print Log to LogCat. first "{}" in _format is replaced with _arg only when log is on.
+     * @see #out(Object, String, double, int)
+     */
+    public static void out(Object _classOrTag, String _format, boolean _arg, int _type) {
+
+        if (!showLog && fileSink == null) {
+            return;
+        }
+
+        String tag = tagOf(_classOrTag);
+        if (!passesLevel(tag, _type)) {
+            return;
+        }
+
+        print(tag, format(_format, String.valueOf(_arg), null), _type);
+    }
+
+    /**
+     * Print Log to LogCat. first "{}" in _format is replaced with _arg only when log is on.
+     * toString of _arg is not called when log is off.
+     * @see #out(Object, String, double, int)
+     */
+    public static void out(Object _classOrTag, String _format, Object _arg, int _type) {
+
+        if (!showLog && fileSink == null) {
+            return;
+        }
+
+        String tag = tagOf(_classOrTag);
+        if (!passesLevel(tag, _type)) {
+            return;
+        }
+
+        print(tag, format(_format, String.valueOf(_arg), null), _type);
+    }
 
 
     /**
@@ -136,84 +435,152 @@ public class Dlog {
      */
     public static void detailOut(Object _classOrTag, String _msg, Object _type) {
 
-        if (!showLog) {
+        if (!showLog && fileSink == null) {
             return;
         }
 
-        String tag;
-        String logType;
+        int level;
 
-        if (_classOrTag instanceof Context || _classOrTag instanceof Fragment) {
-            tag = _classOrTag.getClass().getSimpleName();
+        if (_type instanceof String) {
+            level = convertLogType(_type.toString());
         } else {
-            tag = _classOrTag.toString();
+            level = (Integer) _type;
+        }
+        String tag = tagOf(_classOrTag);
+        if (!passesLevel(tag, level)) {
+            return;
         }
 
-        if (_type instanceof String) {
-            logType = _type.toString();
-        } else {
-            logType = convertLogType((Integer) _type);
+        // 0 : detailOut, 1 : caller.
+        printDetail(tag, _msg, level, DlogCallSite.capture(1));
+    }
+
+    /**
+     * Same as detailOut(Object, String, Object) but level is primitive int.
+     * @param _classOrTag Context of caller / or / TAG string
+     * @param _msg Message that wants to display
+     * @param _type Dlog.v,d,i,w,e
+     * @since 2026 Oct 17
+     */
+    public static void detailOut(Object _classOrTag, String _msg, int _type) {
+
+        if (!showLog && fileSink == null) {
+            return;
         }
 
-        StackTraceElement[] stackTraceElement = Thread.currentThread().getStackTrace();
-        int currentIndex = -1;
-        for (int i = 0; i < stackTraceElement.length; i++) {
-            if (stackTraceElement[i].getMethodName().compareTo("out") == 0) {
-                currentIndex = i + 1;
-                break;
-            }
+        String tag = tagOf(_classOrTag);
+        if (!passesLevel(tag, _type)) {
+            return;
         }
 
-        if (currentIndex > 0) {
-            String fullClassName = stackTraceElement[currentIndex].getClassName();
-            String className = fullClassName.substring(fullClassName.lastIndexOf(".") + 1);
-            String methodName = stackTraceElement[currentIndex].getMethodName();
-            String lineNumber = String.valueOf(stackTraceElement[currentIndex].getLineNumber());
+        printDetail(tag, _msg, _type, DlogCallSite.capture(1));
+    }
 
-            // Log.i(tag, msg);
-            // Log.i(tag + " position", "at " + fullClassName + "." + methodName +
-            // "(" + className + ".java:" + lineNumber + ")");
+    /**
+     * detailOut with call site resolved in advance. no stack capture at all.
+     * @param _site keep DlogCallSite.here() in a static field of caller.
+     * @param _classOrTag Context of caller / or / TAG string
+     * @param _msg Message that wants to display
+     * @param _type Dlog.v,d,i,w,e
+     * @since 2026 Oct 17
+     */
+    public static void detailOut(DlogCallSite _site, Object _classOrTag, String _msg, int _type) {
 
-            if (verbose.equalsIgnoreCase(logType)) {
-                Log.v(tag, _msg);
-                Log.v(tag + " position", "at " + fullClassName + "." + methodName + "(" + className + ".java:" + lineNumber + ")");
-            } else if (debug.equalsIgnoreCase(logType)) {
-                Log.d(tag, _msg);
-                Log.d(tag + " position", "at " + fullClassName + "." + methodName + "(" + className + ".java:" + lineNumber + ")");
-            } else if (info.equalsIgnoreCase(logType)) {
-                Log.i(tag, _msg);
-                Log.i(tag + " position", "at " + fullClassName + "." + methodName + "(" + className + ".java:" + lineNumber + ")");
-            } else if (warn.equalsIgnoreCase(logType)) {
-                Log.w(tag, _msg);
-                Log.w(tag + " position", "at " + fullClassName + "." + methodName + "(" + className + ".java:" + lineNumber + ")");
-            } else if (error.equalsIgnoreCase(logType)) {
-                Log.e(tag, _msg);
-                Log.e(tag + " position", "at " + fullClassName + "." + methodName + "(" + className + ".java:" + lineNumber + ")");
-            }
+        if (!showLog && fileSink == null) {
+            return;
+        }
+
+        String tag = tagOf(_classOrTag);
+        if (!passesLevel(tag, _type)) {
+            return;
+        }
+
+        printDetail(tag, _msg, _type, _site);
+    }
+
+    private static void printDetail(String tag, String _msg, int _type, DlogCallSite _site) {
+        if (_site == null) {
+            return;
+        }
+        print(tag, _msg, _type);
+        print(tag + " position", _site.getPosition(), _type);
+    }
+
+    // simple name of Context / Fragment classes. getSimpleName is slow, so cache it per class.
+    private static final ConcurrentHashMap<Class<?>, String> sTagCache = new ConcurrentHashMap<>();
+
+    private static String tagOf(Object _classOrTag) {
+        if (_classOrTag instanceof Context || _classOrTag instanceof Fragment) {
+            return simpleNameOf(_classOrTag.getClass());
+        }
+        return _classOrTag.toString();
+    }
+
+    static String simpleNameOf(Class<?> _class) {
+        String name = sTagCache.get(_class);
+        if (name == null) {
+            name = _class.getSimpleName();
+            sTagCache.put(_class, name);
         }
+        return name;
     }
 
-    private static String convertLogType(int _typenum) {
-        String rtnStr = "";
-        switch (_typenum) {
+    private static void print(String tag, String _msg, int _type) {
+        final DlogFileSink sink = fileSink;
+        if (sink != null) {
+            sink.offer(_type, tag, _msg);
+        }
+        if (!showLog) {
+            return;
+        }
+        switch (_type) {
             case v:
-                rtnStr = verbose;
+                Log.v(tag, _msg);
                 break;
             case d:
-                rtnStr = debug;
+                Log.d(tag, _msg);
                 break;
             case i:
-                rtnStr = info;
+                Log.i(tag, _msg);
                 break;
             case w:
-                rtnStr = warn;
+                Log.w(tag, _msg);
                 break;
             case e:
-                rtnStr = error;
+                Log.e(tag, _msg);
                 break;
             default:
                 break;
         }
-        return rtnStr;
+    }
+
+    // replace first / second "{}" of _format.
+    private static String format(String _format, String _arg0, String _arg1) {
+        StringBuilder sb = new StringBuilder(_format.length() + 32);
+        int from = 0;
+        int at = _format.indexOf("{}");
+        if (at < 0) {
+            return _format;
+        }
+        sb.append(_format, from, at).append(_arg0);
+        from = at + 2;
+        if (_arg1 != null) {
+            at = _format.indexOf("{}", from);
+            if (at >= 0) {
+                sb.append(_format, from, at).append(_arg1);
+                from = at + 2;
+            }
+        }
+        sb.append(_format, from, _format.length());
+        return sb.toString();
+    }
+
+    private static int convertLogType(String _typeStr) {
+        if (verbose.equalsIgnoreCase(_typeStr)) return v;
+        if (debug.equalsIgnoreCase(_typeStr)) return d;
+        if (info.equalsIgnoreCase(_typeStr)) return i;
+        if (warn.equalsIgnoreCase(_typeStr)) return w;
+        if (error.equalsIgnoreCase(_typeStr)) return e;
+        return -1;
     }
 }
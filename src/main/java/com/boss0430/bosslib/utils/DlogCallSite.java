@@ -0,0 +1,88 @@
+package com.boss0430.bosslib.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolved caller location of Dlog.detailOut.
+ * <br><br>
+ * - Caller frame is taken by fixed index from a Throwable made in Dlog. no scan of every frame.<br>
+ * &nbsp;&nbsp;(Android has no depth-limited stack walker, so capture itself still costs a stack walk.)<br>
+ * - Resolved sites (and their position strings) are cached, so each call site is formatted once.<br>
+ * - Keep 'DlogCallSite.here()' in a static field to skip stack capture completely.<br>
+ * ex) private static final DlogCallSite SITE = DlogCallSite.here();<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;Dlog.detailOut(SITE, TAG, "message", Dlog.d);
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public final class DlogCallSite {
+
+    // same StackTraceElement (class, method, file, line) shares one site.
+    private static final ConcurrentHashMap<StackTraceElement, DlogCallSite> sCache = new ConcurrentHashMap<>();
+
+    private static final int MAX_CACHE_SIZE = 4096;
+
+    private final String className;
+    private final String methodName;
+    private final int lineNumber;
+    private final String position;
+
+    private DlogCallSite(StackTraceElement _element) {
+        String fullClassName = _element.getClassName();
+        String simpleName = fullClassName.substring(fullClassName.lastIndexOf(".") + 1);
+        this.className = fullClassName;
+        this.methodName = _element.getMethodName();
+        this.lineNumber = _element.getLineNumber();
+        this.position = "at " + fullClassName + "." + methodName + "(" + simpleName + ".java:" + lineNumber + ")";
+    }
+
+    /**
+     * Call site of the method that calls this.
+     * @return DlogCallSite. null when stack trace is not available.
+     */
+    public static DlogCallSite here() {
+        return capture(1);
+    }
+
+    /**
+     * Capture call site.
+     * @param _depth 0 is the method that calls capture, 1 is its caller, ...
+     * @return DlogCallSite. null when stack trace is not available.
+     */
+    static DlogCallSite capture(int _depth) {
+        // frame 0 is capture itself.
+        StackTraceElement[] frames = new Throwable().getStackTrace();
+        int index = _depth + 1;
+        if (index >= frames.length) {
+            return null;
+        }
+        return of(frames[index]);
+    }
+
+    static DlogCallSite of(StackTraceElement _element) {
+        DlogCallSite site = sCache.get(_element);
+        if (site == null) {
+            site = new DlogCallSite(_element);
+            if (sCache.size() < MAX_CACHE_SIZE) {
+                DlogCallSite existing = sCache.putIfAbsent(_element, site);
+                if (existing != null) {
+                    site = existing;
+                }
+            }
+        }
+        return site;
+    }
+
+    public String getClassName() { return className; }
+
+    public String getMethodName() { return methodName; }
+
+    public int getLineNumber() { return lineNumber; }
+
+    /**
+     * @return "at full.ClassName.method(ClassName.java:line)"
+     */
+    public String getPosition() { return position; }
+
+    @Override
+    public String toString() { return position; }
+}
@@ -0,0 +1,466 @@
+package com.boss0430.bosslib.utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persistent log sink of Dlog. writes logs to rotating files on a background thread.
+ * <br><br>
+ * - Producers put records into a bounded lock-free ring buffer. they never wait for file I/O.<br>
+ * - One writer thread drains the buffer in batches and writes them through FileChannel.<br>
+ * - When buffer is full, record is dropped (DROP) or producer waits for space (BLOCK).<br>
+ * - Files : prefix.log (current), prefix.1.log, prefix.2.log ... (older)<br>
+ * <br>
+ * Usage<br>
+ * 1. DlogFileSink sink = new DlogFileSink(new File(context.getFilesDir(), "logs"), "dlog", 4096, DlogFileSink.OverflowPolicy.DROP);<br>
+ * 2. sink.start(); sink.installCrashHandler();<br>
+ * 3. Dlog.setFileSink(sink);<br>
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public class DlogFileSink {
+
+    /**
+     * What to do when ring buffer is full.
+     */
+    public enum OverflowPolicy {
+        /** drop the record and count it. producer never waits. */
+        DROP,
+        /** producer waits till writer makes space. */
+        BLOCK
+    }
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String CRASH_TAG = "CRASH";
+
+    private final File mDirectory;
+    private final String prefix;
+    private final OverflowPolicy overflowPolicy;
+
+    // ring buffer. slot i is readable when sequences[i] == position + 1.
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray mSequences;
+    private final long[] mTimes;
+    private final int[] mLevels;
+    private final String[] mTags;
+    private final String[] mMessages;
+    private final AtomicLong mTail = new AtomicLong(0);
+    private volatile long head = 0;
+
+    // consumer side (writer thread, flush, crash handler) is guarded by this.
+    private final ReentrantLock mDrainLock = new ReentrantLock();
+    private final StringBuilder mBatch = new StringBuilder(8192);
+    private final SimpleDateFormat mDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+    private final Date mDate = new Date();
+    private FileChannel mChannel;
+
+    private final AtomicLong mDroppedCount = new AtomicLong(0);
+    private final AtomicLong mWrittenCount = new AtomicLong(0);
+    private final AtomicLong mWriteErrorCount = new AtomicLong(0);
+
+    private long maxFileBytes = 1024 * 1024;
+    private int maxFiles = 5;
+    private long flushIntervalMillis = 1000;
+    private int batchSize = 256;
+
+    private volatile boolean running = false;
+    private volatile boolean closed = false;
+    private volatile Thread mWriter;
+
+    /**
+     * Constructor.
+     * @param _directory directory of log files. created when not exists.
+     * @param _prefix file name prefix.
+     * @param _capacity size of ring buffer. rounded up to power of 2.
+     * @param _overflowPolicy DROP or BLOCK.
+     */
+    public DlogFileSink(File _directory, String _prefix, int _capacity, OverflowPolicy _overflowPolicy) {
+        if (_capacity <= 1 || _capacity > (1 << 24)) {
+            throw new IllegalArgumentException("capacity out of range : " + _capacity);
+        }
+        this.mDirectory = _directory;
+        this.prefix = _prefix;
+        this.overflowPolicy = _overflowPolicy;
+        this.capacity = Integer.highestOneBit(_capacity - 1) << 1;
+        this.mask = capacity - 1;
+        this.mSequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            mSequences.set(i, i);
+        }
+        this.mTimes = new long[capacity];
+        this.mLevels = new int[capacity];
+        this.mTags = new String[capacity];
+        this.mMessages = new String[capacity];
+    }
+
+    /**
+     * Rotate current file when it becomes bigger than this.
+     * @param _bytes default is 1MB.
+     */
+    public void setMaxFileBytes(long _bytes) { this.maxFileBytes = _bytes; }
+
+    /**
+     * Count of files kept including current one.
+     * @param _files default is 5.
+     */
+    public void setMaxFiles(int _files) { this.maxFiles = Math.max(1, _files); }
+
+    /**
+     * Writer wakes up at least this often to write buffered records.
+     * @param _millis default is 1000.
+     */
+    public void setFlushIntervalMillis(long _millis) { this.flushIntervalMillis = Math.max(1, _millis); }
+
+    /**
+     * Max records written by one write call.
+     * @param _records default is 256.
+     */
+    public void setBatchSize(int _records) { this.batchSize = Math.max(1, _records); }
+
+    public int getCapacity() { return capacity; }
+
+    public OverflowPolicy getOverflowPolicy() { return overflowPolicy; }
+
+    /** @return count of records dropped because buffer was full or sink was closed. */
+    public long getDroppedCount() { return mDroppedCount.get(); }
+
+    /** @return count of records written to file. */
+    public long getWrittenCount() { return mWrittenCount.get(); }
+
+    /** @return count of failed file writes. */
+    public long getWriteErrorCount() { return mWriteErrorCount.get(); }
+
+    /** @return count of records waiting in buffer now. */
+    public int getPendingCount() { return (int) (mTail.get() - head); }
+
+    /** @return current log file. */
+    public File getCurrentFile() { return fileOf(0); }
+
+    /*
+	// ********************************************************************************************
+	// Lifecycle
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Start writer thread.
+     */
+    public synchronized void start() {
+        if (running || closed) {
+            return;
+        }
+        running = true;
+        mWriter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writerLoop();
+            }
+        }, "DlogFileSink-" + prefix);
+        mWriter.setDaemon(true);
+        mWriter.start();
+    }
+
+    /**
+     * Write every buffered record now, and sync file. called on caller thread.
+     */
+    public void flush() {
+        mDrainLock.lock();
+        try {
+            while (drainBatch(Integer.MAX_VALUE) > 0) {
+                // drain all
+            }
+            if (mChannel != null) {
+                mChannel.force(false);
+            }
+        } catch (IOException e) {
+            mWriteErrorCount.incrementAndGet();
+        } finally {
+            mDrainLock.unlock();
+        }
+    }
+
+    /**
+     * Stop writer thread, write remaining records and close file. records offered after this are dropped.
+     */
+    public void close() {
+        Thread writer;
+        synchronized (this) {
+            closed = true;
+            running = false;
+            writer = mWriter;
+        }
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+        mDrainLock.lock();
+        try {
+            if (mChannel != null) {
+                mChannel.close();
+                mChannel = null;
+            }
+        } catch (IOException e) {
+            mWriteErrorCount.incrementAndGet();
+        } finally {
+            mDrainLock.unlock();
+        }
+    }
+
+    /**
+     * Write buffered records and crash stack trace synchronously when app crashes.
+     * Previous default handler is called after that.
+     */
+    public void installCrashHandler() {
+        final Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+            @Override
+            public void uncaughtException(Thread t, Throwable ex) {
+                try {
+                    StringWriter trace = new StringWriter();
+                    ex.printStackTrace(new PrintWriter(trace));
+                    writeDirect(Dlog.e, CRASH_TAG, "uncaught exception in " + t.getName() + "\n" + trace);
+                } catch (Throwable ignored) {
+                    // never hide original crash.
+                }
+                if (previous != null) {
+                    previous.uncaughtException(t, ex);
+                }
+            }
+        });
+    }
+
+    /*
+	// ********************************************************************************************
+	// Producer
+	// ********************************************************************************************
+	*/
+
+    /**
+     * Put record into buffer. never does file I/O.
+     * @param _level Dlog.v,d,i,w,e
+     * @param _tag tag.
+     * @param _msg message.
+     * @return false when record has been dropped.
+     */
+    public boolean offer(int _level, String _tag, String _msg) {
+
+        long pos = mTail.get();
+        int idx;
+
+        for (;;) {
+            if (closed) {
+                mDroppedCount.incrementAndGet();
+                return false;
+            }
+            idx = (int) (pos & mask);
+            long dif = mSequences.get(idx) - pos;
+            if (dif == 0) {
+                if (mTail.compareAndSet(pos, pos + 1)) {
+                    break;
+                }
+                pos = mTail.get();
+            } else if (dif < 0) {
+                // full.
+                if (overflowPolicy == OverflowPolicy.DROP) {
+                    mDroppedCount.incrementAndGet();
+                    return false;
+                }
+                if (mWriter == null) {
+                    // writer not started. make space myself.
+                    drainOnCaller();
+                } else {
+                    wakeWriter();
+                    LockSupport.parkNanos(50000);
+                }
+                pos = mTail.get();
+            } else {
+                pos = mTail.get();
+            }
+        }
+
+        mTimes[idx] = System.currentTimeMillis();
+        mLevels[idx] = _level;
+        mTags[idx] = _tag;
+        mMessages[idx] = _msg;
+        // publish.
+        mSequences.set(idx, pos + 1);
+
+        // wake writer early when buffer is getting full.
+        if (pos + 1 - head >= (capacity >> 1)) {
+            wakeWriter();
+        }
+        return true;
+    }
+
+    private void drainOnCaller() {
+        if (mDrainLock.tryLock()) {
+            try {
+                drainBatch(batchSize);
+            } finally {
+                mDrainLock.unlock();
+            }
+        } else {
+            Thread.yield();
+        }
+    }
+
+    private void wakeWriter() {
+        Thread writer = mWriter;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /*
+	// ********************************************************************************************
+	// Consumer
+	// ********************************************************************************************
+	*/
+
+    private void writerLoop() {
+        while (running) {
+            int drained = 0;
+            if (mDrainLock.tryLock()) {
+                try {
+                    drained = drainBatch(batchSize);
+                } finally {
+                    mDrainLock.unlock();
+                }
+            }
+            if (drained == 0) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis));
+            }
+        }
+    }
+
+    // write record from crashing thread, bypassing ring buffer.
+    private void writeDirect(int _level, String _tag, String _msg) {
+        mDrainLock.lock();
+        try {
+            while (drainBatch(Integer.MAX_VALUE) > 0) {
+                // drain all before crash record.
+            }
+            appendRecord(System.currentTimeMillis(), _level, _tag, _msg);
+            writeBatch(1);
+            if (mChannel != null) {
+                mChannel.force(false);
+            }
+        } catch (IOException e) {
+            mWriteErrorCount.incrementAndGet();
+        } finally {
+            mDrainLock.unlock();
+        }
+    }
+
+    // call with mDrainLock held. returns count of drained records.
+    private int drainBatch(int _max) {
+        int count = 0;
+        long pos = head;
+        while (count < _max) {
+            int idx = (int) (pos & mask);
+            if (mSequences.get(idx) != pos + 1) {
+                break;
+            }
+            appendRecord(mTimes[idx], mLevels[idx], mTags[idx], mMessages[idx]);
+            mTags[idx] = null;
+            mMessages[idx] = null;
+            // free slot for next lap.
+            mSequences.set(idx, pos + capacity);
+            pos++;
+            count++;
+            head = pos;
+        }
+        if (count > 0) {
+            writeBatch(count);
+        }
+        return count;
+    }
+
+    private void appendRecord(long _time, int _level, String _tag, String _msg) {
+        mDate.setTime(_time);
+        mBatch.append(mDateFormat.format(mDate))
+                .append(' ').append(levelChar(_level))
+                .append('/').append(_tag)
+                .append(": ").append(_msg)
+                .append('\n');
+    }
+
+    // call with mDrainLock held.
+    private void writeBatch(int _records) {
+        ByteBuffer buffer = ByteBuffer.wrap(mBatch.toString().getBytes(UTF8));
+        mBatch.setLength(0);
+        try {
+            FileChannel channel = openChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            mWrittenCount.addAndGet(_records);
+            if (channel.size() >= maxFileBytes) {
+                rotate();
+            }
+        } catch (IOException e) {
+            mWriteErrorCount.incrementAndGet();
+            mDroppedCount.addAndGet(_records);
+        }
+    }
+
+    private FileChannel openChannel() throws IOException {
+        if (mChannel == null) {
+            if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+                throw new IOException("can not create directory : " + mDirectory);
+            }
+            mChannel = new FileOutputStream(fileOf(0), true).getChannel();
+        }
+        return mChannel;
+    }
+
+    private void rotate() throws IOException {
+        mChannel.close();
+        mChannel = null;
+        File oldest = fileOf(maxFiles - 1);
+        if (oldest.exists() && !oldest.delete()) {
+            throw new IOException("can not delete : " + oldest);
+        }
+        for (int n = maxFiles - 2; n >= 0; n--) {
+            File from = fileOf(n);
+            if (from.exists() && !from.renameTo(fileOf(n + 1))) {
+                throw new IOException("can not rename : " + from);
+            }
+        }
+    }
+
+    private File fileOf(int _index) {
+        return new File(mDirectory, _index == 0 ? prefix + ".log" : prefix + "." + _index + ".log");
+    }
+
+    private static char levelChar(int _level) {
+        switch (_level) {
+            case Dlog.v: return 'V';
+            case Dlog.d: return 'D';
+            case Dlog.i: return 'I';
+            case Dlog.w: return 'W';
+            case Dlog.e: return 'E';
+            default: return '?';
+        }
+    }
+}
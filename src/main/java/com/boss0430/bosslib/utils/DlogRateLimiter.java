@@ -0,0 +1,140 @@
+package com.boss0430.bosslib.utils;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how often one log statement is printed. keep it in a static field, one per call site.
+ * <br><br>
+ * - perSecond : token bucket. burst logs at once, then rate per second.<br>
+ * - sampling : every n-th call.<br>
+ * - tryAcquire is lock-free and allocation-free. suppressed calls are counted, and reported by Dlog.setSuppressionReport.<br>
+ * <br>
+ * Usage<br>
+ * 1. private static final DlogRateLimiter FIX_LOG = DlogRateLimiter.perSecond("FusedLocationSource.fix", 1, 5);<br>
+ * 2. if (FIX_LOG.tryAcquire(TAG, Dlog.i)) Dlog.out(TAG, "LOCATION : {}, {}", lat, lon, Dlog.i);
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public final class DlogRateLimiter {
+
+    // every limiter ever made. few, made once per call site.
+    private static final List<DlogRateLimiter> sLimiters = new CopyOnWriteArrayList<>();
+
+    private final String name;
+
+    // token bucket as "theoretical arrival time" : one atomic, no refill thread.
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong nextFreeNanos = new AtomicLong(Long.MIN_VALUE);
+
+    // sampling
+    private final int sampleEvery;
+    private final AtomicLong calls = new AtomicLong();
+
+    private final AtomicLong suppressed = new AtomicLong();
+    private final AtomicLong reported = new AtomicLong();
+
+    private DlogRateLimiter(String _name, long _intervalNanos, long _burstNanos, int _sampleEvery) {
+        this.name = _name;
+        this.intervalNanos = _intervalNanos;
+        this.burstNanos = _burstNanos;
+        this.sampleEvery = _sampleEvery;
+        sLimiters.add(this);
+    }
+
+    /**
+     * Token bucket limiter.
+     * @param _name name in suppression report. (ex. "ClassName.what")
+     * @param _perSecond logs per second in the long run.
+     * @param _burst logs allowed at once after quiet time. 1 or more.
+     * @return limiter.
+     */
+    public static DlogRateLimiter perSecond(String _name, double _perSecond, int _burst) {
+        if (!(_perSecond > 0) || _burst < 1) {
+            throw new IllegalArgumentException("rate and burst must be positive : " + _perSecond + ", " + _burst);
+        }
+        long interval = (long) (1000000000L / _perSecond);
+        return new DlogRateLimiter(_name, interval, interval * (_burst - 1), 0);
+    }
+
+    /**
+     * Sampling limiter. first call and every n-th one after it pass.
+     * @param _name name in suppression report.
+     * @param _every n. 1 passes every call.
+     * @return limiter.
+     */
+    public static DlogRateLimiter sampling(String _name, int _every) {
+        if (_every < 1) {
+            throw new IllegalArgumentException("every must be positive : " + _every);
+        }
+        return new DlogRateLimiter(_name, 0, 0, _every);
+    }
+
+    public String getName() { return name; }
+
+    /**
+     * Same as tryAcquire() but level of tag is checked first, so statements filtered by Dlog.setTagLevel
+     * take no token and are not counted as suppressed.
+     * @param _tag TAG of statement.
+     * @param _level Dlog.v,d,i,w,e level of statement.
+     * @return true when this call may log. false when log is off or filtered (not counted), or limited (counted as suppressed).
+     */
+    public boolean tryAcquire(String _tag, int _level) {
+        if (!Dlog.isLoggable(_tag, _level)) {
+            return false;
+        }
+        return acquire();
+    }
+
+    /**
+     * Checks only whether log is on. use tryAcquire(tag, level) when tag levels may filter the statement.
+     * @return true when this call may log. false when log is off (not counted), or limited (counted as suppressed).
+     */
+    public boolean tryAcquire() {
+        if (!Dlog.isEnabled()) {
+            return false;
+        }
+        return acquire();
+    }
+
+    private boolean acquire() {
+        boolean pass = sampleEvery > 0 ? calls.getAndIncrement() % sampleEvery == 0 : acquireToken(System.nanoTime());
+        if (!pass) {
+            suppressed.incrementAndGet();
+        }
+        return pass;
+    }
+
+    // package-private for test. _now : System.nanoTime.
+    boolean acquireToken(long _now) {
+        while (true) {
+            long next = nextFreeNanos.get();
+            long start = next == Long.MIN_VALUE || next < _now ? _now : next;
+            if (start - _now > burstNanos) {
+                return false;
+            }
+            if (nextFreeNanos.compareAndSet(next, start + intervalNanos)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return count of suppressed calls since created.
+     */
+    public long getSuppressedCount() {
+        return suppressed.get();
+    }
+
+    // suppressed since last call of this.
+    long takeUnreported() {
+        long total = suppressed.get();
+        return total - reported.getAndSet(total);
+    }
+
+    static List<DlogRateLimiter> all() {
+        return sLimiters;
+    }
+}
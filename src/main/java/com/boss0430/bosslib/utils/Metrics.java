@@ -0,0 +1,306 @@
+package com.boss0430.bosslib.utils;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide counters and histograms of the library. cheap enough to leave on.
+ * <br><br>
+ * - Counter / Histogram are looked up once and kept in static fields by call sites. updates are atomic adds.<br>
+ * - Gauge reads a value owned by somebody else, at snapshot time.<br>
+ * - snapshot() pulls every value. setExporter pushes snapshot periodically. (on TimeoutWheel thread)<br>
+ * - setEnabled(false) turns every update into one volatile read.<br>
+ * <br>
+ * Metrics of this library<br>
+ * - location.ttff.ms : session start to first live fix. (LocationHub)<br>
+ * - location.settings.ms : checkLocationSettings duration.<br>
+ * - location.accuracy.m : accuracy of live fixes.<br>
+ * - location.task.ms / location.task.timeout / location.task.cancel : LocationAsyncTask, LocationLookup.<br>
+ * - geocode.latency.us / geocode.failure / geocode.cache.hit / geocode.cache.miss : LocationConverter.<br>
+ * - geocode.coalesced : lookups answered by a running lookup of same place. (LocationConverter)<br>
+ * - log.dropped : records dropped by Dlog file sink.
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public final class Metrics {
+
+    public static final String LOCATION_TTFF_MS = "location.ttff.ms";
+    public static final String LOCATION_SETTINGS_MS = "location.settings.ms";
+    public static final String LOCATION_ACCURACY_M = "location.accuracy.m";
+    public static final String LOCATION_TASK_MS = "location.task.ms";
+    public static final String LOCATION_TASK_TIMEOUT = "location.task.timeout";
+    public static final String LOCATION_TASK_CANCEL = "location.task.cancel";
+    public static final String GEOCODE_LATENCY_US = "geocode.latency.us";
+    public static final String GEOCODE_FAILURE = "geocode.failure";
+    public static final String GEOCODE_CACHE_HIT = "geocode.cache.hit";
+    public static final String GEOCODE_CACHE_MISS = "geocode.cache.miss";
+    public static final String GEOCODE_COALESCED = "geocode.coalesced";
+    public static final String LOG_DROPPED = "log.dropped";
+
+    /**
+     * Monotonic counter.
+     */
+    public static final class Counter {
+
+        private final AtomicLong value = new AtomicLong();
+
+        private Counter() {
+        }
+
+        public void inc() {
+            if (enabled) {
+                value.incrementAndGet();
+            }
+        }
+
+        public void add(long _delta) {
+            if (enabled) {
+                value.addAndGet(_delta);
+            }
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    /**
+     * Value read at snapshot time.
+     */
+    public interface Gauge {
+        long get();
+    }
+
+    /**
+     * Receives snapshots pushed by setExporter.
+     */
+    public interface Exporter {
+
+        /**
+         * Invoked on TimeoutWheel thread. post heavy work (network, disk) to your own thread.
+         * @param snapshot values of this moment.
+         */
+        void export(Snapshot snapshot);
+    }
+
+    /**
+     * Values of every metric at one moment.
+     */
+    public static final class Snapshot {
+
+        private final long timeMillis;
+        private final Map<String, Long> counters;
+        private final Map<String, Histogram.Snapshot> histograms;
+
+        private Snapshot(long _timeMillis, Map<String, Long> _counters, Map<String, Histogram.Snapshot> _histograms) {
+            this.timeMillis = _timeMillis;
+            this.counters = Collections.unmodifiableMap(_counters);
+            this.histograms = Collections.unmodifiableMap(_histograms);
+        }
+
+        public long getTimeMillis() { return timeMillis; }
+
+        /** @return counters and gauges by name, sorted. */
+        public Map<String, Long> getCounters() { return counters; }
+
+        /** @return histograms by name, sorted. */
+        public Map<String, Histogram.Snapshot> getHistograms() { return histograms; }
+
+        /**
+         * @param _name counter or gauge name.
+         * @return value. 0 when there is no such one.
+         */
+        public long getCounter(String _name) {
+            Long value = counters.get(_name);
+            return value != null ? value : 0;
+        }
+
+        /**
+         * @param _name histogram name.
+         * @return histogram. null when there is no such one.
+         */
+        public Histogram.Snapshot getHistogram(String _name) {
+            return histograms.get(_name);
+        }
+
+        /**
+         * @return geocode.cache.hit / (hit + miss). 0 when nothing has been asked.
+         */
+        public double getGeocodeCacheHitRate() {
+            long hit = getCounter(GEOCODE_CACHE_HIT);
+            long total = hit + getCounter(GEOCODE_CACHE_MISS);
+            return total == 0 ? 0 : (double) hit / total;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (Map.Entry<String, Long> entry : counters.entrySet()) {
+                sb.append(entry.getKey()).append(" = ").append(entry.getValue()).append('\n');
+            }
+            for (Map.Entry<String, Histogram.Snapshot> entry : histograms.entrySet()) {
+                sb.append(entry.getKey()).append(" : ").append(entry.getValue()).append('\n');
+            }
+            return sb.toString();
+        }
+    }
+
+    private final static String TAG = "Metrics";
+
+    private static volatile boolean enabled = true;
+
+    private static final ConcurrentHashMap<String, Counter> sCounters = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Histogram> sHistograms = new ConcurrentHashMap<>();
+    private static final ConcurrentHashMap<String, Gauge> sGauges = new ConcurrentHashMap<>();
+
+    private static final Object sExportLock = new Object();
+    private static Exporter sExporter;
+    private static long sExportPeriodMillis;
+    private static TimeoutWheel.Timeout sExportTimeout;
+
+    private Metrics() {
+    }
+
+    /**
+     * @param _enabled default is true.
+     */
+    public static void setEnabled(boolean _enabled) { enabled = _enabled; }
+
+    public static boolean isEnabled() { return enabled; }
+
+    /**
+     * @param _name name.
+     * @return counter of _name. same one for same name. keep it in static field.
+     */
+    public static Counter counter(String _name) {
+        Counter counter = sCounters.get(_name);
+        if (counter == null) {
+            Counter created = new Counter();
+            counter = sCounters.putIfAbsent(_name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * @param _name name.
+     * @return histogram of _name. same one for same name. keep it in static field.
+     */
+    public static Histogram histogram(String _name) {
+        Histogram histogram = sHistograms.get(_name);
+        if (histogram == null) {
+            Histogram created = new Histogram();
+            histogram = sHistograms.putIfAbsent(_name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Record to histogram when metrics are enabled.
+     * @param _histogram histogram.
+     * @param _value value.
+     */
+    public static void record(Histogram _histogram, long _value) {
+        if (enabled) {
+            _histogram.record(_value);
+        }
+    }
+
+    /**
+     * Register gauge. replaces old one of same name.
+     * @param _name name.
+     * @param _gauge gauge. null to remove.
+     */
+    public static void gauge(String _name, Gauge _gauge) {
+        if (_gauge == null) {
+            sGauges.remove(_name);
+        } else {
+            sGauges.put(_name, _gauge);
+        }
+    }
+
+    /**
+     * @return values of every metric now.
+     */
+    public static Snapshot snapshot() {
+        Map<String, Long> counters = new TreeMap<>();
+        for (Map.Entry<String, Counter> entry : sCounters.entrySet()) {
+            counters.put(entry.getKey(), entry.getValue().get());
+        }
+        for (Map.Entry<String, Gauge> entry : sGauges.entrySet()) {
+            try {
+                counters.put(entry.getKey(), entry.getValue().get());
+            } catch (RuntimeException e) {
+                Dlog.out(TAG, "gauge threw exception : {}", e, Dlog.e);
+            }
+        }
+        Map<String, Histogram.Snapshot> histograms = new TreeMap<>();
+        for (Map.Entry<String, Histogram> entry : sHistograms.entrySet()) {
+            histograms.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return new Snapshot(System.currentTimeMillis(), new LinkedHashMap<>(counters), new LinkedHashMap<>(histograms));
+    }
+
+    /**
+     * Reset every counter and histogram. gauges are kept.
+     */
+    public static void reset() {
+        for (Counter counter : sCounters.values()) {
+            counter.value.set(0);
+        }
+        for (Histogram histogram : sHistograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Push snapshot to _exporter every _periodMillis.
+     * @param _exporter exporter. null to stop exporting.
+     * @param _periodMillis period. 0 or less stops exporting too.
+     */
+    public static void setExporter(Exporter _exporter, long _periodMillis) {
+        synchronized (sExportLock) {
+            if (sExportTimeout != null) {
+                sExportTimeout.cancel();
+                sExportTimeout = null;
+            }
+            // no period, no export. (every tick otherwise)
+            sExporter = _periodMillis > 0 ? _exporter : null;
+            sExportPeriodMillis = _periodMillis;
+            if (sExporter != null) {
+                scheduleExportLocked();
+            }
+        }
+    }
+
+    // call with sExportLock held.
+    private static void scheduleExportLocked() {
+        final Exporter exporter = sExporter;
+        sExportTimeout = TimeoutWheel.getDefault().schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (sExportLock) {
+                    if (sExporter != exporter) {
+                        return;
+                    }
+                    scheduleExportLocked();
+                }
+                try {
+                    exporter.export(snapshot());
+                } catch (RuntimeException e) {
+                    Dlog.out(TAG, "exporter threw exception : {}", e, Dlog.e);
+                }
+            }
+        }, sExportPeriodMillis, TimeUnit.MILLISECONDS);
+    }
+}
@@ -0,0 +1,94 @@
+package com.boss0430.bosslib.utils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Coalesces concurrent calls of same key into one.
+ * <br><br>
+ * - First caller of a key runs the call on its own thread. callers of same key arriving meanwhile wait for it
+ *   and get the same result (or same failure).<br>
+ * - Nothing is kept after the call has finished. later callers run it again. (put a cache in front for that)<br>
+ * <br>
+ * Usage<br>
+ * 1. static final SingleFlight&lt;Key, String&gt; FLIGHTS = new SingleFlight&lt;&gt;();<br>
+ * 2. String value = FLIGHTS.execute(key, callable);
+ * @param <K> key type. needs equals / hashCode.
+ * @param <V> value type.
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public final class SingleFlight<K, V> {
+
+    private static final class Flight<V> {
+        final CountDownLatch done = new CountDownLatch(1);
+        V value;
+        // any Throwable, so followers never take a failed flight for null value.
+        Throwable error;
+    }
+
+    private final ConcurrentHashMap<K, Flight<V>> mFlights = new ConcurrentHashMap<>();
+
+    // calls answered by other caller's flight.
+    private final Metrics.Counter mCoalesced;
+
+    public SingleFlight() {
+        this(null);
+    }
+
+    /**
+     * @param _coalescedCounter counts calls that joined a running flight. nullable.
+     */
+    public SingleFlight(Metrics.Counter _coalescedCounter) {
+        mCoalesced = _coalescedCounter;
+    }
+
+    /**
+     * Run _call, or wait for running call of same key.
+     * @param _key key.
+     * @param _call what to run.
+     * @return value of the call.
+     * @throws ExecutionException when the call threw. cause is what it threw, Error included. (like FutureTask)
+     * @throws InterruptedException when interrupted while waiting for other caller. (the flight goes on)
+     */
+    public V execute(K _key, Callable<? extends V> _call) throws ExecutionException, InterruptedException {
+
+        Flight<V> flight = new Flight<>();
+        Flight<V> running = mFlights.putIfAbsent(_key, flight);
+
+        if (running != null) {
+            if (mCoalesced != null) {
+                mCoalesced.inc();
+            }
+            running.done.await();
+            if (running.error != null) {
+                throw new ExecutionException(running.error);
+            }
+            return running.value;
+        }
+
+        try {
+            flight.value = _call.call();
+        } catch (Throwable t) {
+            flight.error = t;
+        } finally {
+            // remove before release, so nobody joins a finished flight.
+            mFlights.remove(_key, flight);
+            flight.done.countDown();
+        }
+
+        if (flight.error != null) {
+            throw new ExecutionException(flight.error);
+        }
+        return flight.value;
+    }
+
+    /**
+     * @return count of keys being called now.
+     */
+    public int getInFlightCount() {
+        return mFlights.size();
+    }
+}
@@ -0,0 +1,303 @@
+package com.boss0430.bosslib.utils;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Shared timeout scheduler. hashed timing wheel on one daemon thread.
+ * <br><br>
+ * - Timeout fires once at its deadline (rounded up to a tick). no polling of the task in between.<br>
+ * - Cancel is O(1). cancelled timeout is unlinked from its bucket on next tick.<br>
+ * - Thread parks while nothing is pending, so idle wheel costs no wakeups.<br>
+ * - Tasks run on the wheel thread. keep them short, post to your own thread for heavy work.<br>
+ * <br>
+ * Usage<br>
+ * TimeoutWheel.Timeout timeout = TimeoutWheel.getDefault().schedule(runnable, 15000, TimeUnit.MILLISECONDS);<br>
+ * timeout.cancel(); when work has done before deadline.
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public final class TimeoutWheel {
+
+    /**
+     * Handle of scheduled task.
+     */
+    public static final class Timeout {
+
+        private static final int ST_PENDING = 0;
+        private static final int ST_CANCELLED = 1;
+        private static final int ST_EXPIRED = 2;
+
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimeoutWheel wheel;
+        private final Runnable task;
+        private final long deadlineNanos;
+
+        private volatile int state = ST_PENDING;
+
+        // wheel thread only.
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimeoutWheel _wheel, Runnable _task, long _deadlineNanos) {
+            this.wheel = _wheel;
+            this.task = _task;
+            this.deadlineNanos = _deadlineNanos;
+        }
+
+        /**
+         * Cancel. task will not run.
+         * @return false when it has already run (or been cancelled).
+         */
+        public boolean cancel() {
+            if (!STATE.compareAndSet(this, ST_PENDING, ST_CANCELLED)) {
+                return false;
+            }
+            wheel.pendingCount.decrementAndGet();
+            wheel.cancelledQueue.add(this);
+            return true;
+        }
+
+        public boolean isCancelled() { return state == ST_CANCELLED; }
+
+        public boolean isExpired() { return state == ST_EXPIRED; }
+
+        private void expire() {
+            if (!STATE.compareAndSet(this, ST_PENDING, ST_EXPIRED)) {
+                return;
+            }
+            wheel.pendingCount.decrementAndGet();
+            try {
+                task.run();
+            } catch (Throwable t) {
+                Dlog.out(TAG, "timeout task threw exception : {}", t, Dlog.e);
+            }
+        }
+    }
+
+    // doubly linked list of timeouts. wheel thread only.
+    private static final class Bucket {
+        Timeout head;
+        Timeout tail;
+
+        void add(Timeout _timeout) {
+            _timeout.bucket = this;
+            if (head == null) {
+                head = tail = _timeout;
+            } else {
+                tail.next = _timeout;
+                _timeout.prev = tail;
+                tail = _timeout;
+            }
+        }
+
+        Timeout remove(Timeout _timeout) {
+            Timeout next = _timeout.next;
+            if (_timeout.prev != null) {
+                _timeout.prev.next = next;
+            }
+            if (next != null) {
+                next.prev = _timeout.prev;
+            }
+            if (_timeout == head) {
+                head = next;
+            }
+            if (_timeout == tail) {
+                tail = _timeout.prev;
+            }
+            _timeout.prev = null;
+            _timeout.next = null;
+            _timeout.bucket = null;
+            return next;
+        }
+    }
+
+    private final static String TAG = "TimeoutWheel";
+
+    private static volatile TimeoutWheel sDefault;
+
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+
+    private final ConcurrentLinkedQueue<Timeout> newQueue = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Timeout> cancelledQueue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final Thread worker;
+    private volatile boolean stopped = false;
+
+    // wheel thread only.
+    private long startNanos;
+    private long tick;
+
+    /**
+     * Constructor.
+     * @param _tickMillis resolution. timeouts fire up to one tick late.
+     * @param _wheelSize bucket count. rounded up to power of 2.
+     */
+    public TimeoutWheel(long _tickMillis, int _wheelSize) {
+        if (_tickMillis <= 0 || _wheelSize <= 0) {
+            throw new IllegalArgumentException("tick and wheel size must be positive");
+        }
+        int size = Integer.highestOneBit(_wheelSize);
+        if (size < _wheelSize) {
+            size <<= 1;
+        }
+        tickNanos = TimeUnit.MILLISECONDS.toNanos(_tickMillis);
+        buckets = new Bucket[size];
+        for (int n = 0; n < size; n++) {
+            buckets[n] = new Bucket();
+        }
+        mask = size - 1;
+
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                runWheel();
+            }
+        }, TAG);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Process-wide wheel. 100ms tick, 512 buckets. (51.2 seconds per round)
+     * @return TimeoutWheel.
+     */
+    public static TimeoutWheel getDefault() {
+        TimeoutWheel wheel = sDefault;
+        if (wheel == null) {
+            synchronized (TimeoutWheel.class) {
+                wheel = sDefault;
+                if (wheel == null) {
+                    wheel = new TimeoutWheel(100, 512);
+                    sDefault = wheel;
+                }
+            }
+        }
+        return wheel;
+    }
+
+    /**
+     * Run _task once after _delay.
+     * @param _task task. runs on wheel thread.
+     * @param _delay delay.
+     * @param _unit unit of delay.
+     * @return Timeout handle.
+     */
+    public Timeout schedule(Runnable _task, long _delay, TimeUnit _unit) {
+        if (stopped) {
+            throw new IllegalStateException("wheel has been stopped");
+        }
+        Timeout timeout = new Timeout(this, _task, System.nanoTime() + _unit.toNanos(Math.max(0, _delay)));
+        newQueue.add(timeout);
+        if (pendingCount.getAndIncrement() == 0) {
+            // wheel may be parked without deadline.
+            LockSupport.unpark(worker);
+        }
+        return timeout;
+    }
+
+    /**
+     * @return count of timeouts neither fired nor cancelled.
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    /**
+     * Stop wheel thread. pending timeouts never fire. default wheel should not be stopped.
+     */
+    public void stop() {
+        stopped = true;
+        LockSupport.unpark(worker);
+    }
+
+    /*
+	// ********************************************************************************************
+	// Wheel thread
+	// ********************************************************************************************
+	*/
+
+    private void runWheel() {
+        startNanos = System.nanoTime();
+        tick = 0;
+
+        while (!stopped) {
+            if (!waitForNextTick()) {
+                continue;
+            }
+            removeCancelled();
+            transferNew();
+            expireBucket(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    /**
+     * @return true when next tick has come. false when woken up from idle (or stopped).
+     */
+    private boolean waitForNextTick() {
+        long deadline = startNanos + (tick + 1) * tickNanos;
+        while (!stopped) {
+            if (pendingCount.get() == 0) {
+                // nothing to do. park till schedule wakes us, then count ticks from then.
+                removeCancelled();
+                LockSupport.park(this);
+                startNanos = System.nanoTime() - tick * tickNanos;
+                return false;
+            }
+            long sleep = deadline - System.nanoTime();
+            if (sleep <= 0) {
+                return true;
+            }
+            LockSupport.parkNanos(this, sleep);
+        }
+        return false;
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelledQueue.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferNew() {
+        Timeout timeout;
+        while ((timeout = newQueue.poll()) != null) {
+            if (timeout.state != Timeout.ST_PENDING) {
+                continue;
+            }
+            long ticks = (timeout.deadlineNanos - startNanos + tickNanos - 1) / tickNanos;
+            // already due ones go to current bucket.
+            long target = Math.max(ticks, tick);
+            timeout.remainingRounds = (target - tick) / buckets.length;
+            buckets[(int) (target & mask)].add(timeout);
+        }
+    }
+
+    private void expireBucket(Bucket _bucket) {
+        Timeout timeout = _bucket.head;
+        while (timeout != null) {
+            if (timeout.remainingRounds <= 0) {
+                Timeout next = _bucket.remove(timeout);
+                timeout.expire();
+                timeout = next;
+            } else {
+                timeout.remainingRounds--;
+                timeout = timeout.next;
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for AdaptiveLocationPolicy.
+ */
+public class AdaptiveLocationPolicyTest {
+
+    @Test
+    public void beforeFix_followsDemand() {
+        AdaptiveLocationPolicy policy = new AdaptiveLocationPolicy();
+        policy.setDemand(2000, false);
+
+        assertEquals(2000, policy.getInterval());
+        assertEquals(1000, policy.getFastestInterval());
+        assertEquals(AdaptiveLocationPolicy.PRIORITY_BALANCED_POWER_ACCURACY, policy.getPriority());
+    }
+
+    @Test
+    public void fastMovement_shortInterval() {
+        AdaptiveLocationPolicy policy = new AdaptiveLocationPolicy();
+        policy.setDemand(1000, true);
+
+        // driving 20m/s, target 15m between fixes -> 750ms, clamped to demand 1000ms.
+        policy.onFix(20f, 5f, 0);
+        policy.onFix(20f, 5f, 1000);
+        assertEquals(1000, policy.getInterval());
+        assertEquals(AdaptiveLocationPolicy.PRIORITY_HIGH_ACCURACY, policy.getPriority());
+    }
+
+    @Test
+    public void walking_intervalByDistance() {
+        AdaptiveLocationPolicy policy = new AdaptiveLocationPolicy();
+        policy.setDemand(1000, false);
+
+        // 1.5m/s, 15m -> 10000ms. (max moving interval)
+        long t = 0;
+        for (int n = 0; n < 5; n++, t += 1000) {
+            policy.onFix(1.5f, 10f, t);
+        }
+        assertEquals(10000, policy.getInterval());
+        assertEquals(AdaptiveLocationPolicy.PRIORITY_BALANCED_POWER_ACCURACY, policy.getPriority());
+
+        // 3m/s -> 5000ms. (some steps are skipped by 25% hysteresis)
+        for (int n = 0; n < 10; n++, t += 1000) {
+            policy.onFix(3f, 10f, t);
+        }
+        assertTrue(policy.getInterval() >= 5000);
+        assertTrue(policy.getInterval() < 10000 * 3 / 4);
+    }
+
+    @Test
+    public void poorAccuracyWhileMoving_highAccuracy() {
+        AdaptiveLocationPolicy policy = new AdaptiveLocationPolicy();
+        policy.setDemand(1000, false);
+
+        policy.onFix(5f, 120f, 0);
+        assertEquals(AdaptiveLocationPolicy.PRIORITY_HIGH_ACCURACY, policy.getPriority());
+    }
+
+    @Test
+    public void stationary_backsOffAfterDelay() {
+        AdaptiveLocationPolicy policy = new AdaptiveLocationPolicy();
+        policy.setDemand(1000, true);
+        policy.setStationaryDelayMillis(30000);
+        policy.setIdleIntervalMillis(60000);
+
+        policy.onFix(0f, 5f, 0);
+        assertFalse(policy.isStationary(10000));
+        policy.onFix(0f, 5f, 10000);
+        assertNotEquals(60000, policy.getInterval());
+
+        assertTrue(policy.onFix(0f, 5f, 30000));
+        assertTrue(policy.isStationary(30000));
+        assertEquals(60000, policy.getInterval());
+        assertEquals(AdaptiveLocationPolicy.PRIORITY_BALANCED_POWER_ACCURACY, policy.getPriority());
+
+        // starts moving again.
+        policy.onFix(10f, 5f, 90000);
+        assertFalse(policy.isStationary(90000));
+        assertEquals(AdaptiveLocationPolicy.PRIORITY_HIGH_ACCURACY, policy.getPriority());
+        assertTrue(policy.getInterval() < 60000);
+    }
+
+    @Test
+    public void smallChange_ignored() {
+        AdaptiveLocationPolicy policy = new AdaptiveLocationPolicy();
+        policy.setDemand(1000, true);
+        policy.setMaxMovingIntervalMillis(100000);
+
+        policy.onFix(3f, 5f, 0); // 5000ms
+        assertEquals(5000, policy.getInterval());
+        // 3.3m/s -> 4545ms, under 25% change.
+        assertFalse(policy.onFix(3.6f, 5f, 1000));
+        assertEquals(5000, policy.getInterval());
+    }
+
+    @Test
+    public void demand_shortensInterval() {
+        AdaptiveLocationPolicy policy = new AdaptiveLocationPolicy();
+        policy.setDemand(60000, false);
+        assertTrue(policy.setDemand(1000, true));
+        assertEquals(1000, policy.getInterval());
+        assertEquals(AdaptiveLocationPolicy.PRIORITY_HIGH_ACCURACY, policy.getPriority());
+    }
+
+    @Test
+    public void reset_warmsUpAgain() {
+        AdaptiveLocationPolicy policy = new AdaptiveLocationPolicy();
+        policy.setDemand(1000, true);
+        policy.onFix(0f, 5f, 0);
+        policy.onFix(0f, 5f, 30000);
+        assertEquals(60000, policy.getInterval());
+
+        policy.reset();
+        assertFalse(policy.isStationary(30000));
+        assertTrue(policy.setDemand(1000, true));
+        assertEquals(1000, policy.getInterval());
+        assertEquals(AdaptiveLocationPolicy.PRIORITY_HIGH_ACCURACY, policy.getPriority());
+    }
+}
@@ -0,0 +1,151 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for BatchGeocoder.
+ */
+public class BatchGeocoderTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(16);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Fake lookup that sleeps like Geocoder, and counts calls / concurrency.
+     */
+    private static class SlowLookup implements BatchGeocoder.Lookup {
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final long sleepMillis;
+
+        SlowLookup(long sleepMillis) {
+            this.sleepMillis = sleepMillis;
+        }
+
+        @Override
+        public String lookup(double latitude, double longitude) {
+            calls.incrementAndGet();
+            int now = running.incrementAndGet();
+            int max;
+            while (now > (max = maxRunning.get()) && !maxRunning.compareAndSet(max, now)) {
+                // retry
+            }
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException ignored) {
+            }
+            running.decrementAndGet();
+            return latitude + "," + longitude;
+        }
+    }
+
+    @Test
+    public void geocode_keepsInputOrderAndDedupes() throws Exception {
+        SlowLookup lookup = new SlowLookup(5);
+        BatchGeocoder geocoder = new BatchGeocoder(lookup, executor, 4, 0.001);
+
+        double[] lats = {1.0, 2.0, 1.0001, 3.0, 2.0};
+        double[] lons = {1.0, 2.0, 1.0001, 3.0, 2.0};
+        String[] addresses = geocoder.geocode(lats, lons);
+
+        assertEquals(3, lookup.calls.get());
+        assertEquals("1.0,1.0", addresses[0]);
+        assertEquals("2.0,2.0", addresses[1]);
+        // near-identical point shares the first one's address.
+        assertEquals("1.0,1.0", addresses[2]);
+        assertEquals("3.0,3.0", addresses[3]);
+        assertEquals("2.0,2.0", addresses[4]);
+    }
+
+    @Test
+    public void geocode_respectsConcurrencyCap() throws Exception {
+        SlowLookup lookup = new SlowLookup(10);
+        BatchGeocoder geocoder = new BatchGeocoder(lookup, executor, 3, BatchGeocoder.DEFAULT_DEDUPE_DEGREES);
+
+        double[] lats = new double[30];
+        double[] lons = new double[30];
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = i;
+            lons[i] = i;
+        }
+        geocoder.geocode(lats, lons);
+
+        assertEquals(30, lookup.calls.get());
+        assertTrue("max running : " + lookup.maxRunning.get(), lookup.maxRunning.get() <= 3);
+    }
+
+    @Test
+    public void geocode_scalesWithConcurrency() throws Exception {
+        double[] lats = new double[16];
+        double[] lons = new double[16];
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = i;
+            lons[i] = -i;
+        }
+
+        long start = System.nanoTime();
+        new BatchGeocoder(new SlowLookup(20), executor, 1, BatchGeocoder.DEFAULT_DEDUPE_DEGREES).geocode(lats, lons);
+        long serial = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        new BatchGeocoder(new SlowLookup(20), executor, 8, BatchGeocoder.DEFAULT_DEDUPE_DEGREES).geocode(lats, lons);
+        long parallel = System.nanoTime() - start;
+
+        assertTrue("serial " + serial + "ns, parallel " + parallel + "ns", parallel * 3 < serial);
+    }
+
+    @Test
+    public void geocodeAsync_streamsEveryIndexThenCompletes() throws Exception {
+        BatchGeocoder geocoder = new BatchGeocoder(new SlowLookup(1), executor, 2, 0.001);
+        final ConcurrentHashMap<Integer, String> streamed = new ConcurrentHashMap<>();
+        final AtomicReference<String[]> completed = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+
+        double[] lats = {10, 20, 10, 30};
+        double[] lons = {10, 20, 10, 30};
+        geocoder.geocodeAsync(lats, lons, new BatchGeocoder.Listener() {
+            @Override
+            public void onAddress(int index, String address) {
+                streamed.put(index, address);
+            }
+
+            @Override
+            public void onComplete(String[] addresses) {
+                completed.set(addresses);
+                done.countDown();
+            }
+        });
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(4, streamed.size());
+        assertEquals("10.0,10.0", streamed.get(2));
+        assertArrayEquals(new String[]{"10.0,10.0", "20.0,20.0", "10.0,10.0", "30.0,30.0"}, completed.get());
+    }
+
+    @Test
+    public void geocode_emptyInput() throws Exception {
+        BatchGeocoder geocoder = new BatchGeocoder(new SlowLookup(1), executor, 2, 0.001);
+        assertEquals(0, geocoder.geocode(new double[0], new double[0]).length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void geocode_rejectsMismatchedArrays() throws Exception {
+        new BatchGeocoder(new SlowLookup(1), executor, 2, 0.001).geocode(new double[2], new double[3]);
+    }
+}
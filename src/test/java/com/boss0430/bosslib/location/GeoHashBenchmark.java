@@ -0,0 +1,164 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Microbenchmark of GeoHash against string geohash. runs as local unit test.
+ * <br>
+ * Measures time and bytes allocated by current thread per point. long encode / decode must allocate nothing.
+ */
+public class GeoHashBenchmark {
+
+    private static final int POINTS = 1 << 16;
+    private static final int ROUNDS = 30;
+    private static final int BITS = 40;
+
+    private com.sun.management.ThreadMXBean mxBean;
+
+    private final double[] latitudes = new double[POINTS];
+    private final double[] longitudes = new double[POINTS];
+
+    // keep JIT from removing loops.
+    private long sink;
+
+    @Before
+    public void setUp() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        mxBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(mxBean.isThreadAllocatedMemorySupported());
+        mxBean.setThreadAllocatedMemoryEnabled(true);
+        for (int i = 0; i < POINTS; i++) {
+            latitudes[i] = 33 + (i * 7919 % 10007) * 5e-4;
+            longitudes[i] = 124 + (i * 104729 % 10009) * 7e-4;
+        }
+    }
+
+    private long allocated() {
+        return mxBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    // usual string implementation : bisect one bit at a time, append characters.
+    private static final String BASE32 = "0123456789bcdefghjkmnpqrstuvwxyz";
+
+    private static String stringEncode(double latitude, double longitude, int length) {
+        double minLat = -90, maxLat = 90, minLon = -180, maxLon = 180;
+        StringBuilder builder = new StringBuilder(length);
+        boolean even = true;
+        int bit = 0, ch = 0;
+        while (builder.length() < length) {
+            if (even) {
+                double mid = (minLon + maxLon) / 2;
+                if (longitude >= mid) { ch = ch << 1 | 1; minLon = mid; } else { ch <<= 1; maxLon = mid; }
+            } else {
+                double mid = (minLat + maxLat) / 2;
+                if (latitude >= mid) { ch = ch << 1 | 1; minLat = mid; } else { ch <<= 1; maxLat = mid; }
+            }
+            even = !even;
+            if (++bit == 5) {
+                builder.append(BASE32.charAt(ch));
+                bit = 0;
+                ch = 0;
+            }
+        }
+        return builder.toString();
+    }
+
+    private static double[] stringDecode(String geohash) {
+        double minLat = -90, maxLat = 90, minLon = -180, maxLon = 180;
+        boolean even = true;
+        for (int i = 0; i < geohash.length(); i++) {
+            int value = BASE32.indexOf(geohash.charAt(i));
+            for (int b = 4; b >= 0; b--) {
+                int bit = value >> b & 1;
+                if (even) {
+                    double mid = (minLon + maxLon) / 2;
+                    if (bit == 1) minLon = mid; else maxLon = mid;
+                } else {
+                    double mid = (minLat + maxLat) / 2;
+                    if (bit == 1) minLat = mid; else maxLat = mid;
+                }
+                even = !even;
+            }
+        }
+        return new double[]{(minLat + maxLat) / 2, (minLon + maxLon) / 2};
+    }
+
+    private long runLong() {
+        long start = System.nanoTime();
+        for (int r = 0; r < ROUNDS; r++) {
+            for (int i = 0; i < POINTS; i++) {
+                long cell = GeoHash.encode(latitudes[i], longitudes[i], BITS);
+                sink += cell + (long) GeoHash.latitudeOf(cell) + (long) GeoHash.longitudeOf(cell);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    private long runString() {
+        long start = System.nanoTime();
+        for (int r = 0; r < ROUNDS; r++) {
+            for (int i = 0; i < POINTS; i++) {
+                String geohash = stringEncode(latitudes[i], longitudes[i], BITS / 5);
+                double[] center = stringDecode(geohash);
+                sink += geohash.hashCode() + (long) center[0] + (long) center[1];
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void encodeDecode_againstString() {
+        // same cells.
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(stringEncode(latitudes[i], longitudes[i], BITS / 5),
+                    GeoHash.toBase32(GeoHash.encode(latitudes[i], longitudes[i], BITS)));
+        }
+
+        // warm up JIT.
+        runLong();
+        runString();
+
+        long before = allocated();
+        long longNanos = runLong();
+        long longBytes = allocated() - before;
+
+        before = allocated();
+        long stringNanos = runString();
+        long stringBytes = allocated() - before;
+
+        long count = (long) POINTS * ROUNDS;
+        System.out.println("GeoHash long : " + longNanos / count + " ns/point, " + (double) longBytes / count + " bytes/point. "
+                + "string : " + stringNanos / count + " ns/point, " + (double) stringBytes / count + " bytes/point");
+
+        assertTrue(sink != 0);
+        assertTrue("bytes " + longBytes, longBytes < 1024);
+        assertTrue("long " + longNanos + " string " + stringNanos, longNanos < stringNanos);
+    }
+
+    private void runNeighbors(long[] out) {
+        for (int i = 0; i < POINTS; i++) {
+            long cell = GeoHash.encode(latitudes[i], longitudes[i], BITS);
+            int n = GeoHash.neighbors(cell, out);
+            sink += n + out[0] + GeoHash.parent(cell, 20);
+        }
+    }
+
+    @Test
+    public void neighbors_allocationFree() {
+        long[] out = new long[8];
+        // warm up : class loading and first calls allocate.
+        runNeighbors(out);
+        runNeighbors(out);
+
+        long before = allocated();
+        runNeighbors(out);
+        long bytes = allocated() - before;
+        assertTrue("bytes " + bytes, bytes < 1024);
+    }
+}
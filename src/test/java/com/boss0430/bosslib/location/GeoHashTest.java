@@ -0,0 +1,209 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for GeoHash.
+ */
+public class GeoHashTest {
+
+    @Test
+    public void knownGeohash() {
+        // wikipedia example.
+        assertEquals("u4pruydqqvj", GeoHash.toBase32(GeoHash.encode(57.64911, 10.40744, 55)));
+        assertEquals("wydm9q", GeoHash.toBase32(GeoHash.encode(37.5665, 126.9780, 30)));
+        assertEquals("s0000000", GeoHash.toBase32(GeoHash.encode(0, 0, 40)));
+
+        long cell = GeoHash.fromBase32("U4PRUYDQQVJ");
+        assertEquals(55, GeoHash.bitsOf(cell));
+        assertEquals(57.64911, GeoHash.latitudeOf(cell), 1e-5);
+        assertEquals(10.40744, GeoHash.longitudeOf(cell), 1e-5);
+    }
+
+    @Test
+    public void encodeDecode_everyPrecision() {
+        Random random = new Random(3);
+        for (int n = 0; n < 2000; n++) {
+            double lat = random.nextDouble() * 180 - 90;
+            double lon = random.nextDouble() * 360 - 180;
+            for (int bits = 1; bits <= GeoHash.MAX_BITS; bits++) {
+                long cell = GeoHash.encode(lat, lon, bits);
+                assertTrue(GeoHash.isValid(cell));
+                assertEquals(bits, GeoHash.bitsOf(cell));
+                assertTrue(GeoHash.minLatitude(cell) <= lat && lat <= GeoHash.maxLatitude(cell));
+                assertTrue(GeoHash.minLongitude(cell) <= lon && lon <= GeoHash.maxLongitude(cell));
+                // center encodes to same cell.
+                assertEquals(cell, GeoHash.encode(GeoHash.latitudeOf(cell), GeoHash.longitudeOf(cell), bits));
+                if (bits > 1) {
+                    assertEquals(GeoHash.encode(lat, lon, bits - 1), GeoHash.parent(cell));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void edges() {
+        assertEquals(GeoHash.encode(10, -180, 30), GeoHash.encode(10, 180, 30));
+        long north = GeoHash.encode(90, 0, 30);
+        assertEquals((1L << 15) - 1, GeoHash.latitudeIndex(north));
+        assertEquals(0, GeoHash.latitudeIndex(GeoHash.encode(-90, 0, 30)));
+        assertEquals(GeoHash.NONE, GeoHash.parent(GeoHash.encode(0, 0, 1)));
+    }
+
+    @Test
+    public void hierarchy() {
+        long cell = GeoHash.encode(37.5665, 126.9780, 20);
+        long first = GeoHash.firstChild(cell, 30);
+        long last = GeoHash.lastChild(cell, 30);
+        assertEquals(1023, last - first);
+        long inside = GeoHash.encode(37.5665, 126.9780, 30);
+        assertTrue(first <= inside && inside <= last);
+        assertTrue(GeoHash.contains(cell, inside));
+        assertFalse(GeoHash.contains(inside, cell));
+        assertEquals(cell, GeoHash.parent(inside, 20));
+        assertEquals(cell, GeoHash.parent(GeoHash.child(cell, 1)));
+
+        // geohash prefix is parent.
+        assertEquals("wydm9", GeoHash.toBase32(GeoHash.parent(GeoHash.fromBase32("wydm9q"), 25)));
+    }
+
+    @Test
+    public void neighbors() {
+        long cell = GeoHash.fromBase32("wydm9q");
+        long[] out = new long[8];
+        assertEquals(8, GeoHash.neighbors(cell, out));
+        Set<String> names = new HashSet<>();
+        for (long neighbor : out) {
+            names.add(GeoHash.toBase32(neighbor));
+            double dLat = Math.abs(GeoHash.latitudeOf(neighbor) - GeoHash.latitudeOf(cell));
+            double dLon = Math.abs(GeoHash.longitudeOf(neighbor) - GeoHash.longitudeOf(cell));
+            assertTrue(dLat < GeoHash.latitudeSpan(30) * 1.5 && dLon < GeoHash.longitudeSpan(30) * 1.5);
+        }
+        assertEquals(8, names.size());
+        assertFalse(names.contains("wydm9q"));
+        // first is north, then clockwise.
+        double lat = GeoHash.latitudeOf(cell);
+        double lon = GeoHash.longitudeOf(cell);
+        assertEquals(GeoHash.encode(lat + GeoHash.latitudeSpan(30), lon, 30), out[0]);
+        assertEquals(GeoHash.encode(lat, lon + GeoHash.longitudeSpan(30), 30), out[2]);
+        assertEquals(GeoHash.encode(lat - GeoHash.latitudeSpan(30), lon - GeoHash.longitudeSpan(30), 30), out[5]);
+
+        // wraps at 180th meridian, stops at pole.
+        long east = GeoHash.encode(0, 179.99, 30);
+        assertEquals(GeoHash.encode(0, -179.99, 30), GeoHash.neighbor(east, 0, 1));
+        long pole = GeoHash.encode(89.999, 0, 30);
+        assertEquals(5, GeoHash.neighbors(pole, out));
+        assertEquals(GeoHash.NONE, GeoHash.neighbor(pole, 1, 0));
+    }
+
+    @Test
+    public void cover_boundingBox() {
+        double minLat = 37.50, minLon = 126.95, maxLat = 37.52, maxLon = 127.00;
+        int bits = 30;
+        long[] cells = new long[(int) GeoHash.coverCount(minLat, minLon, maxLat, maxLon, bits)];
+        int n = GeoHash.cover(minLat, minLon, maxLat, maxLon, bits, cells);
+        assertEquals(cells.length, n);
+
+        // every point of the box is in a cover cell.
+        Set<Long> set = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            set.add(cells[i]);
+            if (i > 0) {
+                assertTrue(cells[i - 1] < cells[i]);
+            }
+        }
+        Random random = new Random(5);
+        for (int k = 0; k < 1000; k++) {
+            double lat = minLat + random.nextDouble() * (maxLat - minLat);
+            double lon = minLon + random.nextDouble() * (maxLon - minLon);
+            assertTrue(set.contains(GeoHash.encode(lat, lon, bits)));
+        }
+
+        long[] ranges = new long[n * 2];
+        int r = GeoHash.toRanges(cells, n, ranges);
+        assertTrue(r < n);
+        int covered = 0;
+        for (int i = 0; i < r; i++) {
+            covered += ranges[i * 2 + 1] - ranges[i * 2] + 1;
+        }
+        assertEquals(n, covered);
+
+        assertEquals(-1, GeoHash.cover(minLat, minLon, maxLat, maxLon, bits, new long[1]));
+        int coarse = GeoHash.coverBits(minLat, minLon, maxLat, maxLon, 4);
+        assertTrue(GeoHash.coverCount(minLat, minLon, maxLat, maxLon, coarse) <= 4);
+        assertTrue(GeoHash.coverCount(minLat, minLon, maxLat, maxLon, coarse + 1) > 4);
+    }
+
+    @Test
+    public void cover_antimeridian() {
+        long[] cells = new long[64];
+        int n = GeoHash.cover(-1, 179.5, 1, -179.5, 10, cells);
+        assertTrue(n > 0);
+        Set<Long> set = new HashSet<>();
+        for (int i = 0; i < n; i++) {
+            set.add(cells[i]);
+        }
+        assertTrue(set.contains(GeoHash.encode(0, 179.9, 10)));
+        assertTrue(set.contains(GeoHash.encode(0, -179.9, 10)));
+        assertFalse(set.contains(GeoHash.encode(0, 0, 10)));
+    }
+
+    @Test
+    public void cover_edgesOn180thMeridian() {
+        int bits = 20;
+        long lonCells = 1L << 10;
+        double span = GeoHash.longitudeSpan(bits);
+
+        // east edge exactly 180 : last columns, not wrapped to -180.
+        long east = GeoHash.coverCount(0, 170, 1, 180, bits);
+        assertTrue(east > 0);
+        long[] cells = new long[(int) east];
+        assertEquals(east, GeoHash.cover(0, 170, 1, 180, bits, cells));
+        for (long cell : cells) {
+            assertTrue(GeoHash.longitudeOf(cell) > 170 - span);
+        }
+        assertEquals(lonCells - 1, GeoHash.longitudeIndex(cells[cells.length - 1]));
+
+        // half the world, and the whole of it.
+        long rows = GeoHash.coverCount(0, 0, 1, 0, bits);
+        assertEquals(rows * (lonCells / 2), GeoHash.coverCount(0, 0, 1, 180, bits));
+        assertEquals(rows * lonCells, GeoHash.coverCount(0, -180, 1, 180, bits));
+        assertEquals(rows * (lonCells / 2), GeoHash.coverCount(0, -180, 1, -span / 2, bits));
+
+        // west edge exactly -180 (or 180) : first columns.
+        long west = GeoHash.coverCount(0, -180, 1, -170, bits);
+        assertEquals(west, GeoHash.coverCount(0, 180, 1, -170, bits));
+        cells = new long[(int) west];
+        assertEquals(west, GeoHash.cover(0, -180, 1, -170, bits, cells));
+        for (long cell : cells) {
+            assertTrue(GeoHash.longitudeOf(cell) < -170 + span);
+        }
+
+        // crossing box ending at -180 is the same as ending at 180.
+        assertEquals(east, GeoHash.coverCount(0, 170, 1, -180, bits));
+
+        int coarse = GeoHash.coverBits(-10, 0, 10, 180, 16);
+        assertTrue(GeoHash.coverCount(-10, 0, 10, 180, coarse) <= 16);
+        assertTrue(coarse < 20);
+    }
+
+    @Test
+    public void bitsForMeters() {
+        int bits = GeoHash.bitsForMeters(100);
+        assertTrue(GeoHash.latitudeSpan(bits) * Geofence.METERS_PER_DEGREE <= 100);
+        assertTrue(GeoHash.longitudeSpan(bits) * Geofence.METERS_PER_DEGREE <= 100);
+        double coarser = Math.max(GeoHash.latitudeSpan(bits - 1), GeoHash.longitudeSpan(bits - 1));
+        assertTrue(coarser * Geofence.METERS_PER_DEGREE > 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badCharacter_throws() {
+        GeoHash.fromBase32("wyda");
+    }
+}
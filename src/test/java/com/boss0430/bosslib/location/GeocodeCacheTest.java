@@ -0,0 +1,81 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for GeocodeCache.
+ */
+public class GeocodeCacheTest {
+
+    @Test
+    public void nearbyCoordinates_hitSameCell() {
+        GeocodeCache cache = new GeocodeCache(0.001, 0, 16);
+        cache.put(37.56651, 126.97801, Locale.KOREA, "Seoul City Hall");
+
+        assertEquals("Seoul City Hall", cache.get(37.56659, 126.97809, Locale.KOREA));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void farCoordinates_miss() {
+        GeocodeCache cache = new GeocodeCache(0.001, 0, 16);
+        cache.put(37.56651, 126.97801, Locale.KOREA, "Seoul City Hall");
+
+        assertNull(cache.get(37.56851, 126.97801, Locale.KOREA));
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void otherLocale_miss() {
+        GeocodeCache cache = new GeocodeCache();
+        cache.put(37.5665, 126.978, Locale.KOREA, "서울");
+
+        assertNull(cache.get(37.5665, 126.978, Locale.US));
+        assertEquals("서울", cache.get(37.5665, 126.978, Locale.KOREA));
+    }
+
+    @Test
+    public void overMaxSize_evictsLeastRecentlyUsed() {
+        GeocodeCache cache = new GeocodeCache(0.01, 0, 2);
+        cache.put(1.0, 1.0, Locale.US, "a");
+        cache.put(2.0, 2.0, Locale.US, "b");
+        // touch 'a', so 'b' becomes eldest.
+        assertEquals("a", cache.get(1.0, 1.0, Locale.US));
+        cache.put(3.0, 3.0, Locale.US, "c");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get(2.0, 2.0, Locale.US));
+        assertEquals("a", cache.get(1.0, 1.0, Locale.US));
+        assertEquals("c", cache.get(3.0, 3.0, Locale.US));
+    }
+
+    @Test
+    public void expiredEntry_miss() throws Exception {
+        GeocodeCache cache = new GeocodeCache(0.01, 20, 4);
+        cache.put(1.0, 1.0, Locale.US, "a");
+        Thread.sleep(40);
+
+        assertNull(cache.get(1.0, 1.0, Locale.US));
+        assertEquals(1, cache.getExpiredCount());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void cellKey_distinctAcrossHemispheres() {
+        GeocodeCache cache = new GeocodeCache(0.0001, 0, 4);
+        assertNotEquals(cache.cellKey(10, 10), cache.cellKey(-10, 10));
+        assertNotEquals(cache.cellKey(10, 10), cache.cellKey(10, -10));
+        assertNotEquals(cache.cellKey(0, 179.99995), cache.cellKey(0.0001, -180));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooSmallCell_rejected() {
+        new GeocodeCache(0, 0, 4);
+    }
+}
@@ -0,0 +1,114 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for Geodesy.
+ */
+public class GeodesyTest {
+
+    // Seoul city hall - Busan city hall, about 325km on sphere.
+    private static final double SEOUL_LAT = 37.5665, SEOUL_LON = 126.9780;
+    private static final double BUSAN_LAT = 35.1796, BUSAN_LON = 129.0756;
+
+    private static double[] randomArray(Random random, int size, double base, double range) {
+        double[] out = new double[size];
+        for (int n = 0; n < size; n++) {
+            out[n] = base + random.nextDouble() * range;
+        }
+        return out;
+    }
+
+    @Test
+    public void distance_knownPair() {
+        double meters = Geodesy.distanceMeters(SEOUL_LAT, SEOUL_LON, BUSAN_LAT, BUSAN_LON);
+        assertEquals(325000, meters, 2000);
+        // 1 degree of latitude.
+        assertEquals(111195, Geodesy.distanceMeters(0, 0, 1, 0), 1);
+    }
+
+    @Test
+    public void bearing_cardinal() {
+        assertEquals(0, Geodesy.bearingDegrees(0, 0, 1, 0), 1e-9);
+        assertEquals(90, Geodesy.bearingDegrees(0, 0, 0, 1), 1e-9);
+        assertEquals(180, Geodesy.bearingDegrees(1, 0, 0, 0), 1e-9);
+        assertEquals(270, Geodesy.bearingDegrees(0, 1, 0, 0), 1e-9);
+    }
+
+    @Test
+    public void matrix_sameAsScalar() {
+        Random random = new Random(3);
+        double[] lats = randomArray(random, 40, -60, 120);
+        double[] lons = randomArray(random, 40, -180, 360);
+        Geodesy.Points from = Geodesy.of(Arrays.copyOf(lats, 15), Arrays.copyOf(lons, 15));
+        Geodesy.Points to = Geodesy.of(lats, lons);
+
+        double[] distances = new double[15 * 40];
+        double[] bearings = new double[15 * 40];
+        Geodesy.distanceMatrix(from, to, distances);
+        Geodesy.bearingMatrix(from, to, bearings);
+
+        for (int i = 0; i < 15; i++) {
+            for (int j = 0; j < 40; j++) {
+                double expected = Geodesy.distanceMeters(lats[i], lons[i], lats[j], lons[j]);
+                assertEquals(expected, distances[i * 40 + j], 1e-3);
+                if (i != j) {
+                    assertEquals(Geodesy.bearingDegrees(lats[i], lons[i], lats[j], lons[j]), bearings[i * 40 + j], 1e-6);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void distances_shortRangeIsStable() {
+        // 10cm apart. law of cosines would give 0 or noise here.
+        double[] out = new double[1];
+        Geodesy.distances(37.5, 127.0, Geodesy.of(new double[]{37.5 + 0.1 / 111195.0}, new double[]{127.0}), out);
+        assertEquals(0.1, out[0], 1e-4);
+    }
+
+    @Test
+    public void nearest_sameAsSort() {
+        Random random = new Random(11);
+        double[] lats = randomArray(random, 5000, 37, 1);
+        double[] lons = randomArray(random, 5000, 126.5, 1);
+        Geodesy.Points points = Geodesy.of(lats, lons);
+
+        double[] all = new double[5000];
+        Geodesy.distances(37.5, 127.0, points, all);
+        double[] sorted = all.clone();
+        Arrays.sort(sorted);
+
+        int[] indexes = new int[10];
+        double[] meters = new double[10];
+        assertEquals(10, Geodesy.nearest(37.5, 127.0, points, 10, indexes, meters));
+        for (int n = 0; n < 10; n++) {
+            assertEquals(sorted[n], meters[n], 1e-6);
+            assertEquals(all[indexes[n]], meters[n], 1e-6);
+        }
+
+        assertEquals(0, Geodesy.nearest(0, 0, points, 0, indexes, meters));
+        assertEquals(1, Geodesy.nearest(0, 0, Geodesy.of(new double[]{1}, new double[]{1}), 10, indexes, null));
+    }
+
+    @Test
+    public void boundingBox() {
+        double[] lats = {10, 20, 30, 20, 20};
+        double[] lons = {10, 20, 30, 179, -179};
+        int[] out = new int[5];
+
+        assertEquals(1, Geodesy.filterBoundingBox(lats, lons, 15, 25, 15, 25, out));
+        assertEquals(1, out[0]);
+
+        // crossing 180 degree.
+        int count = Geodesy.filterBoundingBox(lats, lons, 15, 25, 170, -170, out);
+        assertEquals(2, count);
+        assertEquals(3, out[0]);
+        assertEquals(4, out[1]);
+    }
+}
@@ -0,0 +1,205 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for GeofenceEngine.
+ */
+public class GeofenceEngineTest {
+
+    private static final double DEG_PER_METER = 1 / Geofence.METERS_PER_DEGREE;
+
+    private static class Recorder implements GeofenceEngine.Listener {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void onTransition(Geofence fence, int transition, LocationFix fix) {
+            events.add(fence.getId() + ":" + transition);
+        }
+    }
+
+    private static LocationFix fix(double lat, double lon, long time) {
+        return new LocationFix(lat, lon, 5f, time, -1f, -1f);
+    }
+
+    @Test
+    public void circle_enterDwellExit() {
+        Recorder recorder = new Recorder();
+        GeofenceEngine engine = new GeofenceEngine(recorder);
+        engine.setDwellMillis(60000);
+        engine.add(Geofence.circle("home", 37.5, 127.0, 100));
+
+        engine.onFix(fix(37.5 + 200 * DEG_PER_METER, 127.0, 0));
+        assertTrue(recorder.events.isEmpty());
+
+        engine.onFix(fix(37.5, 127.0, 1000));
+        assertTrue(engine.isInside("home"));
+        engine.onFix(fix(37.5, 127.0, 61000));
+        engine.onFix(fix(37.5, 127.0, 200000));
+        engine.onFix(fix(37.5 + 200 * DEG_PER_METER, 127.0, 201000));
+
+        assertEquals(3, recorder.events.size());
+        assertEquals("home:" + GeofenceEngine.TRANSITION_ENTER, recorder.events.get(0));
+        assertEquals("home:" + GeofenceEngine.TRANSITION_DWELL, recorder.events.get(1));
+        assertEquals("home:" + GeofenceEngine.TRANSITION_EXIT, recorder.events.get(2));
+    }
+
+    @Test
+    public void hysteresis_noFlapOnBoundary() {
+        Recorder recorder = new Recorder();
+        GeofenceEngine engine = new GeofenceEngine(recorder);
+        engine.setHysteresisMeters(20);
+        engine.add(Geofence.circle("a", 0, 0, 100));
+
+        // jitter between 95m and 110m from center.
+        for (int n = 0; n < 20; n++) {
+            double meters = n % 2 == 0 ? 95 : 110;
+            engine.onFix(fix(meters * DEG_PER_METER, 0, n * 1000L));
+        }
+        assertEquals(1, recorder.events.size());
+
+        engine.onFix(fix(130 * DEG_PER_METER, 0, 30000));
+        assertEquals(2, recorder.events.size());
+        assertFalse(engine.isInside("a"));
+    }
+
+    @Test
+    public void polygon_insideOutside() {
+        Geofence square = Geofence.polygon("sq", new double[]{0, 0, 0.01, 0.01}, new double[]{0, 0.01, 0.01, 0});
+        assertTrue(square.signedDistanceMeters(0.005, 0.005) < 0);
+        assertTrue(square.signedDistanceMeters(0.02, 0.005) > 0);
+        // 0.005 degree from the nearest edge.
+        assertEquals(-0.005 * Geofence.METERS_PER_DEGREE, square.signedDistanceMeters(0.005, 0.005), 1.0);
+
+        Recorder recorder = new Recorder();
+        GeofenceEngine engine = new GeofenceEngine(recorder);
+        engine.add(square);
+        engine.onFix(fix(0.005, 0.005, 0));
+        engine.onFix(fix(0.05, 0.05, 1000));
+        assertEquals(2, recorder.events.size());
+    }
+
+    @Test
+    public void remove_andReplace() {
+        Recorder recorder = new Recorder();
+        GeofenceEngine engine = new GeofenceEngine(recorder);
+        engine.add(Geofence.circle("a", 10, 10, 50));
+        engine.add(Geofence.circle("a", 20, 20, 50));
+        assertEquals(1, engine.size());
+
+        engine.onFix(fix(10, 10, 0));
+        assertTrue(recorder.events.isEmpty());
+        engine.onFix(fix(20, 20, 1000));
+        assertEquals(1, recorder.events.size());
+
+        assertTrue(engine.remove("a"));
+        assertFalse(engine.remove("a"));
+        engine.onFix(fix(50, 50, 2000));
+        assertEquals(1, recorder.events.size());
+    }
+
+    @Test
+    public void repeatedAddAll_keepsStateAndBoundsIndex() {
+        Recorder recorder = new Recorder();
+        GeofenceEngine engine = new GeofenceEngine(recorder);
+        engine.setDwellMillis(60000);
+        List<Geofence> fences = new ArrayList<>();
+        for (int n = 0; n < 100; n++) {
+            fences.add(Geofence.circle("f" + n, 10 + n * 0.1, 10, 50));
+        }
+        engine.addAll(fences);
+        engine.onFix(fix(10, 10, 0));
+        assertEquals(1, recorder.events.size());
+
+        // same fences again and again, as a periodic sync does.
+        for (int round = 1; round <= 50; round++) {
+            engine.addAll(fences);
+            engine.onFix(fix(10, 10, round * 1000L));
+        }
+        assertEquals(100, engine.size());
+        assertTrue(engine.getIndexedCount() <= 300);
+        assertTrue(engine.isInside("f0"));
+        // no second ENTER.
+        assertEquals(1, recorder.events.size());
+
+        // dwell counts from the first ENTER, and fires once.
+        engine.onFix(fix(10, 10, 60000));
+        engine.addAll(fences);
+        engine.onFix(fix(10, 10, 61000));
+        assertEquals(2, recorder.events.size());
+        assertEquals("f0:" + GeofenceEngine.TRANSITION_DWELL, recorder.events.get(1));
+
+        // replaced with a far shape : EXIT by the new shape.
+        engine.add(Geofence.circle("f0", 30, 30, 50));
+        engine.onFix(fix(10, 10, 62000));
+        assertFalse(engine.isInside("f0"));
+        assertEquals("f0:" + GeofenceEngine.TRANSITION_EXIT, recorder.events.get(2));
+    }
+
+    @Test
+    public void exitFarAway_leavesInsideFenceOfOtherCell() {
+        Recorder recorder = new Recorder();
+        GeofenceEngine engine = new GeofenceEngine(recorder);
+        engine.add(Geofence.circle("a", 10, 10, 50));
+        engine.onFix(fix(10, 10, 0));
+        // jump far. fence "a" is not in the cell of this fix.
+        engine.onFix(fix(40, 40, 1000));
+        assertFalse(engine.isInside("a"));
+        assertEquals("a:" + GeofenceEngine.TRANSITION_EXIT, recorder.events.get(1));
+    }
+
+    @Test
+    public void randomWalk_sameAsBruteForce() {
+        Random random = new Random(7);
+        final double hysteresis = 15;
+        List<Geofence> fences = new ArrayList<>();
+        for (int n = 0; n < 20000; n++) {
+            double lat = 37.4 + random.nextDouble() * 0.2;
+            double lon = 126.9 + random.nextDouble() * 0.2;
+            if (n % 4 == 0) {
+                double d = 0.0005 + random.nextDouble() * 0.002;
+                fences.add(Geofence.polygon("f" + n, new double[]{lat - d, lat - d, lat + d}, new double[]{lon - d, lon + d, lon}));
+            } else {
+                fences.add(Geofence.circle("f" + n, lat, lon, 30 + random.nextDouble() * 300));
+            }
+        }
+
+        GeofenceEngine engine = new GeofenceEngine(new Recorder());
+        engine.setHysteresisMeters(hysteresis);
+        engine.addAll(fences);
+
+        Set<String> expectedInside = new HashSet<>();
+        double lat = 37.5, lon = 127.0;
+        int maxCandidates = 0;
+        for (int step = 0; step < 3000; step++) {
+            lat += (random.nextDouble() - 0.5) * 0.001;
+            lon += (random.nextDouble() - 0.5) * 0.001;
+            engine.onFix(fix(lat, lon, step * 1000L));
+            maxCandidates = Math.max(maxCandidates, engine.getLastCandidateCount());
+
+            for (Geofence fence : fences) {
+                double d = fence.signedDistanceMeters(lat, lon);
+                if (d <= 0) {
+                    expectedInside.add(fence.getId());
+                } else if (d > hysteresis) {
+                    expectedInside.remove(fence.getId());
+                }
+            }
+            if (step % 100 == 0) {
+                for (Geofence fence : fences) {
+                    assertEquals(fence.getId(), expectedInside.contains(fence.getId()), engine.isInside(fence.getId()));
+                }
+            }
+        }
+        // grid keeps candidates far below fence count.
+        assertTrue("candidates " + maxCandidates, maxCandidates < 1000);
+    }
+}
@@ -0,0 +1,66 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Microbenchmark of KalmanLocationFilter.update. runs as local unit test.
+ * <br>
+ * Measures time and bytes allocated by current thread per fix. update must allocate nothing.
+ */
+public class KalmanLocationFilterBenchmark {
+
+    private static final int FIXES = 2000000;
+
+    private com.sun.management.ThreadMXBean mxBean;
+
+    // keep JIT from removing loops.
+    private double sink;
+
+    @Before
+    public void setUp() {
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        mxBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(mxBean.isThreadAllocatedMemorySupported());
+        mxBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    private long allocated() {
+        return mxBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private long run(KalmanLocationFilter filter) {
+        long start = System.nanoTime();
+        for (int n = 0; n < FIXES; n++) {
+            // 10 m/s north east with a little wobble.
+            double lat = 37.5 + n * 7e-5 + ((n * 7919) % 13) * 1e-6;
+            double lon = 127.0 + n * 9e-5 + ((n * 104729) % 11) * 1e-6;
+            filter.update(lat, lon, 8f, n * 1000L);
+            sink += filter.getLatitude();
+        }
+        return System.nanoTime() - start;
+    }
+
+    @Test
+    public void update_allocationFreeAndFast() {
+        KalmanLocationFilter filter = new KalmanLocationFilter();
+        // warm up JIT.
+        run(filter);
+        filter.reset();
+
+        long before = allocated();
+        long nanos = run(filter);
+        long bytes = allocated() - before;
+
+        System.out.println("KalmanLocationFilter.update : " + nanos / FIXES + " ns/fix, "
+                + (double) bytes / FIXES + " bytes/fix");
+        assertTrue(sink != 0);
+        assertTrue("bytes " + bytes, bytes < 1024);
+        assertTrue(filter.getAcceptedCount() > FIXES / 2);
+    }
+}
@@ -0,0 +1,188 @@
+package com.boss0430.bosslib.location;
+
+import android.content.Context;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for KalmanLocationFilter and FilteredLocationSource.
+ */
+public class KalmanLocationFilterTest {
+
+    private static final double M = Geofence.METERS_PER_DEGREE;
+    private static final double COS = Math.cos(Math.toRadians(37.5));
+
+    private static double east(double lon) {
+        return (lon - 127.0) * M * COS;
+    }
+
+    private static double north(double lat) {
+        return (lat - 37.5) * M;
+    }
+
+    @Test
+    public void noisyStraightRun_isSmoothed() {
+        Random random = new Random(1);
+        KalmanLocationFilter filter = new KalmanLocationFilter();
+        double rawError = 0, filteredError = 0;
+        double bearingSin = 0, bearingCos = 0, speed = 0;
+        int count = 0;
+
+        // 10 m/s east, 10m gps noise.
+        for (int n = 0; n < 300; n++) {
+            double trueEast = n * 10;
+            double lat = 37.5 + random.nextGaussian() * 10 / M;
+            double lon = 127.0 + (trueEast + random.nextGaussian() * 10) / (M * COS);
+            int result = filter.update(lat, lon, 10f, n * 1000L);
+            assertTrue(result == KalmanLocationFilter.ACCEPTED || result == KalmanLocationFilter.RESTARTED);
+            if (n >= 20) {
+                rawError += Math.hypot(east(lon) - trueEast, north(lat));
+                filteredError += Math.hypot(east(filter.getLongitude()) - trueEast, north(filter.getLatitude()));
+                bearingSin += Math.sin(Math.toRadians(filter.getBearing()));
+                bearingCos += Math.cos(Math.toRadians(filter.getBearing()));
+                speed += filter.getSpeed();
+                count++;
+            }
+        }
+        assertTrue("raw " + rawError / count + ", filtered " + filteredError / count, filteredError < rawError * 0.7);
+        assertEquals(10, speed / count, 1);
+        assertEquals(90, Math.toDegrees(Math.atan2(bearingSin, bearingCos)), 5);
+    }
+
+    @Test
+    public void jump_isRejected_thenRestartsOnRealMove() {
+        KalmanLocationFilter filter = new KalmanLocationFilter();
+        for (int n = 0; n < 10; n++) {
+            filter.update(37.5, 127.0, 5f, n * 1000L);
+        }
+        // 2km jump in 1 second.
+        assertEquals(KalmanLocationFilter.REJECTED_SPEED, filter.update(37.5 + 2000 / M, 127.0, 5f, 10000L));
+        assertEquals(37.5, filter.getLatitude(), 1e-6);
+
+        assertEquals(KalmanLocationFilter.REJECTED_ACCURACY, filter.update(37.5, 127.0, 500f, 11000L));
+
+        // stays there : after max rejections, filter restarts at it.
+        assertEquals(KalmanLocationFilter.REJECTED_SPEED, filter.update(37.5 + 2000 / M, 127.0, 5f, 12000L));
+        assertEquals(KalmanLocationFilter.RESTARTED, filter.update(37.5 + 2000 / M, 127.0, 5f, 13000L));
+        assertEquals(37.5 + 2000 / M, filter.getLatitude(), 1e-9);
+        assertEquals(KalmanLocationFilter.ACCEPTED, filter.update(37.5 + 2000 / M, 127.0, 5f, 14000L));
+        assertEquals(3, filter.getRejectedCount());
+    }
+
+    @Test
+    public void filteredSource_dropsOutliers() throws Exception {
+        List<LocationFix> track = new ArrayList<>();
+        for (int n = 0; n < 20; n++) {
+            double lat = n == 10 ? 37.6 : 37.5 + n * 5 / M;
+            track.add(new LocationFix(lat, 127.0, 5f, 1000000L + n * 1000L, -1f, -1f));
+        }
+        ReplayLocationSource replay = new ReplayLocationSource(track);
+        replay.setSpeedFactor(0);
+        replay.setRestamp(false);
+        FilteredLocationSource source = new FilteredLocationSource(replay);
+
+        final List<LocationFix> fixes = Collections.synchronizedList(new ArrayList<LocationFix>());
+        final CountDownLatch done = new CountDownLatch(19);
+        LocationSource.Listener listener = new LocationSource.Listener() {
+            @Override
+            public void onFix(LocationFix fix) {
+                fixes.add(fix);
+                done.countDown();
+            }
+        };
+        source.requestUpdates(0, 0, LocationSource.PRIORITY_HIGH_ACCURACY, listener);
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        source.removeUpdates(listener);
+
+        assertEquals(19, fixes.size());
+        for (LocationFix fix : fixes) {
+            assertTrue(fix.getLatitude() < 37.51);
+        }
+        replay.close();
+    }
+
+    @Test
+    public void concurrentRequests_registerOneFilteredListener() throws Exception {
+        final Set<LocationSource.Listener> registered = Collections.synchronizedSet(new HashSet<LocationSource.Listener>());
+        final Set<LocationSource.Listener> removed = Collections.synchronizedSet(new HashSet<LocationSource.Listener>());
+        LocationSource recorder = new LocationSource() {
+            @Override
+            public String getName() {
+                return "recorder";
+            }
+
+            @Override
+            public void checkSettings(Context _caller, long _intervalMillis, int _priority, SettingsCallback _callback) {
+                _callback.onSettingsChecked(true);
+            }
+
+            @Override
+            public void requestUpdates(long _intervalMillis, long _fastestIntervalMillis, int _priority, Listener _listener) {
+                registered.add(_listener);
+            }
+
+            @Override
+            public void removeUpdates(Listener _listener) {
+                removed.add(_listener);
+            }
+
+            @Override
+            public void getLastFix(LastFixCallback _callback) {
+                _callback.onLastFix(null);
+            }
+        };
+        // slow factory widens the window between lookup and insert.
+        final FilteredLocationSource source = new FilteredLocationSource(recorder, new FilteredLocationSource.FilterFactory() {
+            @Override
+            public KalmanLocationFilter create() {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new KalmanLocationFilter();
+            }
+        });
+
+        final LocationSource.Listener listener = new LocationSource.Listener() {
+            @Override
+            public void onFix(LocationFix fix) {
+            }
+        };
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    source.requestUpdates(1000, 500, LocationSource.PRIORITY_HIGH_ACCURACY, listener);
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, registered.size());
+        source.removeUpdates(listener);
+        assertEquals(registered, removed);
+    }
+}
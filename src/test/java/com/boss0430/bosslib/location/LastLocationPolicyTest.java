@@ -0,0 +1,54 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for LastLocationPolicy.
+ */
+public class LastLocationPolicyTest {
+
+    @Test
+    public void freshAndAccurate_accepted() {
+        LastLocationPolicy policy = new LastLocationPolicy(60000, 100f, true);
+        assertTrue(policy.accepts(0, 5f));
+        assertTrue(policy.accepts(60000, 100f));
+        assertTrue(policy.isRefresh());
+    }
+
+    @Test
+    public void tooOld_rejected() {
+        LastLocationPolicy policy = new LastLocationPolicy(60000, 100f, false);
+        assertFalse(policy.accepts(60001, 5f));
+        // fix from the future (clock jump) is not trusted.
+        assertFalse(policy.accepts(-1, 5f));
+    }
+
+    @Test
+    public void tooInaccurate_rejected() {
+        LastLocationPolicy policy = new LastLocationPolicy(60000, 100f, false);
+        assertFalse(policy.accepts(1000, 150f));
+        // unknown accuracy
+        assertFalse(policy.accepts(1000, -1f));
+    }
+
+    @Test
+    public void any_acceptsEverything() {
+        assertTrue(LastLocationPolicy.ANY.accepts(Long.MAX_VALUE, 5000f));
+        assertTrue(LastLocationPolicy.ANY.accepts(0, -1f));
+        assertFalse(LastLocationPolicy.ANY.isRefresh());
+    }
+
+    @Test
+    public void clockSteppedBack_fixIsTooOld() {
+        // fix stamped a minute after now : wall clock has gone back since.
+        LocationFix fix = new LocationFix(37.5, 127.0, 5f, System.currentTimeMillis() + 60000, -1f, -1f);
+        assertEquals(Long.MAX_VALUE, LocationHub.ageMillisOf(fix));
+        assertFalse(new LastLocationPolicy(60000, 100f, false).accepts(LocationHub.ageMillisOf(fix), fix.getAccuracy()));
+        assertTrue(LastLocationPolicy.ANY.accepts(LocationHub.ageMillisOf(fix), fix.getAccuracy()));
+
+        LocationFix past = new LocationFix(37.5, 127.0, 5f, System.currentTimeMillis() - 1000, -1f, -1f);
+        assertTrue(LocationHub.ageMillisOf(past) >= 1000);
+    }
+}
@@ -0,0 +1,135 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for LastLocationStore.
+ */
+public class LastLocationStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void newStore_isEmpty() throws Exception {
+        LastLocationStore store = LastLocationStore.open(new File(folder.getRoot(), "store"));
+        assertNull(store.readLatest());
+        assertTrue(store.readRecent(8).isEmpty());
+        assertNull(store.readAddress(Locale.KOREA));
+        store.close();
+    }
+
+    @Test
+    public void fix_survivesReopen() throws Exception {
+        File file = new File(folder.getRoot(), "store");
+        LastLocationStore store = LastLocationStore.open(file);
+        store.write(37.5665, 126.9780, 12.5f, 1.5f, -1f, 1700000000000L, "fused");
+        store.close();
+
+        LastLocationStore reopened = LastLocationStore.open(file);
+        LastLocationStore.Record record = reopened.readLatest();
+        assertNotNull(record);
+        assertEquals(37.5665, record.getLatitude(), 0);
+        assertEquals(126.9780, record.getLongitude(), 0);
+        assertEquals(12.5f, record.getAccuracy(), 0);
+        assertEquals(1.5f, record.getSpeed(), 0);
+        assertEquals(-1f, record.getBearing(), 0);
+        assertEquals(1700000000000L, record.getTime());
+        assertEquals("fused", record.getProvider());
+
+        // sequence continues after reopen.
+        reopened.write(1, 2, 3, 4, 5, 6, "gps");
+        assertEquals(record.getSequence() + 1, reopened.readLatest().getSequence());
+        reopened.close();
+    }
+
+    @Test
+    public void ring_keepsNewestFirst() throws Exception {
+        LastLocationStore store = LastLocationStore.open(new File(folder.getRoot(), "store"));
+        for (int n = 0; n < 20; n++) {
+            store.write(n, n, 1, 0, 0, n, "gps");
+        }
+        List<LastLocationStore.Record> records = store.readRecent(100);
+        assertEquals(LastLocationStore.FIX_SLOTS, records.size());
+        for (int n = 0; n < records.size(); n++) {
+            assertEquals(19 - n, records.get(n).getTime());
+        }
+        assertEquals(3, store.readRecent(3).size());
+        store.close();
+    }
+
+    @Test
+    public void tornWrite_fallsBackToPrevious() throws Exception {
+        File file = new File(folder.getRoot(), "store");
+        LastLocationStore store = LastLocationStore.open(file);
+        store.write(10, 10, 1, 0, 0, 100, "gps");
+        store.write(20, 20, 1, 0, 0, 200, "gps");
+        store.close();
+
+        // break latitude of the latest slot (sequence 2 -> slot 2), as if crash came in the middle of write.
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(LastLocationStore.FIXES_BASE + 2 * LastLocationStore.FIX_SLOT_SIZE + 8);
+        raf.writeDouble(99);
+        raf.close();
+
+        LastLocationStore reopened = LastLocationStore.open(file);
+        LastLocationStore.Record record = reopened.readLatest();
+        assertEquals(100, record.getTime());
+        assertEquals(10, record.getLatitude(), 0);
+        reopened.close();
+    }
+
+    @Test
+    public void brokenHeader_reformats() throws Exception {
+        File file = new File(folder.getRoot(), "store");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.writeInt(12345);
+        raf.close();
+
+        LastLocationStore store = LastLocationStore.open(file);
+        assertNull(store.readLatest());
+        assertEquals(LastLocationStore.FILE_SIZE, file.length());
+        store.close();
+    }
+
+    @Test
+    public void address_perLocale() throws Exception {
+        File file = new File(folder.getRoot(), "store");
+        LastLocationStore store = LastLocationStore.open(file);
+        store.writeAddress(37.5, 127.0, Locale.KOREA, "서울특별시 중구 세종대로 110");
+        store.writeAddress(37.5, 127.0, Locale.US, "110 Sejong-daero, Jung-gu, Seoul");
+        store.close();
+
+        LastLocationStore reopened = LastLocationStore.open(file);
+        assertEquals("서울특별시 중구 세종대로 110", reopened.readAddress(Locale.KOREA).getAddress());
+        assertEquals("110 Sejong-daero, Jung-gu, Seoul", reopened.readAddress(Locale.US).getAddress());
+        assertEquals(37.5, reopened.readAddress(Locale.US).getLatitude(), 0);
+        assertNull(reopened.readAddress(Locale.JAPAN));
+        reopened.close();
+    }
+
+    @Test
+    public void longAddress_cutAtCharacterBoundary() throws Exception {
+        LastLocationStore store = LastLocationStore.open(new File(folder.getRoot(), "store"));
+        StringBuilder sb = new StringBuilder();
+        for (int n = 0; n < 100; n++) {
+            sb.append("가");
+        }
+        store.writeAddress(0, 0, Locale.KOREA, sb.toString());
+
+        String address = store.readAddress(Locale.KOREA).getAddress();
+        // 3 bytes per character, 209 bytes -> 69 characters.
+        assertEquals(LastLocationStore.MAX_ADDRESS_BYTES / 3, address.length());
+        assertTrue(sb.toString().startsWith(address));
+        store.close();
+    }
+}
@@ -0,0 +1,215 @@
+package com.boss0430.bosslib.location;
+
+import com.boss0430.bosslib.utils.TimeoutWheel;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for LocationBatcher.
+ */
+public class LocationBatcherTest {
+
+    private static final class Collector implements LocationBatcher.Consumer {
+        final List<LocationBatch> batches = Collections.synchronizedList(new ArrayList<LocationBatch>());
+        final CountDownLatch first = new CountDownLatch(1);
+
+        @Override
+        public void onBatch(LocationBatch batch) {
+            batches.add(batch.copyOf());
+            first.countDown();
+        }
+    }
+
+    private static LocationFix fix(int n) {
+        return new LocationFix(37.5 + n * 1e-4, 127.0 - n * 1e-4, n, 1000L * n, -1f, -1f);
+    }
+
+    @Test
+    public void fullBatch_isDelivered() {
+        Collector collector = new Collector();
+        LocationBatcher batcher = new LocationBatcher(10, 0, collector);
+        for (int n = 0; n < 25; n++) {
+            batcher.onFix(fix(n));
+        }
+        assertEquals(2, collector.batches.size());
+        assertEquals(5, batcher.getPendingCount());
+
+        batcher.flush();
+        assertEquals(3, collector.batches.size());
+        assertEquals(0, batcher.getPendingCount());
+        assertEquals(25, batcher.getFixCount());
+        assertEquals(3, batcher.getBatchCount());
+
+        // columns keep order across batches.
+        int n = 0;
+        for (LocationBatch batch : collector.batches) {
+            for (int i = 0; i < batch.size(); i++, n++) {
+                assertEquals(1000L * n, batch.getTimes()[i]);
+                assertEquals(37.5 + n * 1e-4, batch.getLatitudes()[i], 0);
+                assertEquals(127.0 - n * 1e-4, batch.getLongitudes()[i], 0);
+                assertEquals(n, batch.getAccuracies()[i], 0);
+            }
+        }
+        assertEquals(25, n);
+    }
+
+    @Test
+    public void batchEnd_flushes() {
+        Collector collector = new Collector();
+        LocationBatcher batcher = new LocationBatcher(100, 0, collector);
+        for (int n = 0; n < 7; n++) {
+            batcher.onFix(fix(n));
+        }
+        assertTrue(collector.batches.isEmpty());
+        batcher.onBatchEnd();
+        assertEquals(1, collector.batches.size());
+        assertEquals(7, collector.batches.get(0).size());
+        assertEquals(6000, collector.batches.get(0).getLastTime());
+
+        // empty flush delivers nothing.
+        batcher.onBatchEnd();
+        assertEquals(1, collector.batches.size());
+    }
+
+    @Test
+    public void latency_flushes() throws InterruptedException {
+        Collector collector = new Collector();
+        LocationBatcher batcher = new LocationBatcher(100, 50, collector);
+        assertEquals(50, batcher.getMaxWaitMillis());
+        for (int n = 0; n < 3; n++) {
+            batcher.onFix(fix(n));
+        }
+        assertTrue(collector.first.await(2, TimeUnit.SECONDS));
+        assertEquals(3, collector.batches.get(0).size());
+        assertEquals(0, batcher.getPendingCount());
+    }
+
+    @Test
+    public void slowConsumer_doesNotDelayOtherTimeouts() throws InterruptedException {
+        final CountDownLatch consuming = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> threads = Collections.synchronizedList(new ArrayList<String>());
+        LocationBatcher batcher = new LocationBatcher(100, 20, new LocationBatcher.Consumer() {
+            @Override
+            public void onBatch(LocationBatch batch) {
+                threads.add(Thread.currentThread().getName());
+                consuming.countDown();
+                try {
+                    // as slow as segment seal of a history store, or slower.
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        batcher.onFix(fix(0));
+        assertTrue(consuming.await(2, TimeUnit.SECONDS));
+
+        // wheel keeps firing while consumer is busy.
+        final CountDownLatch fired = new CountDownLatch(1);
+        TimeoutWheel.getDefault().schedule(new Runnable() {
+            @Override
+            public void run() {
+                fired.countDown();
+            }
+        }, 20, TimeUnit.MILLISECONDS);
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+        release.countDown();
+
+        assertEquals("LocationBatcher-flush", threads.get(0));
+    }
+
+    @Test
+    public void filteredSource_passesBatchEnd() {
+        final List<LocationSource.Listener> registered = new ArrayList<>();
+        LocationSource source = new LocationSource() {
+            @Override
+            public String getName() { return "test"; }
+
+            @Override
+            public void checkSettings(android.content.Context _caller, long _intervalMillis, int _priority, SettingsCallback _callback) {
+                _callback.onSettingsChecked(true);
+            }
+
+            @Override
+            public void requestUpdates(long _intervalMillis, long _fastestIntervalMillis, int _priority, Listener _listener) {
+                registered.add(_listener);
+            }
+
+            @Override
+            public void removeUpdates(Listener _listener) {
+                registered.remove(_listener);
+            }
+
+            @Override
+            public void getLastFix(LastFixCallback _callback) {
+                _callback.onLastFix(null);
+            }
+        };
+
+        Collector collector = new Collector();
+        LocationBatcher batcher = new LocationBatcher(100, 30000, collector);
+        batcher.start(new FilteredLocationSource(source), 1000, LocationSource.PRIORITY_BALANCED_POWER_ACCURACY);
+
+        assertEquals(1, registered.size());
+        LocationSource.BatchListener listener = (LocationSource.BatchListener) registered.get(0);
+        assertEquals(30000, listener.getMaxWaitMillis());
+
+        for (int n = 0; n < 5; n++) {
+            listener.onFix(new LocationFix(37.5 + n * 1e-5, 127.0, 5f, 1000L * n, -1f, -1f));
+        }
+        listener.onBatchEnd();
+        assertEquals(1, collector.batches.size());
+        assertEquals(5, collector.batches.get(0).size());
+
+        batcher.stop();
+        assertTrue(registered.isEmpty());
+    }
+
+    @Test
+    public void replay_isBatched() throws InterruptedException {
+        List<LocationFix> track = new ArrayList<>();
+        for (int n = 0; n < 40; n++) {
+            track.add(fix(n));
+        }
+        ReplayLocationSource replay = new ReplayLocationSource(track);
+        replay.setSpeedFactor(0);
+        replay.setRestamp(false);
+
+        final CountDownLatch done = new CountDownLatch(4);
+        final List<Integer> sizes = Collections.synchronizedList(new ArrayList<Integer>());
+        LocationBatcher batcher = new LocationBatcher(10, 0, new LocationBatcher.Consumer() {
+            @Override
+            public void onBatch(LocationBatch batch) {
+                sizes.add(batch.size());
+                done.countDown();
+            }
+        });
+        batcher.start(replay, 1000, LocationSource.PRIORITY_HIGH_ACCURACY);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        batcher.stop();
+        replay.close();
+        assertEquals(Integer.valueOf(10), sizes.get(0));
+        assertEquals(40, batcher.getFixCount());
+    }
+
+    @Test
+    public void copyOf_isIndependent() {
+        LocationBatch batch = new LocationBatch(4);
+        batch.add(1, 2, 3, 4);
+        LocationBatch copy = batch.copyOf();
+        batch.clear();
+        assertEquals(0, batch.size());
+        assertEquals(1, copy.size());
+        assertEquals(1, copy.capacity());
+        assertEquals(2, copy.getFix(0).getLatitude(), 0);
+    }
+}
@@ -0,0 +1,44 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for LocationFix.
+ */
+public class LocationFixTest {
+
+    @Test
+    public void resultString_sameAsOldForm() {
+        LocationFix fix = new LocationFix(37.5665, 126.978, 10f, 1000L, -1f, -1f);
+        double lat = 37.5665;
+        double lon = 126.978;
+        assertEquals(lat + "|" + lon, fix.toResultString("|"));
+        assertEquals(lat + "," + lon, fix.toResultString(","));
+    }
+
+    @Test
+    public void unknownValues() {
+        LocationFix fix = new LocationFix(1, 2, -1f, 0L, -1f, 0f);
+        assertFalse(fix.hasAccuracy());
+        assertFalse(fix.hasSpeed());
+        assertTrue(fix.hasBearing());
+    }
+
+    @Test
+    public void equality() {
+        LocationFix a = new LocationFix(1, 2, 3f, 4L, 5f, 6f);
+        LocationFix b = new LocationFix(1, 2, 3f, 4L, 5f, 6f);
+        LocationFix c = new LocationFix(1, 2, 3f, 5L, 5f, 6f);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertNotEquals(a, c);
+    }
+
+    @Test
+    public void storeRecord_toFix() {
+        LastLocationStore.Record record = new LastLocationStore.Record(1, 37.5, 127.0, 8f, 1f, 90f, 1234L, "gps");
+        assertEquals(new LocationFix(37.5, 127.0, 8f, 1234L, 1f, 90f), record.toFix());
+    }
+}
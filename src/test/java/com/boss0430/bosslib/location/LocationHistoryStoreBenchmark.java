@@ -0,0 +1,90 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.*;
+
+/**
+ * Benchmark of LocationHistoryStore ingest and scan. runs as local unit test.
+ * <br>
+ * Appends a day of 1Hz walking, several times over, then scans an hour of it and a small box.
+ */
+public class LocationHistoryStoreBenchmark {
+
+    private static final int FIXES = 2000000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LocationHistoryStore store;
+
+    // keep JIT from removing loops.
+    private double sink;
+
+    @After
+    public void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    private final LocationHistoryStore.Visitor mVisitor = new LocationHistoryStore.Visitor() {
+        @Override
+        public boolean onFix(long time, double latitude, double longitude, float accuracy) {
+            sink += latitude;
+            return true;
+        }
+    };
+
+    private static void ingest(LocationHistoryStore store, int from, int to) {
+        for (int n = from; n < to; n++) {
+            double lat = 37.5 + n * 1e-5 + ((n * 7919) % 13) * 1e-6;
+            double lon = 127.0 + n * 1.2e-5 + ((n * 104729) % 11) * 1e-6;
+            store.append(1700000000000L + n * 1000L, lat, lon, 4f + n % 9);
+        }
+    }
+
+    @Test
+    public void ingestAndScan() throws Exception {
+        store = LocationHistoryStore.open(folder.newFolder());
+        store.setAutoCompact(false);
+
+        // warm up JIT.
+        ingest(store, 0, 200000);
+
+        long start = System.nanoTime();
+        ingest(store, 200000, FIXES);
+        store.flush();
+        long ingestNanos = System.nanoTime() - start;
+        double perSecond = (FIXES - 200000) * 1e9 / ingestNanos;
+
+        // one hour in the middle.
+        long from = 1700000000000L + FIXES / 2 * 1000L;
+        store.scan(from, from + 3600000, mVisitor);
+        start = System.nanoTime();
+        int hour = store.scan(from, from + 3600000, mVisitor);
+        long hourNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int all = store.scan(Long.MIN_VALUE, Long.MAX_VALUE, mVisitor);
+        long allNanos = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        int box = store.scan(Long.MIN_VALUE, Long.MAX_VALUE, 38.0, 127.0, 38.01, 135.0, mVisitor);
+        long boxNanos = System.nanoTime() - start;
+
+        System.out.println("LocationHistoryStore : ingest " + (long) perSecond + " fixes/s, "
+                + (double) store.getSizeBytes() / FIXES + " bytes/fix, "
+                + "hour scan " + hourNanos / 1000 + " us, full scan " + allNanos / all + " ns/fix, "
+                + "box scan " + boxNanos / 1000 + " us (" + box + " fixes)");
+
+        assertEquals(3601, hour);
+        assertEquals(FIXES, all);
+        assertTrue(box > 0);
+        assertTrue(sink != 0);
+        assertTrue("ingest " + perSecond, perSecond > 100000);
+    }
+}
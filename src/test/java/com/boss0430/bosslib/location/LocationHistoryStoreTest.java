@@ -0,0 +1,304 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for LocationHistoryStore.
+ */
+public class LocationHistoryStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private LocationHistoryStore store;
+
+    @After
+    public void tearDown() {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    private static final class Collector implements LocationHistoryStore.Visitor {
+        final List<long[]> fixes = new ArrayList<>();
+
+        @Override
+        public boolean onFix(long time, double latitude, double longitude, float accuracy) {
+            fixes.add(new long[]{time, Math.round(latitude * 1e7), Math.round(longitude * 1e7), Math.round(accuracy * 10)});
+            return true;
+        }
+    }
+
+    private LocationHistoryStore open(File directory) throws Exception {
+        // small blocks and segments, so tests roll segments.
+        store = LocationHistoryStore.open(directory, 64, 8192);
+        store.setAutoCompact(false);
+        return store;
+    }
+
+    // walk from (37.5, 127.0) to north east, one fix per second.
+    private static void walk(LocationHistoryStore store, int from, int to) {
+        for (int n = from; n < to; n++) {
+            store.append(1000L * n, 37.5 + n * 1e-5, 127.0 + n * 2e-5, n % 7 == 0 ? -1f : 3.5f + n % 5);
+        }
+    }
+
+    @Test
+    public void timeRange_exactValues() throws Exception {
+        open(folder.newFolder());
+        walk(store, 0, 1000);
+        assertTrue(store.getSegmentCount() > 1);
+        assertEquals(1000, store.getFixCount());
+
+        Collector collector = new Collector();
+        assertEquals(101, store.scan(100000, 200000, collector));
+        for (int i = 0; i < collector.fixes.size(); i++) {
+            long[] fix = collector.fixes.get(i);
+            int n = 100 + i;
+            assertEquals(1000L * n, fix[0]);
+            assertEquals(Math.round((37.5 + n * 1e-5) * 1e7), fix[1]);
+            assertEquals(Math.round((127.0 + n * 2e-5) * 1e7), fix[2]);
+            assertEquals(n % 7 == 0 ? -10 : Math.round((3.5f + n % 5) * 10), fix[3]);
+        }
+
+        assertEquals(1000, store.count(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(0, store.count(2000000, 3000000));
+    }
+
+    @Test
+    public void boundingBox_filters() throws Exception {
+        open(folder.newFolder());
+        walk(store, 0, 1000);
+
+        // latitude 37.5020 ~ 37.5030 : n 200 ~ 300
+        Collector collector = new Collector();
+        store.scan(Long.MIN_VALUE, Long.MAX_VALUE, 37.5020, 126.0, 37.5030, 128.0, collector);
+        assertEquals(101, collector.fixes.size());
+        assertEquals(200000, collector.fixes.get(0)[0]);
+
+        // time and box together.
+        assertEquals(51, store.scan(250000, 400000, 37.5020, 126.0, 37.5030, 128.0, new Collector()));
+        // box far away.
+        assertEquals(0, store.scan(Long.MIN_VALUE, Long.MAX_VALUE, 35.0, 129.0, 35.1, 129.1, new Collector()));
+    }
+
+    @Test
+    public void visitor_stops() throws Exception {
+        open(folder.newFolder());
+        walk(store, 0, 500);
+        final int[] seen = {0};
+        int visited = store.scan(Long.MIN_VALUE, Long.MAX_VALUE, new LocationHistoryStore.Visitor() {
+            @Override
+            public boolean onFix(long time, double latitude, double longitude, float accuracy) {
+                return ++seen[0] < 10;
+            }
+        });
+        assertEquals(10, visited);
+    }
+
+    @Test
+    public void reopen_keepsFlushedFixes() throws Exception {
+        File directory = folder.newFolder();
+        open(directory);
+        walk(store, 0, 300);
+        store.flush();
+        store.close();
+
+        open(directory);
+        assertEquals(300, store.getFixCount());
+        walk(store, 300, 400);
+        store.close();
+
+        open(directory);
+        assertEquals(400, store.count(Long.MIN_VALUE, Long.MAX_VALUE));
+        Collector collector = new Collector();
+        store.scan(Long.MIN_VALUE, Long.MAX_VALUE, collector);
+        for (int n = 0; n < 400; n++) {
+            assertEquals(1000L * n, collector.fixes.get(n)[0]);
+        }
+    }
+
+    @Test
+    public void tornBlock_isIgnored() throws Exception {
+        File directory = folder.newFolder();
+        open(directory);
+        walk(store, 0, 10);
+        store.flush();
+        store.close();
+
+        // garbage after committed bytes, as a crash in the middle of a block leaves.
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        RandomAccessFile raf = new RandomAccessFile(files[0], "rw");
+        raf.seek(2000);
+        raf.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+        raf.close();
+
+        open(directory);
+        assertEquals(10, store.count(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void partlyWrittenBlock_isCut() throws Exception {
+        File directory = folder.newFolder();
+        open(directory);
+        walk(store, 0, 10);
+        store.flush();
+        walk(store, 10, 20);
+        store.flush();
+        store.close();
+
+        // power loss : header and committed bytes reached the device, columns of second block did not.
+        File file = directory.listFiles()[0];
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        int second = HistorySegment.HEADER_SIZE + blockLength(raf, HistorySegment.HEADER_SIZE);
+        raf.seek(24);
+        int committed = raf.readInt();
+        raf.seek(second + HistorySegment.BLOCK_HEADER_SIZE);
+        raf.write(new byte[committed - second - HistorySegment.BLOCK_HEADER_SIZE]);
+        raf.close();
+
+        open(directory);
+        assertEquals(10, store.count(Long.MIN_VALUE, Long.MAX_VALUE));
+
+        // appends go on after the last good block.
+        walk(store, 20, 30);
+        store.close();
+        open(directory);
+        assertEquals(20, store.count(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void unwrittenBlock_isCut() throws Exception {
+        File directory = folder.newFolder();
+        open(directory);
+        walk(store, 0, 10);
+        store.flush();
+        store.close();
+
+        // committed bytes cover a block of zeros, as a page never written leaves.
+        File file = directory.listFiles()[0];
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(24);
+        int committed = raf.readInt();
+        raf.seek(24);
+        raf.writeInt(committed + 500);
+        raf.close();
+
+        open(directory);
+        assertEquals(10, store.count(Long.MIN_VALUE, Long.MAX_VALUE));
+        walk(store, 10, 20);
+        store.flush();
+        assertEquals(20, store.count(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+
+    private static int blockLength(RandomAccessFile raf, int position) throws Exception {
+        int length = HistorySegment.BLOCK_HEADER_SIZE;
+        raf.seek(position + 36);
+        for (int i = 0; i < 4; i++) {
+            length += raf.readInt();
+        }
+        return length;
+    }
+
+    @Test
+    public void compaction_mergesSmallBlocks() throws Exception {
+        File directory = folder.newFolder();
+        open(directory);
+        // flush every 5 fixes : blocks of 5 in 64.
+        for (int n = 0; n < 2000; n += 5) {
+            walk(store, n, n + 5);
+            store.flush();
+        }
+        int segments = store.getSegmentCount();
+        long bytes = store.getSizeBytes();
+        assertTrue(segments > 3);
+
+        assertTrue(store.compact() > 0);
+        assertTrue(store.getSegmentCount() < segments);
+        assertTrue(store.getSizeBytes() < bytes);
+        assertEquals(2000, store.getFixCount());
+
+        Collector collector = new Collector();
+        store.scan(Long.MIN_VALUE, Long.MAX_VALUE, collector);
+        assertEquals(2000, collector.fixes.size());
+        for (int n = 0; n < 2000; n++) {
+            assertEquals(1000L * n, collector.fixes.get(n)[0]);
+        }
+
+        // survives reopen, old files are gone.
+        store.close();
+        open(directory);
+        assertEquals(2000, store.count(Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(store.getSegmentCount(), directory.listFiles().length);
+    }
+
+    @Test
+    public void compaction_dropsExpired() throws Exception {
+        open(folder.newFolder());
+        long now = System.currentTimeMillis();
+        // 2 hours ago, then now.
+        for (int n = 0; n < 1000; n++) {
+            store.append(now - 7200000 + n, 37.5, 127.0, 5f);
+        }
+        for (int n = 0; n < 1000; n++) {
+            store.append(now + n, 37.5, 127.0, 5f);
+        }
+        store.setRetentionMillis(3600000);
+        store.compact();
+        assertEquals(0, store.count(Long.MIN_VALUE, now - 1));
+        assertEquals(1000, store.count(now, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void batcher_feedsStore() throws Exception {
+        open(folder.newFolder());
+        LocationBatcher batcher = new LocationBatcher(32, 0, store);
+        Random random = new Random(7);
+        for (int n = 0; n < 100; n++) {
+            batcher.onFix(new LocationFix(37 + random.nextDouble(), 127 + random.nextDouble(), 10f, n, -1f, -1f));
+        }
+        batcher.flush();
+        assertEquals(100, store.count(0, 99));
+    }
+
+    @Test
+    public void scanWhileAppending() throws Exception {
+        open(folder.newFolder());
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                walk(store, 0, 20000);
+            }
+        });
+        writer.start();
+        int last = 0;
+        while (writer.isAlive()) {
+            // prefix of append order, never torn.
+            final long[] expected = {0};
+            int count = store.scan(Long.MIN_VALUE, Long.MAX_VALUE, new LocationHistoryStore.Visitor() {
+                @Override
+                public boolean onFix(long time, double latitude, double longitude, float accuracy) {
+                    assertEquals(expected[0], time);
+                    expected[0] += 1000;
+                    return true;
+                }
+            });
+            assertTrue(count >= last);
+            last = count;
+        }
+        writer.join();
+        assertEquals(20000, store.count(Long.MIN_VALUE, Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,237 @@
+package com.boss0430.bosslib.location;
+
+import android.content.Context;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for LocationHub. source is a fake which counts requests, and can hold settings callbacks.
+ */
+public class LocationHubTest {
+
+    private static final class FakeSource implements LocationSource {
+        final AtomicInteger checks = new AtomicInteger();
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicInteger removes = new AtomicInteger();
+        volatile Listener listener;
+        // held until answer() when true.
+        boolean holdSettings = false;
+        final List<SettingsCallback> held = new ArrayList<>();
+
+        @Override
+        public String getName() {
+            return "fake";
+        }
+
+        @Override
+        public void checkSettings(Context _caller, long _intervalMillis, int _priority, SettingsCallback _callback) {
+            checks.incrementAndGet();
+            if (holdSettings) {
+                held.add(_callback);
+            } else {
+                _callback.onSettingsChecked(true);
+            }
+        }
+
+        @Override
+        public void requestUpdates(long _intervalMillis, long _fastestIntervalMillis, int _priority, Listener _listener) {
+            requests.incrementAndGet();
+            listener = _listener;
+        }
+
+        @Override
+        public void removeUpdates(Listener _listener) {
+            removes.incrementAndGet();
+            listener = null;
+        }
+
+        @Override
+        public void getLastFix(LastFixCallback _callback) {
+            _callback.onLastFix(null);
+        }
+
+        void answer(boolean satisfied) {
+            for (SettingsCallback callback : held) {
+                callback.onSettingsChecked(satisfied);
+            }
+            held.clear();
+        }
+    }
+
+    private static final class Collector implements LocationHub.FailureWaiter {
+        final List<LocationFix> fixes = Collections.synchronizedList(new ArrayList<LocationFix>());
+        volatile int failures = 0;
+
+        @Override
+        public void onLocation(LocationFix fix) {
+            fixes.add(fix);
+        }
+
+        @Override
+        public void onSettingsFailed() {
+            failures++;
+        }
+    }
+
+    private static final LocationHub.Waiter NOTHING = new LocationHub.Waiter() {
+        @Override
+        public void onLocation(LocationFix fix) {
+        }
+    };
+
+    private static LocationFix fixNow() {
+        return new LocationFix(37.5, 127.0, 5f, System.currentTimeMillis(), -1f, -1f);
+    }
+
+    @Test
+    public void overlappingWaiters_shareOneSession() {
+        FakeSource source = new FakeSource();
+        LocationHub hub = new LocationHub(source);
+        Collector a = new Collector();
+        Collector b = new Collector();
+
+        hub.attach(null, a, false);
+        hub.attach(null, b, false);
+        assertEquals(1, source.checks.get());
+        assertEquals(1, source.requests.get());
+        assertEquals(2, hub.getWaiterCount());
+
+        LocationFix fix = fixNow();
+        source.listener.onFix(fix);
+        assertSame(fix, a.fixes.get(0));
+        assertSame(fix, b.fixes.get(0));
+
+        // everyone got the fix, so the session is over.
+        assertEquals(0, hub.getWaiterCount());
+        assertFalse(hub.isSessionActive());
+        assertEquals(1, source.removes.get());
+    }
+
+    @Test
+    public void lastDetach_stopsSession() {
+        FakeSource source = new FakeSource();
+        LocationHub hub = new LocationHub(source);
+        Collector a = new Collector();
+        Collector b = new Collector();
+
+        hub.attach(null, a, false);
+        hub.attach(null, b, false);
+        hub.detach(a);
+        assertTrue(hub.isSessionActive());
+        assertEquals(0, source.removes.get());
+
+        hub.detach(b);
+        assertFalse(hub.isSessionActive());
+        assertEquals(1, source.removes.get());
+        assertNull(source.listener);
+    }
+
+    @Test
+    public void detachWhileCheckingSettings_requestsNothing() {
+        FakeSource source = new FakeSource();
+        source.holdSettings = true;
+        LocationHub hub = new LocationHub(source);
+        Collector a = new Collector();
+
+        hub.attach(null, a, false);
+        hub.detach(a);
+        // stale answer of a session nobody wants.
+        source.answer(true);
+        assertEquals(0, source.requests.get());
+        assertFalse(hub.isSessionActive());
+
+        // a new session starts over, and the old answer does not leak into it.
+        hub.attach(null, a, false);
+        assertEquals(2, source.checks.get());
+        source.answer(true);
+        assertEquals(1, source.requests.get());
+    }
+
+    @Test
+    public void settingsFailed_tellsFailureWaiters() {
+        FakeSource source = new FakeSource();
+        source.holdSettings = true;
+        LocationHub hub = new LocationHub(source);
+        Collector failure = new Collector();
+
+        hub.attach(null, failure, false);
+        hub.attach(null, NOTHING, false);
+        source.answer(false);
+
+        assertEquals(1, failure.failures);
+        assertFalse(hub.isSessionActive());
+        // plain waiter stays, and the next attach checks settings again.
+        assertEquals(1, hub.getWaiterCount());
+        hub.attach(null, failure, false);
+        assertEquals(2, source.checks.get());
+        assertTrue(hub.isSessionActive());
+        source.answer(true);
+        assertEquals(1, source.requests.get());
+    }
+
+    @Test
+    public void cachedFix_answersWithoutSession() {
+        FakeSource source = new FakeSource();
+        LocationHub hub = new LocationHub(source);
+        Collector a = new Collector();
+        hub.attach(null, a, false);
+        source.listener.onFix(fixNow());
+
+        Collector b = new Collector();
+        hub.attach(null, b, LastLocationPolicy.ANY);
+        assertEquals(1, b.fixes.size());
+        assertEquals(1, source.checks.get());
+        assertFalse(hub.isSessionActive());
+    }
+
+    @Test
+    public void concurrentAttachDetach_leavesNoSession() throws InterruptedException {
+        final FakeSource source = new FakeSource();
+        final LocationHub hub = new LocationHub(source);
+        final int threads = 8;
+        final int rounds = 2000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int n = 0; n < rounds; n++) {
+                            Collector waiter = new Collector();
+                            hub.attach(null, waiter, false);
+                            LocationSource.Listener listener = source.listener;
+                            if (n % 3 == 0 && listener != null) {
+                                listener.onFix(fixNow());
+                            }
+                            hub.detach(waiter);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+        start.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+
+        assertEquals(0, hub.getWaiterCount());
+        assertFalse(hub.isSessionActive());
+        // every update request was removed once.
+        assertEquals(source.requests.get(), source.removes.get());
+        assertNull(source.listener);
+    }
+}
@@ -0,0 +1,256 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for LocationFuture and LocationLookup. (on ReplayLocationSource)
+ */
+public class LocationLookupTest {
+
+    private static List<LocationFix> track(int count, long gapMillis) {
+        List<LocationFix> fixes = new ArrayList<>();
+        for (int n = 0; n < count; n++) {
+            fixes.add(new LocationFix(37.5 + n * 0.0001, 127.0, 5f, 1000000L + n * gapMillis, 1f, 90f));
+        }
+        return fixes;
+    }
+
+    @Test
+    public void future_thenAndCallback() throws Exception {
+        LocationFuture<Integer> future = new LocationFuture<>();
+        LocationFuture<String> next = future.then(new LocationFuture.Transform<Integer, String>() {
+            @Override
+            public String apply(Integer input) {
+                return "v" + input;
+            }
+        }, null);
+
+        final AtomicReference<String> told = new AtomicReference<>();
+        next.addCallback(new LocationFuture.Callback<String>() {
+            @Override
+            public void onSuccess(String value) {
+                told.set(value);
+            }
+
+            @Override
+            public void onFailure(Throwable error) {
+                told.set("failure");
+            }
+        }, null);
+
+        assertFalse(next.isDone());
+        assertTrue(future.complete(1));
+        assertFalse(future.complete(2));
+        assertEquals("v1", next.get());
+        assertEquals("v1", told.get());
+    }
+
+    @Test
+    public void future_failureAndTimeout() throws Exception {
+        LocationFuture<Integer> future = new LocationFuture<>();
+        try {
+            future.get(10, TimeUnit.MILLISECONDS);
+            fail();
+        } catch (TimeoutException expected) {
+        }
+
+        LocationFuture<Integer> next = future.then(new LocationFuture.Transform<Integer, Integer>() {
+            @Override
+            public Integer apply(Integer input) {
+                throw new IllegalStateException("boom");
+            }
+        }, null);
+        future.complete(1);
+        try {
+            next.get();
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void future_cancelOfChainedCancelsUpstream() {
+        final List<String> actions = new ArrayList<>();
+        LocationFuture<Integer> future = new LocationFuture<>();
+        future.setCancelAction(new Runnable() {
+            @Override
+            public void run() {
+                actions.add("released");
+            }
+        });
+        LocationFuture<Integer> next = future.then(new LocationFuture.Transform<Integer, Integer>() {
+            @Override
+            public Integer apply(Integer input) {
+                return input;
+            }
+        }, null);
+
+        assertTrue(next.cancel(true));
+        assertTrue(future.isCancelled());
+        assertEquals(Collections.singletonList("released"), actions);
+        try {
+            future.get();
+            fail();
+        } catch (CancellationException expected) {
+        } catch (Exception e) {
+            fail(e.toString());
+        }
+    }
+
+    @Test
+    public void lookup_getsFix() throws Exception {
+        ReplayLocationSource source = new ReplayLocationSource(track(10, 1000));
+        LocationHub hub = new LocationHub(source);
+        LocationLookup lookup = new LocationLookup(hub, null);
+
+        LocationFix fix = lookup.getLocation(null).get(2, TimeUnit.SECONDS);
+        assertEquals(37.5, fix.getLatitude(), 1e-9);
+        assertFalse(hub.isSessionActive());
+        source.close();
+    }
+
+    @Test
+    public void lookup_settingsFailed_failsWithoutTimeout() throws Exception {
+        ReplayLocationSource source = new ReplayLocationSource(track(10, 1000));
+        source.setSettingsSatisfied(false);
+        LocationHub hub = new LocationHub(source);
+        LocationLookup lookup = new LocationLookup(hub, null);
+        lookup.setTimeoutMillis(0);
+
+        try {
+            lookup.getLocation(null).get(2, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+        assertFalse(hub.isSessionActive());
+        assertEquals(0, hub.getWaiterCount());
+
+        // settings fixed : next lookup checks again.
+        source.setSettingsSatisfied(true);
+        assertNotNull(lookup.getLocation(null).get(2, TimeUnit.SECONDS));
+        source.close();
+    }
+
+    @Test
+    public void lookup_cancelStopsSessionAtOnce() throws Exception {
+        ReplayLocationSource source = new ReplayLocationSource(track(10, 1000));
+        source.setFirstFixDelayMillis(5000);
+        LocationHub hub = new LocationHub(source);
+        LocationLookup lookup = new LocationLookup(hub, null);
+
+        LocationFuture<LocationFix> future = lookup.getLocation(null);
+        assertTrue(hub.isSessionActive());
+        assertTrue(future.cancel(true));
+        assertFalse(hub.isSessionActive());
+        assertEquals(0, hub.getWaiterCount());
+        source.close();
+    }
+
+    @Test
+    public void lookup_timeout() throws Exception {
+        ReplayLocationSource source = new ReplayLocationSource(track(10, 1000));
+        source.setFirstFixDelayMillis(5000);
+        LocationHub hub = new LocationHub(source);
+        LocationLookup lookup = new LocationLookup(hub, null);
+        lookup.setTimeoutMillis(300);
+
+        LocationFuture<LocationFix> future = lookup.getLocation(null);
+        try {
+            future.get(3, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof TimeoutException);
+        }
+        assertFalse(hub.isSessionActive());
+        source.close();
+    }
+
+    @Test
+    public void lookup_cachedFixAnswersAtOnce() throws Exception {
+        ReplayLocationSource source = new ReplayLocationSource(track(10, 1000));
+        source.setRestamp(true);
+        LocationHub hub = new LocationHub(source);
+        LocationLookup lookup = new LocationLookup(hub, null);
+        lookup.getLocation(null).get(2, TimeUnit.SECONDS);
+
+        lookup.setLastLocationPolicy(new LastLocationPolicy(60000, 100f, false));
+        source.setFirstFixDelayMillis(5000);
+        LocationFuture<LocationFix> future = lookup.getLocation(null);
+        assertTrue(future.isDone());
+        assertSame(hub.getLastFix(), future.get());
+        assertFalse(hub.isSessionActive());
+        source.close();
+    }
+
+    @Test
+    public void lookup_chainsOnExecutor() throws Exception {
+        ReplayLocationSource source = new ReplayLocationSource(track(10, 1000));
+        LocationHub hub = new LocationHub(source);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        LocationLookup lookup = new LocationLookup(hub, executor);
+
+        final AtomicReference<String> thread = new AtomicReference<>();
+        String text = lookup.getLocation(null).then(new LocationFuture.Transform<LocationFix, String>() {
+            @Override
+            public String apply(LocationFix fix) {
+                thread.set(Thread.currentThread().getName());
+                return fix.toResultString("|");
+            }
+        }, executor).get(2, TimeUnit.SECONDS);
+
+        assertEquals(37.5 + "|" + 127.0, text);
+        assertTrue(thread.get().startsWith("pool-"));
+        executor.shutdown();
+        source.close();
+    }
+
+    @Test
+    public void updates_inOrderOnExecutor() throws Exception {
+        ReplayLocationSource source = new ReplayLocationSource(track(50, 5000));
+        source.setSpeedFactor(0);
+        source.setRestamp(false);
+        LocationStream stream = new LocationStream(source);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        LocationLookup lookup = new LocationLookup(new LocationHub(source), executor);
+
+        final List<LocationFix> fixes = Collections.synchronizedList(new ArrayList<LocationFix>());
+        final CountDownLatch done = new CountDownLatch(20);
+        LocationLookup.Updates updates = lookup.updates(stream, new LocationStream.Subscriber() {
+            @Override
+            public void onLocation(LocationFix fix) {
+                fixes.add(fix);
+                done.countDown();
+            }
+        }, 0, true);
+
+        assertTrue(done.await(3, TimeUnit.SECONDS));
+        updates.cancel();
+        assertTrue(updates.isCancelled());
+        assertEquals(0, stream.getSubscriberCount());
+        assertFalse(stream.isRunning());
+
+        synchronized (fixes) {
+            for (int n = 1; n < fixes.size(); n++) {
+                assertTrue(fixes.get(n).getTime() > fixes.get(n - 1).getTime());
+            }
+        }
+        executor.shutdown();
+        source.close();
+    }
+}
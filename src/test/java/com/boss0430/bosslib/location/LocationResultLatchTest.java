@@ -0,0 +1,105 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Local unit test for LocationResultLatch.
+ */
+public class LocationResultLatchTest {
+
+    @Test
+    public void await_returnsOfferedValue() throws Exception {
+        final LocationResultLatch<String> latch = new LocationResultLatch<>();
+        final AtomicReference<String> received = new AtomicReference<>();
+        final CountDownLatch finished = new CountDownLatch(1);
+
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    received.set(latch.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException ignored) {
+                }
+                finished.countDown();
+            }
+        });
+        waiter.start();
+
+        Thread.sleep(50);
+        assertFalse(latch.isDone());
+        assertTrue(latch.offer("37.5|127.0"));
+
+        assertTrue(finished.await(1, TimeUnit.SECONDS));
+        assertEquals("37.5|127.0", received.get());
+    }
+
+    @Test
+    public void offer_firstValueWins() {
+        LocationResultLatch<String> latch = new LocationResultLatch<>();
+        assertFalse(latch.offer(null));
+        assertTrue(latch.offer("first"));
+        assertFalse(latch.offer("second"));
+        assertEquals("first", latch.peek());
+        assertTrue(latch.isDone());
+    }
+
+    @Test
+    public void await_returnsNullOnTimeout() throws Exception {
+        LocationResultLatch<String> latch = new LocationResultLatch<>();
+        long start = System.nanoTime();
+        assertNull(latch.await(100, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test(expected = InterruptedException.class)
+    public void await_throwsWhenInterrupted() throws Exception {
+        LocationResultLatch<String> latch = new LocationResultLatch<>();
+        Thread.currentThread().interrupt();
+        latch.await(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void await_doesNotBurnCpuWhileWaiting() throws Exception {
+        final ThreadMXBean mxBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(mxBean.isThreadCpuTimeSupported());
+        mxBean.setThreadCpuTimeEnabled(true);
+
+        final LocationResultLatch<String> latch = new LocationResultLatch<>();
+        final AtomicLong cpuNanos = new AtomicLong(-1);
+        final CountDownLatch started = new CountDownLatch(1);
+
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long before = mxBean.getCurrentThreadCpuTime();
+                started.countDown();
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ignored) {
+                }
+                cpuNanos.set(mxBean.getCurrentThreadCpuTime() - before);
+            }
+        });
+        waiter.start();
+        started.await();
+
+        // wait like a GPS warm-up, then deliver.
+        Thread.sleep(500);
+        latch.offer("fix");
+        waiter.join(1000);
+
+        // a spinning waiter would have used ~500ms of cpu.
+        assertTrue("waiter used " + cpuNanos.get() + "ns cpu", cpuNanos.get() >= 0);
+        assertTrue("waiter used " + cpuNanos.get() + "ns cpu", cpuNanos.get() < TimeUnit.MILLISECONDS.toNanos(50));
+    }
+}
@@ -0,0 +1,142 @@
+package com.boss0430.bosslib.location;
+
+import android.content.Context;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for LocationStream. source is a fake which records requests.
+ */
+public class LocationStreamTest {
+
+    private static final class FakeSource implements LocationSource {
+        Listener listener;
+        boolean settingsSatisfied = true;
+        long interval = -1;
+        int priority = -1;
+
+        @Override
+        public String getName() {
+            return "fake";
+        }
+
+        @Override
+        public void checkSettings(Context _caller, long _intervalMillis, int _priority, SettingsCallback _callback) {
+            _callback.onSettingsChecked(settingsSatisfied);
+        }
+
+        @Override
+        public void requestUpdates(long _intervalMillis, long _fastestIntervalMillis, int _priority, Listener _listener) {
+            listener = _listener;
+            interval = _intervalMillis;
+            priority = _priority;
+        }
+
+        @Override
+        public void removeUpdates(Listener _listener) {
+            listener = null;
+        }
+
+        @Override
+        public void getLastFix(LastFixCallback _callback) {
+            _callback.onLastFix(null);
+        }
+    }
+
+    private static final LocationStream.Subscriber NOTHING = new LocationStream.Subscriber() {
+        @Override
+        public void onLocation(LocationFix fix) {
+        }
+    };
+
+    @Test
+    public void restartAfterStationary_warmsUp() {
+        FakeSource source = new FakeSource();
+        LocationStream stream = new LocationStream(source);
+
+        stream.subscribe(NOTHING, 1000, true);
+        assertEquals(1000, source.interval);
+        source.listener.onFix(new LocationFix(37.5, 127.0, 5f, 0, 0f, 0f));
+        source.listener.onFix(new LocationFix(37.5, 127.0, 5f, 30000, 0f, 0f));
+        assertEquals(60000, source.interval);
+        assertEquals(AdaptiveLocationPolicy.PRIORITY_BALANCED_POWER_ACCURACY, source.priority);
+
+        stream.unsubscribe(NOTHING);
+        assertNull(source.listener);
+        assertFalse(stream.isRunning());
+
+        stream.subscribe(NOTHING, 1000, true);
+        assertEquals(1000, source.interval);
+        assertEquals(AdaptiveLocationPolicy.PRIORITY_HIGH_ACCURACY, source.priority);
+    }
+
+    @Test
+    public void settingsFailed_stopsAndNextSubscribeChecksAgain() {
+        FakeSource source = new FakeSource();
+        source.settingsSatisfied = false;
+        LocationStream stream = new LocationStream(source);
+
+        final List<String> events = new ArrayList<>();
+        LocationStream.FailureSubscriber failing = new LocationStream.FailureSubscriber() {
+            @Override
+            public void onLocation(LocationFix fix) {
+                events.add("failing:fix");
+            }
+
+            @Override
+            public void onSettingsFailed() {
+                events.add("failing:settings");
+            }
+        };
+        LocationStream.Subscriber plain = new LocationStream.Subscriber() {
+            @Override
+            public void onLocation(LocationFix fix) {
+                events.add("plain:fix");
+            }
+        };
+
+        // stream stops at once. plain subscriber stays.
+        stream.subscribe(plain, 1000, true);
+        assertFalse(stream.isRunning());
+        assertNull(source.listener);
+        assertEquals(1, stream.getSubscriberCount());
+
+        // next subscribe checks again, fails again : failure subscriber is told and unsubscribed.
+        stream.subscribe(failing, 1000, true);
+        assertEquals(1, events.size());
+        assertEquals("failing:settings", events.get(0));
+        assertEquals(1, stream.getSubscriberCount());
+        assertFalse(stream.isRunning());
+
+        // settings fixed : next subscribe checks again, plain one gets fixes too.
+        source.settingsSatisfied = true;
+        stream.subscribe(failing, 1000, true);
+        assertTrue(stream.isRunning());
+        assertNotNull(source.listener);
+        source.listener.onFix(new LocationFix(37.5, 127.0, 5f, 0, 0f, 0f));
+        assertTrue(events.contains("plain:fix"));
+        assertTrue(events.contains("failing:fix"));
+    }
+
+    @Test
+    public void policyView_followsDecision() {
+        FakeSource source = new FakeSource();
+        AdaptiveLocationPolicy policy = new AdaptiveLocationPolicy();
+        policy.setIdleIntervalMillis(120000);
+        LocationStream stream = new LocationStream(source, policy);
+
+        stream.subscribe(NOTHING, 2000, false);
+        assertEquals(2000, stream.getPolicy().getInterval());
+        assertEquals(1000, stream.getPolicy().getFastestInterval());
+        source.listener.onFix(new LocationFix(37.5, 127.0, 5f, 0, 0f, 0f));
+        source.listener.onFix(new LocationFix(37.5, 127.0, 5f, 30000, 0f, 0f));
+        assertEquals(120000, stream.getPolicy().getInterval());
+        assertEquals(AdaptiveLocationPolicy.PRIORITY_BALANCED_POWER_ACCURACY, stream.getPolicy().getPriority());
+        stream.unsubscribe(NOTHING);
+    }
+}
@@ -0,0 +1,261 @@
+package com.boss0430.bosslib.location;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compile gazetteer file for OfflineGeocoder from CSV.
+ * <br><br>
+ * CSV line : <b>latitude,longitude,admin_area,street</b> (header line starting with non-number is skipped)<br>
+ * - admin_area : administrative area, ex) "서울특별시 중구". same values are stored once.<br>
+ * - street : street point, ex) "세종대로 110". can be empty for area centroids.<br>
+ * - fields can be quoted with double quote.<br>
+ * <br>
+ * Desktop tool. kept in test sources, so it is not shipped in the library. (file layout : see OfflineGeocoder)<br>
+ * Run on JVM with test classes : java com.boss0430.bosslib.location.OfflineGazetteerBuilder input.csv output.bgz
+ * @see OfflineGeocoder
+ * @since 2026 Oct 17
+ * @author boss0430
+ */
+public class OfflineGazetteerBuilder {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private float[] lats = new float[1024];
+    private float[] lons = new float[1024];
+    private int[] adminRefs = new int[1024];
+    private int[] streetRefs = new int[1024];
+    private int count = 0;
+
+    // string pool.
+    private final Map<String, Integer> mStringOffsets = new HashMap<>();
+    private final List<byte[]> mStrings = new ArrayList<>();
+    private int stringsSize = 0;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage : OfflineGazetteerBuilder <input.csv> <output.bgz>");
+            System.exit(1);
+        }
+        OfflineGazetteerBuilder builder = new OfflineGazetteerBuilder();
+        Reader reader = new InputStreamReader(new FileInputStream(args[0]), UTF8);
+        try {
+            builder.addCsv(reader);
+        } finally {
+            reader.close();
+        }
+        builder.write(new File(args[1]));
+        System.out.println("points : " + builder.size() + ", strings : " + builder.mStrings.size());
+    }
+
+    /**
+     * Add one point.
+     * @param latitude latitude.
+     * @param longitude longitude.
+     * @param _admin administrative area. nullable.
+     * @param _street street point. nullable.
+     */
+    public void add(double latitude, double longitude, String _admin, String _street) {
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new IllegalArgumentException("coordinates out of range : " + latitude + "," + longitude);
+        }
+        if (count == lats.length) {
+            int capacity = count * 2;
+            lats = Arrays.copyOf(lats, capacity);
+            lons = Arrays.copyOf(lons, capacity);
+            adminRefs = Arrays.copyOf(adminRefs, capacity);
+            streetRefs = Arrays.copyOf(streetRefs, capacity);
+        }
+        lats[count] = (float) latitude;
+        lons[count] = (float) longitude;
+        adminRefs[count] = intern(_admin);
+        streetRefs[count] = intern(_street);
+        count++;
+    }
+
+    /**
+     * Add every line of CSV.
+     * @param _reader CSV reader.
+     * @throws IOException when read failed, or a line is malformed.
+     */
+    public void addCsv(Reader _reader) throws IOException {
+        BufferedReader reader = new BufferedReader(_reader);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().length() == 0) {
+                continue;
+            }
+            List<String> fields = splitCsv(line);
+            try {
+                double latitude = Double.parseDouble(fields.get(0).trim());
+                double longitude = Double.parseDouble(fields.get(1).trim());
+                add(latitude, longitude,
+                        fields.size() > 2 ? fields.get(2).trim() : null,
+                        fields.size() > 3 ? fields.get(3).trim() : null);
+            } catch (NumberFormatException e) {
+                if (lineNumber == 1) {
+                    continue; // header
+                }
+                throw new IOException("malformed line " + lineNumber + " : " + line);
+            } catch (IndexOutOfBoundsException e) {
+                throw new IOException("malformed line " + lineNumber + " : " + line);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("line " + lineNumber + " : " + e.getMessage());
+            }
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Write gazetteer file.
+     * @param _output output file.
+     * @throws IOException when write failed.
+     */
+    public void write(File _output) throws IOException {
+
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        layout(order, 0, count, 0);
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(_output), 1 << 16));
+        try {
+            out.writeInt(OfflineGeocoder.MAGIC);
+            out.writeInt(OfflineGeocoder.VERSION);
+            out.writeInt(count);
+            out.writeInt(0);
+            for (int i = 0; i < count; i++) {
+                int p = order[i];
+                out.writeFloat(lats[p]);
+                out.writeFloat(lons[p]);
+                out.writeInt(adminRefs[p]);
+                out.writeInt(streetRefs[p]);
+            }
+            for (byte[] bytes : mStrings) {
+                out.writeShort(bytes.length);
+                out.write(bytes);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /*
+	// ********************************************************************************************
+	// k-d tree layout
+	// ********************************************************************************************
+	*/
+
+    // put median (by axis of depth) at middle of range, then same for both halves.
+    private void layout(int[] order, int lo, int hi, int depth) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        float[] axis = (depth & 1) == 0 ? lats : lons;
+        select(order, axis, lo, hi - 1, mid);
+        layout(order, lo, mid, depth + 1);
+        layout(order, mid + 1, hi, depth + 1);
+    }
+
+    // quickselect : order[k] becomes k-th smallest of order[left..right] by axis.
+    private static void select(int[] order, float[] axis, int left, int right, int k) {
+        while (right > left) {
+            float pivot = axis[order[(left + right) >>> 1]];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (axis[order[i]] < pivot) i++;
+                while (axis[order[j]] > pivot) j--;
+                if (i <= j) {
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /*
+	// ********************************************************************************************
+	// helpers
+	// ********************************************************************************************
+	*/
+
+    private int intern(String _value) {
+        if (_value == null || _value.length() == 0) {
+            return OfflineGeocoder.NO_STRING;
+        }
+        Integer offset = mStringOffsets.get(_value);
+        if (offset != null) {
+            return offset;
+        }
+        byte[] bytes = _value.getBytes(UTF8);
+        if (bytes.length > 0xFFFF) {
+            throw new IllegalArgumentException("string too long : " + bytes.length + " bytes");
+        }
+        offset = stringsSize;
+        mStringOffsets.put(_value, offset);
+        mStrings.add(bytes);
+        stringsSize += 2 + bytes.length;
+        return offset;
+    }
+
+    static List<String> splitCsv(String _line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < _line.length(); i++) {
+            char c = _line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < _line.length() && _line.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
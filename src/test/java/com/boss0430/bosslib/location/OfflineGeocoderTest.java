@@ -0,0 +1,170 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for OfflineGeocoder and OfflineGazetteerBuilder.
+ */
+public class OfflineGeocoderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private OfflineGeocoder geocoder;
+
+    @After
+    public void tearDown() {
+        if (geocoder != null) {
+            geocoder.close();
+        }
+    }
+
+    private OfflineGeocoder build(OfflineGazetteerBuilder builder) throws IOException {
+        File file = folder.newFile("gazetteer.bgz");
+        builder.write(file);
+        geocoder = OfflineGeocoder.open(file);
+        return geocoder;
+    }
+
+    @Test
+    public void csv_nearestAddress() throws Exception {
+        String csv = "latitude,longitude,admin_area,street\n"
+                + "37.56640,126.97770,서울특별시 중구,세종대로 110\n"
+                + "37.57960,126.97700,서울특별시 종로구,사직로 161\n"
+                + "35.17960,129.07560,부산광역시 연제구,\"중앙대로 1001\"\n"
+                + "37.50000,127.00000,서울특별시 서초구,\n";
+        OfflineGazetteerBuilder builder = new OfflineGazetteerBuilder();
+        builder.addCsv(new StringReader(csv));
+        assertEquals(4, builder.size());
+
+        OfflineGeocoder geocoder = build(builder);
+
+        assertEquals("서울특별시 중구 세종대로 110", geocoder.getAddress(37.5665, 126.9779));
+        assertEquals("서울특별시 종로구 사직로 161", geocoder.getAddress(37.5794, 126.9772));
+        assertEquals("부산광역시 연제구 중앙대로 1001", geocoder.lookup(35.1797, 129.0755));
+        assertEquals("서울특별시 서초구", geocoder.getAddress(37.5001, 127.0001));
+    }
+
+    @Test
+    public void farFromEveryPoint_empty() throws Exception {
+        OfflineGazetteerBuilder builder = new OfflineGazetteerBuilder();
+        builder.add(37.5664, 126.9777, "서울특별시 중구", "세종대로 110");
+        OfflineGeocoder geocoder = build(builder);
+
+        geocoder.setMaxDistanceMeters(500);
+        assertEquals("", geocoder.getAddress(37.6, 126.9777));
+        geocoder.setMaxDistanceMeters(5000);
+        assertEquals("서울특별시 중구 세종대로 110", geocoder.getAddress(37.6, 126.9777));
+    }
+
+    @Test
+    public void emptyGazetteer() throws Exception {
+        OfflineGeocoder geocoder = build(new OfflineGazetteerBuilder());
+        assertEquals(0, geocoder.getPointCount());
+        assertEquals("", geocoder.getAddress(0, 0));
+    }
+
+    @Test
+    public void findNearest_matchesBruteForce() throws Exception {
+        Random random = new Random(430);
+        int count = 20000;
+        double[] lats = new double[count];
+        double[] lons = new double[count];
+        OfflineGazetteerBuilder builder = new OfflineGazetteerBuilder();
+        for (int i = 0; i < count; i++) {
+            // around korea.
+            lats[i] = (float) (33 + random.nextDouble() * 5);
+            lons[i] = (float) (125 + random.nextDouble() * 5);
+            builder.add(lats[i], lons[i], "area" + (i % 100), "point" + i);
+        }
+        OfflineGeocoder geocoder = build(builder);
+        geocoder.setMaxDistanceMeters(100000);
+
+        for (int q = 0; q < 500; q++) {
+            double lat = 33 + random.nextDouble() * 5;
+            double lon = 125 + random.nextDouble() * 5;
+            double cos = Math.cos(Math.toRadians(lat));
+
+            int expected = -1;
+            double best = Double.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                double dy = lat - lats[i];
+                double dx = (lon - lons[i]) * cos;
+                double dist = dx * dx + dy * dy;
+                if (dist < best) {
+                    best = dist;
+                    expected = i;
+                }
+            }
+
+            int index = geocoder.findNearest(lat, lon);
+            assertEquals(lats[expected], geocoder.getLatitude(index), 0);
+            assertEquals(lons[expected], geocoder.getLongitude(index), 0);
+        }
+    }
+
+    @Test
+    public void lookup_isSubMillisecond() throws Exception {
+        Random random = new Random(1);
+        OfflineGazetteerBuilder builder = new OfflineGazetteerBuilder();
+        for (int i = 0; i < 200000; i++) {
+            builder.add(33 + random.nextDouble() * 5, 125 + random.nextDouble() * 5, "area", "point" + i);
+        }
+        OfflineGeocoder geocoder = build(builder);
+
+        // warm up.
+        for (int i = 0; i < 20000; i++) {
+            geocoder.findNearest(33 + random.nextDouble() * 5, 125 + random.nextDouble() * 5);
+        }
+        int queries = 20000;
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            geocoder.findNearest(33 + random.nextDouble() * 5, 125 + random.nextDouble() * 5);
+        }
+        long perQuery = (System.nanoTime() - start) / queries;
+        assertTrue("per query : " + perQuery + "ns", perQuery < 1000000);
+    }
+
+    @Test(expected = IOException.class)
+    public void notGazetteerFile_rejected() throws Exception {
+        File file = folder.newFile("other.bin");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[32]);
+        out.close();
+        OfflineGeocoder.open(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void overflowingPointCount_rejected() throws Exception {
+        // 16 + 0x10000000 * 16 wraps to 16 in int arithmetic.
+        File file = folder.newFile("broken.bgz");
+        ByteBuffer header = ByteBuffer.allocate(OfflineGeocoder.HEADER_SIZE);
+        header.putInt(OfflineGeocoder.MAGIC).putInt(OfflineGeocoder.VERSION).putInt(0x10000000).putInt(0);
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(header.array());
+        out.close();
+        OfflineGeocoder.open(file);
+    }
+
+    @Test(expected = IOException.class)
+    public void emptyFile_rejected() throws Exception {
+        OfflineGeocoder.open(folder.newFile("empty.bgz"));
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedCsv_rejected() throws Exception {
+        new OfflineGazetteerBuilder().addCsv(new StringReader("37.5,127.0,a,b\nabc,def\n"));
+    }
+}
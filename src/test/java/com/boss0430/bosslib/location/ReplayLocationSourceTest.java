@@ -0,0 +1,272 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for ReplayLocationSource, and LocationHub running on it. (plain JVM, no Play Services)
+ */
+public class ReplayLocationSourceTest {
+
+    private static List<LocationFix> track(int count, long gapMillis) {
+        List<LocationFix> fixes = new ArrayList<>();
+        for (int n = 0; n < count; n++) {
+            fixes.add(new LocationFix(37.5 + n * 0.0001, 127.0, 5f, 1000000L + n * gapMillis, 1f, 90f));
+        }
+        return fixes;
+    }
+
+    private static final class Collector implements LocationSource.Listener {
+        final List<LocationFix> fixes = Collections.synchronizedList(new ArrayList<LocationFix>());
+        final CountDownLatch latch;
+
+        Collector(int expected) {
+            latch = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void onFix(LocationFix fix) {
+            fixes.add(fix);
+            latch.countDown();
+        }
+    }
+
+    @Test
+    public void readCsv() throws Exception {
+        String csv = "time,latitude,longitude,accuracy,speed,bearing\n"
+                + "1000,37.5,127.0,5,1.5,90\n"
+                + "\n"
+                + "2000,37.6,127.1\n";
+        List<LocationFix> fixes = ReplayLocationSource.readCsv(new StringReader(csv));
+        assertEquals(2, fixes.size());
+        assertEquals(new LocationFix(37.5, 127.0, 5f, 1000, 1.5f, 90f), fixes.get(0));
+        assertFalse(fixes.get(1).hasAccuracy());
+        assertEquals(2000, fixes.get(1).getTime());
+    }
+
+    @Test
+    public void readGpx() throws Exception {
+        String gpx = "<?xml version=\"1.0\"?>\n"
+                + "<gpx version=\"1.1\" xmlns=\"http://www.topografix.com/GPX/1/1\"><trk><trkseg>"
+                + "<trkpt lat=\"37.5\" lon=\"127.0\"><ele>10</ele><time>2024-01-01T00:00:00Z</time></trkpt>"
+                + "<trkpt lat=\"37.6\" lon=\"127.1\"><time>2024-01-01T00:00:01.500Z</time></trkpt>"
+                + "<trkpt lat=\"37.7\" lon=\"127.2\"><time>2024-01-01T09:00:02+09:00</time></trkpt>"
+                + "</trkseg></trk></gpx>";
+        List<LocationFix> fixes = ReplayLocationSource.readGpx(new StringReader(gpx));
+        assertEquals(3, fixes.size());
+        assertEquals(37.5, fixes.get(0).getLatitude(), 0);
+        assertEquals(127.2, fixes.get(2).getLongitude(), 0);
+        long t0 = fixes.get(0).getTime();
+        assertEquals(1704067200000L, t0);
+        assertEquals(t0 + 1500, fixes.get(1).getTime());
+        assertEquals(t0 + 2000, fixes.get(2).getTime());
+    }
+
+    @Test
+    public void replay_inOrder_noWait() throws Exception {
+        ReplayLocationSource source = new ReplayLocationSource(track(100, 1000));
+        source.setSpeedFactor(0);
+        source.setRestamp(false);
+        Collector collector = new Collector(100);
+
+        source.requestUpdates(1000, 0, LocationSource.PRIORITY_HIGH_ACCURACY, collector);
+        assertTrue(collector.latch.await(2, TimeUnit.SECONDS));
+        for (int n = 0; n < 100; n++) {
+            assertEquals(1000000L + n * 1000, collector.fixes.get(n).getTime());
+        }
+        Thread.sleep(50);
+        assertTrue(source.isFinished());
+        assertEquals(100, source.getEmittedCount());
+        source.close();
+    }
+
+    @Test
+    public void replay_acceleratedTiming() throws Exception {
+        // 10 gaps of 1s at 20x -> about 500ms.
+        ReplayLocationSource source = new ReplayLocationSource(track(11, 1000));
+        source.setSpeedFactor(20);
+        Collector collector = new Collector(11);
+
+        long start = System.nanoTime();
+        source.requestUpdates(1000, 0, LocationSource.PRIORITY_HIGH_ACCURACY, collector);
+        assertTrue(collector.latch.await(5, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("too fast : " + elapsedMillis, elapsedMillis >= 450);
+        // restamped with wall clock.
+        assertTrue(System.currentTimeMillis() - collector.fixes.get(10).getTime() < 1000);
+        source.close();
+    }
+
+    @Test
+    public void fastestInterval_skipsCloseFixes() throws Exception {
+        ReplayLocationSource source = new ReplayLocationSource(track(10, 500));
+        source.setSpeedFactor(0);
+        Collector collector = new Collector(5);
+
+        source.requestUpdates(1000, 1000, LocationSource.PRIORITY_HIGH_ACCURACY, collector);
+        assertTrue(collector.latch.await(2, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertEquals(5, collector.fixes.size());
+        source.close();
+    }
+
+    @Test
+    public void hub_sharesSessionAndStops() throws Exception {
+        ReplayLocationSource source = new ReplayLocationSource(track(10, 1000));
+        source.setFirstFixDelayMillis(200);
+        LocationHub hub = new LocationHub(source);
+
+        final CountDownLatch done = new CountDownLatch(2);
+        final List<LocationFix> results = Collections.synchronizedList(new ArrayList<LocationFix>());
+        LocationHub.Waiter waiter = new LocationHub.Waiter() {
+            @Override
+            public void onLocation(LocationFix fix) {
+                results.add(fix);
+                done.countDown();
+            }
+        };
+        LocationHub.Waiter other = new LocationHub.Waiter() {
+            @Override
+            public void onLocation(LocationFix fix) {
+                results.add(fix);
+                done.countDown();
+            }
+        };
+
+        long start = System.nanoTime();
+        hub.attach(null, waiter, (LastLocationPolicy) null);
+        hub.attach(null, other, (LastLocationPolicy) null);
+        assertEquals(2, hub.getWaiterCount());
+        assertTrue(hub.isSessionActive());
+
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 200);
+        // same first fix for both.
+        assertSame(results.get(0), results.get(1));
+        assertFalse(hub.isSessionActive());
+        assertEquals(0, hub.getWaiterCount());
+        assertSame(results.get(0), hub.getLastFix());
+        source.close();
+    }
+
+    @Test
+    public void hub_answersFromCacheWithPolicy() throws Exception {
+        ReplayLocationSource source = new ReplayLocationSource(track(10, 1000));
+        LocationHub hub = new LocationHub(source);
+
+        final CountDownLatch first = new CountDownLatch(1);
+        hub.attach(null, new LocationHub.Waiter() {
+            @Override
+            public void onLocation(LocationFix fix) {
+                first.countDown();
+            }
+        }, (LastLocationPolicy) null);
+        assertTrue(first.await(2, TimeUnit.SECONDS));
+
+        // fresh cached fix answers on this thread, without session.
+        final LocationFix[] cached = new LocationFix[1];
+        hub.attach(null, new LocationHub.Waiter() {
+            @Override
+            public void onLocation(LocationFix fix) {
+                cached[0] = fix;
+            }
+        }, new LastLocationPolicy(60000, 100, false));
+        assertNotNull(cached[0]);
+        assertFalse(hub.isSessionActive());
+        source.close();
+    }
+
+    @Test
+    public void hub_settingsNotSatisfied_noFix() throws Exception {
+        ReplayLocationSource source = new ReplayLocationSource(track(10, 1000));
+        source.setSettingsSatisfied(false);
+        LocationHub hub = new LocationHub(source);
+
+        final CountDownLatch done = new CountDownLatch(1);
+        LocationHub.Waiter waiter = new LocationHub.Waiter() {
+            @Override
+            public void onLocation(LocationFix fix) {
+                done.countDown();
+            }
+        };
+        hub.attach(null, waiter, (LastLocationPolicy) null);
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+        // session has stopped, plain waiter stays.
+        assertFalse(hub.isSessionActive());
+        assertEquals(1, hub.getWaiterCount());
+        hub.detach(waiter);
+        assertEquals(0, source.getEmittedCount());
+        source.close();
+    }
+
+    @Test
+    public void hub_settingsFixed_nextAttachChecksAgain() throws Exception {
+        ReplayLocationSource source = new ReplayLocationSource(track(10, 1000));
+        source.setSettingsSatisfied(false);
+        LocationHub hub = new LocationHub(source);
+
+        final CountDownLatch done = new CountDownLatch(2);
+        LocationHub.Waiter waiter = new LocationHub.Waiter() {
+            @Override
+            public void onLocation(LocationFix fix) {
+                done.countDown();
+            }
+        };
+        hub.attach(null, waiter, (LastLocationPolicy) null);
+        assertFalse(hub.isSessionActive());
+
+        // user has turned location on. both old and new waiter get a fix.
+        source.setSettingsSatisfied(true);
+        hub.attach(null, new LocationHub.Waiter() {
+            @Override
+            public void onLocation(LocationFix fix) {
+                done.countDown();
+            }
+        }, (LastLocationPolicy) null);
+        assertTrue(done.await(2, TimeUnit.SECONDS));
+        source.close();
+    }
+
+    @Test
+    public void hub_loadTest_manyConcurrentWaiters() throws Exception {
+        ReplayLocationSource source = new ReplayLocationSource(track(1000, 1000));
+        source.setSpeedFactor(100);
+        source.setLoop(true);
+        final LocationHub hub = new LocationHub(source);
+
+        final int count = 2000;
+        final CountDownLatch done = new CountDownLatch(count);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int n = 0; n < count / 8; n++) {
+                        hub.attach(null, new LocationHub.Waiter() {
+                            @Override
+                            public void onLocation(LocationFix fix) {
+                                done.countDown();
+                            }
+                        }, (LastLocationPolicy) null);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertFalse(hub.isSessionActive());
+        source.close();
+    }
+}
@@ -0,0 +1,187 @@
+package com.boss0430.bosslib.location;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for TrajectoryCompressor.
+ */
+public class TrajectoryCompressorTest {
+
+    private static final double M = Geofence.METERS_PER_DEGREE;
+
+    private static final class Collector implements TrajectoryCompressor.Sink {
+        final List<LocationFix> points = new ArrayList<>();
+
+        @Override
+        public void onPoint(LocationFix fix) {
+            points.add(fix);
+        }
+    }
+
+    // meters east / north of (37.5, 127.0)
+    private static LocationFix at(double east, double north, long time) {
+        return new LocationFix(37.5 + north / M, 127.0 + east / (M * Math.cos(Math.toRadians(37.5))), 5f, time, -1f, -1f);
+    }
+
+    private static double[] local(LocationFix fix) {
+        return new double[]{
+                (fix.getLongitude() - 127.0) * M * Math.cos(Math.toRadians(37.5)),
+                (fix.getLatitude() - 37.5) * M};
+    }
+
+    private static double segmentDistance(double[] p, double[] a, double[] b) {
+        double dx = b[0] - a[0], dy = b[1] - a[1];
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : ((p[0] - a[0]) * dx + (p[1] - a[1]) * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double x = a[0] + t * dx - p[0], y = a[1] + t * dy - p[1];
+        return Math.sqrt(x * x + y * y);
+    }
+
+    @Test
+    public void straightLine_keepsEnds() {
+        Collector collector = new Collector();
+        TrajectoryCompressor compressor = new TrajectoryCompressor(5, collector);
+        for (int n = 0; n < 1000; n++) {
+            compressor.onFix(at(n * 10, n * 3, n * 1000L));
+        }
+        compressor.flush();
+        assertEquals(2, collector.points.size());
+        assertEquals(500, compressor.getCompressionRatio(), 1e-9);
+    }
+
+    @Test
+    public void corners_areKept() {
+        Collector collector = new Collector();
+        TrajectoryCompressor compressor = new TrajectoryCompressor(5, collector);
+        long time = 0;
+        // L shape : east 500m, then north 500m.
+        for (int n = 0; n <= 50; n++) {
+            compressor.onFix(at(n * 10, 0, time++));
+        }
+        for (int n = 1; n <= 50; n++) {
+            compressor.onFix(at(500, n * 10, time++));
+        }
+        compressor.flush();
+        assertEquals(3, collector.points.size());
+        assertArrayEquals(new double[]{500, 0}, local(collector.points.get(1)), 1e-6);
+    }
+
+    @Test
+    public void uTurn_isKept() {
+        Collector collector = new Collector();
+        TrajectoryCompressor compressor = new TrajectoryCompressor(5, collector);
+        long time = 0;
+        for (int n = 0; n <= 50; n++) {
+            compressor.onFix(at(n * 10, 0, time++));
+        }
+        for (int n = 49; n >= 0; n--) {
+            compressor.onFix(at(n * 10, 0, time++));
+        }
+        compressor.flush();
+        assertEquals(3, collector.points.size());
+    }
+
+    @Test
+    public void maxInterval() {
+        Collector collector = new Collector();
+        TrajectoryCompressor compressor = new TrajectoryCompressor(5, collector);
+        compressor.setMaxIntervalMillis(10000);
+        for (int n = 0; n <= 100; n++) {
+            compressor.onFix(at(n * 10, 0, n * 1000L));
+        }
+        compressor.flush();
+        assertEquals(11, collector.points.size());
+    }
+
+    @Test
+    public void randomWalk_withinTolerance() {
+        Random random = new Random(5);
+        Collector collector = new Collector();
+        final double tolerance = 8;
+        TrajectoryCompressor compressor = new TrajectoryCompressor(tolerance, collector);
+
+        List<LocationFix> input = new ArrayList<>();
+        double east = 0, north = 0, heading = 0;
+        for (int n = 0; n < 20000; n++) {
+            heading += random.nextGaussian() * 0.1;
+            east += Math.cos(heading) * 5 + random.nextGaussian();
+            north += Math.sin(heading) * 5 + random.nextGaussian();
+            LocationFix fix = at(east, north, n * 1000L);
+            input.add(fix);
+            compressor.onFix(fix);
+        }
+        compressor.flush();
+
+        List<LocationFix> output = collector.points;
+        assertSame(input.get(0), output.get(0));
+        assertSame(input.get(input.size() - 1), output.get(output.size() - 1));
+        assertTrue(compressor.toString(), compressor.getCompressionRatio() > 4);
+
+        assertWithinTolerance(input, output, tolerance);
+    }
+
+    @Test
+    public void backtrack_staysWithinTolerance() {
+        Collector collector = new Collector();
+        TrajectoryCompressor compressor = new TrajectoryCompressor(10, collector);
+        List<LocationFix> input = new ArrayList<>();
+        // out to (100, 9.9), a step back to (91, 0), then away south.
+        input.add(at(0, 0, 0));
+        input.add(at(100, 9.9, 1000));
+        input.add(at(91, 0, 2000));
+        input.add(at(91, -200, 3000));
+        for (LocationFix fix : input) {
+            compressor.onFix(fix);
+        }
+        compressor.flush();
+
+        assertSame(input.get(1), collector.points.get(1));
+        assertWithinTolerance(input, collector.points, 10);
+    }
+
+    @Test
+    public void jitteryWalk_withinTolerance() {
+        Random random = new Random(11);
+        Collector collector = new Collector();
+        final double tolerance = 8;
+        TrajectoryCompressor compressor = new TrajectoryCompressor(tolerance, collector);
+
+        // slow walk with gps noise bigger than a step : track goes back and forth.
+        List<LocationFix> input = new ArrayList<>();
+        double east = 0, north = 0;
+        for (int n = 0; n < 20000; n++) {
+            east += 1 + random.nextGaussian() * 3;
+            north += random.nextGaussian() * 3;
+            LocationFix fix = at(east, north, n * 1000L);
+            input.add(fix);
+            compressor.onFix(fix);
+        }
+        compressor.flush();
+
+        assertSame(input.get(input.size() - 1), collector.points.get(collector.points.size() - 1));
+        assertWithinTolerance(input, collector.points, tolerance);
+    }
+
+    // every dropped fix is near the segment of emitted fixes around it.
+    private static void assertWithinTolerance(List<LocationFix> input, List<LocationFix> output, double tolerance) {
+        int segment = 0;
+        for (LocationFix fix : input) {
+            if (segment + 1 < output.size() && fix == output.get(segment + 1) && segment + 2 < output.size()) {
+                segment++;
+                continue;
+            }
+            if (fix == output.get(segment)) {
+                continue;
+            }
+            double distance = segmentDistance(local(fix), local(output.get(segment)), local(output.get(segment + 1)));
+            assertTrue("distance " + distance, distance <= tolerance * 1.01);
+        }
+    }
+}
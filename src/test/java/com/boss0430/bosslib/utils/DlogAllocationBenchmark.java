@@ -0,0 +1,89 @@
+package com.boss0430.bosslib.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Microbenchmark of Dlog when log is off. runs as local unit test.
+ * <br>
+ * Measures bytes allocated by current thread per call. old style (string concat + boxed level)
+ * is measured for comparison, new overloads must allocate nothing.
+ */
+public class DlogAllocationBenchmark {
+
+    private static final String TAG = "DlogAllocationBenchmark";
+    private static final int CALLS = 1000000;
+
+    private static final Dlog.MessageSupplier SUPPLIER = new Dlog.MessageSupplier() {
+        @Override
+        public String get() {
+            return "never built";
+        }
+    };
+
+    private com.sun.management.ThreadMXBean mxBean;
+
+    // keep JIT from removing loops.
+    private double sink;
+
+    @Before
+    public void setUp() {
+        Dlog.setShowLog(false);
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        mxBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(mxBean.isThreadAllocatedMemorySupported());
+        mxBean.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    private long allocated() {
+        return mxBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private long runOldStyle() {
+        long before = allocated();
+        for (int n = 0; n < CALLS; n++) {
+            double latitude = 37.0 + n * 1e-7;
+            Object level = Dlog.i; // boxed like the old Object _type parameter.
+            Dlog.out(TAG, "LOCATION : Latitude of LocationCallback : " + latitude, level);
+            sink += latitude;
+        }
+        return allocated() - before;
+    }
+
+    private long runNewStyle() {
+        long before = allocated();
+        for (int n = 0; n < CALLS; n++) {
+            double latitude = 37.0 + n * 1e-7;
+            Dlog.out(TAG, "LOCATION : Latitude of LocationCallback : {}", latitude, Dlog.i);
+            Dlog.out(TAG, "LOCATION : fix : {}, {}", latitude, latitude + 1, Dlog.i);
+            Dlog.out(TAG, "LOCATION : count : {}", n, Dlog.d);
+            Dlog.out(TAG, SUPPLIER, Dlog.d);
+            Dlog.out(TAG, "LOCATION : plain message", Dlog.w);
+            sink += latitude;
+        }
+        return allocated() - before;
+    }
+
+    @Test
+    public void logOff_newOverloadsAllocateNothing() {
+        // warm up, so JIT has compiled both loops.
+        for (int round = 0; round < 5; round++) {
+            runOldStyle();
+            runNewStyle();
+        }
+
+        long oldBytes = runOldStyle();
+        long newBytes = runNewStyle();
+
+        System.out.println(TAG + " : old style " + ((double) oldBytes / CALLS) + " bytes/call, new style "
+                + ((double) newBytes / CALLS) + " bytes/call (sink " + sink + ")");
+
+        // a few bytes from the measuring itself are allowed, not one object per call.
+        assertTrue("new style allocated " + newBytes + " bytes", newBytes < CALLS / 100);
+    }
+}
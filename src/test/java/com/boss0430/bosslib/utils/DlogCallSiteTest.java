@@ -0,0 +1,55 @@
+package com.boss0430.bosslib.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for DlogCallSite, and tag of Dlog.
+ */
+public class DlogCallSiteTest {
+
+    // as Dlog.detailOut calls it : one frame up is the caller of detailOut.
+    private static DlogCallSite detailOut() {
+        return DlogCallSite.capture(1);
+    }
+
+    @Test
+    public void capture_reportsDirectCaller() {
+        DlogCallSite site = DlogCallSite.here();
+        int line = new Throwable().getStackTrace()[0].getLineNumber() - 1;
+
+        assertEquals(DlogCallSiteTest.class.getName(), site.getClassName());
+        assertEquals("capture_reportsDirectCaller", site.getMethodName());
+        assertEquals(line, site.getLineNumber());
+        assertEquals("at " + DlogCallSiteTest.class.getName() + ".capture_reportsDirectCaller(DlogCallSiteTest.java:" + line + ")", site.getPosition());
+    }
+
+    @Test
+    public void capture_skipsLoggingFrame() {
+        DlogCallSite site = detailOut();
+        int line = new Throwable().getStackTrace()[0].getLineNumber() - 1;
+
+        assertEquals("capture_skipsLoggingFrame", site.getMethodName());
+        assertEquals(line, site.getLineNumber());
+    }
+
+    @Test
+    public void capture_cachesSameSite() {
+        DlogCallSite first = null;
+        for (int n = 0; n < 2; n++) {
+            DlogCallSite site = DlogCallSite.here();
+            if (first == null) {
+                first = site;
+            } else {
+                assertSame(first, site);
+            }
+        }
+    }
+
+    @Test
+    public void simpleName_cached() {
+        assertEquals("DlogCallSiteTest", Dlog.simpleNameOf(DlogCallSiteTest.class));
+        assertSame(Dlog.simpleNameOf(DlogCallSiteTest.class), Dlog.simpleNameOf(DlogCallSiteTest.class));
+    }
+}
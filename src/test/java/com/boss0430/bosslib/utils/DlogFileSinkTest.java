@@ -0,0 +1,161 @@
+package com.boss0430.bosslib.utils;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for DlogFileSink.
+ */
+public class DlogFileSinkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private DlogFileSink sink;
+
+    @After
+    public void tearDown() {
+        Dlog.setFileSink(null);
+        if (sink != null) {
+            sink.close();
+        }
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        if (!file.exists()) {
+            return lines;
+        }
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+
+    @Test
+    public void blockPolicy_writesEveryRecordFromManyThreads() throws Exception {
+        sink = new DlogFileSink(folder.getRoot(), "dlog", 64, DlogFileSink.OverflowPolicy.BLOCK);
+        sink.setMaxFileBytes(Long.MAX_VALUE);
+        sink.setFlushIntervalMillis(5);
+        sink.start();
+
+        final int threads = 4;
+        final int perThread = 5000;
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            producers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int n = 0; n < perThread; n++) {
+                        sink.offer(Dlog.i, "T" + id, "record " + n);
+                    }
+                }
+            });
+            producers[t].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        sink.close();
+
+        assertEquals(0, sink.getDroppedCount());
+        assertEquals(threads * perThread, sink.getWrittenCount());
+        List<String> lines = readLines(sink.getCurrentFile());
+        assertEquals(threads * perThread, lines.size());
+        assertTrue(lines.get(0), lines.get(0).matches("\\d{4}-\\d\\d-\\d\\d \\d\\d:\\d\\d:\\d\\d\\.\\d{3} I/T\\d: record \\d+"));
+    }
+
+    @Test
+    public void dropPolicy_countsDroppedRecords() throws Exception {
+        // writer not started, so buffer fills up.
+        sink = new DlogFileSink(folder.getRoot(), "dlog", 8, DlogFileSink.OverflowPolicy.DROP);
+
+        for (int n = 0; n < 20; n++) {
+            sink.offer(Dlog.d, "TAG", "record " + n);
+        }
+        assertEquals(8, sink.getPendingCount());
+        assertEquals(12, sink.getDroppedCount());
+
+        sink.flush();
+        assertEquals(8, sink.getWrittenCount());
+        assertEquals(8, readLines(sink.getCurrentFile()).size());
+    }
+
+    @Test
+    public void bigFile_rotates() throws Exception {
+        sink = new DlogFileSink(folder.getRoot(), "dlog", 16, DlogFileSink.OverflowPolicy.BLOCK);
+        sink.setMaxFileBytes(200);
+        sink.setMaxFiles(3);
+        sink.setBatchSize(1);
+
+        for (int n = 0; n < 100; n++) {
+            sink.offer(Dlog.w, "TAG", "some long message to fill the file " + n);
+            sink.flush();
+        }
+
+        assertTrue(new File(folder.getRoot(), "dlog.1.log").exists());
+        assertTrue(new File(folder.getRoot(), "dlog.2.log").exists());
+        assertFalse(new File(folder.getRoot(), "dlog.3.log").exists());
+    }
+
+    @Test
+    public void closedSink_dropsRecords() {
+        sink = new DlogFileSink(folder.getRoot(), "dlog", 8, DlogFileSink.OverflowPolicy.BLOCK);
+        sink.close();
+        assertFalse(sink.offer(Dlog.e, "TAG", "late"));
+        assertEquals(1, sink.getDroppedCount());
+    }
+
+    @Test
+    public void dlog_writesToSinkWhileLogcatIsOff() throws Exception {
+        Dlog.setShowLog(false);
+        sink = new DlogFileSink(folder.getRoot(), "dlog", 8, DlogFileSink.OverflowPolicy.BLOCK);
+        Dlog.setFileSink(sink);
+
+        Dlog.out("LocationHub", "LOCATION : Latitude of LocationCallback : {}", 37.5, Dlog.i);
+        Dlog.out("LocationHub", "plain", Dlog.w);
+        sink.flush();
+
+        List<String> lines = readLines(sink.getCurrentFile());
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0), lines.get(0).endsWith("I/LocationHub: LOCATION : Latitude of LocationCallback : 37.5"));
+        assertTrue(lines.get(1), lines.get(1).endsWith("W/LocationHub: plain"));
+    }
+
+    @Test
+    public void detailOut_writesToSinkWhileLogcatIsOff() throws Exception {
+        Dlog.setShowLog(false);
+        sink = new DlogFileSink(folder.getRoot(), "dlog", 8, DlogFileSink.OverflowPolicy.BLOCK);
+        Dlog.setFileSink(sink);
+
+        Dlog.detailOut("LocationHub", "detail", Dlog.e);
+        Dlog.detailOut("LocationHub", "detail of object level", (Object) Dlog.w);
+        sink.flush();
+
+        // message and position line for each.
+        List<String> lines = readLines(sink.getCurrentFile());
+        assertEquals(4, lines.size());
+        assertTrue(lines.get(0), lines.get(0).endsWith("E/LocationHub: detail"));
+        assertTrue(lines.get(1), lines.get(1).contains("E/LocationHub position: "));
+        assertTrue(lines.get(2), lines.get(2).endsWith("W/LocationHub: detail of object level"));
+    }
+}
@@ -0,0 +1,148 @@
+package com.boss0430.bosslib.utils;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for DlogRateLimiter and tag levels of Dlog.
+ */
+public class DlogRateLimiterTest {
+
+    private static final long SECOND = 1000000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        Dlog.clearTagLevels();
+        Dlog.setDefaultLevel(Dlog.v);
+        Dlog.setShowLog(false);
+    }
+
+    private static String read(File file) throws IOException {
+        StringBuilder text = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                text.append(line).append('\n');
+            }
+        } finally {
+            reader.close();
+        }
+        return text.toString();
+    }
+
+    @Test
+    public void tokenBucket_burstThenRate() {
+        DlogRateLimiter limiter = DlogRateLimiter.perSecond("test.bucket", 2, 3);
+        long now = 100 * SECOND;
+
+        // burst of 3 at once.
+        assertTrue(limiter.acquireToken(now));
+        assertTrue(limiter.acquireToken(now));
+        assertTrue(limiter.acquireToken(now));
+        assertFalse(limiter.acquireToken(now));
+
+        // then 2 per second.
+        assertTrue(limiter.acquireToken(now + SECOND / 2));
+        assertFalse(limiter.acquireToken(now + SECOND / 2));
+
+        // quiet time refills up to burst, not more.
+        long later = now + 60 * SECOND;
+        int passed = 0;
+        for (int n = 0; n < 10; n++) {
+            passed += limiter.acquireToken(later) ? 1 : 0;
+        }
+        assertEquals(3, passed);
+    }
+
+    @Test
+    public void sampling_countsSuppressed() throws Exception {
+        // logcat stays off (android.util.Log is not there in local tests). file sink turns log on.
+        DlogFileSink sink = new DlogFileSink(folder.getRoot(), "dlog", 8, DlogFileSink.OverflowPolicy.BLOCK);
+        Dlog.setFileSink(sink);
+        try {
+            DlogRateLimiter limiter = DlogRateLimiter.sampling("test.sampling", 10);
+            int passed = 0;
+            for (int n = 0; n < 100; n++) {
+                passed += limiter.tryAcquire() ? 1 : 0;
+            }
+            assertEquals(10, passed);
+            assertEquals(90, limiter.getSuppressedCount());
+
+            assertTrue(Dlog.reportSuppressed() >= 90);
+            // reported once.
+            assertEquals(0, limiter.takeUnreported());
+
+            sink.flush();
+            String report = read(sink.getCurrentFile());
+            assertTrue(report, report.contains("I/Dlog: suppressed 90 log(s) of test.sampling"));
+        } finally {
+            Dlog.setFileSink(null);
+            sink.close();
+        }
+    }
+
+    @Test
+    public void logOff_notCounted() {
+        DlogRateLimiter limiter = DlogRateLimiter.sampling("test.off", 2);
+        for (int n = 0; n < 10; n++) {
+            assertFalse(limiter.tryAcquire());
+        }
+        assertEquals(0, limiter.getSuppressedCount());
+    }
+
+    @Test
+    public void filteredByTagLevel_notCounted() {
+        Dlog.setShowLog(true);
+        Dlog.setTagLevel("LocationHub", Dlog.w);
+        DlogRateLimiter limiter = DlogRateLimiter.sampling("test.filtered", 2);
+        for (int n = 0; n < 10; n++) {
+            assertFalse(limiter.tryAcquire("LocationHub", Dlog.d));
+        }
+        assertEquals(0, limiter.getSuppressedCount());
+
+        // first call passes : no call was counted while filtered.
+        assertTrue(limiter.tryAcquire("LocationHub", Dlog.e));
+        assertFalse(limiter.tryAcquire("LocationHub", Dlog.e));
+        assertEquals(1, limiter.getSuppressedCount());
+    }
+
+    @Test
+    public void tagLevels() {
+        Dlog.setShowLog(true);
+        assertTrue(Dlog.isLoggable("LocationHub", Dlog.v));
+
+        Dlog.setTagLevel("LocationHub", Dlog.w);
+        assertFalse(Dlog.isLoggable("LocationHub", Dlog.i));
+        assertTrue(Dlog.isLoggable("LocationHub", Dlog.e));
+        assertTrue(Dlog.isLoggable("Other", Dlog.d));
+
+        Dlog.setDefaultLevel(Dlog.i);
+        assertFalse(Dlog.isLoggable("Other", Dlog.d));
+        assertTrue(Dlog.isLoggable("Other", Dlog.i));
+
+        Dlog.clearTagLevels();
+        assertTrue(Dlog.isLoggable("LocationHub", Dlog.i));
+
+        // supplier is not called for filtered level.
+        Dlog.out("Other", new Dlog.MessageSupplier() {
+            @Override
+            public String get() {
+                throw new AssertionError("message made for filtered log");
+            }
+        }, Dlog.d);
+    }
+}
@@ -0,0 +1,124 @@
+package com.boss0430.bosslib.utils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for Metrics and Histogram.
+ */
+public class MetricsTest {
+
+    @After
+    public void tearDown() {
+        Metrics.setExporter(null, 0);
+        Metrics.setEnabled(true);
+        Metrics.reset();
+    }
+
+    @Test
+    public void histogram_bucketBounds() {
+        for (long value : new long[]{0, 1, 63, 64, 65, 127, 128, 1000, 123456789L, Long.MAX_VALUE}) {
+            int index = Histogram.indexOf(value);
+            assertTrue(index < Histogram.BUCKET_COUNT);
+            assertTrue(Histogram.lowestValueAt(index) <= value);
+            assertTrue(Histogram.highestValueAt(index) >= value);
+        }
+        // exact under 64.
+        assertEquals(Histogram.indexOf(63) + 1, Histogram.indexOf(64));
+    }
+
+    @Test
+    public void histogram_percentiles() {
+        Histogram histogram = new Histogram();
+        for (int n = 1; n <= 1000; n++) {
+            histogram.record(n);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1, snapshot.getMin());
+        assertEquals(1000, snapshot.getMax());
+        assertEquals(500.5, snapshot.getMean(), 1e-9);
+        // about 3% error.
+        assertEquals(500, snapshot.getValueAtPercentile(50), 500 * 0.04);
+        assertEquals(990, snapshot.getValueAtPercentile(99), 990 * 0.04);
+        assertEquals(1000, snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void emptyHistogram() {
+        Histogram.Snapshot snapshot = new Histogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getValueAtPercentile(50));
+        assertEquals(0, snapshot.getMax());
+    }
+
+    @Test
+    public void counters_gauges_snapshot() {
+        Metrics.counter(Metrics.GEOCODE_CACHE_HIT).add(3);
+        Metrics.counter(Metrics.GEOCODE_CACHE_MISS).inc();
+        Metrics.gauge("test.gauge", new Metrics.Gauge() {
+            @Override
+            public long get() {
+                return 42;
+            }
+        });
+        Metrics.record(Metrics.histogram("test.latency"), 10);
+
+        Metrics.Snapshot snapshot = Metrics.snapshot();
+        assertEquals(3, snapshot.getCounter(Metrics.GEOCODE_CACHE_HIT));
+        assertEquals(0.75, snapshot.getGeocodeCacheHitRate(), 1e-9);
+        assertEquals(42, snapshot.getCounter("test.gauge"));
+        assertEquals(1, snapshot.getHistogram("test.latency").getCount());
+        assertSame(Metrics.counter(Metrics.GEOCODE_CACHE_HIT), Metrics.counter(Metrics.GEOCODE_CACHE_HIT));
+
+        Metrics.gauge("test.gauge", null);
+        assertEquals(0, Metrics.snapshot().getCounter("test.gauge"));
+    }
+
+    @Test
+    public void disabled_recordsNothing() {
+        Metrics.setEnabled(false);
+        Metrics.counter("test.disabled").inc();
+        Metrics.record(Metrics.histogram("test.disabled.h"), 5);
+        assertEquals(0, Metrics.counter("test.disabled").get());
+        assertEquals(0, Metrics.histogram("test.disabled.h").getCount());
+    }
+
+    @Test
+    public void exporter_receivesSnapshots() throws Exception {
+        final CountDownLatch exported = new CountDownLatch(2);
+        final AtomicReference<Metrics.Snapshot> last = new AtomicReference<>();
+        Metrics.counter("test.exported").inc();
+        Metrics.setExporter(new Metrics.Exporter() {
+            @Override
+            public void export(Metrics.Snapshot snapshot) {
+                last.set(snapshot);
+                exported.countDown();
+            }
+        }, 50);
+
+        assertTrue(exported.await(3, TimeUnit.SECONDS));
+        assertEquals(1, last.get().getCounter("test.exported"));
+    }
+
+    @Test
+    public void exporter_zeroPeriodStops() throws Exception {
+        final AtomicInteger exported = new AtomicInteger();
+        Metrics.setExporter(new Metrics.Exporter() {
+            @Override
+            public void export(Metrics.Snapshot snapshot) {
+                exported.incrementAndGet();
+            }
+        }, 0);
+
+        Thread.sleep(200);
+        assertEquals(0, exported.get());
+    }
+}
@@ -0,0 +1,125 @@
+package com.boss0430.bosslib.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for SingleFlight.
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void concurrentCallsOfSameKey_runOnce() throws Exception {
+        final SingleFlight<String, String> flights = new SingleFlight<>();
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<String> slow = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                calls.incrementAndGet();
+                release.await();
+                return "address";
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        List<Future<String>> results = new ArrayList<>();
+        for (int n = 0; n < 32; n++) {
+            final String key = n % 2 == 0 ? "a" : "b";
+            results.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return flights.execute(key, slow);
+                }
+            }));
+        }
+        // let every caller arrive while the first calls are running.
+        Thread.sleep(200);
+        assertEquals(2, flights.getInFlightCount());
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("address", result.get(2, TimeUnit.SECONDS));
+        }
+        assertEquals(2, calls.get());
+        assertEquals(0, flights.getInFlightCount());
+        executor.shutdown();
+    }
+
+    @Test
+    public void failureIsShared_andNotKept() throws Exception {
+        SingleFlight<Integer, String> flights = new SingleFlight<>();
+        try {
+            flights.execute(1, new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    throw new IOException("network");
+                }
+            });
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IOException);
+        }
+
+        // next call runs again.
+        assertEquals("ok", flights.execute(1, new Callable<String>() {
+            @Override
+            public String call() {
+                return "ok";
+            }
+        }));
+    }
+
+    @Test
+    public void errorOfLeader_failsFollowers() throws Exception {
+        final SingleFlight<String, String> flights = new SingleFlight<>();
+        final CountDownLatch release = new CountDownLatch(1);
+        final Callable<String> broken = new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                release.await();
+                throw new OutOfMemoryError("test");
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<String>> results = new ArrayList<>();
+        for (int n = 0; n < 4; n++) {
+            results.add(executor.submit(new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return flights.execute("a", broken);
+                }
+            }));
+        }
+        Thread.sleep(200);
+        release.countDown();
+
+        // leader and followers alike : failure, never null.
+        for (Future<String> result : results) {
+            try {
+                result.get(2, TimeUnit.SECONDS);
+                fail();
+            } catch (ExecutionException expected) {
+                // Future wraps the ExecutionException of SingleFlight.
+                assertTrue(expected.getCause() instanceof ExecutionException);
+                assertTrue(expected.getCause().getCause() instanceof OutOfMemoryError);
+            }
+        }
+        assertEquals(0, flights.getInFlightCount());
+        executor.shutdown();
+    }
+}
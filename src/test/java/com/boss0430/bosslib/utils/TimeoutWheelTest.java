@@ -0,0 +1,101 @@
+package com.boss0430.bosslib.utils;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit test for TimeoutWheel.
+ */
+public class TimeoutWheelTest {
+
+    private final TimeoutWheel wheel = new TimeoutWheel(10, 8);
+
+    @After
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    public void firesOnceAtDeadline() throws Exception {
+        final CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        TimeoutWheel.Timeout timeout = wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                fired.countDown();
+            }
+        }, 100, TimeUnit.MILLISECONDS);
+        assertEquals(1, wheel.getPendingCount());
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue("fired too early : " + elapsedMillis, elapsedMillis >= 100);
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    public void longerThanOneRound() throws Exception {
+        // 8 buckets * 10ms = 80ms per round.
+        final CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        wheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                fired.countDown();
+            }
+        }, 250, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 250);
+    }
+
+    @Test
+    public void cancelled_neverFires() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                count.incrementAndGet();
+            }
+        };
+        TimeoutWheel.Timeout[] timeouts = new TimeoutWheel.Timeout[1000];
+        for (int n = 0; n < timeouts.length; n++) {
+            timeouts[n] = wheel.schedule(task, 50, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(1000, wheel.getPendingCount());
+        for (int n = 0; n < timeouts.length; n += 2) {
+            assertTrue(timeouts[n].cancel());
+            assertFalse(timeouts[n].cancel());
+        }
+        assertEquals(500, wheel.getPendingCount());
+
+        Thread.sleep(300);
+        assertEquals(500, count.get());
+        assertEquals(0, wheel.getPendingCount());
+        assertTrue(timeouts[0].isCancelled());
+    }
+
+    @Test
+    public void wakesFromIdle() throws Exception {
+        final CountDownLatch fired = new CountDownLatch(2);
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                fired.countDown();
+            }
+        };
+        wheel.schedule(task, 20, TimeUnit.MILLISECONDS);
+        Thread.sleep(200);
+        // wheel is parked without deadline now.
+        wheel.schedule(task, 20, TimeUnit.MILLISECONDS);
+        assertTrue(fired.await(2, TimeUnit.SECONDS));
+    }
+}